@@ -2,8 +2,15 @@ package com.jungle;
 
 import com.jungle.ast.INode;
 import com.jungle.ast.Node;
+import com.jungle.ast.NodeArena;
+import com.jungle.common.SymbolInterner;
 import com.jungle.compiler.Compiler;
+import com.jungle.compiler.optimizer.ConstantFolder;
+import com.jungle.compiler.optimizer.DeadCodeEliminator;
+import com.jungle.compiler.optimizer.LoopInvariantHoister;
 import com.jungle.parser.Parser;
+import com.jungle.scanner.DfaScanner;
+import com.jungle.scanner.ParallelScanner;
 import com.jungle.scanner.Scanner;
 import com.jungle.token.IToken;
 import com.jungle.token.Token;
@@ -12,8 +19,13 @@ import org.apache.commons.cli.*;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Iterator;
-import java.util.List;
 
 public class JungleCLI {
     // NOTE:
@@ -26,6 +38,47 @@ public class JungleCLI {
         return new BufferedReader(new InputStreamReader(System.in));
     }
 
+    @NotNull
+    protected static MappedByteBuffer getMappedByteBuffer(@NotNull String inputFileName) throws IOException {
+        // The mapping remains valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFileName), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @NotNull
+    protected static Scanner getScanner(@NotNull CommandLine cli) throws IOException {
+        String inputFileName = cli.getOptionValue("input");
+        Scanner scanner;
+        if (inputFileName == null || inputFileName.equals("-")) {
+            // Scan lines from standard input
+            scanner = new Scanner(getStandardInputBufferedReader().lines().iterator());
+        } else {
+            // Scan UTF-8 bytes of the memory-mapped file, without a reader or decoder
+            scanner = new Scanner(getMappedByteBuffer(inputFileName));
+        }
+        return scanner.withTriviaFolded(cli.hasOption("fold-whitespace"));
+    }
+
+    @NotNull
+    protected static CharBuffer getSourceCharBuffer(@NotNull CommandLine cli) throws IOException {
+        String inputFileName = cli.getOptionValue("input");
+        if (inputFileName == null || inputFileName.equals("-")) {
+            // Read all of standard input
+            BufferedReader reader = getStandardInputBufferedReader();
+            StringBuilder builder = new StringBuilder();
+            char[] characters = new char[8192];
+            int length;
+            while ((length = reader.read(characters)) != -1) {
+                builder.append(characters, 0, length);
+            }
+            return CharBuffer.wrap(builder.toString().toCharArray());
+        } else {
+            // Decode the memory-mapped file at once
+            return StandardCharsets.UTF_8.decode(getMappedByteBuffer(inputFileName));
+        }
+    }
+
     @NotNull
     protected static BufferedWriter getBufferedWriter(@NotNull CommandLine cli) throws IOException {
         String outputFileName = cli.getOptionValue("output");
@@ -38,6 +91,18 @@ public class JungleCLI {
         }
     }
 
+    @NotNull
+    protected static OutputStream getBufferedOutputStream(@NotNull CommandLine cli) throws IOException {
+        String outputFileName = cli.getOptionValue("output");
+        if (outputFileName == null || outputFileName.equals("-")) {
+            // Write to standard output
+            return new BufferedOutputStream(System.out);
+        } else {
+            // Write to file
+            return new BufferedOutputStream(new FileOutputStream(outputFileName));
+        }
+    }
+
     public static String DEFAULT_JUNGLE_CLASSPATH = ".";
 
     @NotNull
@@ -68,14 +133,33 @@ public class JungleCLI {
     }
 
     protected static void scanCommand(@NotNull CommandLine cli) {
-        BufferedReader reader = getStandardInputBufferedReader();
-        Iterator<String> lineIterator = reader.lines().iterator();
-        Scanner scanner = new Scanner(lineIterator);
-        Iterable<IToken> tokenList = scanner.scan();
-        BufferedWriter writer = null;
+        Closeable writer = null;
         try {
-            writer = getBufferedWriter(cli);
-            Token.save(writer, tokenList);
+            Iterable<IToken> tokenIterable;
+            if (cli.hasOption("parallel")) {
+                // Scan chunks of the entire source on all processors, then write the tokens
+                tokenIterable = new ParallelScanner(getSourceCharBuffer(cli))
+                        .withTriviaFolded(cli.hasOption("fold-whitespace"))
+                        .scanTokenBuffer();
+            } else if (cli.hasOption("dfa")) {
+                // Scan the entire source with the table-driven scanner, then write the tokens
+                tokenIterable = new DfaScanner(getSourceCharBuffer(cli))
+                        .withTriviaFolded(cli.hasOption("fold-whitespace"))
+                        .scanTokenBuffer();
+            } else {
+                // Each token is written as soon as it is scanned
+                Scanner scanner = getScanner(cli);
+                tokenIterable = scanner::tokenIterator;
+            }
+            if (cli.hasOption("binary")) {
+                OutputStream stream = getBufferedOutputStream(cli);
+                writer = stream;
+                Token.saveBinary(stream, tokenIterable);
+            } else {
+                BufferedWriter bufferedWriter = getBufferedWriter(cli);
+                writer = bufferedWriter;
+                Token.save(bufferedWriter, tokenIterable);
+            }
         } catch (IOException e) {
             System.err.println("failed to scan - " + e.getMessage());
             System.exit(1);
@@ -88,24 +172,29 @@ public class JungleCLI {
                     System.exit(1);
                 }
             }
-            try {
-                reader.close();
-            } catch (IOException e) {
-                System.err.println("failed to close source reader - " + e.getMessage());
-                System.exit(1);
-            }
         }
     }
 
     protected static void parseCommand(@NotNull CommandLine cli) {
-        BufferedReader reader = getStandardInputBufferedReader();
-        List<IToken> tokenList = Token.load(reader);
-        Parser parser = new Parser(tokenList);
-        INode ast = parser.parse();
-        BufferedWriter writer = null;
+        // The parser pulls tokens from standard input as they are read, and
+        // each statement is written as soon as it is parsed, so that scan, parse and compile run at the same time.
+        Parser parser;
+        if (cli.hasOption("binary")) {
+            parser = new Parser(Token.loadBinary(new BufferedInputStream(System.in)));
+        } else {
+            parser = new Parser(Token.loadIterator(getStandardInputBufferedReader()));
+        }
+        Closeable writer = null;
         try {
-            writer = getBufferedWriter(cli);
-            Node.save(writer, ast);
+            if (cli.hasOption("binary-ast")) {
+                OutputStream stream = getBufferedOutputStream(cli);
+                writer = stream;
+                Node.saveSequenceBinary(stream, parser.statementIterator());
+            } else {
+                BufferedWriter bufferedWriter = getBufferedWriter(cli);
+                writer = bufferedWriter;
+                Node.saveSequence(bufferedWriter, parser.statementIterator());
+            }
         } catch (IOException e) {
             System.err.println("failed to parse - " + e.getMessage());
             System.exit(1);
@@ -122,42 +211,89 @@ public class JungleCLI {
     }
 
     protected static void compileCommand(@NotNull CommandLine cli) {
-        BufferedReader reader = getStandardInputBufferedReader();
-        INode ast = Node.load(reader);
-        try {
-            reader.close();
-        } catch (IOException e) {
-            System.err.println("failed to close ast reader - " + e.getMessage());
-            System.exit(1);
+        // Each statement is compiled as soon as it is read, while the rest of the AST is still arriving
+        // The symbol ids of the compilation, interned as the AST is read
+        SymbolInterner symbolInterner = new SymbolInterner();
+        Closeable reader;
+        Iterator<INode> statementIterator;
+        if (cli.hasOption("binary-ast")) {
+            InputStream stream = new BufferedInputStream(System.in);
+            reader = stream;
+            statementIterator = Node.loadSequenceBinary(stream, symbolInterner);
+        } else {
+            BufferedReader bufferedReader = getStandardInputBufferedReader();
+            reader = bufferedReader;
+            statementIterator = Node.loadSequence(bufferedReader, symbolInterner);
         }
         String entrypointClassName = cli.getOptionValue("output", "Entrypoint");
         String jungleClassPath = getJungleClassPath(cli);
         String jungleTargetPath = getJungleTargetPath(cli);
         Compiler compiler = new Compiler(
             jungleClassPath,
-            jungleTargetPath
+            jungleTargetPath,
+            symbolInterner
+        );
+        compiler.compileMain(
+            entrypointClassName,
+            new VisitorRegistry(compiler).getMainVisitor(),
+            new LoopInvariantHoister(symbolInterner).hoist(
+                new DeadCodeEliminator().eliminate(new ConstantFolder().fold(statementIterator))
+            )
         );
-        compiler.compileMain(entrypointClassName, new MainVisitor(compiler), ast);
+        try {
+            reader.close();
+        } catch (IOException e) {
+            System.err.println("failed to close ast reader - " + e.getMessage());
+            System.exit(1);
+        }
     }
 
     protected static void runCommand(@NotNull CommandLine cli) {
-        BufferedReader reader = getStandardInputBufferedReader();
+        // The symbol ids of the compilation, shared by the scanner, parser, optimizer and compiler
+        SymbolInterner symbolInterner = new SymbolInterner();
         // Scan...
-        Iterator<String> lineIterator = reader.lines().iterator();
-        Scanner scanner = new Scanner(lineIterator);
-        Iterable<IToken> tokenList = scanner.scan();
-        // Parse...
-        Parser parser = new Parser(tokenList);
-        INode ast = parser.parse();
-        // Compile...
+        Scanner scanner = null;
+        try {
+            scanner = getScanner(cli).withSymbolInterner(symbolInterner);
+        } catch (IOException e) {
+            System.err.println("failed to read source - " + e.getMessage());
+            System.exit(1);
+        }
         String entrypointClassName = cli.getOptionValue("output", "Entrypoint");
         String jungleClassPath = getJungleClassPath(cli);
         String jungleTargetPath = getJungleTargetPath(cli);
         Compiler compiler = new Compiler(
             jungleClassPath,
-            jungleTargetPath
+            jungleTargetPath,
+            symbolInterner
         );
-        compiler.compileMain(entrypointClassName, new MainVisitor(compiler), ast);
+        // Parse...
+        // Note: the parser pulls tokens from the scanner on demand, so the scan and parse stages are interleaved
+        if (cli.hasOption("stream")) {
+            // Compile...
+            // Each top-level statement is compiled as soon as it is parsed, and then dropped,
+            // so the AST in memory is at most the largest statement instead of the entire program
+            Parser parser = new Parser(scanner.tokenIterator()).withSymbolInterner(symbolInterner);
+            compiler.compileMain(
+                entrypointClassName,
+                new VisitorRegistry(compiler).getMainVisitor(),
+                new LoopInvariantHoister(symbolInterner).hoist(
+                    new DeadCodeEliminator().eliminate(new ConstantFolder().fold(parser.statementIterator()))
+                )
+            );
+        } else {
+            // The entire AST is parsed into an arena of a few arrays, instead of an object per node
+            Parser parser = new Parser(scanner.tokenIterator())
+                .withSymbolInterner(symbolInterner)
+                .withNodeFactory(new NodeArena());
+            INode ast = parser.parse();
+            // Fold constant expressions and variables, and then remove the code that they make dead...
+            ast = new DeadCodeEliminator().eliminate(new ConstantFolder().fold(ast));
+            // Evaluate the invariant expressions of loops once, before the loop...
+            ast = new LoopInvariantHoister(symbolInterner).hoist(ast);
+            // Compile...
+            compiler.compileMain(entrypointClassName, new VisitorRegistry(compiler).getMainVisitor(), ast);
+        }
         // Run...
         /* Problem:
          * Loading the new class using reflection and invoking main appears to work in some cases.
@@ -194,6 +330,13 @@ public class JungleCLI {
         Options options = new Options();
         options.addOption("h", "help", false, "Show help options.");
         options.addOption("k", "keywords", false, "Show keywords.");
+        options.addOption("i", "input", true, "Input source file name (scan and run) - memory-mapped instead of read from standard input.");
+        options.addOption("p", "parallel", false, "Scan chunks of the source in parallel (scan).");
+        options.addOption("d", "dfa", false, "Scan with the table-driven scanner (scan).");
+        options.addOption("w", "fold-whitespace", false, "Fold whitespace into the next token instead of scanning whitespace tokens (scan and run).");
+        options.addOption("b", "binary", false, "Write (scan) and read (parse) tokens in the binary token format instead of text.");
+        options.addOption("a", "binary-ast", false, "Write (parse) and read (compile) the AST in the binary AST format instead of text.");
+        options.addOption("s", "stream", false, "Compile each statement as soon as it is parsed, instead of parsing the entire AST first (run).");
         options.addOption("o", "output", true, "Output file name.");
         options.addOption("c", "classpath", true, "Class path of the program - source of the program class file dependencies.");
         options.addOption("t", "targetpath", true, "Target path of the program - destination of the program class files generated.");
@@ -0,0 +1,344 @@
+package com.jungle.ast;
+
+import com.jungle.common.SymbolInterner;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Stack;
+
+public class HashConsingNodeFactory implements INodeFactory {
+  /* Creates immutable nodes, where equal subtrees are the same (canonical) node.
+   *
+   * A node is looked up in a table by its type, value and children before it is created.
+   * The children of a canonical node are canonical, so they are compared by identity, and
+   * two subtrees are structurally equal exactly when they are the same node (see intern).
+   * Repeated subexpressions are then stored once, eg. the terms of a numeric kernel.
+   */
+
+  private static final int DEFAULT_CAPACITY = 64;
+
+  // A chained hash table of the canonical nodes, by structural hash
+  @NotNull
+  private ImmutableNode[] table = new ImmutableNode[DEFAULT_CAPACITY];
+  private int size;
+
+  public int size() {
+    // The number of canonical nodes
+    return size;
+  }
+
+  // region table
+
+  private static int hash(@NotNull NodeType type, @Nullable String rawValue, @Nullable INode left, @Nullable INode right, @Nullable List<INode> statements) {
+    // The structural hash, from the (cached) structural hashes of the canonical children
+    int hash = type.ordinal();
+    hash = 31 * hash + Objects.hashCode(rawValue);
+    hash = 31 * hash + getStructuralHash(left);
+    hash = 31 * hash + getStructuralHash(right);
+    if (statements != null) {
+      for (INode statement : statements) {
+        hash = 31 * hash + getStructuralHash(statement);
+      }
+    }
+    return hash;
+  }
+
+  private static int getStructuralHash(@Nullable INode node) {
+    return node == null ? 0 : ((ImmutableNode) node).getStructuralHash();
+  }
+
+  private static boolean isSameStatements(@Nullable List<INode> statements, @Nullable List<INode> otherStatements) {
+    if (statements == null || otherStatements == null) {
+      return statements == otherStatements;
+    }
+    if (statements.size() != otherStatements.size()) {
+      return false;
+    }
+    for (int i = 0; i < statements.size(); i++) {
+      if (statements.get(i) != otherStatements.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @NotNull
+  private ImmutableNode getCanonical(@NotNull NodeType type, @Nullable String rawValue, int symbolId, @Nullable INode left, @Nullable INode right, @Nullable List<INode> statements) {
+    // The children are canonical, and an identifier of a name has the symbol id of its first node
+    int hash = hash(type, rawValue, left, right, statements);
+    int bucket = hash & (table.length - 1);
+    for (ImmutableNode node = table[bucket]; node != null; node = node.next) {
+      if (node.getStructuralHash() == hash
+              && node.getType() == type
+              && Objects.equals(node.getRawValue(), rawValue)
+              && node.getLeft() == left
+              && node.getRight() == right
+              && isSameStatements(node.getStatements(), statements)) {
+        return node;
+      }
+    }
+    List<INode> immutableStatements = statements == null
+            ? null
+            : Collections.unmodifiableList(new ArrayList<>(statements));
+    ImmutableNode node = new ImmutableNode(type, rawValue, symbolId, left, right, immutableStatements, hash);
+    node.next = table[bucket];
+    table[bucket] = node;
+    size++;
+    if (size > table.length - (table.length >>> 2)) {
+      resize();
+    }
+    return node;
+  }
+
+  private void resize() {
+    ImmutableNode[] oldTable = table;
+    table = new ImmutableNode[oldTable.length * 2];
+    for (ImmutableNode bucketNode : oldTable) {
+      ImmutableNode node = bucketNode;
+      while (node != null) {
+        ImmutableNode nextNode = node.next;
+        int bucket = node.getStructuralHash() & (table.length - 1);
+        node.next = table[bucket];
+        table[bucket] = node;
+        node = nextNode;
+      }
+    }
+  }
+
+  private boolean isCanonical(@Nullable INode node) {
+    return node == null || (node instanceof ImmutableNode && ((ImmutableNode) node).factory == this);
+  }
+
+  // endregion
+
+  @Nullable
+  public INode intern(@Nullable INode node) {
+    /* The canonical node of a tree, so that structurally equal trees are the same node.
+     * Like Node::save, a node with a value is a leaf.
+     */
+    if (isCanonical(node)) {
+      return node;
+    }
+    // Non-recursive post-order traversal, a node is made canonical after its children
+    Stack<INode> nodeStack = new Stack<>();
+    Stack<INode> canonicalStack = new Stack<>();
+    Stack<Boolean> isVisitedStack = new Stack<>();
+    nodeStack.push(node);
+    isVisitedStack.push(false);
+    while (nodeStack.size() > 0) {
+      INode nextNode = nodeStack.pop();
+      boolean isVisited = isVisitedStack.pop();
+      if (isCanonical(nextNode)) {
+        canonicalStack.push(nextNode);
+        continue;
+      }
+      if (nextNode.isLeaf()) {
+        canonicalStack.push(getCanonical(nextNode.getType(), nextNode.getRawValue(), nextNode.getSymbolId(), null, null, null));
+        continue;
+      }
+      List<INode> statements = nextNode.getStatements();
+      if (!isVisited) {
+        // Visit the children first, their canonical nodes are then on the canonical stack in order
+        nodeStack.push(nextNode);
+        isVisitedStack.push(true);
+        if (statements != null) {
+          for (int i = statements.size() - 1; i >= 0; i--) {
+            nodeStack.push(statements.get(i));
+            isVisitedStack.push(false);
+          }
+        } else {
+          nodeStack.push(nextNode.getRight());
+          isVisitedStack.push(false);
+          nodeStack.push(nextNode.getLeft());
+          isVisitedStack.push(false);
+        }
+        continue;
+      }
+      if (statements != null) {
+        INode[] canonicalStatements = new INode[statements.size()];
+        for (int i = canonicalStatements.length - 1; i >= 0; i--) {
+          canonicalStatements[i] = canonicalStack.pop();
+        }
+        canonicalStack.push(getCanonical(nextNode.getType(), null, SymbolInterner.NO_SYMBOL, null, null, Arrays.asList(canonicalStatements)));
+      } else {
+        INode right = canonicalStack.pop();
+        INode left = canonicalStack.pop();
+        canonicalStack.push(getCanonical(nextNode.getType(), null, SymbolInterner.NO_SYMBOL, left, right, null));
+      }
+    }
+    return canonicalStack.pop();
+  }
+
+  // region factory
+
+  @Override
+  @NotNull
+  public INode createNode(@NotNull NodeType type, @Nullable INode left, @Nullable INode right) {
+    return getCanonical(type, null, SymbolInterner.NO_SYMBOL, intern(left), intern(right), null);
+  }
+
+  @Override
+  @NotNull
+  public INode createLeaf(@NotNull NodeType type, @NotNull String rawValue) {
+    return getCanonical(type, rawValue, SymbolInterner.NO_SYMBOL, null, null, null);
+  }
+
+  @Override
+  @NotNull
+  public INode createIdentifier(int symbolId, @NotNull String name) {
+    return getCanonical(NodeType.IDENTIFIER, name, symbolId, null, null, null);
+  }
+
+  @Override
+  @NotNull
+  public INode createSequence(@NotNull NodeType type, @NotNull List<INode> statements) {
+    List<INode> canonicalStatements = new ArrayList<>(statements.size());
+    for (INode statement : statements) {
+      canonicalStatements.add(intern(statement));
+    }
+    return getCanonical(type, null, SymbolInterner.NO_SYMBOL, null, null, canonicalStatements);
+  }
+
+  // endregion
+
+  public final class ImmutableNode implements INode {
+    @NotNull
+    private final HashConsingNodeFactory factory = HashConsingNodeFactory.this;
+
+    @NotNull
+    private final NodeType type;
+
+    @Nullable
+    private final String rawValue;
+
+    @Nullable
+    private final INode left;
+
+    @Nullable
+    private final INode right;
+
+    @Nullable
+    private final List<INode> statements;
+
+    private final int structuralHash;
+
+    private final int symbolId;
+
+    // The next node of the table bucket
+    @Nullable
+    private ImmutableNode next;
+
+    private ImmutableNode(@NotNull NodeType type, @Nullable String rawValue, int symbolId, @Nullable INode left, @Nullable INode right, @Nullable List<INode> statements, int structuralHash) {
+      this.type = type;
+      this.rawValue = rawValue;
+      this.left = left;
+      this.right = right;
+      this.statements = statements;
+      this.structuralHash = structuralHash;
+      this.symbolId = symbolId;
+    }
+
+    public int getStructuralHash() {
+      // A hash of the type, value and children (not only of the type and value, like hashCode)
+      return structuralHash;
+    }
+
+    @Override
+    @NotNull
+    public NodeType getType() {
+      return type;
+    }
+
+    @Override
+    @Nullable
+    public String getRawValue() {
+      return rawValue;
+    }
+
+    @Override
+    @NotNull
+    public Boolean getBooleanValue() {
+      return Node.parseBooleanValue(rawValue);
+    }
+
+    @Override
+    @NotNull
+    public Character getCharacterValue() {
+      return Node.parseCharacterValue(getStringValue());
+    }
+
+    @Override
+    @NotNull
+    public Integer getIntegerValue() {
+      return Node.parseIntegerValue(rawValue);
+    }
+
+    @Override
+    @NotNull
+    public Float getFloatValue() {
+      return Node.parseFloatValue(rawValue);
+    }
+
+    @Override
+    @NotNull
+    public String getStringValue() {
+      return Node.parseStringValue(rawValue);
+    }
+
+    @Override
+    public int getSymbolId() {
+      return symbolId;
+    }
+
+    @Override
+    @Nullable
+    public INode getLeft() {
+      return left;
+    }
+
+    @Override
+    @Nullable
+    public INode getRight() {
+      return right;
+    }
+
+    @Override
+    @Nullable
+    public List<INode> getStatements() {
+      return statements;
+    }
+
+    @Override
+    public boolean isLeaf() {
+      return rawValue != null;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object other) {
+      // Like Node, the type and value (not the children), canonical subtrees are compared by identity instead
+      if (other == this) return true;
+      if (!(other instanceof INode)) return false;
+      INode otherNode = (INode) other;
+      return type == otherNode.getType() && Objects.equals(rawValue, otherNode.getRawValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return new HashCodeBuilder()
+              .append(type)
+              .append(rawValue)
+              .toHashCode();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("<Node type='%s' value='%s' />", type, rawValue);
+    }
+  }
+}
@@ -3,6 +3,8 @@ package com.jungle.ast;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
+
 public interface INode {
   @NotNull NodeType getType();
 
@@ -13,10 +15,12 @@ public interface INode {
   @NotNull Integer getIntegerValue();
   @NotNull Float getFloatValue();
   @NotNull String getStringValue();
+  int getSymbolId(); // SymbolInterner id of an identifier, or else NO_SYMBOL
 
   // children
   @Nullable INode getLeft();
   @Nullable INode getRight();
+  @Nullable List<INode> getStatements(); // n-ary sequence, instead of left and right
 
   // helpers
   boolean isLeaf();
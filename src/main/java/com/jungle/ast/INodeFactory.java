@@ -0,0 +1,14 @@
+package com.jungle.ast;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+public interface INodeFactory {
+  // How the parser creates the nodes of an AST, eg. as node objects (see NodeFactory) or in an arena (see NodeArena)
+  @NotNull INode createNode(@NotNull NodeType type, @Nullable INode left, @Nullable INode right);
+  @NotNull INode createLeaf(@NotNull NodeType type, @NotNull String rawValue);
+  @NotNull INode createIdentifier(int symbolId, @NotNull String name); // an IDENTIFIER leaf of an interned name, see SymbolInterner
+  @NotNull INode createSequence(@NotNull NodeType type, @NotNull List<INode> statements); // n-ary, see INode::getStatements
+}
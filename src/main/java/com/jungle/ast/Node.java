@@ -1,6 +1,8 @@
 package com.jungle.ast;
 
 import com.jungle.common.StringUtils;
+import com.jungle.common.SymbolInterner;
+import com.jungle.common.VarintUtils;
 import com.jungle.error.LoadError;
 import com.jungle.error.SaveError;
 import com.jungle.logger.FileLogger;
@@ -11,6 +13,15 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Stack;
 
 public class Node implements INode {
@@ -23,12 +34,17 @@ public class Node implements INode {
   @Nullable
   private String rawValue;
 
+  private int symbolId = SymbolInterner.NO_SYMBOL;
+
   @Nullable
   private INode left;
 
   @Nullable
   private INode right;
 
+  @Nullable
+  private List<INode> statements;
+
   public Node(@NotNull NodeType type) {
     super();
     this.type = type;
@@ -50,61 +66,101 @@ public class Node implements INode {
   @NotNull
   public INode withRawValue(@Nullable String rawValue) {
     this.rawValue = rawValue;
+    this.symbolId = SymbolInterner.NO_SYMBOL;
     return this;
   }
 
   @Override
+  public int getSymbolId() {
+    return symbolId;
+  }
+
   @NotNull
-  public Boolean getBooleanValue() {
-    if (getRawValue() == null) {
+  public INode withSymbolId(int symbolId, @NotNull String name) {
+    // The raw value of an identifier is its interned name (see SymbolInterner::getName)
+    this.rawValue = name;
+    this.symbolId = symbolId;
+    return this;
+  }
+
+  // Values are parsed from the raw value on demand (see NodeArena, which parses literal values once)
+
+  @NotNull
+  static Boolean parseBooleanValue(@Nullable String rawValue) {
+    if (rawValue == null) {
       throw new Error("failed to parse value as boolean - value is null");
     }
-    return Boolean.valueOf(getRawValue());
+    return Boolean.valueOf(rawValue);
   }
 
-  @Override
   @NotNull
-  public Character getCharacterValue() {
-    String stringValue = getStringValue();
+  static Character parseCharacterValue(@NotNull String stringValue) {
     if (stringValue.length() != 1) {
       throw new Error("failed to parse character as integer");
     }
     return stringValue.charAt(0);
   }
 
-  @Override
   @NotNull
-  public Integer getIntegerValue() {
-    if (getRawValue() == null) {
+  static Integer parseIntegerValue(@Nullable String rawValue) {
+    if (rawValue == null) {
       throw new Error("failed to parse value as integer - value is null");
     }
     try {
-      return Integer.parseInt(getRawValue());
+      return Integer.parseInt(rawValue);
     } catch (NumberFormatException e) {
       throw new Error("failed to parse value as integer", e);
     }
   }
 
-  @Override
   @NotNull
-  public Float getFloatValue() {
-    if (getRawValue() == null) {
+  static Float parseFloatValue(@Nullable String rawValue) {
+    if (rawValue == null) {
       throw new Error("failed to parse value as float - value is null");
     }
     try {
-      return Float.parseFloat(getRawValue());
+      return Float.parseFloat(rawValue);
     } catch (NumberFormatException e) {
       throw new Error("failed to parse value as float", e);
     }
   }
 
-  @Override
   @NotNull
-  public String getStringValue() {
-    if (getRawValue() == null) {
+  static String parseStringValue(@Nullable String rawValue) {
+    if (rawValue == null) {
       throw new Error("failed to parse value as string - value is null");
     }
-    return StringUtils.unescapeString(getRawValue());
+    return StringUtils.unescapeString(rawValue);
+  }
+
+  @Override
+  @NotNull
+  public Boolean getBooleanValue() {
+    return parseBooleanValue(getRawValue());
+  }
+
+  @Override
+  @NotNull
+  public Character getCharacterValue() {
+    return parseCharacterValue(getStringValue());
+  }
+
+  @Override
+  @NotNull
+  public Integer getIntegerValue() {
+    return parseIntegerValue(getRawValue());
+  }
+
+  @Override
+  @NotNull
+  public Float getFloatValue() {
+    return parseFloatValue(getRawValue());
+  }
+
+  @Override
+  @NotNull
+  public String getStringValue() {
+    return parseStringValue(getRawValue());
   }
 
   // endregion
@@ -131,6 +187,19 @@ public class Node implements INode {
     return this;
   }
 
+  @Override
+  @Nullable
+  public List<INode> getStatements() {
+    return statements;
+  }
+
+  @NotNull
+  public Node withStatements(@Nullable List<INode> statements) {
+    // A sequence of any number of statements (some of which might be null), so that it is not a deep chain of nodes
+    this.statements = statements;
+    return this;
+  }
+
   @Override
   public boolean isLeaf() {
     return getRawValue() != null;
@@ -139,8 +208,8 @@ public class Node implements INode {
   @Override
   public boolean equals(@Nullable Object other) {
     if (other == this) return true;
-    if (!(other instanceof Node)) return false;
-    Node otherNode = (Node) other;
+    if (!(other instanceof INode)) return false;
+    INode otherNode = (INode) other;
     return new EqualsBuilder()
             .append(getRawValue(), otherNode.getRawValue())
             .append(getType(), otherNode.getType()).isEquals();
@@ -163,6 +232,8 @@ public class Node implements INode {
 
   protected static char TERMINAL = ';';
   protected static char DELIMITER_FIELD = '\t';
+  // An n-ary node has the number of its statements after the type, eg. "SEQUENCE#3" followed by 3 statements
+  protected static char DELIMITER_COUNT = '#';
   protected static char DELIMITER_LINE = '\n';
 
   // region Save AST
@@ -203,6 +274,20 @@ public class Node implements INode {
             saveLogger.error(message, e);
             throw new SaveError(message);
           }
+        } else if (nextNode.getStatements() != null) {
+          saveLogger.debug("node is n-ary");
+          List<INode> statements = nextNode.getStatements();
+          try {
+            writer.write(DELIMITER_COUNT);
+            writer.write(Integer.toString(statements.size()));
+          } catch (IOException e) {
+            String message = "failed to write node statement count";
+            saveLogger.error(message, e);
+            throw new SaveError(message);
+          }
+          for (int i = statements.size() - 1; i >= 0; i--) {
+            nodeStack.push(statements.get(i));
+          }
         } else {
           saveLogger.debug("node is parent");
           nodeStack.push(nextNode.getRight());
@@ -219,6 +304,27 @@ public class Node implements INode {
     }
   }
 
+  public static void saveSequence(@NotNull BufferedWriter writer, @NotNull Iterator<INode> statementIterator) {
+    /* Stream the statements of a sequence as they are produced (eg. parsed), without the entire AST.
+     * The statements are saved as a right-nested sequence (ie. each sequence node is followed by its statement),
+     * since a left-nested sequence needs to know the number of statements before the first one can be saved.
+     * Both compile to the same statements in the same order.
+     */
+    while (statementIterator.hasNext()) {
+      INode statement = statementIterator.next();
+      try {
+        writer.write(NodeType.SEQUENCE.name());
+        writer.write(DELIMITER_LINE);
+      } catch (IOException e) {
+        String message = "failed to write sequence";
+        saveLogger.error(message, e);
+        throw new SaveError(message);
+      }
+      save(writer, statement);
+    }
+    save(writer, null);
+  }
+
   // endregion
 
   // region Load AST
@@ -226,24 +332,19 @@ public class Node implements INode {
   private static final FileLogger loadLogger = new FileLogger("LoadAst");
 
   @Nullable
-  public static INode load(@NotNull BufferedReader reader) {
-    // https://rosettacode.org/wiki/Compiler/code_generator#Java
-    // Each line as an item in a binary array/tree
-    // A line always has a node type with optional value
-    // The node type and value are delimited by a tab character (\t)
-    String line;
+  private static String readLine(@NotNull BufferedReader reader) {
     try {
-      line = reader.readLine();
+      return reader.readLine();
     } catch (IOException e) {
       String message = "failed to read file";
       loadLogger.error(message, e);
       throw new LoadError(message);
     }
-    boolean hasStreamEnded = line == null;
-    if (hasStreamEnded) {
-      loadLogger.warn("end of stream reached");
-      return null;
-    }
+  }
+
+  @Nullable
+  private static Node loadLine(@NotNull String line, @NotNull SymbolInterner symbolInterner) {
+    // The node of a line, without its children, or null when the line is terminal
     boolean hasEmptyLine = line.length() == 0;
     if (hasEmptyLine) {
       loadLogger.debug("line is empty");
@@ -268,6 +369,23 @@ public class Node implements INode {
       value = line.substring(splitIndex + 1);
     }
     type = type.trim();
+    int statementCount = -1;
+    int countIndex = type.indexOf(DELIMITER_COUNT);
+    if (countIndex >= 0) {
+      try {
+        statementCount = Integer.parseInt(type.substring(countIndex + 1));
+      } catch (NumberFormatException e) {
+        String message = "line statement count invalid";
+        loadLogger.error(message, e);
+        throw new LoadError(message);
+      }
+      if (statementCount < 0) {
+        String message = "line statement count negative";
+        loadLogger.error(message);
+        throw new LoadError(message);
+      }
+      type = type.substring(0, countIndex);
+    }
     loadLogger.debug("---");
     loadLogger.debug("type: " + type);
     loadLogger.debug("value: " + value);
@@ -281,18 +399,566 @@ public class Node implements INode {
     }
     boolean isLeafNode = value != null;
     if (isLeafNode) {
-      return node.withRawValue(value);
+      setValue(node, value, symbolInterner);
+    } else if (statementCount >= 0) {
+      // The statements are read next (see loadChildren), into a list of the statement count
+      node.withStatements(Arrays.asList(new INode[statementCount]));
+    }
+    return node;
+  }
+
+  private static void setValue(@NotNull Node node, @Nullable String value, @NotNull SymbolInterner symbolInterner) {
+    // The symbol id of a loaded identifier is interned once, when it is loaded
+    if (value != null && node.getType() == NodeType.IDENTIFIER) {
+      int symbolId = symbolInterner.intern(value);
+      node.withSymbolId(symbolId, symbolInterner.getName(symbolId));
+    } else {
+      node.withRawValue(value);
     }
-    // TODO: breadth-first traversal or tail-recursion?
-    return node
-            .withLeft(load(reader))
-            .withRight(load(reader));
   }
 
   @Nullable
-  public static INode load(@NotNull String fileName) throws IOException {
+  private static Node loadNext(@NotNull BufferedReader reader, @NotNull SymbolInterner symbolInterner) {
+    String line = readLine(reader);
+    boolean hasStreamEnded = line == null;
+    if (hasStreamEnded) {
+      loadLogger.warn("end of stream reached");
+      return null;
+    }
+    return loadLine(line, symbolInterner);
+  }
+
+  private static void setChild(@NotNull Node node, int index, @Nullable INode child) {
+    List<INode> statements = node.getStatements();
+    if (statements != null) {
+      statements.set(index, child);
+    } else if (index == 0) {
+      node.withLeft(child);
+    } else {
+      node.withRight(child);
+    }
+  }
+
+  @Nullable
+  private static INode loadChildren(@NotNull BufferedReader reader, @Nullable Node node, @NotNull SymbolInterner symbolInterner) {
+    if (node == null || node.isLeaf()) {
+      return node;
+    }
+    // Non-recursive pre-order traversal, so that the depth of an AST is not limited by the call stack.
+    // A node stays on the stack, with the index of its next child, until all its children are loaded.
+    Stack<Node> nodeStack = new Stack<>();
+    Stack<Integer> childIndexStack = new Stack<>();
+    nodeStack.push(node);
+    childIndexStack.push(0);
+    while (nodeStack.size() > 0) {
+      Node parentNode = nodeStack.peek();
+      int childIndex = childIndexStack.pop();
+      if (childIndex == getChildCount(parentNode)) {
+        nodeStack.pop();
+        continue;
+      }
+      childIndexStack.push(childIndex + 1);
+      Node childNode = loadNext(reader, symbolInterner);
+      setChild(parentNode, childIndex, childNode);
+      if (childNode != null && !childNode.isLeaf()) {
+        nodeStack.push(childNode);
+        childIndexStack.push(0);
+      }
+    }
+    return node;
+  }
+
+  @Nullable
+  public static INode load(@NotNull BufferedReader reader, @NotNull SymbolInterner symbolInterner) {
+    // https://rosettacode.org/wiki/Compiler/code_generator#Java
+    // Each line as an item in a binary array/tree
+    // A line always has a node type with optional value
+    // The node type and value are delimited by a tab character (\t)
+    // Identifiers are interned into the symbol interner of the compilation
+    return loadChildren(reader, loadNext(reader, symbolInterner), symbolInterner);
+  }
+
+  @Nullable
+  public static INode load(@NotNull BufferedReader reader) {
+    return load(reader, new SymbolInterner());
+  }
+
+  private static int getChildCount(@NotNull Node node) {
+    return node.getStatements() == null ? 2 : node.getStatements().size();
+  }
+
+  @Nullable
+  public static Iterator<INode> loadSequence(@NotNull BufferedReader reader) {
+    return loadSequence(reader, new SymbolInterner());
+  }
+
+  @Nullable
+  public static Iterator<INode> loadSequence(@NotNull BufferedReader reader, @NotNull SymbolInterner symbolInterner) {
+    /* Stream the statements of the AST as they are read, without reading the entire AST.
+     * The sequence nodes of the AST (left or right nested) are only read, and
+     * every other node is loaded as a statement, in the order that the sequence visits them.
+     * Returns null when the AST is null.
+     */
+    String line = readLine(reader);
+    if (line == null) {
+      loadLogger.warn("end of stream reached");
+      return null;
+    }
+    Node root = loadLine(line, symbolInterner);
+    if (root == null) {
+      return null;
+    }
+    if (!NodeType.SEQUENCE.equals(root.getType()) || root.isLeaf()) {
+      return Collections.singletonList(loadChildren(reader, root, symbolInterner)).iterator();
+    }
+    return new Iterator<INode>() {
+      // The number of nodes left to read, of the sequence nodes read so far
+      private int pendingNodeCount = getChildCount(root);
+
+      @Nullable
+      private INode nextStatement;
+
+      @Override
+      public boolean hasNext() {
+        while (nextStatement == null && pendingNodeCount > 0) {
+          String nextLine = readLine(reader);
+          if (nextLine == null) {
+            // Like load, the missing nodes are null
+            loadLogger.warn("end of stream reached");
+            pendingNodeCount = 0;
+            break;
+          }
+          pendingNodeCount--;
+          Node node = loadLine(nextLine, symbolInterner);
+          if (node == null) {
+            // A null statement has no code
+            continue;
+          }
+          if (NodeType.SEQUENCE.equals(node.getType()) && !node.isLeaf()) {
+            pendingNodeCount += getChildCount(node);
+            continue;
+          }
+          nextStatement = loadChildren(reader, node, symbolInterner);
+        }
+        return nextStatement != null;
+      }
+
+      @Override
+      @NotNull
+      public INode next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException("no more statements");
+        }
+        INode statement = nextStatement;
+        nextStatement = null;
+        return statement;
+      }
+    };
+  }
+
+  @Nullable
+  public static INode load(@NotNull String fileName, @NotNull SymbolInterner symbolInterner) throws IOException {
     BufferedReader reader = new BufferedReader(new FileReader(fileName));
-    return load(reader);
+    return load(reader, symbolInterner);
+  }
+
+  @Nullable
+  public static INode load(@NotNull String fileName) throws IOException {
+    return load(fileName, new SymbolInterner());
+  }
+
+  // endregion
+
+  // region Binary AST
+
+  /* The binary AST format is a compact alternative to the text format, for parse | compile pipes.
+   *
+   * The stream starts with a magic number, followed by the nodes of each tree in pre-order:
+   * - a header byte, with the type ordinal (bits 0-5) and the child-presence bitmask (bit 6 left, bit 7 right),
+   * - for a node without children, its value as an index of the string table plus 1, or 0 without a value (varint).
+   *   The index after the last string adds a new string to the table, its UTF-8 length (varint) and bytes follow.
+   * An n-ary node has the header BINARY_STATEMENTS instead, followed by the type ordinal (byte),
+   * the statement count (varint) and the child-presence bitmask of its statements (a byte per 8 statements).
+   * Like the text format, a node with a value is a leaf, and null children are left out.
+   * Identifiers and literals are mostly repeated, so each distinct value is written once.
+   */
+
+  private static final int BINARY_MAGIC = 0x4A415331; // JAS1
+  private static final int BINARY_TYPE_MASK = 0x3F;
+  private static final int BINARY_HAS_LEFT = 0x40;
+  private static final int BINARY_HAS_RIGHT = 0x80;
+  private static final int BINARY_STATEMENTS = BINARY_TYPE_MASK;
+
+  @NotNull
+  private static final NodeType[] NODE_TYPES = NodeType.values();
+
+  static {
+    if (NODE_TYPES.length >= BINARY_STATEMENTS) {
+      throw new Error("too many node types for the binary AST format");
+    }
+  }
+
+  private static class BinaryWriter {
+    @NotNull
+    private final OutputStream stream;
+
+    @NotNull
+    private final Map<String, Integer> stringTable = new HashMap<>();
+
+    BinaryWriter(@NotNull OutputStream stream) throws IOException {
+      this.stream = stream;
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        stream.write(BINARY_MAGIC >>> shift);
+      }
+    }
+
+    private void writeValue(@Nullable String value) throws IOException {
+      if (value == null) {
+        VarintUtils.writeVarint(stream, 0);
+        return;
+      }
+      Integer index = stringTable.get(value);
+      if (index != null) {
+        VarintUtils.writeVarint(stream, index + 1);
+        return;
+      }
+      VarintUtils.writeVarint(stream, stringTable.size() + 1);
+      stringTable.put(value, stringTable.size());
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      VarintUtils.writeVarint(stream, bytes.length);
+      stream.write(bytes);
+    }
+
+    void writeTree(@NotNull INode root) throws IOException {
+      // Non-recursive pre-order traversal, like save
+      Stack<INode> nodeStack = new Stack<>();
+      nodeStack.push(root);
+      while (nodeStack.size() > 0) {
+        INode node = nodeStack.pop();
+        int typeOrdinal = node.getType().ordinal();
+        List<INode> statements = node.getStatements();
+        if (node.isLeaf() || (statements == null && node.getLeft() == null && node.getRight() == null)) {
+          stream.write(typeOrdinal);
+          writeValue(node.getRawValue());
+        } else if (statements != null) {
+          stream.write(BINARY_STATEMENTS);
+          stream.write(typeOrdinal);
+          VarintUtils.writeVarint(stream, statements.size());
+          for (int i = 0; i < statements.size(); i += 8) {
+            int mask = 0;
+            for (int j = i; j < Math.min(i + 8, statements.size()); j++) {
+              if (statements.get(j) != null) {
+                mask |= 1 << (j - i);
+              }
+            }
+            stream.write(mask);
+          }
+          for (int i = statements.size() - 1; i >= 0; i--) {
+            if (statements.get(i) != null) {
+              nodeStack.push(statements.get(i));
+            }
+          }
+        } else {
+          INode left = node.getLeft();
+          INode right = node.getRight();
+          stream.write(typeOrdinal
+                  | (left == null ? 0 : BINARY_HAS_LEFT)
+                  | (right == null ? 0 : BINARY_HAS_RIGHT));
+          if (right != null) {
+            nodeStack.push(right);
+          }
+          if (left != null) {
+            nodeStack.push(left);
+          }
+        }
+      }
+    }
+  }
+
+  private static class BinaryFrame {
+    // A node read from the binary AST format, with the children still to read
+    @NotNull
+    private final Node node;
+
+    private final int childCount;
+
+    private final int childMask;
+
+    @Nullable
+    private final byte[] statementMask;
+
+    private int childIndex;
+
+    BinaryFrame(@NotNull Node node, int childCount, int childMask, @Nullable byte[] statementMask) {
+      this.node = node;
+      this.childCount = childCount;
+      this.childMask = childMask;
+      this.statementMask = statementMask;
+    }
+
+    boolean hasChildren() {
+      return nextChildIndex() >= 0;
+    }
+
+    int nextChildIndex() {
+      // The index of the next child that is present, or -1 when all children are read
+      while (childIndex < childCount) {
+        boolean isPresent = statementMask == null
+                ? (childMask & (1 << childIndex)) != 0
+                : (statementMask[childIndex >>> 3] & (1 << (childIndex & 7))) != 0;
+        if (isPresent) {
+          return childIndex;
+        }
+        childIndex++;
+      }
+      return -1;
+    }
+  }
+
+  private static class BinaryReader {
+    @NotNull
+    private final InputStream stream;
+
+    @NotNull
+    private final List<String> stringTable = new ArrayList<>();
+
+    @NotNull
+    private final SymbolInterner symbolInterner;
+
+    private boolean isMagicRead = false;
+
+    BinaryReader(@NotNull InputStream stream, @NotNull SymbolInterner symbolInterner) {
+      this.stream = stream;
+      this.symbolInterner = symbolInterner;
+    }
+
+    private boolean readMagic() throws IOException {
+      // Whether the stream has a magic number, an empty stream has no trees
+      int magic = 0;
+      for (int i = 0; i < 4; i++) {
+        int b = stream.read();
+        if (b < 0) {
+          if (i == 0) return false;
+          throw new EOFException();
+        }
+        magic = (magic << 8) | b;
+      }
+      if (magic != BINARY_MAGIC) {
+        String message = "binary AST magic number invalid";
+        loadLogger.error(message);
+        throw new LoadError(message);
+      }
+      return true;
+    }
+
+    @NotNull
+    private NodeType readType(int typeOrdinal) {
+      if (typeOrdinal >= NODE_TYPES.length) {
+        String message = "binary AST node type invalid";
+        loadLogger.error(message);
+        throw new LoadError(message);
+      }
+      return NODE_TYPES[typeOrdinal];
+    }
+
+    @Nullable
+    private String readValue() throws IOException {
+      int index = VarintUtils.readVarint(stream) - 1;
+      if (index < 0) {
+        return null;
+      }
+      if (index == stringTable.size()) {
+        byte[] bytes = VarintUtils.readBytes(stream, VarintUtils.readVarint(stream));
+        stringTable.add(new String(bytes, StandardCharsets.UTF_8));
+      } else if (index > stringTable.size()) {
+        String message = "binary AST string index invalid";
+        loadLogger.error(message);
+        throw new LoadError(message);
+      }
+      return stringTable.get(index);
+    }
+
+    @Nullable
+    private BinaryFrame readFrame(boolean isEndAllowed) throws IOException {
+      if (!isMagicRead) {
+        isMagicRead = true;
+        if (!readMagic()) {
+          return null;
+        }
+      }
+      int header = stream.read();
+      if (header < 0) {
+        if (isEndAllowed) return null;
+        throw new EOFException();
+      }
+      int typeOrdinal = header & BINARY_TYPE_MASK;
+      if (typeOrdinal == BINARY_STATEMENTS) {
+        int statementTypeOrdinal = stream.read();
+        if (statementTypeOrdinal < 0) {
+          throw new EOFException();
+        }
+        Node node = new Node(readType(statementTypeOrdinal));
+        int statementCount = VarintUtils.readVarint(stream);
+        node.withStatements(Arrays.asList(new INode[statementCount]));
+        byte[] statementMask = VarintUtils.readBytes(stream, (statementCount + 7) >>> 3);
+        return new BinaryFrame(node, statementCount, 0, statementMask);
+      }
+      Node node = new Node(readType(typeOrdinal));
+      int childMask = header >>> 6;
+      if (childMask == 0) {
+        setValue(node, readValue(), symbolInterner);
+      }
+      return new BinaryFrame(node, 2, childMask, null);
+    }
+
+    @Nullable
+    Node readTree() {
+      // The next tree of the stream, or null at the end of the stream
+      try {
+        BinaryFrame rootFrame = readFrame(true);
+        if (rootFrame == null) {
+          return null;
+        }
+        // Non-recursive pre-order traversal, like loadChildren
+        Stack<BinaryFrame> frameStack = new Stack<>();
+        frameStack.push(rootFrame);
+        while (frameStack.size() > 0) {
+          BinaryFrame frame = frameStack.peek();
+          int childIndex = frame.nextChildIndex();
+          if (childIndex < 0) {
+            frameStack.pop();
+            continue;
+          }
+          frame.childIndex++;
+          BinaryFrame childFrame = readFrame(false);
+          setChild(frame.node, childIndex, childFrame.node);
+          if (childFrame.hasChildren()) {
+            frameStack.push(childFrame);
+          }
+        }
+        return rootFrame.node;
+      } catch (EOFException e) {
+        String message = "binary AST truncated";
+        loadLogger.error(message, e);
+        throw new LoadError(message, e);
+      } catch (IOException e) {
+        String message = "failed to read binary AST";
+        loadLogger.error(message, e);
+        throw new LoadError(message, e);
+      }
+    }
+  }
+
+  public static void saveBinary(@NotNull OutputStream stream, @Nullable INode node) {
+    // Note: the stream should be buffered, bytes are written one at a time
+    try {
+      BinaryWriter writer = new BinaryWriter(stream);
+      if (node != null) {
+        writer.writeTree(node);
+      }
+    } catch (IOException e) {
+      String message = "failed to write binary AST";
+      saveLogger.error(message, e);
+      throw new SaveError(message);
+    }
+  }
+
+  public static void saveSequenceBinary(@NotNull OutputStream stream, @NotNull Iterator<INode> statementIterator) {
+    // Each statement is written as a tree of its own, as soon as it is iterated (see saveSequence)
+    try {
+      BinaryWriter writer = new BinaryWriter(stream);
+      while (statementIterator.hasNext()) {
+        INode statement = statementIterator.next();
+        if (statement != null) {
+          writer.writeTree(statement);
+        }
+      }
+    } catch (IOException e) {
+      String message = "failed to write binary AST";
+      saveLogger.error(message, e);
+      throw new SaveError(message);
+    }
+  }
+
+  @Nullable
+  public static INode loadBinary(@NotNull InputStream stream, @NotNull SymbolInterner symbolInterner) {
+    // Note: the stream should be buffered, bytes are read one at a time
+    return new BinaryReader(stream, symbolInterner).readTree();
+  }
+
+  @Nullable
+  public static INode loadBinary(@NotNull InputStream stream) {
+    return loadBinary(stream, new SymbolInterner());
+  }
+
+  @NotNull
+  public static Iterator<INode> loadSequenceBinary(@NotNull InputStream stream) {
+    return loadSequenceBinary(stream, new SymbolInterner());
+  }
+
+  @NotNull
+  public static Iterator<INode> loadSequenceBinary(@NotNull InputStream stream, @NotNull SymbolInterner symbolInterner) {
+    /* Stream the statements of each tree as they are read (see loadSequence).
+     * A sequence tree, eg. of saveBinary, is expanded into its statements.
+     */
+    BinaryReader reader = new BinaryReader(stream, symbolInterner);
+    return new Iterator<INode>() {
+      // The statements of the last tree, in reverse order
+      @NotNull
+      private final Stack<INode> pendingNodeStack = new Stack<>();
+
+      @Nullable
+      private INode nextStatement;
+
+      private boolean hasStreamEnded = false;
+
+      @Override
+      public boolean hasNext() {
+        while (nextStatement == null) {
+          if (pendingNodeStack.size() == 0) {
+            if (hasStreamEnded) {
+              break;
+            }
+            Node tree = reader.readTree();
+            if (tree == null) {
+              hasStreamEnded = true;
+              break;
+            }
+            pendingNodeStack.push(tree);
+          }
+          INode node = pendingNodeStack.pop();
+          if (node == null) {
+            // A null statement has no code
+            continue;
+          }
+          if (!NodeType.SEQUENCE.equals(node.getType()) || node.isLeaf()) {
+            nextStatement = node;
+            continue;
+          }
+          List<INode> statements = node.getStatements();
+          if (statements != null) {
+            for (int i = statements.size() - 1; i >= 0; i--) {
+              pendingNodeStack.push(statements.get(i));
+            }
+          } else {
+            pendingNodeStack.push(node.getRight());
+            pendingNodeStack.push(node.getLeft());
+          }
+        }
+        return nextStatement != null;
+      }
+
+      @Override
+      @NotNull
+      public INode next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException("no more statements");
+        }
+        INode statement = nextStatement;
+        nextStatement = null;
+        return statement;
+      }
+    };
   }
 
   // endregion
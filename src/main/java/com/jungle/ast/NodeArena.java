@@ -0,0 +1,500 @@
+package com.jungle.ast;
+
+import com.jungle.common.SymbolInterner;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Stack;
+
+/* An AST stored as parallel primitive arrays (struct-of-arrays) instead of node objects, like TokenBuffer for tokens.
+ *
+ * Each node is a type ordinal, a kind, a left and a right node index, and a raw value.
+ * Leaves have no children, so their left is a value slot instead: literal values are parsed once when added,
+ * into the bits of an integer or float, or the index of the unescaped text of a character or string.
+ * The left of an identifier is its symbol id (see SymbolInterner), and its raw value the interned name.
+ * Each distinct raw value is stored once, identifiers and literals are mostly repeated.
+ * The statements of an n-ary node are a range of an array of node indexes, its left and right are the range.
+ * Nodes are read through views (INode), which only hold the arena and the node index.
+ */
+
+public class NodeArena implements INodeFactory {
+  private static final int DEFAULT_CAPACITY = 64;
+  public static final int NO_NODE = -1;
+
+  @NotNull
+  private static final NodeType[] NODE_TYPES = NodeType.values();
+
+  // Node kinds
+  private static final byte KIND_NODE = 0; // left and right
+  private static final byte KIND_STATEMENTS = 1; // range of statement indexes
+  private static final byte KIND_RAW = 2; // raw value, parsed on demand
+  private static final byte KIND_INTEGER = 3; // raw value, and integer value slot
+  private static final byte KIND_FLOAT = 4; // raw value, and float (bits) value slot
+  private static final byte KIND_TEXT = 5; // raw value, and unescaped text index value slot
+  private static final byte KIND_SYMBOL = 6; // interned raw value, and symbol id value slot
+
+  // Slots of a node added with its children (see add)
+  private static final int SLOT_ROOT = 0;
+  private static final int SLOT_LEFT = 1;
+  private static final int SLOT_RIGHT = 2;
+  private static final int SLOT_STATEMENT = 3;
+
+  private int size;
+
+  @NotNull
+  private byte[] types;
+
+  @NotNull
+  private byte[] kinds;
+
+  @NotNull
+  private int[] lefts;
+
+  @NotNull
+  private int[] rights;
+
+  @NotNull
+  private String[] rawValues;
+
+  @NotNull
+  private final Map<String, String> rawValueTable = new HashMap<>();
+
+  @NotNull
+  private final List<String> textValues = new ArrayList<>();
+
+  @NotNull
+  private int[] statements;
+  private int statementsLength;
+
+  public NodeArena(int capacity) {
+    super();
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity must be non-negative");
+    }
+    this.types = new byte[capacity];
+    this.kinds = new byte[capacity];
+    this.lefts = new int[capacity];
+    this.rights = new int[capacity];
+    this.rawValues = new String[capacity];
+    this.statements = new int[DEFAULT_CAPACITY];
+  }
+
+  public NodeArena() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  // region add
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= types.length) return;
+    int newCapacity = Math.max(Math.max(capacity, types.length * 2), DEFAULT_CAPACITY);
+    types = Arrays.copyOf(types, newCapacity);
+    kinds = Arrays.copyOf(kinds, newCapacity);
+    lefts = Arrays.copyOf(lefts, newCapacity);
+    rights = Arrays.copyOf(rights, newCapacity);
+    rawValues = Arrays.copyOf(rawValues, newCapacity);
+  }
+
+  private void ensureStatementsCapacity(int capacity) {
+    if (capacity <= statements.length) return;
+    statements = Arrays.copyOf(statements, Math.max(capacity, statements.length * 2));
+  }
+
+  private int add(@NotNull NodeType type, byte kind, int left, int right) {
+    ensureCapacity(size + 1);
+    types[size] = (byte) type.ordinal();
+    kinds[size] = kind;
+    lefts[size] = left;
+    rights[size] = right;
+    rawValues[size] = null;
+    return size++;
+  }
+
+  public int addNode(@NotNull NodeType type, int left, int right) {
+    checkNodeIndex(left);
+    checkNodeIndex(right);
+    return add(type, KIND_NODE, left, right);
+  }
+
+  public int addLeaf(@NotNull NodeType type, @NotNull String rawValue) {
+    // Note: an identifier without a symbol id, see addIdentifier
+    int index = add(type, KIND_RAW, NO_NODE, NO_NODE);
+    String tableRawValue = rawValueTable.putIfAbsent(rawValue, rawValue);
+    rawValues[index] = tableRawValue == null ? rawValue : tableRawValue;
+    // Parse literal values once, or else leave them to be parsed (and fail) on demand like Node
+    try {
+      switch (type) {
+        case LITERAL_INTEGER:
+          lefts[index] = Integer.parseInt(rawValue);
+          kinds[index] = KIND_INTEGER;
+          break;
+        case LITERAL_FLOAT:
+          lefts[index] = Float.floatToRawIntBits(Float.parseFloat(rawValue));
+          kinds[index] = KIND_FLOAT;
+          break;
+        case LITERAL_CHARACTER:
+        case LITERAL_STRING:
+          textValues.add(Node.parseStringValue(rawValue));
+          lefts[index] = textValues.size() - 1;
+          kinds[index] = KIND_TEXT;
+          break;
+        default:
+          break;
+      }
+    } catch (IllegalArgumentException e) {
+      kinds[index] = KIND_RAW;
+    }
+    return index;
+  }
+
+  public int addIdentifier(int symbolId, @NotNull String name) {
+    // The name is interned (see SymbolInterner::getName), so it is stored once like the raw value table
+    int index = add(NodeType.IDENTIFIER, KIND_SYMBOL, symbolId, NO_NODE);
+    rawValues[index] = name;
+    return index;
+  }
+
+  public int addSequence(@NotNull NodeType type, @NotNull int[] statementIndexes, int statementCount) {
+    // An n-ary node of the first statement count indexes, where a null statement is NO_NODE
+    for (int i = 0; i < statementCount; i++) {
+      checkNodeIndex(statementIndexes[i]);
+    }
+    int start = statementsLength;
+    ensureStatementsCapacity(statementsLength + statementCount);
+    System.arraycopy(statementIndexes, 0, statements, start, statementCount);
+    statementsLength += statementCount;
+    return add(type, KIND_STATEMENTS, start, statementCount);
+  }
+
+  public int add(@Nullable INode node) {
+    // The index of a node of this arena, or else of a copy of the node (and its children) added to this arena
+    if (node == null) {
+      return NO_NODE;
+    }
+    if (node instanceof NodeView && ((NodeView) node).getArena() == this) {
+      return ((NodeView) node).index;
+    }
+    // Non-recursive pre-order traversal, each node is added before its children and linked to its parent after.
+    // The slot of a node is where its index goes, the index of its parent (or statement) and the kind of slot.
+    Stack<INode> nodeStack = new Stack<>();
+    Stack<Long> slotStack = new Stack<>();
+    nodeStack.push(node);
+    slotStack.push((long) SLOT_ROOT);
+    int rootIndex = NO_NODE;
+    while (nodeStack.size() > 0) {
+      INode nextNode = nodeStack.pop();
+      long slot = slotStack.pop();
+      int index;
+      if (nextNode == null) {
+        index = NO_NODE;
+      } else if (nextNode instanceof NodeView && ((NodeView) nextNode).getArena() == this) {
+        index = ((NodeView) nextNode).index;
+      } else if (nextNode.isLeaf() && nextNode.getSymbolId() != SymbolInterner.NO_SYMBOL) {
+        index = addIdentifier(nextNode.getSymbolId(), nextNode.getRawValue());
+      } else if (nextNode.isLeaf()) {
+        index = addLeaf(nextNode.getType(), nextNode.getRawValue());
+      } else if (nextNode.getStatements() != null) {
+        List<INode> nextStatements = nextNode.getStatements();
+        int start = statementsLength;
+        ensureStatementsCapacity(statementsLength + nextStatements.size());
+        statementsLength += nextStatements.size();
+        index = add(nextNode.getType(), KIND_STATEMENTS, start, nextStatements.size());
+        for (int i = nextStatements.size() - 1; i >= 0; i--) {
+          nodeStack.push(nextStatements.get(i));
+          slotStack.push(((long) (start + i) << 2) | SLOT_STATEMENT);
+        }
+      } else {
+        index = add(nextNode.getType(), KIND_NODE, NO_NODE, NO_NODE);
+        nodeStack.push(nextNode.getRight());
+        slotStack.push(((long) index << 2) | SLOT_RIGHT);
+        nodeStack.push(nextNode.getLeft());
+        slotStack.push(((long) index << 2) | SLOT_LEFT);
+      }
+      int target = (int) (slot >>> 2);
+      switch ((int) (slot & 3)) {
+        case SLOT_LEFT: lefts[target] = index; break;
+        case SLOT_RIGHT: rights[target] = index; break;
+        case SLOT_STATEMENT: statements[target] = index; break;
+        default: rootIndex = index; break;
+      }
+    }
+    return rootIndex;
+  }
+
+  // endregion
+
+  // region factory
+
+  @Override
+  @NotNull
+  public INode createNode(@NotNull NodeType type, @Nullable INode left, @Nullable INode right) {
+    int leftIndex = add(left);
+    int rightIndex = add(right);
+    return get(add(type, KIND_NODE, leftIndex, rightIndex));
+  }
+
+  @Override
+  @NotNull
+  public INode createLeaf(@NotNull NodeType type, @NotNull String rawValue) {
+    return get(addLeaf(type, rawValue));
+  }
+
+  @Override
+  @NotNull
+  public INode createIdentifier(int symbolId, @NotNull String name) {
+    return get(addIdentifier(symbolId, name));
+  }
+
+  @Override
+  @NotNull
+  public INode createSequence(@NotNull NodeType type, @NotNull List<INode> statementList) {
+    int[] statementIndexes = new int[statementList.size()];
+    for (int i = 0; i < statementIndexes.length; i++) {
+      statementIndexes[i] = add(statementList.get(i));
+    }
+    return get(addSequence(type, statementIndexes, statementIndexes.length));
+  }
+
+  // endregion
+
+  // region get
+
+  public int size() {
+    return size;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("node index " + index + " out of bounds for size " + size);
+    }
+  }
+
+  private void checkNodeIndex(int index) {
+    // A child index is a node of the arena, or no node
+    if (index != NO_NODE) {
+      checkIndex(index);
+    }
+  }
+
+  @NotNull
+  public NodeType getType(int index) {
+    checkIndex(index);
+    return NODE_TYPES[types[index]];
+  }
+
+  @Nullable
+  public String getRawValue(int index) {
+    checkIndex(index);
+    return rawValues[index];
+  }
+
+  public int getLeft(int index) {
+    checkIndex(index);
+    return kinds[index] == KIND_NODE ? lefts[index] : NO_NODE;
+  }
+
+  public int getRight(int index) {
+    checkIndex(index);
+    return kinds[index] == KIND_NODE ? rights[index] : NO_NODE;
+  }
+
+  public int getStatementCount(int index) {
+    // The number of statements of an n-ary node, or -1 when the node is not n-ary
+    checkIndex(index);
+    return kinds[index] == KIND_STATEMENTS ? rights[index] : -1;
+  }
+
+  public int getStatement(int index, int statementIndex) {
+    if (statementIndex < 0 || statementIndex >= getStatementCount(index)) {
+      throw new IndexOutOfBoundsException("statement index " + statementIndex + " out of bounds");
+    }
+    return statements[lefts[index] + statementIndex];
+  }
+
+  public int getIntegerValue(int index) {
+    checkIndex(index);
+    if (kinds[index] == KIND_INTEGER) {
+      return lefts[index];
+    }
+    return Node.parseIntegerValue(rawValues[index]);
+  }
+
+  public float getFloatValue(int index) {
+    checkIndex(index);
+    if (kinds[index] == KIND_FLOAT) {
+      return Float.intBitsToFloat(lefts[index]);
+    }
+    return Node.parseFloatValue(rawValues[index]);
+  }
+
+  public int getSymbolId(int index) {
+    checkIndex(index);
+    return kinds[index] == KIND_SYMBOL ? lefts[index] : SymbolInterner.NO_SYMBOL;
+  }
+
+  @NotNull
+  public String getStringValue(int index) {
+    checkIndex(index);
+    if (kinds[index] == KIND_TEXT) {
+      return textValues.get(lefts[index]);
+    }
+    return Node.parseStringValue(rawValues[index]);
+  }
+
+  @NotNull
+  public INode get(int index) {
+    checkIndex(index);
+    return new NodeView(index);
+  }
+
+  @Nullable
+  private INode getOrNull(int index) {
+    return index == NO_NODE ? null : new NodeView(index);
+  }
+
+  // endregion
+
+  private class NodeView implements INode {
+    private final int index;
+
+    NodeView(int index) {
+      this.index = index;
+    }
+
+    @NotNull
+    NodeArena getArena() {
+      return NodeArena.this;
+    }
+
+    @Override
+    @NotNull
+    public NodeType getType() {
+      return NODE_TYPES[types[index]];
+    }
+
+    @Override
+    @Nullable
+    public String getRawValue() {
+      return rawValues[index];
+    }
+
+    @Override
+    @NotNull
+    public Boolean getBooleanValue() {
+      return Node.parseBooleanValue(getRawValue());
+    }
+
+    @Override
+    @NotNull
+    public Character getCharacterValue() {
+      return Node.parseCharacterValue(getStringValue());
+    }
+
+    @Override
+    @NotNull
+    public Integer getIntegerValue() {
+      return NodeArena.this.getIntegerValue(index);
+    }
+
+    @Override
+    @NotNull
+    public Float getFloatValue() {
+      return NodeArena.this.getFloatValue(index);
+    }
+
+    @Override
+    @NotNull
+    public String getStringValue() {
+      return NodeArena.this.getStringValue(index);
+    }
+
+    @Override
+    public int getSymbolId() {
+      return NodeArena.this.getSymbolId(index);
+    }
+
+    @Override
+    @Nullable
+    public INode getLeft() {
+      return getOrNull(NodeArena.this.getLeft(index));
+    }
+
+    @Override
+    @Nullable
+    public INode getRight() {
+      return getOrNull(NodeArena.this.getRight(index));
+    }
+
+    @Override
+    @Nullable
+    public List<INode> getStatements() {
+      if (kinds[index] != KIND_STATEMENTS) {
+        return null;
+      }
+      return new StatementList(lefts[index], rights[index]);
+    }
+
+    @Override
+    public boolean isLeaf() {
+      return getRawValue() != null;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object other) {
+      // Like Node, the type and value (not the children)
+      if (other == this) return true;
+      if (!(other instanceof INode)) return false;
+      INode otherNode = (INode) other;
+      return new EqualsBuilder()
+              .append(getRawValue(), otherNode.getRawValue())
+              .append(getType(), otherNode.getType()).isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+      return new HashCodeBuilder()
+              .append(getType())
+              .append(getRawValue())
+              .toHashCode();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("<Node type='%s' value='%s' />", getType(), getRawValue());
+    }
+  }
+
+  private class StatementList extends AbstractList<INode> implements RandomAccess {
+    // A read-only view of a range of statement indexes
+    private final int start;
+    private final int count;
+
+    StatementList(int start, int count) {
+      this.start = start;
+      this.count = count;
+    }
+
+    @Override
+    @Nullable
+    public INode get(int statementIndex) {
+      if (statementIndex < 0 || statementIndex >= count) {
+        throw new IndexOutOfBoundsException("statement index " + statementIndex + " out of bounds for size " + count);
+      }
+      return getOrNull(statements[start + statementIndex]);
+    }
+
+    @Override
+    public int size() {
+      return count;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package com.jungle.ast;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+public class NodeFactory implements INodeFactory {
+  // Creates a (mutable) node object per node
+
+  @Override
+  @NotNull
+  public INode createNode(@NotNull NodeType type, @Nullable INode left, @Nullable INode right) {
+    return new Node(type).withLeft(left).withRight(right);
+  }
+
+  @Override
+  @NotNull
+  public INode createLeaf(@NotNull NodeType type, @NotNull String rawValue) {
+    return new Node(type).withRawValue(rawValue);
+  }
+
+  @Override
+  @NotNull
+  public INode createIdentifier(int symbolId, @NotNull String name) {
+    return new Node(NodeType.IDENTIFIER).withSymbolId(symbolId, name);
+  }
+
+  @Override
+  @NotNull
+  public INode createSequence(@NotNull NodeType type, @NotNull List<INode> statements) {
+    return new Node(type).withStatements(statements);
+  }
+}
@@ -8,4 +8,31 @@ public class StringUtils {
     public static String unescapeString(@NotNull String s) {
         return StringEscapeUtils.unescapeJava(s);
     }
+
+    @NotNull
+    public static String escapeString(@NotNull String s) {
+        // The raw (source) value of a string, see unescapeString
+        // Note: the escapes of StringEscapeUtils::escapeJava, written out because it is deprecated
+        StringBuilder builder = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': builder.append("\\\""); break;
+                case '\\': builder.append("\\\\"); break;
+                case '\b': builder.append("\\b"); break;
+                case '\t': builder.append("\\t"); break;
+                case '\n': builder.append("\\n"); break;
+                case '\f': builder.append("\\f"); break;
+                case '\r': builder.append("\\r"); break;
+                default: {
+                    if (c < 0x20 || c > 0x7f) {
+                        builder.append(String.format("\\u%04X", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        return builder.toString();
+    }
 }
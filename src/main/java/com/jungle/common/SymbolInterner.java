@@ -0,0 +1,130 @@
+package com.jungle.common;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+
+public class SymbolInterner {
+    /* Dense int ids of symbol (identifier) names, shared by the scanner, parser and compiler of a compilation.
+     *
+     * The first name interned is 0, the next new name is 1, and so on, so the ids of a program index small arrays
+     * (eg. SymbolTable). Each name is stored once, and a name can be interned from a range of characters (eg. of the
+     * scanned source) without creating a string, unless the name is new.
+     * Ids are not saved with tokens or nodes, each compilation interns the names that it reads.
+     * An interner is not thread-safe, a thread (eg. a chunk of ParallelScanner) interns into its own, see internAll.
+     */
+
+    public static final int NO_SYMBOL = -1;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // Open addressing hash table of id + 1 (0 is an empty slot), by the String::hashCode of the name
+    @NotNull
+    private int[] table = new int[DEFAULT_CAPACITY * 2];
+
+    @NotNull
+    private String[] names = new String[DEFAULT_CAPACITY];
+
+    @NotNull
+    private int[] hashes = new int[DEFAULT_CAPACITY];
+
+    private int size;
+
+    public SymbolInterner() {
+        super();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @NotNull
+    public String getName(int symbolId) {
+        if (symbolId < 0 || symbolId >= size) {
+            throw new Error("unknown symbol id " + symbolId);
+        }
+        return names[symbolId];
+    }
+
+    public int intern(@NotNull String name) {
+        int hash = name.hashCode();
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                return add(slot, name, hash);
+            }
+            if (hashes[id] == hash && names[id].equals(name)) {
+                return id;
+            }
+        }
+    }
+
+    public int intern(@NotNull char[] chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                return add(slot, new String(chars, start, end - start), hash);
+            }
+            if (hashes[id] == hash && isName(names[id], chars, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    @NotNull
+    public int[] internAll(@NotNull SymbolInterner symbolInterner) {
+        // The id in this interner of each id of another interner, so that ids are remapped once instead of each name
+        int[] symbolIds = new int[symbolInterner.size];
+        for (int id = 0; id < symbolIds.length; id++) {
+            symbolIds[id] = intern(symbolInterner.names[id]);
+        }
+        return symbolIds;
+    }
+
+    private static boolean isName(@NotNull String name, @NotNull char[] chars, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (name.charAt(i - start) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int add(int slot, @NotNull String name, int hash) {
+        int id = size;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        names[id] = name;
+        hashes[id] = hash;
+        table[slot] = id + 1;
+        size++;
+        // At most half full
+        if (size * 2 > table.length) {
+            resize();
+        }
+        return id;
+    }
+
+    private void resize() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.jungle.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.jetbrains.annotations.NotNull;
+
+public class VarintUtils {
+    /* Unsigned LEB128 integers of the binary token and AST formats - 7 bits per byte, low bits first.
+     * Reads throw EOFException when the stream ends in the middle of a value.
+     */
+
+    public static void writeVarint(@NotNull OutputStream stream, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            stream.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        stream.write(value);
+    }
+
+    public static int readVarint(@NotNull InputStream stream) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = stream.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("invalid varint");
+    }
+
+    public static void writeZigzagVarint(@NotNull OutputStream stream, int value) throws IOException {
+        // Small negative values are small varints too
+        writeVarint(stream, (value << 1) ^ (value >> 31));
+    }
+
+    public static int readZigzagVarint(@NotNull InputStream stream) throws IOException {
+        int value = readVarint(stream);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @NotNull
+    public static byte[] readBytes(@NotNull InputStream stream, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int count = stream.read(bytes, offset, length - offset);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            offset += count;
+        }
+        return bytes;
+    }
+}
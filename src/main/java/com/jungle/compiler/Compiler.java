@@ -1,6 +1,7 @@
 package com.jungle.compiler;
 
 import com.jungle.ast.INode;
+import com.jungle.common.SymbolInterner;
 import com.jungle.error.CompilerError;
 import com.jungle.logger.FileLogger;
 import com.jungle.compiler.visitor.*;
@@ -15,6 +16,8 @@ import org.objectweb.asm.MethodVisitor;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Iterator;
 
 import static org.objectweb.asm.Opcodes.*;
 
@@ -40,19 +43,36 @@ public class Compiler implements ICompilerOptions {
         return targetPath;
     }
 
+    @NotNull
+    private final SymbolInterner symbolInterner;
+
+    @Override
+    @NotNull
+    public SymbolInterner getSymbolInterner() {
+        return symbolInterner;
+    }
+
     public Compiler(
         @NotNull String classPath,
-        @NotNull String targetPath
+        @NotNull String targetPath,
+        @NotNull SymbolInterner symbolInterner
     ) {
         super();
         this.classPath = classPath;
         this.targetPath = targetPath;
+        this.symbolInterner = symbolInterner;
+    }
+
+    public Compiler(
+        @NotNull String classPath,
+        @NotNull String targetPath
+    ) {
+        this(classPath, targetPath, new SymbolInterner());
     }
 
     public Compiler(@NotNull ICompilerOptions options) {
-        super();
-        this.classPath = options.getClassPath();
-        this.targetPath = options.getTargetPath();
+        // Eg. the compiler of inline code (see MultitaskVisitor), with the symbol ids of the outer compilation
+        this(options.getClassPath(), options.getTargetPath(), options.getSymbolInterner());
     }
 
     // region Helpers
@@ -100,6 +120,13 @@ public class Compiler implements ICompilerOptions {
         writeClassFile(mainClassName, classWriter.toByteArray());
     }
 
+    public void compileMain(@NotNull String mainClassName, @NotNull IVisitor languageVisitor, @Nullable Iterator<INode> statementIterator) {
+        // Compile the statements of the main sequence as they are pulled from the iterator (see Node::loadSequence)
+        ClassWriter initialClassWriter = visitMainClass(mainClassName); // template
+        ClassWriter classWriter = visitEntrypoint("main", initialClassWriter, languageVisitor, statementIterator);
+        writeClassFile(mainClassName, classWriter.toByteArray());
+    }
+
     public void compileRunnable(@NotNull String runnableClassName, @NotNull IVisitor languageVisitor, @Nullable INode ast) {
         ClassWriter initialClassWriter = visitRunnableClass(runnableClassName); // template
         ClassWriter classWriter = visitEntrypoint("run", initialClassWriter, languageVisitor, ast);
@@ -113,7 +140,22 @@ public class Compiler implements ICompilerOptions {
         @NotNull IVisitor languageVisitor,
         @Nullable INode ast
     ) {
-        if (ast == null) {
+        return visitEntrypoint(
+            targetMethodName,
+            initialClassWriter,
+            languageVisitor,
+            ast == null ? null : Collections.singletonList(ast).iterator()
+        );
+    }
+
+    @NotNull
+    public ClassWriter visitEntrypoint(
+        @NotNull String targetMethodName,
+        @NotNull ClassWriter initialClassWriter,
+        @NotNull IVisitor languageVisitor,
+        @Nullable Iterator<INode> statementIterator
+    ) {
+        if (statementIterator == null) {
             String message = "AST is null - source files must contain code";
             logger.error(message);
             throw new CompilerError(message);
@@ -121,7 +163,7 @@ public class Compiler implements ICompilerOptions {
         logger.debug("generating entrypoint class from initial class");
         ClassReader classReader = new ClassReader(initialClassWriter.toByteArray());
         ClassWriter classWriter = new ClassWriter(classReader, ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-        ClassVisitor entrypoint = new JungleClassVisitor(targetMethodName, classWriter, languageVisitor, ast);
+        ClassVisitor entrypoint = new JungleClassVisitor(targetMethodName, classWriter, languageVisitor, statementIterator, getSymbolInterner());
         logger.debug("traversing AST");
         classReader.accept(entrypoint, ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG);
         logger.debug("writing class file");
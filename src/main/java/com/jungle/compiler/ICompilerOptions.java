@@ -1,5 +1,7 @@
 package com.jungle.compiler;
 
+import com.jungle.common.SymbolInterner;
+
 import org.jetbrains.annotations.NotNull;
 
 public interface ICompilerOptions {
@@ -8,4 +10,7 @@ public interface ICompilerOptions {
 
     @NotNull
     String getTargetPath();
+
+    @NotNull
+    SymbolInterner getSymbolInterner(); // of the symbol ids of the compiled AST
 }
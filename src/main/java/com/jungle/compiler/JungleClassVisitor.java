@@ -1,6 +1,7 @@
 package com.jungle.compiler;
 
 import com.jungle.ast.INode;
+import com.jungle.common.SymbolInterner;
 import com.jungle.compiler.visitor.IVisitor;
 import com.jungle.logger.FileLogger;
 
@@ -9,6 +10,9 @@ import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
+import java.util.Collections;
+import java.util.Iterator;
+
 public class JungleClassVisitor extends ClassVisitor {
     @NotNull
     private static final FileLogger logger = new FileLogger(JungleClassVisitor.class.getSimpleName());
@@ -20,18 +24,33 @@ public class JungleClassVisitor extends ClassVisitor {
     private final IVisitor mainVisitor;
 
     @NotNull
-    private final INode ast;
+    private final Iterator<INode> statementIterator;
+
+    @NotNull
+    private final SymbolInterner symbolInterner;
 
     public JungleClassVisitor(
         @NotNull String targetMethodName,
         @NotNull ClassVisitor classVisitor,
         @NotNull IVisitor mainVisitor,
-        @NotNull INode ast
+        @NotNull Iterator<INode> statementIterator,
+        @NotNull SymbolInterner symbolInterner
     ) {
         super(Opcodes.ASM5, classVisitor);
         this.targetMethodName = targetMethodName;
         this.mainVisitor = mainVisitor;
-        this.ast = ast;
+        this.statementIterator = statementIterator;
+        this.symbolInterner = symbolInterner;
+    }
+
+    public JungleClassVisitor(
+        @NotNull String targetMethodName,
+        @NotNull ClassVisitor classVisitor,
+        @NotNull IVisitor mainVisitor,
+        @NotNull INode ast,
+        @NotNull SymbolInterner symbolInterner
+    ) {
+        this(targetMethodName, classVisitor, mainVisitor, Collections.singletonList(ast).iterator(), symbolInterner);
     }
 
     @Override
@@ -40,7 +59,7 @@ public class JungleClassVisitor extends ClassVisitor {
         boolean isTargetMethod = targetMethodName.equals(name);
         if (isTargetMethod) {
             logger.debug("emit custom instructions into class method");
-            return new JungleMethodVisitor(mv, mainVisitor, ast);
+            return new JungleMethodVisitor(mv, mainVisitor, statementIterator, symbolInterner);
         }
         return mv;
     }
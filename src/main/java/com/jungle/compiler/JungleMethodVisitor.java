@@ -1,6 +1,7 @@
 package com.jungle.compiler;
 
 import com.jungle.ast.INode;
+import com.jungle.common.SymbolInterner;
 import com.jungle.compiler.operand.OperandStackContext;
 import com.jungle.compiler.visitor.IVisitor;
 import com.jungle.logger.FileLogger;
@@ -9,6 +10,9 @@ import org.jetbrains.annotations.NotNull;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
+import java.util.Collections;
+import java.util.Iterator;
+
 public class JungleMethodVisitor extends MethodVisitor {
     @NotNull
     private static final FileLogger logger = new FileLogger(JungleMethodVisitor.class.getSimpleName());
@@ -17,23 +21,34 @@ public class JungleMethodVisitor extends MethodVisitor {
     private final IVisitor mainVisitor;
 
     @NotNull
-    private final INode ast;
+    private final Iterator<INode> statementIterator;
 
     @NotNull
     private final OperandStackContext context;
 
-    public JungleMethodVisitor(MethodVisitor mv, @NotNull IVisitor mainVisitor, @NotNull INode ast) {
+    public JungleMethodVisitor(MethodVisitor mv, @NotNull IVisitor mainVisitor, @NotNull Iterator<INode> statementIterator, @NotNull SymbolInterner symbolInterner) {
         super(Opcodes.ASM5, mv);
         this.mainVisitor = mainVisitor;
-        this.ast = ast;
-        this.context = new OperandStackContext();
+        this.statementIterator = statementIterator;
+        this.context = new OperandStackContext(symbolInterner);
+    }
+
+    public JungleMethodVisitor(MethodVisitor mv, @NotNull IVisitor mainVisitor, @NotNull INode ast, @NotNull SymbolInterner symbolInterner) {
+        this(mv, mainVisitor, Collections.singletonList(ast).iterator(), symbolInterner);
     }
 
     @Override
     public void visitInsn(final int opcode) {
         if (opcode == Opcodes.RETURN) {
             logger.debug("emit instructions just before existing RETURN operation");
-            mainVisitor.visit(this, ast, context);
+            // Statements are visited as they are pulled from the iterator (eg. while the AST is still being read, or parsed)
+            // Like SequenceVisitor, null statements (eg. comments) are skipped
+            while (statementIterator.hasNext()) {
+                INode statement = statementIterator.next();
+                if (statement != null) {
+                    mainVisitor.visit(this, statement, context);
+                }
+            }
         }
         super.visitInsn(opcode);
     }
@@ -1,5 +1,6 @@
 package com.jungle.compiler.operand;
 
+import com.jungle.common.SymbolInterner;
 import com.jungle.compiler.symbol.SymbolEntry;
 import com.jungle.compiler.symbol.SymbolTable;
 import com.jungle.logger.FileLogger;
@@ -22,10 +23,10 @@ public class OperandStackContext {
     @NotNull
     private final SymbolTable symbolTable;
 
-    public OperandStackContext() {
+    public OperandStackContext(@NotNull SymbolInterner symbolInterner) {
         super();
         this.operandTypeStack = new Stack<>();
-        this.symbolTable = new SymbolTable();
+        this.symbolTable = new SymbolTable(symbolInterner);
     }
 
     public boolean isEmpty() {
@@ -53,14 +54,14 @@ public class OperandStackContext {
 
     public void visitLoad(
             @NotNull MethodVisitor mv,
-            @NotNull String variableName
+            int symbolId
     ) {
         // Get local variable index value and push variable value onto the operand stack
-        logger.debug("visit load " + variableName);
+        logger.debug("visit load " + symbolId);
 
-        SymbolEntry entry = getSymbolTable().get(variableName);
+        SymbolEntry entry = getSymbolTable().get(symbolId);
         if (entry == null) {
-            throw new Error("unknown variable name " + variableName);
+            throw new Error("unknown variable name " + getSymbolTable().getSymbolInterner().getName(symbolId));
         }
 
         mv.visitVarInsn(entry.getType().getLoadOpcode(), entry.getIndex());
@@ -69,17 +70,17 @@ public class OperandStackContext {
 
     public void visitStore(
             @NotNull MethodVisitor mv,
-            @NotNull String variableName
+            int symbolId
     ) {
         // Pop value off the operand stack and set local variable index value
-        logger.debug("visit store " + variableName);
+        logger.debug("visit store " + symbolId);
 
         OperandType variableType = pop();
 
-        SymbolEntry entry = getSymbolTable().get(variableName);
+        SymbolEntry entry = getSymbolTable().get(symbolId);
         boolean isNotDefined = entry == null;
         if (isNotDefined) {
-            entry = getSymbolTable().set(variableName, variableType);
+            entry = getSymbolTable().set(symbolId, variableType);
         } else {
             if (entry.getType() != variableType) {
                 throw new Error(
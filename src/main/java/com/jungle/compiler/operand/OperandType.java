@@ -133,10 +133,23 @@ public enum OperandType {
         }
     }
 
+    public int getSlotSize() {
+        // Number of local variable array slots of a value, long and double values take two
+        switch (this) {
+            case LONG: return 2;
+            case DOUBLE: return 2;
+            default: return 1;
+        }
+    }
+
     public int getStoreOpcode() {
         switch (this) {
+            case BOOLEAN: return Opcodes.ISTORE;
             case CHAR: return Opcodes.ISTORE;
+            case BYTE: return Opcodes.ISTORE;
+            case SHORT: return Opcodes.ISTORE;
             case INTEGER: return Opcodes.ISTORE;
+            case LONG: return Opcodes.LSTORE;
             case FLOAT: return Opcodes.FSTORE;
             case DOUBLE: return Opcodes.DSTORE;
             case OBJECT: return Opcodes.ASTORE;
@@ -146,8 +159,12 @@ public enum OperandType {
 
     public int getLoadOpcode() {
         switch (this) {
+            case BOOLEAN: return Opcodes.ILOAD;
             case CHAR: return Opcodes.ILOAD;
+            case BYTE: return Opcodes.ILOAD;
+            case SHORT: return Opcodes.ILOAD;
             case INTEGER: return Opcodes.ILOAD;
+            case LONG: return Opcodes.LLOAD;
             case FLOAT: return Opcodes.FLOAD;
             case DOUBLE: return Opcodes.DLOAD;
             case OBJECT: return Opcodes.ALOAD;
@@ -0,0 +1,539 @@
+package com.jungle.compiler.optimizer;
+
+import com.jungle.ast.INode;
+import com.jungle.ast.INodeFactory;
+import com.jungle.ast.NodeFactory;
+import com.jungle.ast.NodeType;
+import com.jungle.common.StringUtils;
+import com.jungle.common.SymbolInterner;
+import com.jungle.compiler.operand.OperandType;
+import com.jungle.logger.FileLogger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+public class ConstantFolder {
+    /* AST to AST pass, before the AST is compiled (see Compiler::compileMain).
+     *
+     * Expressions of literals are replaced by the literal that the compiled expression would evaluate to,
+     * and identifiers by the literal of their variable, while the variable is known to hold it.
+     *
+     * Folding follows the code that the visitors emit, not the usual arithmetic:
+     * the operand types of an operator are converted like NumericOperatorVisitor::visitConvertOperands converts them
+     * (I2C of an integer operand of a character, String::hashCode of a string operand),
+     * integer operations overflow, float operations round like the jvm instructions do,
+     * and a comparison compares the converted operands (see BooleanOperatorVisitor::visitCondition).
+     * An expression is only folded when it would compile, and when its value and operand type can be written as a literal,
+     * otherwise it is left for the compiler (eg. integer division by zero is a runtime error, char arithmetic is a compile error).
+     *
+     * A variable holds the literal of a top-level assignment until the next top-level statement that assigns the variable,
+     * so a variable that is assigned once (eg. the edges and steps of the mandelbrot program) is replaced in every use after it.
+     * Statements are folded in order, one at a time, so statements can be folded as they are parsed (see fold(Iterator)).
+     */
+
+    @NotNull
+    private static final FileLogger logger = new FileLogger(ConstantFolder.class.getName());
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    @NotNull
+    private INodeFactory nodeFactory = new NodeFactory();
+
+    // Literal of each variable by symbol id, or else null when the value of the variable is not known
+    @NotNull
+    private INode[] constants = new INode[DEFAULT_CAPACITY];
+
+    @NotNull
+    public ConstantFolder withNodeFactory(@NotNull INodeFactory nodeFactory) {
+        // Folded nodes are node objects by default, nodes that are not folded are kept as they are
+        this.nodeFactory = nodeFactory;
+        return this;
+    }
+
+    @Nullable
+    public INode fold(@Nullable INode ast) {
+        // Fold a program, the statements of the main sequence are the top-level statements
+        if (ast == null || ast.getType() != NodeType.SEQUENCE || ast.getStatements() == null) {
+            return foldStatement(ast);
+        }
+        List<INode> statements = ast.getStatements();
+        List<INode> foldedStatements = new ArrayList<>(statements.size());
+        boolean hasFolded = false;
+        for (INode statement : statements) {
+            INode foldedStatement = foldStatement(statement);
+            hasFolded |= foldedStatement != statement;
+            foldedStatements.add(foldedStatement);
+        }
+        return hasFolded ? nodeFactory.createSequence(ast.getType(), foldedStatements) : ast;
+    }
+
+    @NotNull
+    public Iterator<INode> fold(@NotNull Iterator<INode> statementIterator) {
+        // Fold each top-level statement as it is pulled from the iterator (see Compiler::compileMain)
+        return new Iterator<INode>() {
+            @Override
+            public boolean hasNext() {
+                return statementIterator.hasNext();
+            }
+
+            @Override
+            public INode next() {
+                return foldStatement(statementIterator.next());
+            }
+        };
+    }
+
+    @Nullable
+    public INode foldStatement(@Nullable INode statement) {
+        // Fold a top-level statement, after the previous top-level statements
+        if (statement == null) {
+            return null;
+        }
+
+        // The variables assigned in the statement (eg. in a loop) may not hold their literal in the statement
+        boolean isAssign = statement.getType() == NodeType.ASSIGN;
+        forgetAssigned(isAssign ? statement.getRight() : statement);
+
+        INode foldedStatement = foldTree(statement);
+
+        if (isAssign && foldedStatement.getLeft() != null) {
+            INode expression = foldedStatement.getRight();
+            boolean isLiteral = expression != null && getLiteralType(expression) != null;
+            setConstant(foldedStatement.getLeft().getSymbolId(), isLiteral ? expression : null);
+        }
+        return foldedStatement;
+    }
+
+    // region Variables
+
+    @Nullable
+    private INode getConstant(int symbolId) {
+        return symbolId >= 0 && symbolId < constants.length ? constants[symbolId] : null;
+    }
+
+    private void setConstant(int symbolId, @Nullable INode literal) {
+        if (symbolId == SymbolInterner.NO_SYMBOL) {
+            return;
+        }
+        if (symbolId >= constants.length) {
+            if (literal == null) {
+                return;
+            }
+            constants = Arrays.copyOf(constants, Math.max(constants.length * 2, symbolId + 1));
+        }
+        constants[symbolId] = literal;
+    }
+
+    private void forgetAssigned(@Nullable INode ast) {
+        Deque<INode> nodeStack = new ArrayDeque<>();
+        if (ast != null) {
+            nodeStack.push(ast);
+        }
+        while (!nodeStack.isEmpty()) {
+            INode node = nodeStack.pop();
+            if (node.getType() == NodeType.ASSIGN && node.getLeft() != null) {
+                setConstant(node.getLeft().getSymbolId(), null);
+            }
+            pushChildren(nodeStack, node);
+        }
+    }
+
+    private static void pushChildren(@NotNull Deque<INode> nodeStack, @NotNull INode node) {
+        if (node.getLeft() != null) {
+            nodeStack.push(node.getLeft());
+        }
+        if (node.getRight() != null) {
+            nodeStack.push(node.getRight());
+        }
+        if (node.getStatements() != null) {
+            for (INode statement : node.getStatements()) {
+                if (statement != null) {
+                    nodeStack.push(statement);
+                }
+            }
+        }
+    }
+
+    // endregion
+
+    // region Traversal
+
+    @NotNull
+    private INode foldTree(@NotNull INode ast) {
+        /* Nodes are folded in post-order with an explicit work stack instead of recursion (see ExpressionVisitor),
+         * a node is visited twice: first to push its children, and then to fold it when its children have been folded.
+         * The folded children are pushed onto a result stack, a null child is pushed as null.
+         */
+        Deque<FoldFrame> frameStack = new ArrayDeque<>();
+        List<INode> resultStack = new ArrayList<>();
+        frameStack.push(new FoldFrame(ast, true));
+        while (!frameStack.isEmpty()) {
+            FoldFrame frame = frameStack.pop();
+            INode node = frame.node;
+            if (node == null) {
+                resultStack.add(null);
+                continue;
+            }
+            if (node.isLeaf() && node.getStatements() == null) {
+                resultStack.add(foldLeaf(node, frame.canPropagate));
+                continue;
+            }
+            if (frame.hasVisitedChildren) {
+                resultStack.add(foldNode(node, resultStack));
+                continue;
+            }
+            frame.hasVisitedChildren = true;
+            frameStack.push(frame);
+            // Children are pushed in reverse, so that they are folded in order (left, right, statements)
+            List<INode> statements = node.getStatements();
+            if (statements != null) {
+                for (int i = statements.size() - 1; i >= 0; i--) {
+                    frameStack.push(new FoldFrame(statements.get(i), frame.canPropagate));
+                }
+            }
+            // The inline code of a multitask is compiled into its own class, without the variables of the program
+            boolean canPropagateRight = frame.canPropagate && node.getType() != NodeType.MULTITASK;
+            frameStack.push(new FoldFrame(node.getRight(), canPropagateRight));
+            // The identifier of an assignment is the variable, not its value
+            boolean canPropagateLeft = frame.canPropagate && node.getType() != NodeType.ASSIGN;
+            frameStack.push(new FoldFrame(node.getLeft(), canPropagateLeft));
+        }
+        if (resultStack.size() != 1 || resultStack.get(0) == null) {
+            throw new Error("failed to fold " + ast);
+        }
+        return resultStack.get(0);
+    }
+
+    @NotNull
+    private INode foldLeaf(@NotNull INode node, boolean canPropagate) {
+        if (canPropagate && node.getType() == NodeType.IDENTIFIER) {
+            INode literal = getConstant(node.getSymbolId());
+            if (literal != null) {
+                logger.debug("propagate " + literal + " to " + node);
+                return literal;
+            }
+        }
+        return node;
+    }
+
+    @NotNull
+    private INode foldNode(@NotNull INode node, @NotNull List<INode> resultStack) {
+        // Pop the folded children of the node, in the order that they were pushed
+        List<INode> statements = node.getStatements();
+        int statementCount = statements == null ? 0 : statements.size();
+        int childIndex = resultStack.size() - 2 - statementCount;
+        List<INode> children = resultStack.subList(childIndex, resultStack.size());
+        INode left = children.get(0);
+        INode right = children.get(1);
+        List<INode> foldedStatements = statements == null ? null : new ArrayList<>(children.subList(2, children.size()));
+        children.clear();
+
+        boolean hasFoldedChild = left != node.getLeft() || right != node.getRight();
+        for (int i = 0; i < statementCount && !hasFoldedChild; i++) {
+            hasFoldedChild = foldedStatements.get(i) != statements.get(i);
+        }
+        INode foldedNode = node;
+        if (hasFoldedChild) {
+            foldedNode = foldedStatements == null
+                ? nodeFactory.createNode(node.getType(), left, right)
+                : nodeFactory.createSequence(node.getType(), foldedStatements);
+        }
+
+        INode literal = foldExpression(foldedNode);
+        if (literal != null) {
+            logger.debug("fold " + foldedNode + " to " + literal);
+            return literal;
+        }
+        return foldedNode;
+    }
+
+    private static class FoldFrame {
+        @Nullable
+        private final INode node;
+
+        private final boolean canPropagate;
+
+        private boolean hasVisitedChildren;
+
+        FoldFrame(@Nullable INode node, boolean canPropagate) {
+            this.node = node;
+            this.canPropagate = canPropagate;
+        }
+    }
+
+    // endregion
+
+    // region Expressions
+
+    @Nullable
+    private INode foldExpression(@NotNull INode node) {
+        // Literal that the expression evaluates to, or else null when the expression is not folded
+        INode leftNode = node.getLeft();
+        INode rightNode = node.getRight();
+        Constant left = leftNode == null ? null : Constant.of(leftNode);
+        Constant right = rightNode == null ? null : Constant.of(rightNode);
+        if (left == null) {
+            return null;
+        }
+        switch (node.getType()) {
+            case OPERATOR_ADD:
+            case OPERATOR_SUBTRACT:
+            case OPERATOR_MULTIPLY:
+            case OPERATOR_DIVIDE:
+            case OPERATOR_MODULO: {
+                return right == null ? null : createLiteral(foldNumericOperator(node.getType(), left, right));
+            }
+            case CAST_CHAR:
+            case CAST_INTEGER:
+            case CAST_FLOAT: {
+                return createLiteral(foldCast(node.getType(), left));
+            }
+            case OPERATOR_EQUAL:
+            case OPERATOR_LESS_THAN:
+            case OPERATOR_GREATER_THAN: {
+                if (right == null) {
+                    return null;
+                }
+                if (left.type == OperandType.OBJECT && right.type == OperandType.OBJECT) {
+                    // Deep comparison, boolean Object::equals(Object) is an integer on the operand stack
+                    if (node.getType() != NodeType.OPERATOR_EQUAL) {
+                        return null;
+                    }
+                    return createLiteral(Constant.ofInteger(OperandType.INTEGER, left.stringValue.equals(right.stringValue) ? 1 : 0));
+                }
+                Boolean value = foldComparison(node.getType(), left, right);
+                return value == null ? null : createBoolean(value);
+            }
+            case OPERATOR_NOT: {
+                return isCondition(left) && right == null ? createBoolean(left.intValue == 0) : null;
+            }
+            case OPERATOR_AND: {
+                // When the left expression is false, the right expression is not evaluated
+                if (isCondition(left) && left.intValue == 0) {
+                    return createBoolean(false);
+                }
+                return isCondition(left) && isCondition(right) ? createBoolean(right.intValue != 0) : null;
+            }
+            case OPERATOR_OR: {
+                // When the left expression is true, the right expression is not evaluated
+                if (isCondition(left) && left.intValue != 0) {
+                    return createBoolean(true);
+                }
+                return isCondition(left) && isCondition(right) ? createBoolean(right.intValue != 0) : null;
+            }
+            default: {
+                return null;
+            }
+        }
+    }
+
+    @Nullable
+    private static Constant[] convertOperands(@NotNull Constant left, @NotNull Constant right) {
+        // Convert the operands like NumericOperatorVisitor::visitConvertOperands, the converted operands have the type of the result
+        if (left.type == OperandType.INTEGER && right.type == OperandType.CHAR) {
+            return new Constant[] { Constant.ofInteger(OperandType.CHAR, (char) left.intValue), right };
+        }
+        if (left.type == OperandType.CHAR && right.type == OperandType.INTEGER) {
+            return new Constant[] { left, Constant.ofInteger(OperandType.CHAR, (char) right.intValue) };
+        }
+        if (left.type == OperandType.OBJECT || right.type == OperandType.OBJECT) {
+            // Shallow comparison, the other operand must already be integer-like
+            Constant other = left.type == OperandType.OBJECT ? right : left;
+            if (!OperandType.INTEGER_COMPUTATIONAL_TYPES.contains(other.type)) {
+                return null;
+            }
+            return new Constant[] {
+                Constant.ofInteger(OperandType.INTEGER, left.type == OperandType.OBJECT ? left.stringValue.hashCode() : left.intValue),
+                Constant.ofInteger(OperandType.INTEGER, right.type == OperandType.OBJECT ? right.stringValue.hashCode() : right.intValue)
+            };
+        }
+        if (left.type == right.type) {
+            return new Constant[] { left, right };
+        }
+        // The operands require a type cast
+        return null;
+    }
+
+    @Nullable
+    private static Constant foldNumericOperator(@NotNull NodeType type, @NotNull Constant left, @NotNull Constant right) {
+        if (left.type == right.type && left.type != OperandType.INTEGER && left.type != OperandType.FLOAT) {
+            // The compiler has no opcode for the operand types, eg. character arithmetic
+            return null;
+        }
+        Constant[] operands = convertOperands(left, right);
+        if (operands == null) {
+            return null;
+        }
+        OperandType resultType = operands[0].type;
+        if (resultType == OperandType.FLOAT) {
+            float leftFloat = operands[0].floatValue;
+            float rightFloat = operands[1].floatValue;
+            switch (type) {
+                case OPERATOR_ADD: return Constant.ofFloat(leftFloat + rightFloat);
+                case OPERATOR_SUBTRACT: return Constant.ofFloat(leftFloat - rightFloat);
+                case OPERATOR_MULTIPLY: return Constant.ofFloat(leftFloat * rightFloat);
+                case OPERATOR_DIVIDE: return Constant.ofFloat(leftFloat / rightFloat);
+                case OPERATOR_MODULO: return Constant.ofFloat(leftFloat % rightFloat);
+                default: return null;
+            }
+        }
+        int leftValue = operands[0].intValue;
+        int rightValue = operands[1].intValue;
+        switch (type) {
+            case OPERATOR_ADD: return Constant.ofInteger(resultType, leftValue + rightValue);
+            case OPERATOR_SUBTRACT: return Constant.ofInteger(resultType, leftValue - rightValue);
+            case OPERATOR_MULTIPLY: return Constant.ofInteger(resultType, leftValue * rightValue);
+            // Division by zero throws an ArithmeticException when the program runs
+            case OPERATOR_DIVIDE: return rightValue == 0 ? null : Constant.ofInteger(resultType, leftValue / rightValue);
+            case OPERATOR_MODULO: return rightValue == 0 ? null : Constant.ofInteger(resultType, leftValue % rightValue);
+            default: return null;
+        }
+    }
+
+    @Nullable
+    private static Boolean foldComparison(@NotNull NodeType type, @NotNull Constant left, @NotNull Constant right) {
+        // Compare the converted operands like BooleanOperatorVisitor::visitComparison, a float comparison with NaN is false
+        Constant[] operands = convertOperands(left, right);
+        if (operands == null) {
+            return null;
+        }
+        if (operands[0].type == OperandType.FLOAT) {
+            float leftFloat = operands[0].floatValue;
+            float rightFloat = operands[1].floatValue;
+            switch (type) {
+                case OPERATOR_EQUAL: return leftFloat == rightFloat;
+                case OPERATOR_LESS_THAN: return leftFloat < rightFloat;
+                case OPERATOR_GREATER_THAN: return leftFloat > rightFloat;
+                default: return null;
+            }
+        }
+        if (!OperandType.INTEGER_COMPUTATIONAL_TYPES.contains(operands[0].type)) {
+            return null;
+        }
+        int leftValue = operands[0].intValue;
+        int rightValue = operands[1].intValue;
+        switch (type) {
+            case OPERATOR_EQUAL: return leftValue == rightValue;
+            case OPERATOR_LESS_THAN: return leftValue < rightValue;
+            case OPERATOR_GREATER_THAN: return leftValue > rightValue;
+            default: return null;
+        }
+    }
+
+    @Nullable
+    private static Constant foldCast(@NotNull NodeType type, @NotNull Constant operand) {
+        // Only the conversions to a type of literal (see OperandType::getConvertOpcode)
+        switch (type) {
+            case CAST_CHAR: return operand.type == OperandType.INTEGER ? Constant.ofInteger(OperandType.CHAR, (char) operand.intValue) : null;
+            case CAST_INTEGER: return operand.type == OperandType.FLOAT ? Constant.ofInteger(OperandType.INTEGER, (int) operand.floatValue) : null;
+            case CAST_FLOAT: return operand.type == OperandType.INTEGER ? Constant.ofFloat((float) operand.intValue) : null;
+            default: return null;
+        }
+    }
+
+    private static boolean isCondition(@Nullable Constant constant) {
+        // A condition value is compared to zero, see BooleanOperatorVisitor::visitCondition
+        return constant != null && OperandType.INTEGER_COMPUTATIONAL_TYPES.contains(constant.type);
+    }
+
+    @NotNull
+    private INode createBoolean(boolean value) {
+        return nodeFactory.createLeaf(NodeType.LITERAL_BOOLEAN, Boolean.toString(value));
+    }
+
+    @Nullable
+    private INode createLiteral(@Nullable Constant constant) {
+        if (constant == null) {
+            return null;
+        }
+        switch (constant.type) {
+            case INTEGER: return nodeFactory.createLeaf(NodeType.LITERAL_INTEGER, Integer.toString(constant.intValue));
+            case FLOAT: return nodeFactory.createLeaf(NodeType.LITERAL_FLOAT, Float.toString(constant.floatValue));
+            case CHAR: {
+                // The sum of characters is not converted (I2C), so it may not be a character
+                if (constant.intValue < Character.MIN_VALUE || constant.intValue > Character.MAX_VALUE) {
+                    return null;
+                }
+                String rawValue = StringUtils.escapeString(String.valueOf((char) constant.intValue));
+                return nodeFactory.createLeaf(NodeType.LITERAL_CHARACTER, rawValue);
+            }
+            default: return null;
+        }
+    }
+
+    @Nullable
+    static Boolean getConditionValue(@Nullable INode node) {
+        // Whether a literal condition is true (non-zero), or else null when the condition is not a literal of a condition
+        Constant constant = node == null ? null : Constant.of(node);
+        return isCondition(constant) ? constant.intValue != 0 : null;
+    }
+
+    @Nullable
+    static OperandType getLiteralType(@NotNull INode node) {
+        // Operand type of a literal, see LiteralVisitor
+        switch (node.getType()) {
+            case LITERAL_BOOLEAN: return OperandType.BOOLEAN;
+            case LITERAL_CHARACTER: return OperandType.CHAR;
+            case LITERAL_INTEGER: return OperandType.INTEGER;
+            case LITERAL_FLOAT: return OperandType.FLOAT;
+            case LITERAL_STRING: return OperandType.OBJECT;
+            default: return null;
+        }
+    }
+
+    private static class Constant {
+        // Value of a literal on the operand stack, a boolean or a character is an integer
+
+        @NotNull
+        private final OperandType type;
+
+        private final int intValue;
+
+        private final float floatValue;
+
+        @Nullable
+        private final String stringValue;
+
+        private Constant(@NotNull OperandType type, int intValue, float floatValue, @Nullable String stringValue) {
+            this.type = type;
+            this.intValue = intValue;
+            this.floatValue = floatValue;
+            this.stringValue = stringValue;
+        }
+
+        @NotNull
+        static Constant ofInteger(@NotNull OperandType type, int value) {
+            return new Constant(type, value, 0, null);
+        }
+
+        @NotNull
+        static Constant ofFloat(float value) {
+            return new Constant(OperandType.FLOAT, 0, value, null);
+        }
+
+        @Nullable
+        static Constant of(@NotNull INode node) {
+            OperandType type = getLiteralType(node);
+            if (type == null || node.getRawValue() == null) {
+                return null;
+            }
+            switch (type) {
+                case BOOLEAN: return ofInteger(type, node.getBooleanValue() ? 1 : 0);
+                case CHAR: return ofInteger(type, node.getCharacterValue());
+                case INTEGER: return ofInteger(type, node.getIntegerValue());
+                case FLOAT: return ofFloat(node.getFloatValue());
+                case OBJECT: return new Constant(type, 0, 0, node.getStringValue());
+                default: return null;
+            }
+        }
+    }
+
+    // endregion
+}
@@ -0,0 +1,313 @@
+package com.jungle.compiler.optimizer;
+
+import com.jungle.ast.INode;
+import com.jungle.ast.INodeFactory;
+import com.jungle.ast.NodeFactory;
+import com.jungle.ast.NodeType;
+import com.jungle.logger.FileLogger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+public class DeadCodeEliminator {
+    /* AST to AST pass, after constant folding (see ConstantFolder) and before the AST is compiled.
+     *
+     * Branches that can never run are removed:
+     * an if or a loop with a literal false condition, the else-block of a literal true condition, and an assert that is always true.
+     * An if with a literal true condition is replaced by its block.
+     * Statements that can never be reached are removed:
+     * the statements after a statement that never completes, a loop with a literal true condition or an assert that is always false
+     * (there is no break, a loop only ends when its condition is false).
+     *
+     * Empty blocks are collapsed, an if without statements is kept with an empty block (only a literal condition is removed),
+     * so that its condition is still compiled and type-checked (eg. a float condition is an error) and can still throw.
+     * An empty else-block is removed, and an empty if-block with an else-block is the else-block of the inverse condition.
+     * A loop without statements is kept (with an empty block), it either does nothing or never completes.
+     */
+
+    @NotNull
+    private static final FileLogger logger = new FileLogger(DeadCodeEliminator.class.getName());
+
+    @NotNull
+    private INodeFactory nodeFactory = new NodeFactory();
+
+    // Whether the next top-level statement can be reached, see eliminateStatement
+    private boolean isReachable = true;
+
+    @NotNull
+    public DeadCodeEliminator withNodeFactory(@NotNull INodeFactory nodeFactory) {
+        // New nodes are node objects by default, nodes that are not changed are kept as they are
+        this.nodeFactory = nodeFactory;
+        return this;
+    }
+
+    @Nullable
+    public INode eliminate(@Nullable INode ast) {
+        // Eliminate the dead code of a program, the statements of the main sequence are the top-level statements
+        if (ast == null || ast.getType() != NodeType.SEQUENCE) {
+            return eliminateStatement(ast);
+        }
+        INode sequence = eliminateSequence(ast);
+        isReachable = canComplete(sequence);
+        // A program without statements is still a program
+        return sequence == null ? nodeFactory.createSequence(NodeType.SEQUENCE, Collections.emptyList()) : sequence;
+    }
+
+    @NotNull
+    public Iterator<INode> eliminate(@NotNull Iterator<INode> statementIterator) {
+        // Eliminate the dead code of each top-level statement as it is pulled from the iterator (see Compiler::compileMain)
+        return new Iterator<INode>() {
+            @Override
+            public boolean hasNext() {
+                return statementIterator.hasNext();
+            }
+
+            @Override
+            public INode next() {
+                return eliminateStatement(statementIterator.next());
+            }
+        };
+    }
+
+    @Nullable
+    public INode eliminateStatement(@Nullable INode statement) {
+        // Eliminate the dead code of a top-level statement, after the previous top-level statements
+        // A removed statement is null, and so are the statements after a statement that never completes
+        if (statement == null || !isReachable) {
+            return null;
+        }
+        INode eliminatedStatement = eliminateInnerStatement(statement);
+        isReachable = canComplete(eliminatedStatement);
+        return eliminatedStatement;
+    }
+
+    // region Statements
+
+    @Nullable
+    private INode eliminateInnerStatement(@NotNull INode statement) {
+        switch (statement.getType()) {
+            case SEQUENCE: return eliminateSequence(statement);
+            case BLOCK: {
+                INode statements = eliminateSequence(statement.getLeft());
+                return statements != null && statements == statement.getLeft() ? statement : statements;
+            }
+            case IF: return eliminateIf(statement);
+            case LOOP: return eliminateLoop(statement);
+            case ASSERT: {
+                if (Boolean.TRUE.equals(ConstantFolder.getConditionValue(statement.getLeft()))) {
+                    logger.debug("remove assert " + statement);
+                    return null;
+                }
+                return statement;
+            }
+            case MULTITASK: {
+                // The inline code of a multitask is still inline code when all of its statements are removed
+                INode inlineStatement = statement.getRight();
+                if (inlineStatement == null) {
+                    return statement;
+                }
+                INode eliminatedStatement = eliminateInnerStatement(inlineStatement);
+                if (eliminatedStatement == inlineStatement) {
+                    return statement;
+                }
+                return nodeFactory.createNode(NodeType.MULTITASK, statement.getLeft(), toBlock(eliminatedStatement));
+            }
+            default: return statement;
+        }
+    }
+
+    @Nullable
+    private INode eliminateSequence(@Nullable INode sequence) {
+        // The statements of a sequence, or else null when no statements are left
+        if (sequence == null) {
+            return null;
+        }
+        if (sequence.getType() != NodeType.SEQUENCE) {
+            return eliminateInnerStatement(sequence);
+        }
+        List<INode> statements = getStatements(sequence);
+        List<INode> eliminatedStatements = new ArrayList<>(statements.size());
+        boolean hasEliminated = sequence.getStatements() == null;
+        for (int i = 0; i < statements.size(); i++) {
+            INode statement = statements.get(i);
+            if (statement == null) {
+                hasEliminated = true;
+                continue;
+            }
+            INode eliminatedStatement = eliminateInnerStatement(statement);
+            hasEliminated |= eliminatedStatement != statement;
+            if (eliminatedStatement == null) {
+                continue;
+            }
+            eliminatedStatements.add(eliminatedStatement);
+            if (!canComplete(eliminatedStatement)) {
+                if (i + 1 < statements.size()) {
+                    logger.debug("remove unreachable statements after " + eliminatedStatement);
+                    hasEliminated = true;
+                }
+                break;
+            }
+        }
+        if (eliminatedStatements.isEmpty()) {
+            return null;
+        }
+        if (!hasEliminated) {
+            return sequence;
+        }
+        return nodeFactory.createSequence(NodeType.SEQUENCE, eliminatedStatements);
+    }
+
+    @Nullable
+    private INode eliminateIf(@NotNull INode statement) {
+        INode conditionNode = statement.getLeft();
+        INode bodyNode = statement.getRight();
+        if (conditionNode == null || bodyNode == null) {
+            return statement;
+        }
+        boolean hasElseBlock = bodyNode.getType() == NodeType.IF_ELSE;
+        INode ifBlockNode = hasElseBlock ? bodyNode.getLeft() : bodyNode;
+        INode elseBlockNode = hasElseBlock ? bodyNode.getRight() : null;
+
+        Boolean conditionValue = ConstantFolder.getConditionValue(conditionNode);
+        if (conditionValue != null) {
+            logger.debug("remove " + (conditionValue ? "else-block" : "if-block") + " of " + statement);
+            INode blockNode = conditionValue ? ifBlockNode : elseBlockNode;
+            return blockNode == null ? null : eliminateInnerStatement(blockNode);
+        }
+
+        INode ifStatements = ifBlockNode == null ? null : eliminateInnerStatement(ifBlockNode);
+        INode elseStatements = elseBlockNode == null ? null : eliminateInnerStatement(elseBlockNode);
+        if (ifStatements == null && elseStatements == null) {
+            return nodeFactory.createNode(NodeType.IF, conditionNode, toBlock(null));
+        }
+        if (ifStatements == null) {
+            // if (condition) {} else { ... } is if (not condition) { ... }
+            INode inverseConditionNode = nodeFactory.createNode(NodeType.OPERATOR_NOT, conditionNode, null);
+            return nodeFactory.createNode(NodeType.IF, inverseConditionNode, toBlock(elseStatements));
+        }
+        if (elseStatements == null) {
+            if (!hasElseBlock && ifStatements == ifBlockNode) {
+                return statement;
+            }
+            return nodeFactory.createNode(NodeType.IF, conditionNode, toBlock(ifStatements));
+        }
+        if (ifStatements == ifBlockNode && elseStatements == elseBlockNode) {
+            return statement;
+        }
+        return nodeFactory.createNode(
+            NodeType.IF,
+            conditionNode,
+            nodeFactory.createNode(NodeType.IF_ELSE, toBlock(ifStatements), toBlock(elseStatements))
+        );
+    }
+
+    @Nullable
+    private INode eliminateLoop(@NotNull INode statement) {
+        INode conditionNode = statement.getLeft();
+        INode blockNode = statement.getRight();
+        if (conditionNode == null || blockNode == null) {
+            return statement;
+        }
+        if (Boolean.FALSE.equals(ConstantFolder.getConditionValue(conditionNode))) {
+            logger.debug("remove loop " + statement);
+            return null;
+        }
+        INode statements = eliminateInnerStatement(blockNode);
+        if (statements != null && statements == blockNode) {
+            return statement;
+        }
+        return nodeFactory.createNode(NodeType.LOOP, conditionNode, toBlock(statements));
+    }
+
+    @NotNull
+    private INode toBlock(@Nullable INode statements) {
+        // A block of the statements, an empty block is a block of an empty sequence (see BlockVisitor)
+        if (statements == null) {
+            statements = nodeFactory.createSequence(NodeType.SEQUENCE, Collections.emptyList());
+        } else if (statements.getType() == NodeType.BLOCK) {
+            return statements;
+        }
+        return nodeFactory.createNode(NodeType.BLOCK, statements, null);
+    }
+
+    @NotNull
+    static List<INode> getStatements(@NotNull INode sequence) {
+        // The statements of an n-ary sequence, or of a chain of binary sequences (see SequenceVisitor)
+        if (sequence.getStatements() != null) {
+            return sequence.getStatements();
+        }
+        List<INode> statements = new ArrayList<>();
+        Deque<INode> nodeStack = new ArrayDeque<>();
+        nodeStack.push(sequence);
+        while (!nodeStack.isEmpty()) {
+            INode node = nodeStack.pop();
+            if (node.getType() != NodeType.SEQUENCE) {
+                statements.add(node);
+                continue;
+            }
+            if (node.getStatements() != null) {
+                for (int i = node.getStatements().size() - 1; i >= 0; i--) {
+                    if (node.getStatements().get(i) != null) {
+                        nodeStack.push(node.getStatements().get(i));
+                    }
+                }
+                continue;
+            }
+            if (node.getRight() != null) {
+                nodeStack.push(node.getRight());
+            }
+            if (node.getLeft() != null) {
+                nodeStack.push(node.getLeft());
+            }
+        }
+        return statements;
+    }
+
+    static boolean canComplete(@Nullable INode statement) {
+        // Whether the statement can complete, and the next statement can be reached (eliminated statements only)
+        if (statement == null) {
+            return true;
+        }
+        switch (statement.getType()) {
+            case LOOP: return !Boolean.TRUE.equals(ConstantFolder.getConditionValue(statement.getLeft()));
+            case ASSERT: return !Boolean.FALSE.equals(ConstantFolder.getConditionValue(statement.getLeft()));
+            case BLOCK: return canComplete(statement.getLeft());
+            case SEQUENCE: {
+                // The statements after a statement that never completes have been removed
+                List<INode> statements = getStatements(statement);
+                return statements.isEmpty() || canComplete(statements.get(statements.size() - 1));
+            }
+            case IF: {
+                INode bodyNode = statement.getRight();
+                if (bodyNode == null || bodyNode.getType() != NodeType.IF_ELSE) {
+                    return true;
+                }
+                return canComplete(bodyNode.getLeft()) || canComplete(bodyNode.getRight());
+            }
+            default: return true;
+        }
+    }
+
+    // endregion
+
+    // region Expressions
+
+    static boolean isNonZeroLiteral(@NotNull INode node) {
+        switch (node.getType()) {
+            case LITERAL_INTEGER: return node.getIntegerValue() != 0;
+            case LITERAL_CHARACTER: return node.getCharacterValue() != 0;
+            case LITERAL_FLOAT: return true; // float division by zero does not throw
+            case LITERAL_STRING: return node.getStringValue().hashCode() != 0; // see NumericOperatorVisitor
+            default: return false;
+        }
+    }
+
+    // endregion
+}
@@ -0,0 +1,460 @@
+package com.jungle.compiler.optimizer;
+
+import com.jungle.ast.HashConsingNodeFactory;
+import com.jungle.ast.INode;
+import com.jungle.ast.INodeFactory;
+import com.jungle.ast.NodeFactory;
+import com.jungle.ast.NodeType;
+import com.jungle.common.SetUtils;
+import com.jungle.common.SymbolInterner;
+import com.jungle.logger.FileLogger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class LoopInvariantHoister {
+    /* AST to AST pass, after dead code elimination (see DeadCodeEliminator) and before the AST is compiled.
+     *
+     * An expression of a loop (its condition or its block) is invariant when none of its variables is assigned in the loop,
+     * eg. (* width 2) in loop (lessThan x (* width 2)) { x = + x 1 }.
+     * Each largest invariant expression is evaluated once before the loop, into a temporary variable of the compiler,
+     * and the loop loads the temporary instead:
+     *
+     *   $invariant0 = * width 2
+     *   loop (lessThan x $invariant0) { x = + x 1 }
+     *
+     * The name of a temporary cannot be scanned, so it is a new symbol of its own local variable (see SymbolTable),
+     * and its type is the type of the expression.
+     * Loops are hoisted from the innermost out, the temporaries of an inner loop are hoisted again when their expression
+     * is also invariant in the outer loop.
+     *
+     * Only numeric operators and casts are hoisted, a comparison is kept in its condition (see BooleanOperatorVisitor::visitCondition).
+     * A hoisted expression is evaluated even when the loop (or the if in the loop) does not run, so an expression that can throw
+     * is not hoisted: a division or modulo by a divisor that is not a non-zero literal.
+     * The inline code of a multitask is compiled into its own class, its loops are hoisted within the inline code.
+     * An invariant expression that occurs more than once in a loop is hoisted once, the occurrences load the same temporary.
+     * The invariant expressions of a loop are hash-consed (see HashConsingNodeFactory), so equal occurrences are the same node.
+     * The table of canonical expressions only lives while its loop is hoisted, the rest of the AST is not hash-consed.
+     */
+
+    @NotNull
+    private static final FileLogger logger = new FileLogger(LoopInvariantHoister.class.getName());
+
+    @NotNull
+    private static final String TEMPORARY_NAME_PREFIX = "$invariant";
+
+    @NotNull
+    private static final Set<NodeType> INVARIANT_OPERATORS = SetUtils.newSet(
+        NodeType.OPERATOR_ADD,
+        NodeType.OPERATOR_SUBTRACT,
+        NodeType.OPERATOR_MULTIPLY,
+        NodeType.OPERATOR_DIVIDE,
+        NodeType.OPERATOR_MODULO,
+        NodeType.CAST_CHAR,
+        NodeType.CAST_BYTE,
+        NodeType.CAST_SHORT,
+        NodeType.CAST_INTEGER,
+        NodeType.CAST_LONG,
+        NodeType.CAST_FLOAT,
+        NodeType.CAST_DOUBLE
+    );
+
+    @NotNull
+    private INodeFactory nodeFactory = new NodeFactory();
+
+    // Number of temporaries, the next temporary is $invariant<count>
+    private int temporaryCount;
+
+    // Symbol ids of the temporaries
+    @NotNull
+    private final BitSet temporarySymbolIds = new BitSet();
+
+    // Canonical invariant expressions of the loop being hoisted, a new table for each loop
+    @NotNull
+    private HashConsingNodeFactory invariantExpressions = new HashConsingNodeFactory();
+
+    // Temporaries of the invariant expressions of the loop being hoisted, by canonical expression
+    @NotNull
+    private final Map<INode, INode> invariantTemporaries = new IdentityHashMap<>();
+
+    // The interner of the symbol ids of the AST, the temporaries are new symbols of the same interner
+    @NotNull
+    private final SymbolInterner symbolInterner;
+
+    public LoopInvariantHoister(@NotNull SymbolInterner symbolInterner) {
+        super();
+        this.symbolInterner = symbolInterner;
+    }
+
+    @NotNull
+    public LoopInvariantHoister withNodeFactory(@NotNull INodeFactory nodeFactory) {
+        // New nodes are node objects by default, nodes that are not changed are kept as they are
+        this.nodeFactory = nodeFactory;
+        return this;
+    }
+
+    @Nullable
+    public INode hoist(@Nullable INode ast) {
+        // Hoist the loops of a program, the statements of the main sequence are the top-level statements
+        if (ast == null || ast.getType() != NodeType.SEQUENCE) {
+            return hoistStatement(ast);
+        }
+        return hoistSequence(ast);
+    }
+
+    @NotNull
+    public Iterator<INode> hoist(@NotNull Iterator<INode> statementIterator) {
+        // Hoist the loops of each top-level statement as it is pulled from the iterator (see Compiler::compileMain)
+        return new Iterator<INode>() {
+            @Override
+            public boolean hasNext() {
+                return statementIterator.hasNext();
+            }
+
+            @Override
+            public INode next() {
+                return hoistStatement(statementIterator.next());
+            }
+        };
+    }
+
+    @Nullable
+    public INode hoistStatement(@Nullable INode statement) {
+        // Hoist the loops of a statement, a loop with invariant expressions is a sequence of the temporaries and the loop
+        if (statement == null) {
+            return null;
+        }
+        switch (statement.getType()) {
+            case SEQUENCE: return hoistSequence(statement);
+            case BLOCK: return withChildren(statement, hoistStatement(statement.getLeft()), statement.getRight());
+            case IF: return withChildren(statement, statement.getLeft(), hoistStatement(statement.getRight()));
+            case IF_ELSE: return withChildren(statement, hoistStatement(statement.getLeft()), hoistStatement(statement.getRight()));
+            case MULTITASK: {
+                // The inline code is hoisted on its own, its variables are not the variables of the program
+                return withChildren(statement, statement.getLeft(), hoistStatement(statement.getRight()));
+            }
+            case LOOP: {
+                // The inner loops first
+                INode loop = withChildren(statement, statement.getLeft(), hoistStatement(statement.getRight()));
+                return hoistLoop(loop);
+            }
+            default: return statement;
+        }
+    }
+
+    // region Statements
+
+    @NotNull
+    private INode hoistSequence(@NotNull INode sequence) {
+        List<INode> statements = DeadCodeEliminator.getStatements(sequence);
+        List<INode> hoistedStatements = new ArrayList<>(statements.size());
+        boolean hasHoisted = sequence.getStatements() == null;
+        for (INode statement : statements) {
+            if (statement == null) {
+                hasHoisted = true;
+                continue;
+            }
+            INode hoistedStatement = hoistStatement(statement);
+            if (hoistedStatement == statement) {
+                hoistedStatements.add(statement);
+                continue;
+            }
+            hasHoisted = true;
+            if (statement.getType() == NodeType.LOOP && hoistedStatement.getType() == NodeType.SEQUENCE) {
+                // The temporaries and the loop are statements of the sequence
+                hoistedStatements.addAll(hoistedStatement.getStatements());
+            } else {
+                hoistedStatements.add(hoistedStatement);
+            }
+        }
+        return hasHoisted ? nodeFactory.createSequence(NodeType.SEQUENCE, hoistedStatements) : sequence;
+    }
+
+    @NotNull
+    private INode hoistLoop(@NotNull INode loop) {
+        if (loop.getLeft() == null || loop.getRight() == null) {
+            return loop;
+        }
+        BitSet assignedSymbolIds = new BitSet();
+        collectAssigned(loop.getRight(), assignedSymbolIds);
+        invariantExpressions = new HashConsingNodeFactory();
+        invariantTemporaries.clear();
+
+        List<INode> statements = new ArrayList<>();
+        INode conditionNode = hoistExpression(loop.getLeft(), assignedSymbolIds, statements);
+        INode blockNode = hoistInvariants(loop.getRight(), assignedSymbolIds, statements);
+        if (statements.isEmpty()) {
+            return loop;
+        }
+        logger.debug("hoist " + statements.size() + " invariant expressions of " + loop);
+        statements.add(nodeFactory.createNode(NodeType.LOOP, conditionNode, blockNode));
+        return nodeFactory.createSequence(NodeType.SEQUENCE, statements);
+    }
+
+    @Nullable
+    private INode hoistInvariants(
+        @NotNull INode statement,
+        @NotNull BitSet assignedSymbolIds,
+        @NotNull List<INode> hoistedStatements
+    ) {
+        // Replace the invariant expressions of a statement of the loop, a removed statement is null
+        switch (statement.getType()) {
+            case SEQUENCE: {
+                List<INode> statements = DeadCodeEliminator.getStatements(statement);
+                List<INode> invariantStatements = new ArrayList<>(statements.size());
+                boolean hasHoisted = statement.getStatements() == null;
+                for (INode innerStatement : statements) {
+                    INode invariantStatement = innerStatement == null
+                        ? null
+                        : hoistInvariants(innerStatement, assignedSymbolIds, hoistedStatements);
+                    hasHoisted |= invariantStatement != innerStatement;
+                    if (invariantStatement != null) {
+                        invariantStatements.add(invariantStatement);
+                    }
+                }
+                return hasHoisted ? nodeFactory.createSequence(NodeType.SEQUENCE, invariantStatements) : statement;
+            }
+            case BLOCK: {
+                INode statements = statement.getLeft() == null
+                    ? null
+                    : hoistInvariants(statement.getLeft(), assignedSymbolIds, hoistedStatements);
+                if (statements == null && statement.getLeft() != null) {
+                    // A block of an empty sequence, see BlockVisitor
+                    statements = nodeFactory.createSequence(NodeType.SEQUENCE, Collections.emptyList());
+                }
+                return withChildren(statement, statements, statement.getRight());
+            }
+            case ASSIGN: {
+                INode identifierNode = statement.getLeft();
+                INode expressionNode = statement.getRight();
+                if (identifierNode == null || expressionNode == null) {
+                    return statement;
+                }
+                int symbolId = identifierNode.getSymbolId();
+                if (symbolId >= 0 && temporarySymbolIds.get(symbolId) && isInvariant(expressionNode, assignedSymbolIds)) {
+                    // The temporary of an inner loop is also invariant in this loop
+                    hoistedStatements.add(statement);
+                    assignedSymbolIds.clear(symbolId);
+                    return null;
+                }
+                return withChildren(statement, identifierNode, hoistExpression(expressionNode, assignedSymbolIds, hoistedStatements));
+            }
+            case PRINT:
+            case ASSERT:
+            case SLEEP: {
+                if (statement.getLeft() == null) {
+                    return statement;
+                }
+                INode expressionNode = hoistExpression(statement.getLeft(), assignedSymbolIds, hoistedStatements);
+                return withChildren(statement, expressionNode, statement.getRight());
+            }
+            case IF:
+            case LOOP: {
+                if (statement.getLeft() == null || statement.getRight() == null) {
+                    return statement;
+                }
+                INode conditionNode = hoistExpression(statement.getLeft(), assignedSymbolIds, hoistedStatements);
+                INode bodyNode = hoistInvariants(statement.getRight(), assignedSymbolIds, hoistedStatements);
+                return withChildren(statement, conditionNode, bodyNode);
+            }
+            case IF_ELSE: {
+                if (statement.getLeft() == null || statement.getRight() == null) {
+                    return statement;
+                }
+                INode ifBlockNode = hoistInvariants(statement.getLeft(), assignedSymbolIds, hoistedStatements);
+                INode elseBlockNode = hoistInvariants(statement.getRight(), assignedSymbolIds, hoistedStatements);
+                return withChildren(statement, ifBlockNode, elseBlockNode);
+            }
+            default: return statement; // eg. a multitask, see hoistStatement
+        }
+    }
+
+    private static void collectAssigned(@NotNull INode statement, @NotNull BitSet assignedSymbolIds) {
+        // The variables assigned by the statement, and by the statements in it
+        Deque<INode> nodeStack = new ArrayDeque<>();
+        nodeStack.push(statement);
+        while (!nodeStack.isEmpty()) {
+            INode node = nodeStack.pop();
+            if (node.getType() == NodeType.MULTITASK) {
+                continue;
+            }
+            if (node.getType() == NodeType.ASSIGN && node.getLeft() != null && node.getLeft().getSymbolId() >= 0) {
+                assignedSymbolIds.set(node.getLeft().getSymbolId());
+            }
+            if (node.getLeft() != null) {
+                nodeStack.push(node.getLeft());
+            }
+            if (node.getRight() != null) {
+                nodeStack.push(node.getRight());
+            }
+            if (node.getStatements() != null) {
+                for (INode innerStatement : node.getStatements()) {
+                    if (innerStatement != null) {
+                        nodeStack.push(innerStatement);
+                    }
+                }
+            }
+        }
+    }
+
+    @NotNull
+    private INode withChildren(@NotNull INode node, @Nullable INode left, @Nullable INode right) {
+        if (left == node.getLeft() && right == node.getRight()) {
+            return node;
+        }
+        return nodeFactory.createNode(node.getType(), left, right);
+    }
+
+    // endregion
+
+    // region Expressions
+
+    @NotNull
+    private INode hoistExpression(
+        @NotNull INode expression,
+        @NotNull BitSet assignedSymbolIds,
+        @NotNull List<INode> hoistedStatements
+    ) {
+        /* Nodes are visited in post-order with an explicit work stack instead of recursion (see ConstantFolder::foldTree),
+         * the result of each node is the node with its hoisted children, and whether the node is invariant.
+         * The children of an invariant node are not hoisted, the largest invariant expression is hoisted as a whole,
+         * when its parent is not invariant.
+         */
+        Deque<INode> nodeStack = new ArrayDeque<>();
+        Deque<Boolean> hasVisitedChildrenStack = new ArrayDeque<>();
+        List<INode> resultStack = new ArrayList<>();
+        BitSet invariantResults = new BitSet();
+        nodeStack.push(expression);
+        hasVisitedChildrenStack.push(false);
+        while (!nodeStack.isEmpty()) {
+            INode node = nodeStack.pop();
+            boolean hasVisitedChildren = hasVisitedChildrenStack.pop();
+            if (node.isLeaf()) {
+                invariantResults.set(resultStack.size(), isInvariantLeaf(node, assignedSymbolIds));
+                resultStack.add(node);
+                continue;
+            }
+            if (!hasVisitedChildren) {
+                nodeStack.push(node);
+                hasVisitedChildrenStack.push(true);
+                // The right child is pushed first, so that the left child is visited first
+                if (node.getRight() != null) {
+                    nodeStack.push(node.getRight());
+                    hasVisitedChildrenStack.push(false);
+                }
+                if (node.getLeft() != null) {
+                    nodeStack.push(node.getLeft());
+                    hasVisitedChildrenStack.push(false);
+                }
+                continue;
+            }
+            // Pop the results of the children
+            int rightIndex = node.getRight() == null ? -1 : resultStack.size() - 1;
+            int leftIndex = node.getLeft() == null ? -1 : resultStack.size() - (rightIndex < 0 ? 1 : 2);
+            INode left = leftIndex < 0 ? null : resultStack.get(leftIndex);
+            INode right = rightIndex < 0 ? null : resultStack.get(rightIndex);
+            boolean isLeftInvariant = leftIndex < 0 || invariantResults.get(leftIndex);
+            boolean isRightInvariant = rightIndex < 0 || invariantResults.get(rightIndex);
+            int resultIndex = leftIndex >= 0 ? leftIndex : rightIndex >= 0 ? rightIndex : resultStack.size();
+            resultStack.subList(resultIndex, resultStack.size()).clear();
+
+            boolean isInvariant = isLeftInvariant && isRightInvariant && isInvariantOperator(node);
+            if (!isInvariant) {
+                if (isLeftInvariant && left != null) {
+                    left = hoistInvariant(left, hoistedStatements);
+                }
+                if (isRightInvariant && right != null) {
+                    right = hoistInvariant(right, hoistedStatements);
+                }
+            }
+            invariantResults.set(resultIndex, isInvariant);
+            resultStack.add(withChildren(node, left, right));
+        }
+        if (resultStack.size() != 1) {
+            throw new Error("failed to hoist " + expression);
+        }
+        INode result = resultStack.get(0);
+        return invariantResults.get(0) ? hoistInvariant(result, hoistedStatements) : result;
+    }
+
+    @NotNull
+    private INode hoistInvariant(@NotNull INode expression, @NotNull List<INode> hoistedStatements) {
+        // Assign an invariant expression to a new temporary, and load the temporary instead
+        if (expression.isLeaf()) {
+            return expression;
+        }
+        INode canonicalExpression = invariantExpressions.intern(expression);
+        INode temporaryNode = invariantTemporaries.get(canonicalExpression);
+        if (temporaryNode != null) {
+            logger.debug("hoist " + expression + " to " + temporaryNode.getRawValue() + " again");
+            return temporaryNode;
+        }
+        int symbolId = symbolInterner.intern(TEMPORARY_NAME_PREFIX + temporaryCount++);
+        String name = symbolInterner.getName(symbolId);
+        temporarySymbolIds.set(symbolId);
+        logger.debug("hoist " + expression + " to " + name);
+        hoistedStatements.add(nodeFactory.createNode(NodeType.ASSIGN, nodeFactory.createIdentifier(symbolId, name), canonicalExpression));
+        temporaryNode = nodeFactory.createIdentifier(symbolId, name);
+        invariantTemporaries.put(canonicalExpression, temporaryNode);
+        return temporaryNode;
+    }
+
+    private static boolean isInvariant(@NotNull INode expression, @NotNull BitSet assignedSymbolIds) {
+        Deque<INode> nodeStack = new ArrayDeque<>();
+        nodeStack.push(expression);
+        while (!nodeStack.isEmpty()) {
+            INode node = nodeStack.pop();
+            if (node.isLeaf() ? !isInvariantLeaf(node, assignedSymbolIds) : !isInvariantOperator(node)) {
+                return false;
+            }
+            if (node.getLeft() != null) {
+                nodeStack.push(node.getLeft());
+            }
+            if (node.getRight() != null) {
+                nodeStack.push(node.getRight());
+            }
+        }
+        return true;
+    }
+
+    private static boolean isInvariantLeaf(@NotNull INode node, @NotNull BitSet assignedSymbolIds) {
+        switch (node.getType()) {
+            case LITERAL_BOOLEAN:
+            case LITERAL_CHARACTER:
+            case LITERAL_INTEGER:
+            case LITERAL_FLOAT:
+            case LITERAL_STRING:
+                return true;
+            case IDENTIFIER: {
+                int symbolId = node.getSymbolId();
+                return symbolId >= 0 && !assignedSymbolIds.get(symbolId);
+            }
+            default: return false;
+        }
+    }
+
+    private static boolean isInvariantOperator(@NotNull INode node) {
+        // An operator that can be hoisted when its operands are invariant
+        if (!INVARIANT_OPERATORS.contains(node.getType()) || node.getLeft() == null) {
+            return false;
+        }
+        if (node.getType() == NodeType.OPERATOR_DIVIDE || node.getType() == NodeType.OPERATOR_MODULO) {
+            // An integer division by zero throws
+            return node.getRight() != null && DeadCodeEliminator.isNonZeroLiteral(node.getRight());
+        }
+        return true;
+    }
+
+    // endregion
+}
@@ -3,51 +3,77 @@ package com.jungle.compiler.symbol;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import com.jungle.common.SymbolInterner;
 import com.jungle.compiler.operand.OperandType;
 
 import java.util.*;
 
 /* The purpose of this SymbolTable class is to map an identifier to a local variable array index
+ *
+ * Identifiers are symbol ids (see SymbolInterner), and the entry of each symbol is an array element,
+ * so a lookup is an array load.
+ * Variables are function-wide, a variable set in a block is still visible after the block (eg. set in both branches of an if),
+ * so the table has a single scope.
+ * Local variable indexes are allocated in increasing order.
  * Resources:
  * - https://alvinalexander.com/scala/fp-book/recursion-jvm-stacks-stack-frames/
  */
 
 public class SymbolTable {
-    protected final Stack<Map<String, SymbolEntry>> stackFrame = new Stack<>();
+    private static final int DEFAULT_CAPACITY = 16;
 
-    public void enterFrame() {
-        // When entering a frame:
-        // - begin a new mapping, but
-        // - preserve the previous mapping.
-        stackFrame.push(new HashMap<>());
+    // entry of each symbol id
+    @NotNull
+    private SymbolEntry[] entries;
+
+    // next free local variable index
+    private int nextIndex;
+
+    // names of the symbol ids, of the compilation
+    @NotNull
+    private final SymbolInterner symbolInterner;
+
+    public SymbolTable(@NotNull SymbolInterner symbolInterner) {
+        super();
+        this.symbolInterner = symbolInterner;
+        // the symbols interned so far, eg. every name of the parsed AST
+        this.entries = new SymbolEntry[Math.max(symbolInterner.size(), DEFAULT_CAPACITY)];
     }
 
-    public void exitFrame() {
-        // When exiting a frame:
-        // - discard the current mapping, and
-        // - restore the previous mapping.
-        stackFrame.pop();
+    public SymbolTable() {
+        this(new SymbolInterner());
     }
 
-    public Map<String, SymbolEntry> getCurrentFrame() {
-        return stackFrame.peek();
+    @NotNull
+    public SymbolInterner getSymbolInterner() {
+        return symbolInterner;
     }
 
-    public SymbolTable() {
-        super();
-        // Initialize top-level frame
-        enterFrame();
+    @Nullable
+    public SymbolEntry get(int symbolId) {
+        return symbolId >= 0 && symbolId < entries.length ? entries[symbolId] : null;
     }
 
     @Nullable
     public SymbolEntry get(@NotNull String name) {
-        Map<String, SymbolEntry> table = getCurrentFrame();
-        return table.get(name);
+        return get(symbolInterner.intern(name));
     }
 
-    public SymbolEntry set(@NotNull String name, @NotNull OperandType type) {
-        SymbolEntry newEntry = new SymbolEntry(getCurrentFrame().size(), type);
-        getCurrentFrame().put(name, newEntry);
+    public SymbolEntry set(int symbolId, @NotNull OperandType type) {
+        // A new entry, at the next free local variable index
+        if (symbolId < 0) {
+            throw new Error("invalid symbol id " + symbolId);
+        }
+        if (symbolId >= entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(symbolId + 1, entries.length * 2));
+        }
+        SymbolEntry newEntry = new SymbolEntry(nextIndex, type);
+        nextIndex += type.getSlotSize();
+        entries[symbolId] = newEntry;
         return newEntry;
     }
+
+    public SymbolEntry set(@NotNull String name, @NotNull OperandType type) {
+        return set(symbolInterner.intern(name), type);
+    }
 }
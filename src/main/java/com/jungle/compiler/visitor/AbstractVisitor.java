@@ -6,14 +6,19 @@ import com.jungle.compiler.ICompilerOptions;
 
 public abstract class AbstractVisitor implements IVisitor {
     @NotNull
-    private final ICompilerOptions options;
+    private final VisitorRegistry registry;
+
+    @NotNull
+    public VisitorRegistry getRegistry() {
+        return registry;
+    }
 
     public ICompilerOptions getCompilerOptions() {
-        return options;
+        return registry.getCompilerOptions();
     }
 
-    public AbstractVisitor(@NotNull ICompilerOptions options) {
+    public AbstractVisitor(@NotNull VisitorRegistry registry) {
         super();
-        this.options = options;
+        this.registry = registry;
     }
 }
@@ -2,13 +2,10 @@ package com.jungle.compiler.visitor;
 
 import com.jungle.ast.INode;
 import com.jungle.ast.NodeType;
-import com.jungle.compiler.ICompilerOptions;
 import com.jungle.compiler.operand.OperandStackContext;
-import com.jungle.compiler.operand.OperandType;
 import com.jungle.logger.FileLogger;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
@@ -22,19 +19,8 @@ public class AssertVisitor extends AbstractVisitor {
      * For example: which method, which line, which variables, etc.
      */
 
-    @Nullable
-    private ExpressionVisitor expressionVisitor;
-
-    @NotNull
-    private ExpressionVisitor getExpressionVisitor() {
-        if (expressionVisitor == null) {
-            expressionVisitor = new ExpressionVisitor(getCompilerOptions());
-        }
-        return expressionVisitor;
-    }
-
-    public AssertVisitor(@NotNull ICompilerOptions options) {
-        super(options);
+    public AssertVisitor(@NotNull VisitorRegistry registry) {
+        super(registry);
     }
 
     @Override
@@ -58,19 +44,11 @@ public class AssertVisitor extends AbstractVisitor {
             throw new Error("assert condition missing expression");
         }
 
-        // push expression/condition onto operand stack
-        getExpressionVisitor().visit(mv, ast.getLeft(), context);
-
-        // if (![int expression]) throw new AssertionError("Detailed Message");
-
-        OperandType conditionType = context.peek();
-        if (!OperandType.INTEGER_COMPUTATIONAL_TYPES.contains(conditionType)) {
-            throw new Error("assert condition/expression expected to be integer-like");
-        }
+        // if (![condition]) throw new AssertionError("Detailed Message");
 
-        // if int value on operand stack is not-equal to zero then throw error
+        // when the condition is true, jump past the error (see BooleanOperatorVisitor::visitCondition)
         Label endLabel = new Label();
-        mv.visitJumpInsn(Opcodes.IFNE, endLabel);
+        getRegistry().getBooleanOperatorVisitor().visitCondition(mv, ast.getLeft(), true, endLabel, context);
 
         // throw new AssertionError();
         mv.visitTypeInsn(Opcodes.NEW, "java/lang/AssertionError"); // create on operand stack
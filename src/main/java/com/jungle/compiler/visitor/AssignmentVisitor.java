@@ -2,31 +2,19 @@ package com.jungle.compiler.visitor;
 
 import com.jungle.ast.INode;
 import com.jungle.ast.NodeType;
-import com.jungle.compiler.ICompilerOptions;
+import com.jungle.common.SymbolInterner;
 import com.jungle.compiler.operand.OperandStackContext;
 import com.jungle.logger.FileLogger;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.MethodVisitor;
 
 public class AssignmentVisitor extends AbstractVisitor {
     @NotNull
     private static final FileLogger logger = new FileLogger(AssignmentVisitor.class.getName());
 
-    @Nullable
-    private ExpressionVisitor expressionVisitor;
-
-    @NotNull
-    private ExpressionVisitor getExpressionVisitor() {
-        if (expressionVisitor == null) {
-            expressionVisitor = new ExpressionVisitor(getCompilerOptions());
-        }
-        return expressionVisitor;
-    }
-
-    public AssignmentVisitor(@NotNull ICompilerOptions options) {
-        super(options);
+    public AssignmentVisitor(@NotNull VisitorRegistry registry) {
+        super(registry);
     }
 
     @Override
@@ -51,8 +39,8 @@ public class AssignmentVisitor extends AbstractVisitor {
             throw new Error("expected left AST to be identifier");
         }
 
-        String variableName = identifierNode.getRawValue();
-        if (variableName == null) {
+        int symbolId = identifierNode.getSymbolId();
+        if (symbolId == SymbolInterner.NO_SYMBOL) {
             throw new Error("identifier missing variable name");
         }
 
@@ -62,9 +50,9 @@ public class AssignmentVisitor extends AbstractVisitor {
         }
 
         // evaluate expression to have value pushed onto operand stack...
-        getExpressionVisitor().visit(mv, expressionNode, context);
+        getRegistry().getExpressionVisitor().visit(mv, expressionNode, context);
 
         // store operand stack value and assign variable to index...
-        context.visitStore(mv, variableName);
+        context.visitStore(mv, symbolId);
     }
 }
@@ -2,30 +2,18 @@ package com.jungle.compiler.visitor;
 
 import com.jungle.ast.INode;
 import com.jungle.ast.NodeType;
-import com.jungle.compiler.ICompilerOptions;
 import com.jungle.compiler.operand.OperandStackContext;
 import com.jungle.logger.FileLogger;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.MethodVisitor;
 
 public class BlockVisitor extends AbstractVisitor {
     @NotNull
     private static final FileLogger logger = new FileLogger(BlockVisitor.class.getName());
 
-    @Nullable
-    private MainVisitor mainVisitor;
-
-    private MainVisitor getMainVisitor() {
-        if (mainVisitor == null) {
-            mainVisitor = new MainVisitor(getCompilerOptions());
-        }
-        return mainVisitor;
-    }
-
-    public BlockVisitor(@NotNull ICompilerOptions options) {
-        super(options);
+    public BlockVisitor(@NotNull VisitorRegistry registry) {
+        super(registry);
     }
 
     @Override
@@ -53,6 +41,6 @@ public class BlockVisitor extends AbstractVisitor {
             throw new Error("block right AST must NOT be defined");
         }
 
-        getMainVisitor().visit(mv, ast.getLeft(), context);
+        getRegistry().getMainVisitor().visit(mv, ast.getLeft(), context);
     }
 }
@@ -1,16 +1,14 @@
 package com.jungle.compiler.visitor;
 
 import com.jungle.ast.INode;
-import com.jungle.ast.Node;
 import com.jungle.ast.NodeType;
 import com.jungle.common.SetUtils;
-import com.jungle.compiler.ICompilerOptions;
 import com.jungle.compiler.operand.OperandStackContext;
 import com.jungle.compiler.operand.OperandType;
 import com.jungle.logger.FileLogger;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
@@ -20,12 +18,6 @@ public class BooleanOperatorVisitor extends AbstractVisitor {
     @NotNull
     private static final FileLogger logger = new FileLogger(BooleanOperatorVisitor.class.getName());
 
-    @NotNull
-    private static final INode PUSH_TRUE_NODE = new Node(NodeType.LITERAL_BOOLEAN).withRawValue("true");
-
-    @NotNull
-    private static final INode PUSH_FALSE_NODE = new Node(NodeType.LITERAL_BOOLEAN).withRawValue("false");
-
     @NotNull
     private static final Set<NodeType> BOOLEAN_OPERATORS = SetUtils.newSet(
             // unary
@@ -39,30 +31,8 @@ public class BooleanOperatorVisitor extends AbstractVisitor {
             NodeType.OPERATOR_GREATER_THAN
     );
 
-    @Nullable
-    private IfVisitor ifVisitor;
-
-    @NotNull
-    private IfVisitor getIfVisitor() {
-        if (ifVisitor == null) {
-            ifVisitor = new IfVisitor(getCompilerOptions());
-        }
-        return ifVisitor;
-    }
-
-    @Nullable
-    private ExpressionVisitor expressionVisitor;
-
-    @NotNull
-    private ExpressionVisitor getExpressionVisitor() {
-        if (expressionVisitor == null) {
-            expressionVisitor = new ExpressionVisitor(getCompilerOptions());
-        }
-        return expressionVisitor;
-    }
-
-    public BooleanOperatorVisitor(@NotNull ICompilerOptions options) {
-        super(options);
+    public BooleanOperatorVisitor(@NotNull VisitorRegistry registry) {
+        super(registry);
     }
 
     @Override
@@ -76,167 +46,241 @@ public class BooleanOperatorVisitor extends AbstractVisitor {
         @NotNull INode ast,
         @NotNull OperandStackContext context
     ) {
+        /* Materialize the boolean value of the operator, when the value is used (eg. assigned or printed) instead of tested
+         *
+         *            "condition" (jump to #false when false)
+         *            ICONST_1
+         *            GOTO #end
+         * false:     ICONST_0
+         * end:       ...
+         */
         logger.debug("visit boolean operator " + ast);
 
-        // Optimization idea:
-        //  if the left expression has a shorter depth (fewer operations) than the right,
-        //  which expression should be traversed to optimize for short circuit logic?
-        // Follow up:
-        //  is it better to evaluate batches of operators, then test short circuit?
-
         if (!canVisit(ast)) {
             throw new Error("expected boolean operator");
         }
 
-        if (ast.getLeft() == null) {
-            throw new Error("boolean operator missing left expression");
+        Label falseLabel = new Label();
+        Label endLabel = new Label();
+
+        if (ast.getType() == NodeType.OPERATOR_EQUAL) {
+            OperandType rightType = visitOperands(mv, ast, context);
+            OperandType leftType = context.pop();
+            if (leftType == OperandType.OBJECT && rightType == OperandType.OBJECT) {
+                // Deep comparison, the value is the integer result of boolean Object::equals(Object)
+                visitEquals(mv);
+                context.push(OperandType.INTEGER);
+                return;
+            }
+            visitComparison(mv, ast, leftType, rightType, false, falseLabel, context);
+        } else {
+            visitCondition(mv, ast, false, falseLabel, context);
+        }
+
+        mv.visitInsn(Opcodes.ICONST_1);
+        mv.visitJumpInsn(Opcodes.GOTO, endLabel);
+        mv.visitLabel(falseLabel);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitLabel(endLabel);
+        context.push(OperandType.BOOLEAN);
+    }
+
+    public void visitCondition(
+        @NotNull MethodVisitor mv,
+        @NotNull INode ast,
+        boolean jumpWhen,
+        @NotNull Label label,
+        @NotNull OperandStackContext context
+    ) {
+        /* Jump to the label when the condition is jumpWhen (true or false), or else continue with the next instruction
+         * (see IfVisitor, LoopVisitor and AssertVisitor).
+         *
+         * A comparison is a single compare-and-jump of its operands, eg. IF_ICMPGE #label for (lessThan a b) when false.
+         * A short circuit operator is not evaluated to a value, its operands jump to the label or past the other operand,
+         * and a not operator inverts when to jump.
+         * Any other expression is an integer-like value, which is compared to zero.
+         */
+        logger.debug("visit condition " + ast);
+
+        INode conditionNode = ast;
+        while (conditionNode.getType() == NodeType.OPERATOR_NOT) {
+            if (conditionNode.getLeft() == null) {
+                throw new Error("boolean operator missing expression");
+            }
+            if (conditionNode.getRight() != null) {
+                throw new Error("boolean (unary) operator with unexpected right expression");
+            }
+            // When condition is true, then not condition is false
+            jumpWhen = !jumpWhen;
+            conditionNode = conditionNode.getLeft();
         }
 
-        switch (ast.getType()) {
+        switch (conditionNode.getType()) {
+            case LITERAL_BOOLEAN:
+            case LITERAL_CHARACTER:
+            case LITERAL_INTEGER: {
+                // The condition is known, either always jump or never jump
+                boolean isTrue;
+                switch (conditionNode.getType()) {
+                    case LITERAL_BOOLEAN: isTrue = conditionNode.getBooleanValue(); break;
+                    case LITERAL_CHARACTER: isTrue = conditionNode.getCharacterValue() != 0; break;
+                    default: isTrue = conditionNode.getIntegerValue() != 0; break;
+                }
+                if (isTrue == jumpWhen) {
+                    mv.visitJumpInsn(Opcodes.GOTO, label);
+                }
+            } break;
             case OPERATOR_AND: {
-                // When one boolean input is false (non-zero operand value), the expression is false
-                if (ast.getRight() == null) {
-                    throw new Error("boolean operator missing right expression");
+                // When one boolean input is false, the expression is false
+                if (conditionNode.getLeft() == null || conditionNode.getRight() == null) {
+                    throw new Error("boolean operator missing left or right expression");
+                }
+                if (jumpWhen) {
+                    Label falseLabel = new Label();
+                    visitCondition(mv, conditionNode.getLeft(), false, falseLabel, context); // short circuit
+                    visitCondition(mv, conditionNode.getRight(), true, label, context);
+                    mv.visitLabel(falseLabel);
+                } else {
+                    visitCondition(mv, conditionNode.getLeft(), false, label, context); // short circuit
+                    visitCondition(mv, conditionNode.getRight(), false, label, context);
                 }
-                getIfVisitor().visit(
-                        mv,
-                        CompareTo.ZERO,     // when 0 (false), jump to else
-                        ast.getLeft(),      // if-condition
-                        ast.getRight(),     // if-block: compute other half of AND operation
-                        PUSH_FALSE_NODE,    // else-block: short circuit
-                        context
-                );
             } break;
             case OPERATOR_OR: {
                 // When one boolean input is true, the expression is true
-                if (ast.getRight() == null) {
-                    throw new Error("boolean operator missing right expression");
+                if (conditionNode.getLeft() == null || conditionNode.getRight() == null) {
+                    throw new Error("boolean operator missing left or right expression");
                 }
-                getIfVisitor().visit(
-                        mv,
-                        CompareTo.NONZERO, // when non-0 (true), jump to else
-                        ast.getLeft(),     // if-condition
-                        ast.getRight(),    // if-block: compute other half of OR operation
-                        PUSH_TRUE_NODE,    // else-block: short circuit
-                        context
-                );
-            } break;
-            case OPERATOR_NOT: {
-                /* When condition is true, return false.
-                 * When condition is false, return true.
-                 */
-                if (ast.getRight() != null) {
-                    throw new Error("boolean (unary) operator with unexpected right expression");
+                if (jumpWhen) {
+                    visitCondition(mv, conditionNode.getLeft(), true, label, context); // short circuit
+                    visitCondition(mv, conditionNode.getRight(), true, label, context);
+                } else {
+                    Label trueLabel = new Label();
+                    visitCondition(mv, conditionNode.getLeft(), true, trueLabel, context); // short circuit
+                    visitCondition(mv, conditionNode.getRight(), false, label, context);
+                    mv.visitLabel(trueLabel);
                 }
-                getIfVisitor().visit(
-                        mv,
-                        CompareTo.ZERO,  // when 0 (false), jump to else
-                        ast.getLeft(),   // if-condition
-                        PUSH_FALSE_NODE, // if-block: when condition is true then return false
-                        PUSH_TRUE_NODE,  // else-block: when condition is false then return true
-                        context
-                );
             } break;
-            case OPERATOR_EQUAL: {
-                /*
-                 * result = left - right
-                 * if (result == 0) return true
-                 * else return false
-                 */
-
-                /*
-                 * An equals boolean operator should be able to handle objects and primitives.
-                 * The operator should also be able to handle shallow and deep comparisons of types.
-                 * 
-                 * When the equals operator is visited, then we need to determine the expected operand type.
-                 * However, this requires use to visit the left and right expressions.
-                 * If the types are both objects, then we can compare the objects using `boolean Object::equals(Object)`.
-                 * Otherwise, we need to evaluate a new expression but the challenge is that the left and right AST has already been evaluated.
-                 * 
-                 * Solution: For now, we push the types back onto the stack and introduce a no-op which allows us to assume the values are already on the operand stack.
-                 * 
-                 * TODO: Should the IfVisitor be re-written to assume the expression is already compiled?
-                 */
-
-                if (ast.getRight() == null) {
-                    throw new Error("boolean operator missing right expression");
-                }
-
-                getExpressionVisitor().visit(mv, ast.getLeft(), context);
+            case OPERATOR_EQUAL:
+            case OPERATOR_LESS_THAN:
+            case OPERATOR_GREATER_THAN: {
+                OperandType rightType = visitOperands(mv, conditionNode, context);
                 OperandType leftType = context.pop();
-
-                getExpressionVisitor().visit(mv, ast.getRight(), context);
-                OperandType rightType = context.pop();
-
-                if (leftType == OperandType.OBJECT && rightType == OperandType.OBJECT) {
-                    // Deep comparison
-                    // invoke int Object::equals()
-                    mv.visitMethodInsn(
-                        Opcodes.INVOKEVIRTUAL,
-                        "java/lang/Object",
-                        "equals",
-                        "(Ljava/lang/Object;)Z",
-                        false
-                    );
-                    context.push(OperandType.INTEGER); // final type
-                } else {
-                    Node conditionNode = new Node(NodeType.OPERATOR_SUBTRACT).withLeft(Node.NOOP).withRight(Node.NOOP);
-                    context.push(rightType);
-                    context.push(leftType);
-                    getExpressionVisitor().visit(mv, conditionNode, context);
-                    getIfVisitor().visit(
-                        mv,
-                        CompareTo.NONZERO, // when non-0 (true), jump to else
-                        Node.NOOP, // use what is currently on the stack
-                        PUSH_TRUE_NODE,
-                        PUSH_FALSE_NODE,
-                        context
-                    );
-                }
+                visitComparison(mv, conditionNode, leftType, rightType, jumpWhen, label, context);
             } break;
-            case OPERATOR_LESS_THAN: {
-                /*
-                 * result = left - right
-                 * if (result < 0) return true
-                 * else return false
-                 */
-                if (ast.getRight() == null) {
-                    throw new Error("boolean operator missing right expression");
+            default: {
+                getRegistry().getExpressionVisitor().visit(mv, conditionNode, context);
+                OperandType conditionType = context.pop();
+                if (conditionType == OperandType.FLOAT || conditionType == OperandType.DOUBLE) {
+                    logger.warn("you may need to convert from a floating-point expression to integer-like");
+                    throw new Error("condition/expression cannot evaluate floating-point values");
                 }
-                getIfVisitor().visit(
-                        mv,
-                        CompareTo.GREATER_OR_EQUAL_THAN_ZERO, // when >= 0, jump to else
-                        new Node(NodeType.OPERATOR_SUBTRACT)
-                                .withLeft(ast.getLeft())
-                                .withRight(ast.getRight()),
-                        PUSH_TRUE_NODE,
-                        PUSH_FALSE_NODE,
-                        context
-                );
-            } break;
-            case OPERATOR_GREATER_THAN: {
-                /*
-                 * result = left - right
-                 * if (result > 0) return true
-                 * else return false
-                 */
-                if (ast.getRight() == null) {
-                    throw new Error("boolean operator missing right expression");
+                if (!OperandType.INTEGER_COMPUTATIONAL_TYPES.contains(conditionType)) {
+                    throw new Error("condition/expression expected to be integer-like");
                 }
-                getIfVisitor().visit(
-                        mv,
-                        CompareTo.LESS_OR_EQUAL_THAN_ZERO, // when <= 0, jump to else
-                        new Node(NodeType.OPERATOR_SUBTRACT)
-                                .withLeft(ast.getLeft())
-                                .withRight(ast.getRight()),
-                        PUSH_TRUE_NODE,
-                        PUSH_FALSE_NODE,
-                        context
-                );
+                // true is non-zero
+                mv.visitJumpInsn(jumpWhen ? Opcodes.IFNE : Opcodes.IFEQ, label);
             } break;
+        }
+    }
+
+    @NotNull
+    private OperandType visitOperands(
+        @NotNull MethodVisitor mv,
+        @NotNull INode ast,
+        @NotNull OperandStackContext context
+    ) {
+        // Push the left and right operands of a comparison, and pop the type of the right operand (the left type is next)
+        if (ast.getLeft() == null) {
+            throw new Error("boolean operator missing left expression");
+        }
+        if (ast.getRight() == null) {
+            throw new Error("boolean operator missing right expression");
+        }
+        getRegistry().getExpressionVisitor().visit(mv, ast.getLeft(), context);
+        getRegistry().getExpressionVisitor().visit(mv, ast.getRight(), context);
+        return context.pop();
+    }
+
+    private void visitComparison(
+        @NotNull MethodVisitor mv,
+        @NotNull INode ast,
+        @NotNull OperandType leftType,
+        @NotNull OperandType rightType,
+        boolean jumpWhen,
+        @NotNull Label label,
+        @NotNull OperandStackContext context
+    ) {
+        // Compare the operands that are on the operand stack, and jump to the label when the comparison is jumpWhen
+        if (leftType == OperandType.OBJECT && rightType == OperandType.OBJECT) {
+            if (ast.getType() != NodeType.OPERATOR_EQUAL) {
+                throw new Error("objects can only be compared with equals " + ast);
+            }
+            // Deep comparison
+            visitEquals(mv);
+            mv.visitJumpInsn(jumpWhen ? Opcodes.IFNE : Opcodes.IFEQ, label);
+            return;
+        }
+
+        if ((leftType == OperandType.OBJECT && !OperandType.INTEGER_COMPUTATIONAL_TYPES.contains(rightType))
+            || (rightType == OperandType.OBJECT && !OperandType.INTEGER_COMPUTATIONAL_TYPES.contains(leftType))) {
+            throw new Error("boolean operator left or right expression requires type cast " + ast);
+        }
+
+        // Convert the operands like a numeric operator (eg. shallow comparison of an object is of its int Object::hashCode())
+        context.push(leftType);
+        context.push(rightType);
+        OperandType operandType = getRegistry().getNumericOperatorVisitor().visitConvertOperands(mv, ast, context);
+        context.pop(); // the comparison consumes both operands
+
+        /* A floating-point comparison is false when an operand is NaN,
+         * FCMPG pushes 1 for NaN, so that (lessThan a b) is not less than 0,
+         * and FCMPL pushes -1 for NaN, so that (greaterThan a b) and (equals a b) are not greater than or equal to 0.
+         */
+        int compareOpcode;
+        switch (operandType) {
+            case LONG: compareOpcode = Opcodes.LCMP; break;
+            case FLOAT: compareOpcode = ast.getType() == NodeType.OPERATOR_LESS_THAN ? Opcodes.FCMPG : Opcodes.FCMPL; break;
+            case DOUBLE: compareOpcode = ast.getType() == NodeType.OPERATOR_LESS_THAN ? Opcodes.DCMPG : Opcodes.DCMPL; break;
             default: {
-                throw new Error("boolean operator expected");
+                if (!OperandType.INTEGER_COMPUTATIONAL_TYPES.contains(operandType)) {
+                    throw new Error("boolean operator cannot compare " + operandType + " operands " + ast);
+                }
+                // The integer operands are compared by the jump
+                mv.visitJumpInsn(getIntegerCompareOpcode(ast.getType(), jumpWhen), label);
+                return;
             }
         }
+        mv.visitInsn(compareOpcode);
+        mv.visitJumpInsn(getCompareOpcode(ast.getType(), jumpWhen), label);
+    }
+
+    private static void visitEquals(@NotNull MethodVisitor mv) {
+        // invoke int Object::equals()
+        mv.visitMethodInsn(
+            Opcodes.INVOKEVIRTUAL,
+            "java/lang/Object",
+            "equals",
+            "(Ljava/lang/Object;)Z",
+            false
+        );
+    }
+
+    private static int getIntegerCompareOpcode(@NotNull NodeType type, boolean jumpWhen) {
+        switch (type) {
+            case OPERATOR_EQUAL: return jumpWhen ? Opcodes.IF_ICMPEQ : Opcodes.IF_ICMPNE;
+            case OPERATOR_LESS_THAN: return jumpWhen ? Opcodes.IF_ICMPLT : Opcodes.IF_ICMPGE;
+            case OPERATOR_GREATER_THAN: return jumpWhen ? Opcodes.IF_ICMPGT : Opcodes.IF_ICMPLE;
+            default: throw new Error("comparison expected " + type);
+        }
+    }
+
+    private static int getCompareOpcode(@NotNull NodeType type, boolean jumpWhen) {
+        // Jump on the result of LCMP, FCMPx or DCMPx (-1, 0 or 1)
+        switch (type) {
+            case OPERATOR_EQUAL: return jumpWhen ? Opcodes.IFEQ : Opcodes.IFNE;
+            case OPERATOR_LESS_THAN: return jumpWhen ? Opcodes.IFLT : Opcodes.IFGE;
+            case OPERATOR_GREATER_THAN: return jumpWhen ? Opcodes.IFGT : Opcodes.IFLE;
+            default: throw new Error("comparison expected " + type);
+        }
     }
 }
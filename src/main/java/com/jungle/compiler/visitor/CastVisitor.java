@@ -3,7 +3,6 @@ package com.jungle.compiler.visitor;
 import com.jungle.ast.INode;
 import com.jungle.ast.NodeType;
 import com.jungle.common.MapBuilder;
-import com.jungle.compiler.ICompilerOptions;
 import com.jungle.compiler.operand.OperandStackContext;
 import com.jungle.compiler.operand.OperandType;
 import com.jungle.logger.FileLogger;
@@ -11,7 +10,6 @@ import com.jungle.logger.FileLogger;
 import java.util.Map;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.MethodVisitor;
 
 public class CastVisitor extends AbstractVisitor {
@@ -28,19 +26,8 @@ public class CastVisitor extends AbstractVisitor {
         .withEntry(NodeType.CAST_DOUBLE, OperandType.DOUBLE)
         .build();
 
-    @Nullable
-    private ExpressionVisitor expressionVisitor;
-
-    @NotNull
-    private ExpressionVisitor getExpressionVisitor() {
-        if (expressionVisitor == null) {
-            expressionVisitor = new ExpressionVisitor(getCompilerOptions());
-        }
-        return expressionVisitor;
-    }
-
-    public CastVisitor(@NotNull ICompilerOptions options) {
-        super(options);
+    public CastVisitor(@NotNull VisitorRegistry registry) {
+        super(registry);
     }
 
     @Override
@@ -64,7 +51,16 @@ public class CastVisitor extends AbstractVisitor {
             throw new Error("cast missing expression");
         }
 
-        getExpressionVisitor().visit(mv, ast.getLeft(), context);
+        getRegistry().getExpressionVisitor().visit(mv, ast.getLeft(), context);
+        visitConvert(mv, ast, context);
+    }
+
+    public void visitConvert(
+        @NotNull MethodVisitor mv,
+        @NotNull INode ast,
+        @NotNull OperandStackContext context
+    ) {
+        // Emit the conversion, when the expression is already on the operand stack (see ExpressionVisitor)
         OperandType fromType = context.pop();
         OperandType toType = NODE_TYPE_TO_OPERAND_TYPE_MAP.get(ast.getType());
 
@@ -2,74 +2,21 @@ package com.jungle.compiler.visitor;
 
 import com.jungle.ast.INode;
 import com.jungle.ast.NodeType;
-import com.jungle.compiler.ICompilerOptions;
 import com.jungle.compiler.operand.OperandStackContext;
 import com.jungle.logger.FileLogger;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.MethodVisitor;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 public class ExpressionVisitor extends AbstractVisitor {
     @NotNull
     private static final FileLogger logger = new FileLogger(ExpressionVisitor.class.getName());
 
-    @Nullable
-    private IdentifierVisitor identifierVisitor;
-
-    @NotNull
-    private IdentifierVisitor getIdentifierVisitor() {
-        if (identifierVisitor == null) {
-            identifierVisitor = new IdentifierVisitor();
-        }
-        return identifierVisitor;
-    }
-
-    @Nullable
-    private LiteralVisitor literalVisitor;
-
-    @NotNull
-    private LiteralVisitor getLiteralVisitor() {
-        if (literalVisitor == null) {
-            literalVisitor = new LiteralVisitor();
-        }
-        return literalVisitor;
-    }
-
-    @Nullable
-    private NumericOperatorVisitor numericOperatorVisitor;
-
-    @NotNull
-    private NumericOperatorVisitor getNumericOperatorVisitor() {
-        if (numericOperatorVisitor == null) {
-            numericOperatorVisitor = new NumericOperatorVisitor(getCompilerOptions());
-        }
-        return numericOperatorVisitor;
-    }
-
-    @Nullable
-    private CastVisitor castVisitor;
-
-    @NotNull
-    private CastVisitor getCastVisitor() {
-        if (castVisitor == null) {
-            castVisitor = new CastVisitor(getCompilerOptions());
-        }
-        return castVisitor;
-    }
-
-    @Nullable BooleanOperatorVisitor booleanOperatorVisitor;
-
-    @NotNull
-    private BooleanOperatorVisitor getBooleanOperatorVisitor() {
-        if (booleanOperatorVisitor == null) {
-            booleanOperatorVisitor = new BooleanOperatorVisitor(getCompilerOptions());
-        }
-        return booleanOperatorVisitor;
-    }
-
-    public ExpressionVisitor(@NotNull ICompilerOptions options) {
-        super(options);
+    public ExpressionVisitor(@NotNull VisitorRegistry registry) {
+        super(registry);
     }
 
     @Override
@@ -89,36 +36,86 @@ public class ExpressionVisitor extends AbstractVisitor {
             throw new Error("expected expression");
         }
 
-        if (ast.getType() == NodeType.NOOP) {
-            logger.debug("no-op");
-            return;
-        }
-
-        if (getIdentifierVisitor().canVisit(ast)) {
-            getIdentifierVisitor().visit(mv, ast, context);
-            return;
-        }
-
-        if (getLiteralVisitor().canVisit(ast)) {
-            getLiteralVisitor().visit(mv, ast, context);
-            return;
+        /* Numeric operators and casts are visited in post-order with an explicit work stack instead of recursion,
+         * so that the depth of an expression is not limited by the call stack.
+         * An operator is visited twice: first to push its operands, and then to emit its operation
+         * when its operands have been emitted (see NumericOperatorVisitor::visitOperator and CastVisitor::visitConvert).
+         */
+        Deque<ExpressionFrame> frameStack = new ArrayDeque<>();
+        frameStack.push(new ExpressionFrame(ast));
+        while (!frameStack.isEmpty()) {
+            ExpressionFrame frame = frameStack.pop();
+            INode node = frame.node;
+            switch (node.getType()) {
+                case NOOP:
+                    logger.debug("no-op");
+                    break;
+                case IDENTIFIER:
+                    getRegistry().getIdentifierVisitor().visit(mv, node, context);
+                    break;
+                case LITERAL_BOOLEAN:
+                case LITERAL_CHARACTER:
+                case LITERAL_INTEGER:
+                case LITERAL_FLOAT:
+                case LITERAL_STRING:
+                    getRegistry().getLiteralVisitor().visit(mv, node, context);
+                    break;
+                case OPERATOR_ADD:
+                case OPERATOR_SUBTRACT:
+                case OPERATOR_MULTIPLY:
+                case OPERATOR_DIVIDE:
+                case OPERATOR_MODULO:
+                    if (frame.hasVisitedOperands) {
+                        getRegistry().getNumericOperatorVisitor().visitOperator(mv, node, context);
+                        break;
+                    }
+                    if (node.getLeft() == null) {
+                        throw new Error("binary operator missing left expression");
+                    }
+                    if (node.getRight() == null) {
+                        throw new Error("binary operator missing right expression");
+                    }
+                    frame.hasVisitedOperands = true;
+                    frameStack.push(frame);
+                    frameStack.push(new ExpressionFrame(node.getRight()));
+                    frameStack.push(new ExpressionFrame(node.getLeft()));
+                    break;
+                case CAST_CHAR:
+                case CAST_BYTE:
+                case CAST_SHORT:
+                case CAST_INTEGER:
+                case CAST_LONG:
+                case CAST_FLOAT:
+                case CAST_DOUBLE:
+                    if (frame.hasVisitedOperands) {
+                        getRegistry().getCastVisitor().visitConvert(mv, node, context);
+                        break;
+                    }
+                    if (node.getLeft() == null) {
+                        throw new Error("cast missing expression");
+                    }
+                    frame.hasVisitedOperands = true;
+                    frameStack.push(frame);
+                    frameStack.push(new ExpressionFrame(node.getLeft()));
+                    break;
+                default:
+                    if (getRegistry().getBooleanOperatorVisitor().canVisit(node)) {
+                        getRegistry().getBooleanOperatorVisitor().visit(mv, node, context);
+                        break;
+                    }
+                    throw new Error("expected expression " + node);
+            }
         }
+    }
 
-        if (getNumericOperatorVisitor().canVisit(ast)) {
-            getNumericOperatorVisitor().visit(mv, ast, context);
-            return;
-        }
+    private static class ExpressionFrame {
+        @NotNull
+        private final INode node;
 
-        if (getCastVisitor().canVisit(ast)) {
-            getCastVisitor().visit(mv, ast, context);
-            return;
-        }
+        private boolean hasVisitedOperands;
 
-        if (getBooleanOperatorVisitor().canVisit(ast)) {
-            getBooleanOperatorVisitor().visit(mv, ast, context);
-            return;
+        ExpressionFrame(@NotNull INode node) {
+            this.node = node;
         }
-
-        throw new Error("expected expression " + ast);
     }
 }
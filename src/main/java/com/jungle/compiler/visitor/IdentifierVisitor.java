@@ -2,6 +2,7 @@ package com.jungle.compiler.visitor;
 
 import com.jungle.ast.INode;
 import com.jungle.ast.NodeType;
+import com.jungle.common.SymbolInterner;
 import com.jungle.compiler.operand.OperandStackContext;
 import com.jungle.logger.FileLogger;
 
@@ -33,11 +34,11 @@ public class IdentifierVisitor implements IVisitor {
             throw new Error("expected identifier");
         }
 
-        String variableName = ast.getRawValue();
-        if (variableName == null) {
+        int symbolId = ast.getSymbolId();
+        if (symbolId == SymbolInterner.NO_SYMBOL) {
             throw new Error("identifier missing name");
         }
 
-        context.visitLoad(mv, variableName);
+        context.visitLoad(mv, symbolId);
     }
 }
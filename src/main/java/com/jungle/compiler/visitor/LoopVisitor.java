@@ -2,45 +2,19 @@ package com.jungle.compiler.visitor;
 
 import com.jungle.ast.INode;
 import com.jungle.ast.NodeType;
-import com.jungle.compiler.ICompilerOptions;
 import com.jungle.compiler.operand.OperandStackContext;
-import com.jungle.compiler.operand.OperandType;
 import com.jungle.logger.FileLogger;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.Opcodes;
 
 public class LoopVisitor extends AbstractVisitor {
     @NotNull
     private static final FileLogger logger = new FileLogger(LoopVisitor.class.getName());
 
-    @Nullable
-    private ExpressionVisitor expressionVisitor;
-
-    @NotNull
-    private ExpressionVisitor getExpressionVisitor() {
-        if (expressionVisitor == null) {
-            expressionVisitor = new ExpressionVisitor(getCompilerOptions());
-        }
-        return expressionVisitor;
-    }
-
-    @Nullable
-    private BlockVisitor blockVisitor;
-
-    @NotNull
-    private BlockVisitor getBlockVisitor() {
-        if (blockVisitor == null) {
-            blockVisitor = new BlockVisitor(getCompilerOptions());
-        }
-        return blockVisitor;
-    }
-
-    public LoopVisitor(@NotNull final ICompilerOptions options) {
-        super(options);
+    public LoopVisitor(@NotNull VisitorRegistry registry) {
+        super(registry);
     }
 
     @Override
@@ -54,11 +28,13 @@ public class LoopVisitor extends AbstractVisitor {
         @NotNull INode ast,
         @NotNull OperandStackContext context
     ) {
-        /*
-         loop: IFEQ #end
-               "block"
-               GOTO #loop
-         end:  ...
+        /* Rotated loop, the condition is tested once before the loop, and then at the bottom of each iteration,
+         * so that an iteration is a single conditional jump backward
+         *
+         *        IF_ICMPGE #end
+         * loop:  "block"
+         *        IF_ICMPLT #loop
+         * end:   ...
          */
         logger.debug("visit loop " + ast);
 
@@ -77,17 +53,15 @@ public class LoopVisitor extends AbstractVisitor {
         Label loopLabel = new Label();
         Label endLabel = new Label();
 
-        // loop-condition
-        mv.visitLabel(loopLabel);
-        getExpressionVisitor().visit(mv, ast.getLeft(), context);
-        if (!OperandType.INTEGER_COMPUTATIONAL_TYPES.contains(context.peek())) {
-            throw new Error("loop condition/expression expected to be type integer");
-        }
-        mv.visitJumpInsn(Opcodes.IFEQ, endLabel);
+        // loop-condition, jump to the end when false (see BooleanOperatorVisitor::visitCondition)
+        getRegistry().getBooleanOperatorVisitor().visitCondition(mv, ast.getLeft(), false, endLabel, context);
 
         // loop-block
-        getBlockVisitor().visit(mv, ast.getRight(), context);
-        mv.visitJumpInsn(Opcodes.GOTO, loopLabel);
+        mv.visitLabel(loopLabel);
+        getRegistry().getBlockVisitor().visit(mv, ast.getRight(), context);
+
+        // loop-condition, jump back to the loop when true
+        getRegistry().getBooleanOperatorVisitor().visitCondition(mv, ast.getLeft(), true, loopLabel, context);
 
         // end
         mv.visitLabel(endLabel);
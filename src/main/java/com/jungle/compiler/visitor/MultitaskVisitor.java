@@ -4,14 +4,12 @@ import com.jungle.ast.INode;
 import com.jungle.ast.NodeType;
 import com.jungle.common.ClassLoader;
 import com.jungle.compiler.Compiler;
-import com.jungle.compiler.ICompilerOptions;
 import com.jungle.compiler.operand.OperandStackContext;
 import com.jungle.logger.FileLogger;
 
 import java.net.MalformedURLException;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
@@ -19,16 +17,6 @@ public class MultitaskVisitor extends AbstractVisitor {
     @NotNull
     private static final FileLogger logger = new FileLogger(MultitaskVisitor.class.getSimpleName());
 
-    @Nullable
-    private MainVisitor mainVisitor;
-
-    private MainVisitor getMainVisitor() {
-        if (mainVisitor == null) {
-            mainVisitor = new MainVisitor(getCompilerOptions());
-        }
-        return mainVisitor;
-    }
-
     protected static boolean hasInterface(@NotNull Class<?> clazz, @NotNull String interfaceName) {
         for (Class<?> clazzInterface : clazz.getInterfaces()) {
             if (interfaceName.equals(clazzInterface.getName())) {
@@ -43,8 +31,8 @@ public class MultitaskVisitor extends AbstractVisitor {
         return true; // TODO
     }
 
-    public MultitaskVisitor(@NotNull final ICompilerOptions options) {
-        super(options);
+    public MultitaskVisitor(@NotNull VisitorRegistry registry) {
+        super(registry);
     }
 
     @Override
@@ -71,7 +59,7 @@ public class MultitaskVisitor extends AbstractVisitor {
             logger.debug(String.format("compile inline multitask class - %s", className));
             Compiler compiler = new Compiler(getCompilerOptions());
             logger.info("inline code - " + ast.getRight());
-            compiler.compileRunnable(className, getMainVisitor(), ast.getRight());
+            compiler.compileRunnable(className, getRegistry().getMainVisitor(), ast.getRight());
         }
         boolean hasClassStringLiteral = NodeType.LITERAL_STRING.equals(ast.getLeft().getType());
         if (!hasClassStringLiteral) {
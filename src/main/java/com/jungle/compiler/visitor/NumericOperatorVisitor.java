@@ -2,13 +2,11 @@ package com.jungle.compiler.visitor;
 
 import com.jungle.ast.INode;
 import com.jungle.ast.NodeType;
-import com.jungle.compiler.ICompilerOptions;
 import com.jungle.compiler.operand.OperandStackContext;
 import com.jungle.compiler.operand.OperandType;
 import com.jungle.logger.FileLogger;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
@@ -30,19 +28,8 @@ public class NumericOperatorVisitor extends AbstractVisitor {
             OPERATOR_MODULO
     ));
 
-    @Nullable
-    private ExpressionVisitor expressionVisitor;
-
-    @NotNull
-    public ExpressionVisitor getExpressionVisitor() {
-        if (expressionVisitor == null) {
-            expressionVisitor = new ExpressionVisitor(getCompilerOptions());
-        }
-        return expressionVisitor;
-    }
-
-    public NumericOperatorVisitor(@NotNull ICompilerOptions options) {
-        super(options);
+    public NumericOperatorVisitor(@NotNull VisitorRegistry registry) {
+        super(registry);
     }
 
     @Override
@@ -99,11 +86,42 @@ public class NumericOperatorVisitor extends AbstractVisitor {
 
         // prepare for operation...
 
-        getExpressionVisitor().visit(mv, ast.getLeft(), context);
-        OperandType leftExpressionType = context.pop();
+        getRegistry().getExpressionVisitor().visit(mv, ast.getLeft(), context);
+        getRegistry().getExpressionVisitor().visit(mv, ast.getRight(), context);
+
+        visitOperator(mv, ast, context);
+    }
+
+    public void visitOperator(
+        @NotNull MethodVisitor mv,
+        @NotNull INode ast,
+        @NotNull OperandStackContext context
+    ) {
+        // Emit the operation, when the left and right expressions are already on the operand stack (see ExpressionVisitor)
+        OperandType operandType = visitConvertOperands(mv, ast, context);
+
+        // perform operation...
+
+        switch (ast.getType()) {
+            case OPERATOR_ADD: mv.visitInsn(operandType.getAddOpcode()); break;
+            case OPERATOR_SUBTRACT: mv.visitInsn(operandType.getSubtractOpcode()); break; // order matters
+            case OPERATOR_MULTIPLY: mv.visitInsn(operandType.getMultiplyOpcode()); break;
+            case OPERATOR_DIVIDE: mv.visitInsn(operandType.getDivideOpcode()); break; // order matters
+            case OPERATOR_MODULO: mv.visitInsn(operandType.getModuloOpcode()); break; // order matters
+            default: throw new Error("unhandled operation " + ast);
+        }
+    }
 
-        getExpressionVisitor().visit(mv, ast.getRight(), context);
+    @NotNull
+    public OperandType visitConvertOperands(
+        @NotNull MethodVisitor mv,
+        @NotNull INode ast,
+        @NotNull OperandStackContext context
+    ) {
+        // Convert the left and right operands on the operand stack to the same computation type, which is returned,
+        // and push the type of the result (see BooleanOperatorVisitor, which compares the operands instead)
         OperandType rightExpressionType = context.pop();
+        OperandType leftExpressionType = context.pop();
 
         logger.debug("left is " + ast.getLeft());
         logger.debug("right is " + ast.getRight());
@@ -142,16 +160,6 @@ public class NumericOperatorVisitor extends AbstractVisitor {
         } else {
             throw new Error("binary operator left or right expression requires type cast " + ast);
         }
-
-        // perform operation...
-
-        switch (ast.getType()) {
-            case OPERATOR_ADD: mv.visitInsn(operandType.getAddOpcode()); break;
-            case OPERATOR_SUBTRACT: mv.visitInsn(operandType.getSubtractOpcode()); break; // order matters
-            case OPERATOR_MULTIPLY: mv.visitInsn(operandType.getMultiplyOpcode()); break;
-            case OPERATOR_DIVIDE: mv.visitInsn(operandType.getDivideOpcode()); break; // order matters
-            case OPERATOR_MODULO: mv.visitInsn(operandType.getModuloOpcode()); break; // order matters
-            default: throw new Error("unhandled operation " + ast);
-        }
+        return operandType;
     }
 }
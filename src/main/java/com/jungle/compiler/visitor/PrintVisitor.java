@@ -2,13 +2,11 @@ package com.jungle.compiler.visitor;
 
 import com.jungle.ast.INode;
 import com.jungle.ast.NodeType;
-import com.jungle.compiler.ICompilerOptions;
 import com.jungle.compiler.operand.OperandStackContext;
 import com.jungle.compiler.operand.OperandType;
 import com.jungle.logger.FileLogger;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.MethodVisitor;
 
 import static org.objectweb.asm.Opcodes.*;
@@ -17,19 +15,8 @@ public class PrintVisitor extends AbstractVisitor {
     @NotNull
     private static final FileLogger logger = new FileLogger(NumericOperatorVisitor.class.getName());
 
-    @Nullable
-    private ExpressionVisitor expressionVisitor;
-
-    @NotNull
-    private ExpressionVisitor getExpressionVisitor() {
-        if (expressionVisitor == null) {
-            expressionVisitor = new ExpressionVisitor(getCompilerOptions());
-        }
-        return expressionVisitor;
-    }
-
-    public PrintVisitor(@NotNull ICompilerOptions options) {
-        super(options);
+    public PrintVisitor(@NotNull VisitorRegistry registry) {
+        super(registry);
     }
 
     @Override
@@ -53,7 +40,7 @@ public class PrintVisitor extends AbstractVisitor {
             throw new Error("print missing expression");
         }
 
-        getExpressionVisitor().visit(mv, ast.getLeft(), context);
+        getRegistry().getExpressionVisitor().visit(mv, ast.getLeft(), context);
         visitPrint(mv, context);
     }
 
@@ -65,7 +52,7 @@ public class PrintVisitor extends AbstractVisitor {
         OperandType operandType = context.pop();
         String descriptor;
         switch (operandType) {
-            case BOOLEAN: descriptor = "(B)V"; break;
+            case BOOLEAN: descriptor = "(Z)V"; break;
             case CHAR: descriptor = "(C)V"; break;
             case INTEGER: descriptor = "(I)V"; break;
             case FLOAT: descriptor = "(F)V"; break;
@@ -2,30 +2,22 @@ package com.jungle.compiler.visitor;
 
 import com.jungle.ast.INode;
 import com.jungle.ast.NodeType;
-import com.jungle.compiler.ICompilerOptions;
 import com.jungle.compiler.operand.OperandStackContext;
 import com.jungle.logger.FileLogger;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.MethodVisitor;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
 public class SequenceVisitor extends AbstractVisitor {
     @NotNull
     private static final FileLogger logger = new FileLogger(SequenceVisitor.class.getSimpleName());
 
-    @Nullable
-    private MainVisitor mainVisitor;
-
-    private MainVisitor getMainVisitor() {
-        if (mainVisitor == null) {
-            mainVisitor = new MainVisitor(getCompilerOptions());
-        }
-        return mainVisitor;
-    }
-
-    public SequenceVisitor(@NotNull ICompilerOptions options) {
-        super(options);
+    public SequenceVisitor(@NotNull VisitorRegistry registry) {
+        super(registry);
     }
 
     @Override
@@ -45,12 +37,31 @@ public class SequenceVisitor extends AbstractVisitor {
             throw new Error("expected sequence");
         }
 
-        if (ast.getLeft() != null) {
-            getMainVisitor().visit(mv, ast.getLeft(), context);
-        }
-
-        if (ast.getRight() != null) {
-            getMainVisitor().visit(mv, ast.getRight(), context);
+        // Nested sequences (eg. a binary sequence chain loaded from a saved AST) are walked with a stack instead of recursion,
+        // and every other statement is visited in order.
+        Deque<INode> nodeStack = new ArrayDeque<>();
+        nodeStack.push(ast);
+        while (!nodeStack.isEmpty()) {
+            INode node = nodeStack.pop();
+            if (!canVisit(node)) {
+                getRegistry().getMainVisitor().visit(mv, node, context);
+                continue;
+            }
+            List<INode> statements = node.getStatements();
+            if (statements != null) {
+                for (int i = statements.size() - 1; i >= 0; i--) {
+                    if (statements.get(i) != null) {
+                        nodeStack.push(statements.get(i));
+                    }
+                }
+                continue;
+            }
+            if (node.getRight() != null) {
+                nodeStack.push(node.getRight());
+            }
+            if (node.getLeft() != null) {
+                nodeStack.push(node.getLeft());
+            }
         }
     }
 }
@@ -4,30 +4,17 @@ import static org.objectweb.asm.Opcodes.I2L;
 import static org.objectweb.asm.Opcodes.INVOKESTATIC;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.MethodVisitor;
 
 import com.jungle.ast.INode;
 import com.jungle.ast.NodeType;
-import com.jungle.compiler.ICompilerOptions;
 import com.jungle.compiler.operand.OperandStackContext;
 import com.jungle.compiler.operand.OperandType;
 
 public class SleepVisitor extends AbstractVisitor {
 
-    @Nullable
-    private ExpressionVisitor expressionVisitor;
-
-    @NotNull
-    private ExpressionVisitor getExpressionVisitor() {
-        if (expressionVisitor == null) {
-            expressionVisitor = new ExpressionVisitor(getCompilerOptions());
-        }
-        return expressionVisitor;
-    }
-
-    public SleepVisitor(@NotNull ICompilerOptions options) {
-        super(options);
+    public SleepVisitor(@NotNull VisitorRegistry registry) {
+        super(registry);
     }
 
     @Override
@@ -44,7 +31,7 @@ public class SleepVisitor extends AbstractVisitor {
         }
 
         // push expression onto operand stack
-        getExpressionVisitor().visit(mv, ast.getLeft(), context);
+        getRegistry().getExpressionVisitor().visit(mv, ast.getLeft(), context);
 
         // verify that the expression was an integer type
         if (context.peek() != OperandType.INTEGER) {
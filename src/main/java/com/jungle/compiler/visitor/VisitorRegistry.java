@@ -0,0 +1,213 @@
+package com.jungle.compiler.visitor;
+
+import com.jungle.ast.Node;
+import com.jungle.ast.NodeType;
+import com.jungle.compiler.ICompilerOptions;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+
+public class VisitorRegistry {
+    /* One instance of every visitor for a compile, shared by the visitors instead of each
+     * visitor creating its own children (and every block its own main visitor).
+     * Statements are dispatched by node type through a table built once from canVisit.
+     */
+
+    @NotNull
+    private final ICompilerOptions options;
+
+    @NotNull
+    public ICompilerOptions getCompilerOptions() {
+        return options;
+    }
+
+    // region Visitors
+
+    @NotNull
+    private final MainVisitor mainVisitor;
+
+    @NotNull
+    public MainVisitor getMainVisitor() {
+        return mainVisitor;
+    }
+
+    @NotNull
+    private final SequenceVisitor sequenceVisitor;
+
+    @NotNull
+    public SequenceVisitor getSequenceVisitor() {
+        return sequenceVisitor;
+    }
+
+    @NotNull
+    private final BlockVisitor blockVisitor;
+
+    @NotNull
+    public BlockVisitor getBlockVisitor() {
+        return blockVisitor;
+    }
+
+    @NotNull
+    private final LiteralVisitor literalVisitor;
+
+    @NotNull
+    public LiteralVisitor getLiteralVisitor() {
+        return literalVisitor;
+    }
+
+    @NotNull
+    private final IdentifierVisitor identifierVisitor;
+
+    @NotNull
+    public IdentifierVisitor getIdentifierVisitor() {
+        return identifierVisitor;
+    }
+
+    @NotNull
+    private final AssignmentVisitor assignmentVisitor;
+
+    @NotNull
+    public AssignmentVisitor getAssignmentVisitor() {
+        return assignmentVisitor;
+    }
+
+    @NotNull
+    private final AssertVisitor assertVisitor;
+
+    @NotNull
+    public AssertVisitor getAssertVisitor() {
+        return assertVisitor;
+    }
+
+    @NotNull
+    private final PrintVisitor printVisitor;
+
+    @NotNull
+    public PrintVisitor getPrintVisitor() {
+        return printVisitor;
+    }
+
+    @NotNull
+    private final IfVisitor ifVisitor;
+
+    @NotNull
+    public IfVisitor getIfVisitor() {
+        return ifVisitor;
+    }
+
+    @NotNull
+    private final LoopVisitor loopVisitor;
+
+    @NotNull
+    public LoopVisitor getLoopVisitor() {
+        return loopVisitor;
+    }
+
+    @NotNull
+    private final MultitaskVisitor multitaskVisitor;
+
+    @NotNull
+    public MultitaskVisitor getMultitaskVisitor() {
+        return multitaskVisitor;
+    }
+
+    @NotNull
+    private final SleepVisitor sleepVisitor;
+
+    @NotNull
+    public SleepVisitor getSleepVisitor() {
+        return sleepVisitor;
+    }
+
+    @NotNull
+    private final CastVisitor castVisitor;
+
+    @NotNull
+    public CastVisitor getCastVisitor() {
+        return castVisitor;
+    }
+
+    @NotNull
+    private final ExpressionVisitor expressionVisitor;
+
+    @NotNull
+    public ExpressionVisitor getExpressionVisitor() {
+        return expressionVisitor;
+    }
+
+    @NotNull
+    private final NumericOperatorVisitor numericOperatorVisitor;
+
+    @NotNull
+    public NumericOperatorVisitor getNumericOperatorVisitor() {
+        return numericOperatorVisitor;
+    }
+
+    @NotNull
+    private final BooleanOperatorVisitor booleanOperatorVisitor;
+
+    @NotNull
+    public BooleanOperatorVisitor getBooleanOperatorVisitor() {
+        return booleanOperatorVisitor;
+    }
+
+    // endregion
+
+    @NotNull
+    private final EnumMap<NodeType, IVisitor> statementVisitors = new EnumMap<>(NodeType.class);
+
+    public VisitorRegistry(@NotNull ICompilerOptions options) {
+        super();
+        this.options = options;
+        // The visitors only use the registry while visiting, after it is complete
+        mainVisitor = new MainVisitor(this);
+        sequenceVisitor = new SequenceVisitor(this);
+        blockVisitor = new BlockVisitor(this);
+        literalVisitor = new LiteralVisitor();
+        identifierVisitor = new IdentifierVisitor();
+        assignmentVisitor = new AssignmentVisitor(this);
+        assertVisitor = new AssertVisitor(this);
+        printVisitor = new PrintVisitor(this);
+        ifVisitor = new IfVisitor(this);
+        loopVisitor = new LoopVisitor(this);
+        multitaskVisitor = new MultitaskVisitor(this);
+        sleepVisitor = new SleepVisitor(this);
+        castVisitor = new CastVisitor(this);
+        expressionVisitor = new ExpressionVisitor(this);
+        numericOperatorVisitor = new NumericOperatorVisitor(this);
+        booleanOperatorVisitor = new BooleanOperatorVisitor(this);
+
+        // The first visitor (in this order) that can visit a node type visits its statements
+        List<IVisitor> visitors = Arrays.asList(
+            sequenceVisitor,
+            blockVisitor,
+            literalVisitor,
+            assignmentVisitor,
+            assertVisitor,
+            printVisitor,
+            ifVisitor,
+            loopVisitor,
+            multitaskVisitor,
+            sleepVisitor,
+            castVisitor
+        );
+        for (NodeType type : NodeType.values()) {
+            Node node = new Node(type);
+            for (IVisitor visitor : visitors) {
+                if (visitor.canVisit(node)) {
+                    statementVisitors.put(type, visitor);
+                    break;
+                }
+            }
+        }
+    }
+
+    @Nullable
+    public IVisitor getStatementVisitor(@NotNull NodeType type) {
+        return statementVisitors.get(type);
+    }
+}
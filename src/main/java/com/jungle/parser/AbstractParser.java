@@ -4,7 +4,10 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import com.jungle.ast.INode;
+import com.jungle.ast.INodeFactory;
+import com.jungle.common.SymbolInterner;
 import com.jungle.token.IToken;
+import com.jungle.token.Keyword;
 import com.jungle.token.TokenType;
 
 import java.util.Iterator;
@@ -17,6 +20,13 @@ public abstract class AbstractParser implements IParser {
   @Nullable
   private IToken token;
 
+  // Folded whitespace before the current token acts like whitespace tokens, until consumed by consumeWhitespace
+  private boolean isLeadingTriviaConsumed;
+
+  // The interner of the symbol ids of the tokens, and of the identifiers of the AST
+  @NotNull
+  private SymbolInterner symbolInterner = new SymbolInterner();
+
   public AbstractParser(@NotNull Iterator<IToken> tokenIterator) {
     super();
     this.tokenIterator = tokenIterator;
@@ -30,12 +40,22 @@ public abstract class AbstractParser implements IParser {
   @Nullable
   public abstract INode parse();
 
+  @NotNull
+  public SymbolInterner getSymbolInterner() {
+    return symbolInterner;
+  }
+
+  protected void setSymbolInterner(@NotNull SymbolInterner symbolInterner) {
+    this.symbolInterner = symbolInterner;
+  }
+
   @Nullable
   protected IToken getCurrentToken() {
     return token;
   }
 
   protected void nextToken() {
+    isLeadingTriviaConsumed = false;
     if (tokenIterator.hasNext()) {
       token = tokenIterator.next();
     } else {
@@ -44,6 +64,7 @@ public abstract class AbstractParser implements IParser {
   }
 
   protected void consumeWhitespace() {
+    isLeadingTriviaConsumed = true;
     while (true) {
       if (getCurrentToken() == null) break;
       if (accepts(TokenType.TERMINAL)) break;
@@ -55,6 +76,17 @@ public abstract class AbstractParser implements IParser {
     }
   }
 
+  protected boolean hasLeadingTrivia() {
+    // Whether whitespace before the current token was folded into it (see Scanner::withTriviaFolded), and not consumed yet
+    return !isLeadingTriviaConsumed
+            && getCurrentToken() != null
+            && getCurrentToken().getLeadingTrivia() != 0;
+  }
+
+  protected boolean hasLeadingSpace() {
+    return hasLeadingTrivia() && (getCurrentToken().getLeadingTrivia() & IToken.TRIVIA_SPACE) != 0;
+  }
+
   private boolean accept(@NotNull TokenType tokenType) {
     return getCurrentToken() != null && tokenType.equals(getCurrentToken().getType());
   }
@@ -68,6 +100,34 @@ public abstract class AbstractParser implements IParser {
     return false;
   }
 
+  @Nullable
+  protected Keyword getCurrentKeyword() {
+    // The keyword id of the current token, so that the parser can dispatch on it instead of comparing strings
+    if (!accept(TokenType.KEYWORD)) return null;
+    assert getCurrentToken() != null;
+    return getCurrentToken().getKeyword();
+  }
+
+  protected boolean acceptsAdjacent(@NotNull TokenType tokenType) {
+    // Accept a token only if it immediately follows the previous token, like it would without folded trivia
+    return accept(tokenType) && !hasLeadingTrivia();
+  }
+
+  protected boolean acceptKeyword(@NotNull Keyword keyword) {
+    return getCurrentKeyword() == keyword;
+  }
+
+  protected boolean acceptKeywords(@NotNull Keyword... keywords) {
+    Keyword currentKeyword = getCurrentKeyword();
+    if (currentKeyword == null) return false;
+    for (Keyword keyword : keywords) {
+      if (currentKeyword == keyword) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   protected boolean acceptKeyword(@NotNull String keywordValue) {
     return accept(TokenType.KEYWORD)
             && getCurrentToken() != null
@@ -94,6 +154,35 @@ public abstract class AbstractParser implements IParser {
     throw newError("expected token type " + expectedTokenType.name() + " but got token " + getCurrentToken());
   }
 
+  @NotNull
+  protected INode expectIdentifier(@NotNull INodeFactory nodeFactory) {
+    // The identifier of the expected symbol token, by its symbol id (see SymbolInterner) instead of its name.
+    // Scanned tokens have the symbol id of the scanner, the parser interns the value of other (eg. loaded) tokens.
+    if (accept(TokenType.SYMBOL)) {
+      assert getCurrentToken() != null;
+      String name = getCurrentToken().getValue();
+      if (name == null) {
+        throw newError("symbol token missing value");
+      }
+      int symbolId = getCurrentToken().getSymbolId();
+      if (symbolId == SymbolInterner.NO_SYMBOL) {
+        symbolId = symbolInterner.intern(name);
+      }
+      INode identifierNode = nodeFactory.createIdentifier(symbolId, name);
+      nextToken();
+      return identifierNode;
+    }
+    throw newError("expected token type " + TokenType.SYMBOL.name() + " but got token " + getCurrentToken());
+  }
+
+  @Nullable
+  protected String expectAdjacent(@NotNull TokenType expectedTokenType) {
+    if (hasLeadingTrivia()) {
+      throw newError("expected token type " + expectedTokenType.name() + " without leading whitespace but got token " + getCurrentToken());
+    }
+    return expect(expectedTokenType);
+  }
+
   protected void expectKeyword(@NotNull String expectedTokenValue) {
     String observedTokenValue = expect(TokenType.KEYWORD);
     if (!Objects.equals(expectedTokenValue, observedTokenValue)) {
@@ -101,6 +190,13 @@ public abstract class AbstractParser implements IParser {
     }
   }
 
+  protected void expectKeyword(@NotNull Keyword expectedKeyword) {
+    if (!acceptKeyword(expectedKeyword)) {
+      throw newError("expected keyword token with value " + expectedKeyword.getValue());
+    }
+    nextToken();
+  }
+
   protected Error newError(@NotNull String message) {
     return new Error(message + " " + getCurrentToken());
   }
@@ -1,38 +1,71 @@
 package com.jungle.parser;
 
 import com.jungle.token.IToken;
+import com.jungle.token.Keyword;
+import com.jungle.token.TokenBuffer;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import com.jungle.ast.INode;
-import com.jungle.ast.Node;
+import com.jungle.ast.INodeFactory;
+import com.jungle.ast.NodeFactory;
 import com.jungle.ast.NodeType;
 import com.jungle.common.MapBuilder;
+import com.jungle.common.SymbolInterner;
 import com.jungle.common.StringUtils;
 import com.jungle.token.TokenType;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.function.Supplier;
 
-import static com.jungle.scanner.Scanner.*;
-
 public class Parser extends AbstractParser {
 
-  private static Map<String, NodeType> CONVERT_NODE_TYPE_MAP = new MapBuilder<String, NodeType>()
-    .withEntry(KEYWORD_CONVERT_CHAR, NodeType.CAST_CHAR)
-    .withEntry(KEYWORD_CONVERT_BYTE, NodeType.CAST_BYTE)
-    .withEntry(KEYWORD_CONVERT_SHORT, NodeType.CAST_SHORT)
-    .withEntry(KEYWORD_CONVERT_INTEGER, NodeType.CAST_INTEGER)
-    .withEntry(KEYWORD_CONVERT_LONG, NodeType.CAST_LONG)
-    .withEntry(KEYWORD_CONVERT_FLOAT, NodeType.CAST_FLOAT)
-    .withEntry(KEYWORD_CONVERT_DOUBLE, NodeType.CAST_DOUBLE)
+  private static Map<Keyword, NodeType> CONVERT_NODE_TYPE_MAP = new MapBuilder<Keyword, NodeType>(new EnumMap<>(Keyword.class))
+    .withEntry(Keyword.CONVERT_CHAR, NodeType.CAST_CHAR)
+    .withEntry(Keyword.CONVERT_BYTE, NodeType.CAST_BYTE)
+    .withEntry(Keyword.CONVERT_SHORT, NodeType.CAST_SHORT)
+    .withEntry(Keyword.CONVERT_INTEGER, NodeType.CAST_INTEGER)
+    .withEntry(Keyword.CONVERT_LONG, NodeType.CAST_LONG)
+    .withEntry(Keyword.CONVERT_FLOAT, NodeType.CAST_FLOAT)
+    .withEntry(Keyword.CONVERT_DOUBLE, NodeType.CAST_DOUBLE)
     .build();
 
+  @NotNull
+  private INodeFactory nodeFactory = new NodeFactory();
+
+  public Parser(@NotNull Iterator<IToken> tokenIterator) {
+    super(tokenIterator);
+  }
+
   public Parser(@NotNull Iterable<IToken> tokenIterable) {
     super(tokenIterable);
   }
 
+  public Parser(@NotNull TokenBuffer tokenBuffer) {
+    super(tokenBuffer);
+    setSymbolInterner(tokenBuffer.getSymbolInterner());
+  }
+
+  @NotNull
+  public Parser withNodeFactory(@NotNull INodeFactory nodeFactory) {
+    // Nodes are node objects by default, see NodeArena to parse into arrays instead
+    this.nodeFactory = nodeFactory;
+    return this;
+  }
+
+  @NotNull
+  public Parser withSymbolInterner(@NotNull SymbolInterner symbolInterner) {
+    // The interner of the scanner of the tokens (see Scanner::withSymbolInterner), so that symbol ids are the same
+    setSymbolInterner(symbolInterner);
+    return this;
+  }
+
   @Override
   @Nullable
   public INode parse() {
@@ -40,6 +73,29 @@ public class Parser extends AbstractParser {
     return parseSequence();
   }
 
+  @NotNull
+  public Iterator<INode> statementIterator() {
+    // Parse the statements of the top-level sequence on demand (see parseSequence),
+    // so that each statement can be written or compiled as soon as it is parsed.
+    // Note: a statement can be null, like the statements of a sequence node.
+    nextToken();
+    return new Iterator<INode>() {
+      @Override
+      public boolean hasNext() {
+        return hasNextStatement();
+      }
+
+      @Override
+      @Nullable
+      public INode next() {
+        if (!hasNextStatement()) {
+          throw new NoSuchElementException("no more statements");
+        }
+        return parseStatement();
+      }
+    };
+  }
+
   // region helpers
 
   @Nullable
@@ -55,14 +111,22 @@ public class Parser extends AbstractParser {
     return expressionNode;
   }
 
+  @NotNull
+  protected INode parseBinaryOperator(@NotNull NodeType operatorType) {
+    /*
+     * binary_operator := <operator-token> expression expression ;
+     */
+    nextToken();
+    return nodeFactory.createNode(operatorType, parseExpression(), parseExpression());
+  }
+
   // endregion
 
   // region identifier
 
   protected INode parseIdentifier() {
     consumeWhitespace();
-    String identifierName = expect(TokenType.SYMBOL);
-    return new Node(NodeType.IDENTIFIER).withRawValue(identifierName);
+    return expectIdentifier(nodeFactory);
   }
 
   // endregion
@@ -77,17 +141,18 @@ public class Parser extends AbstractParser {
      * number := integer | decimal ;
      */
     String integerPart = expect(TokenType.NUMBER);
-    if (accepts(TokenType.DOT)) {
+    if (acceptsAdjacent(TokenType.DOT)) {
       // Decimal
       nextToken();
-      String fractionalPart = expect(TokenType.NUMBER);
+      String fractionalPart = expectAdjacent(TokenType.NUMBER);
       // TODO: handle double
-      return new Node(NodeType.LITERAL_FLOAT)
-              .withRawValue(integerPart + '.' + fractionalPart);
+      return nodeFactory.createLeaf(NodeType.LITERAL_FLOAT, integerPart + '.' + fractionalPart);
     } else {
       // Integer
-      return new Node(NodeType.LITERAL_INTEGER)
-              .withRawValue(integerPart);
+      if (integerPart == null) {
+        throw newError("number token missing value");
+      }
+      return nodeFactory.createLeaf(NodeType.LITERAL_INTEGER, integerPart);
     }
   }
 
@@ -112,33 +177,23 @@ public class Parser extends AbstractParser {
     }
     if (accepts(TokenType.PLUS)) {
       expect(TokenType.PLUS);
-      return new Node(NodeType.OPERATOR_ADD)
-              .withLeft(parseExpression())
-              .withRight(parseExpression());
+      return nodeFactory.createNode(NodeType.OPERATOR_ADD, parseExpression(), parseExpression());
     }
     if (accepts(TokenType.MINUS)) {
       expect(TokenType.MINUS);
-      return new Node(NodeType.OPERATOR_SUBTRACT)
-              .withLeft(parseExpression())
-              .withRight(parseExpression());
+      return nodeFactory.createNode(NodeType.OPERATOR_SUBTRACT, parseExpression(), parseExpression());
     }
     if (accepts(TokenType.ASTERISK)) {
       expect(TokenType.ASTERISK);
-      return new Node(NodeType.OPERATOR_MULTIPLY)
-              .withLeft(parseExpression())
-              .withRight(parseExpression());
+      return nodeFactory.createNode(NodeType.OPERATOR_MULTIPLY, parseExpression(), parseExpression());
     }
     if (accepts(TokenType.SLASH_RIGHT)) {
       expect(TokenType.SLASH_RIGHT);
-      return new Node(NodeType.OPERATOR_DIVIDE)
-              .withLeft(parseExpression())
-              .withRight(parseExpression());
+      return nodeFactory.createNode(NodeType.OPERATOR_DIVIDE, parseExpression(), parseExpression());
     }
     if (accepts(TokenType.PERCENT)) {
       expect(TokenType.PERCENT);
-      return new Node(NodeType.OPERATOR_MODULO)
-              .withLeft(parseExpression())
-              .withRight(parseExpression());
+      return nodeFactory.createNode(NodeType.OPERATOR_MODULO, parseExpression(), parseExpression());
     }
     throw newError("not a number expression");
   }
@@ -172,7 +227,7 @@ public class Parser extends AbstractParser {
     NodeType type = isSingleCharacter
             ? NodeType.LITERAL_CHARACTER
             : NodeType.LITERAL_STRING;
-    return new Node(type).withRawValue(textValue);
+    return nodeFactory.createLeaf(type, textValue);
   }
 
   @Nullable
@@ -192,13 +247,14 @@ public class Parser extends AbstractParser {
 
   @NotNull
   protected INode parseBooleanLiteral() {
-    if (acceptKeyword(KEYWORD_TRUE)) {
-      expectKeyword(KEYWORD_TRUE);
-      return new Node(NodeType.LITERAL_INTEGER).withRawValue("1");
+    Keyword keyword = getCurrentKeyword();
+    if (keyword == Keyword.TRUE) {
+      nextToken();
+      return nodeFactory.createLeaf(NodeType.LITERAL_INTEGER, "1");
     }
-    if (acceptKeyword(KEYWORD_FALSE)) {
-      expectKeyword(KEYWORD_FALSE);
-      return new Node(NodeType.LITERAL_INTEGER).withRawValue("0");
+    if (keyword == Keyword.FALSE) {
+      nextToken();
+      return nodeFactory.createLeaf(NodeType.LITERAL_INTEGER, "0");
     }
     throw newError("not a boolean literal");
   }
@@ -213,55 +269,40 @@ public class Parser extends AbstractParser {
      *                     ;
      */
     consumeWhitespace();
-    // region literal
-    if (acceptKeywords(KEYWORD_TRUE, KEYWORD_FALSE)) {
-      return parseBooleanLiteral();
-    }
-    // endregion
     // region parenthesis
     if (accepts(TokenType.BRACKET_ROUND_OPEN)) {
       return parseParenthesis(this::parseBooleanExpression);
     }
     // endregion
-    // region predicate - boolean operator
-    if (acceptKeyword(KEYWORD_AND)) {
-      expectKeyword(KEYWORD_AND);
-      return new Node(NodeType.OPERATOR_AND)
-              .withLeft(parseExpression())
-              .withRight(parseExpression());
-    }
-    if (acceptKeyword(KEYWORD_OR)) {
-      expectKeyword(KEYWORD_OR);
-      return new Node(NodeType.OPERATOR_OR)
-              .withLeft(parseExpression())
-              .withRight(parseExpression());
-    }
-    if (acceptKeyword(KEYWORD_EQUALS)) {
-      expectKeyword(KEYWORD_EQUALS);
-      return new Node(NodeType.OPERATOR_EQUAL)
-              .withLeft(parseExpression())
-              .withRight(parseExpression());
-    }
-    if (acceptKeyword(KEYWORD_GREATER_THAN)) {
-      expectKeyword(KEYWORD_GREATER_THAN);
-      return new Node(NodeType.OPERATOR_GREATER_THAN)
-              .withLeft(parseExpression())
-              .withRight(parseExpression());
-    }
-    if (acceptKeyword(KEYWORD_LESS_THAN)) {
-      expectKeyword(KEYWORD_LESS_THAN);
-      return new Node(NodeType.OPERATOR_LESS_THAN)
-              .withLeft(parseExpression())
-              .withRight(parseExpression());
-    }
-    // endregion
-    // region predicate - unary operator
-    if (acceptKeyword(KEYWORD_NOT)) {
-      expectKeyword(KEYWORD_NOT);
-      return new Node(NodeType.OPERATOR_NOT)
-              .withLeft(parseExpression());
+    Keyword keyword = getCurrentKeyword();
+    if (keyword != null) {
+      switch (keyword) {
+        // region literal
+        case TRUE:
+        case FALSE:
+          return parseBooleanLiteral();
+        // endregion
+        // region predicate - boolean operator
+        case AND:
+          return parseBinaryOperator(NodeType.OPERATOR_AND);
+        case OR:
+          return parseBinaryOperator(NodeType.OPERATOR_OR);
+        case EQUALS:
+          return parseBinaryOperator(NodeType.OPERATOR_EQUAL);
+        case GREATER_THAN:
+          return parseBinaryOperator(NodeType.OPERATOR_GREATER_THAN);
+        case LESS_THAN:
+          return parseBinaryOperator(NodeType.OPERATOR_LESS_THAN);
+        // endregion
+        // region predicate - unary operator
+        case NOT:
+          nextToken();
+          return nodeFactory.createNode(NodeType.OPERATOR_NOT, parseExpression(), null);
+        // endregion
+        default:
+          break;
+      }
     }
-    // endregion
     throw newError("not a boolean expression");
   }
 
@@ -289,26 +330,30 @@ public class Parser extends AbstractParser {
     }
     if (accepts(TokenType.BRACKET_ANGLE_OPEN)) {
       expect(TokenType.BRACKET_ANGLE_OPEN);
-      String convertKeyword = expect(TokenType.KEYWORD);
-      NodeType convertNodeType = CONVERT_NODE_TYPE_MAP.get(convertKeyword);
+      Keyword convertKeyword = getCurrentKeyword();
+      String convertValue = expectAdjacent(TokenType.KEYWORD);
+      NodeType convertNodeType = convertKeyword == null ? null : CONVERT_NODE_TYPE_MAP.get(convertKeyword);
       if (convertNodeType == null) {
-        throw newError("convert keyword not recognized - " + convertKeyword);
+        throw newError("convert keyword not recognized - " + convertValue);
+      }
+      expectAdjacent(TokenType.BRACKET_ANGLE_CLOSE);
+      return nodeFactory.createNode(convertNodeType, parseExpression(), null);
+    }
+    Keyword keyword = getCurrentKeyword();
+    if (keyword != null) {
+      switch (keyword) {
+        case AND:
+        case OR:
+        case NOT:
+        case EQUALS:
+        case GREATER_THAN:
+        case LESS_THAN:
+        case TRUE:
+        case FALSE:
+          return parseBooleanExpression();
+        default:
+          break;
       }
-      expect(TokenType.BRACKET_ANGLE_CLOSE);
-      return new Node(convertNodeType).withLeft(parseExpression());
-    }
-    boolean isBooleanExpression = acceptKeywords(
-            KEYWORD_AND,
-            KEYWORD_OR,
-            KEYWORD_NOT,
-            KEYWORD_EQUALS,
-            KEYWORD_GREATER_THAN,
-            KEYWORD_LESS_THAN,
-            KEYWORD_TRUE,
-            KEYWORD_FALSE
-    );
-    if (isBooleanExpression) {
-      return parseBooleanExpression();
     }
     boolean isNumberExpression = accepts(
             TokenType.NUMBER,
@@ -337,8 +382,8 @@ public class Parser extends AbstractParser {
     /*
      * statement_assert := "assert" boolean_expression ;
      */
-    expectKeyword(KEYWORD_ASSERT);
-    return new Node(NodeType.ASSERT).withLeft(parseBooleanExpression());
+    expectKeyword(Keyword.ASSERT);
+    return nodeFactory.createNode(NodeType.ASSERT, parseBooleanExpression(), null);
   }
 
   @Nullable
@@ -346,12 +391,10 @@ public class Parser extends AbstractParser {
     /*
      * statement_loop := "loop" boolean_expression statement_block ;
      */
-    expectKeyword(KEYWORD_LOOP);
+    expectKeyword(Keyword.LOOP);
     INode expressionNode = parseBooleanExpression();
     INode blockNode = parseStatementBlock();
-    return new Node(NodeType.LOOP)
-            .withLeft(expressionNode)
-            .withRight(blockNode);
+    return nodeFactory.createNode(NodeType.LOOP, expressionNode, blockNode);
   }
 
   @Nullable
@@ -359,8 +402,8 @@ public class Parser extends AbstractParser {
     /*
      * statement_print := "print" expression ;
      */
-    expectKeyword(KEYWORD_PRINT);
-    return new Node(NodeType.PRINT).withLeft(parseExpression());
+    expectKeyword(Keyword.PRINT);
+    return nodeFactory.createNode(NodeType.PRINT, parseExpression(), null);
   }
 
   @NotNull
@@ -379,16 +422,17 @@ public class Parser extends AbstractParser {
     /*
      * statement_multitask := "multitask" class [ ":" statement ] ;
      */
-    expectKeyword(KEYWORD_MULTITASK);
+    expectKeyword(Keyword.MULTITASK);
     consumeWhitespace();
-    Node node = new Node(NodeType.MULTITASK).withLeft(parseClass());
+    INode classNode = parseClass();
     consumeWhitespace();
+    INode statementNode = null;
     if (accepts(TokenType.COLON)) {
       // inline multitask
       nextToken();
-      node.withRight(parseStatement());
+      statementNode = parseStatement();
     }
-    return node;
+    return nodeFactory.createNode(NodeType.MULTITASK, classNode, statementNode);
   }
 
   @NotNull
@@ -396,9 +440,9 @@ public class Parser extends AbstractParser {
     /*
      * statement_sleep := "sleep" expression_number
      */
-    expectKeyword(KEYWORD_SLEEP);
+    expectKeyword(Keyword.SLEEP);
     consumeWhitespace();
-    return new Node(NodeType.SLEEP).withLeft(parseNumberExpression());
+    return nodeFactory.createNode(NodeType.SLEEP, parseNumberExpression(), null);
   }
 
   @Nullable
@@ -406,20 +450,20 @@ public class Parser extends AbstractParser {
     /*
      * statement_if := "if" boolean_expression statement_block [ "else" statement_block ] ;
      */
-    expectKeyword(KEYWORD_IF);
-    Node ifNode = new Node(NodeType.IF).withLeft(parseBooleanExpression());
+    expectKeyword(Keyword.IF);
+    INode expressionNode = parseBooleanExpression();
     INode ifBlockNode = parseStatementBlock();
     consumeWhitespace();
-    if (acceptKeyword(KEYWORD_ELSE)) {
-      expectKeyword(KEYWORD_ELSE);
+    if (acceptKeyword(Keyword.ELSE)) {
+      expectKeyword(Keyword.ELSE);
       INode elseBlockNode = parseStatementBlock();
-      return ifNode.withRight(
-              new Node(NodeType.IF_ELSE)
-                      .withLeft(ifBlockNode)
-                      .withRight(elseBlockNode)
+      return nodeFactory.createNode(
+              NodeType.IF,
+              expressionNode,
+              nodeFactory.createNode(NodeType.IF_ELSE, ifBlockNode, elseBlockNode)
       );
     } else {
-      return ifNode.withRight(ifBlockNode);
+      return nodeFactory.createNode(NodeType.IF, expressionNode, ifBlockNode);
     }
   }
 
@@ -430,23 +474,16 @@ public class Parser extends AbstractParser {
      */
     consumeWhitespace();
     expect(TokenType.BRACKET_CURLY_OPEN);
-    INode sequenceNode = null;
+    List<INode> statements = new ArrayList<>();
     while (true) {
       consumeWhitespace();
       if (getCurrentToken() == null) break;
       if (accepts(TokenType.TERMINAL)) break;
       if (accepts(TokenType.BRACKET_CURLY_CLOSE)) break;
-      if (sequenceNode == null) {
-        sequenceNode = new Node(NodeType.SEQUENCE)
-                .withLeft(parseStatement());
-      } else {
-        sequenceNode = new Node(NodeType.SEQUENCE)
-                .withLeft(sequenceNode)
-                .withRight(parseStatement());
-      }
+      statements.add(parseStatement());
     }
     expect(TokenType.BRACKET_CURLY_CLOSE);
-    return new Node(NodeType.BLOCK).withLeft(sequenceNode);
+    return nodeFactory.createNode(NodeType.BLOCK, createSequence(statements), null);
   }
 
   @Nullable
@@ -461,23 +498,24 @@ public class Parser extends AbstractParser {
      *                   ;
      */
     consumeWhitespace();
-    if (acceptKeyword(KEYWORD_ASSERT)) {
-      return parseStatementAssert();
-    }
-    if (acceptKeyword(KEYWORD_LOOP)) {
-      return parseStatementLoop();
-    }
-    if (acceptKeyword(KEYWORD_PRINT)) {
-      return parseStatementPrint();
-    }
-    if (acceptKeyword(KEYWORD_IF)) {
-      return parseStatementIf();
-    }
-    if (acceptKeyword(KEYWORD_MULTITASK)) {
-      return parseStatementMultitask();
-    }
-    if (acceptKeyword(KEYWORD_SLEEP)) {
-      return parseStatementSleep();
+    Keyword keyword = getCurrentKeyword();
+    if (keyword != null) {
+      switch (keyword) {
+        case ASSERT:
+          return parseStatementAssert();
+        case LOOP:
+          return parseStatementLoop();
+        case PRINT:
+          return parseStatementPrint();
+        case IF:
+          return parseStatementIf();
+        case MULTITASK:
+          return parseStatementMultitask();
+        case SLEEP:
+          return parseStatementSleep();
+        default:
+          break;
+      }
     }
     throw newError("not a keyword statement");
   }
@@ -488,16 +526,11 @@ public class Parser extends AbstractParser {
      * statement_symbol := symbol "=" expression ;
      */
     consumeWhitespace();
-    String symbolValue = expect(TokenType.SYMBOL);
-    if (symbolValue == null) {
-      throw new Error("symbol token missing value");
-    }
+    INode identifierNode = expectIdentifier(nodeFactory);
     consumeWhitespace();
     if (accepts(TokenType.EQUALS)) {
       nextToken();
-      return new Node(NodeType.ASSIGN)
-              .withLeft(new Node(NodeType.IDENTIFIER).withRawValue(symbolValue))
-              .withRight(parseExpression());
+      return nodeFactory.createNode(NodeType.ASSIGN, identifierNode, parseExpression());
     }
     throw newError("not a symbol statement");
   }
@@ -541,24 +574,35 @@ public class Parser extends AbstractParser {
     /*
      * sequence := { statement } | "\n" ;
      */
-    INode sequenceNode = null;
+    List<INode> statements = new ArrayList<>();
+    while (hasNextStatement()) {
+      statements.add(parseStatement());
+    }
+    return createSequence(statements);
+  }
+
+  @Nullable
+  protected INode createSequence(@NotNull List<INode> statements) {
+    // A single n-ary sequence node, instead of a chain of binary sequence nodes as deep as the number of statements
+    if (statements.isEmpty()) {
+      return null;
+    }
+    return nodeFactory.createSequence(NodeType.SEQUENCE, statements);
+  }
+
+  protected boolean hasNextStatement() {
+    // Skip to the next statement of the sequence, if any
     while (true) {
-      if (getCurrentToken() == null) break;
-      if (accepts(TokenType.TERMINAL)) break;
-      if (accepts(TokenType.NEWLINE) || accepts(TokenType.COMMENT)) {
+      if (getCurrentToken() == null) return false;
+      // Note: a newline is skipped here, but a space is parsed as (the start of) a statement.
+      // So, with folded trivia, only a newline can lead a terminal or comment that is skipped.
+      if (accepts(TokenType.TERMINAL) && !hasLeadingSpace()) return false;
+      if (accepts(TokenType.NEWLINE) || (accepts(TokenType.COMMENT) && !hasLeadingSpace())) {
         nextToken();
         continue;
       }
-      if (sequenceNode == null) {
-        sequenceNode = new Node(NodeType.SEQUENCE)
-                .withLeft(parseStatement());
-      } else {
-        sequenceNode = new Node(NodeType.SEQUENCE)
-                .withLeft(sequenceNode)
-                .withRight(parseStatement());
-      }
+      return true;
     }
-    return sequenceNode;
   }
 
   // endregion
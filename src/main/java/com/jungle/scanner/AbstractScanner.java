@@ -1,7 +1,10 @@
 package com.jungle.scanner;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
-import java.util.function.Function;
+import java.util.function.IntPredicate;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -9,44 +12,121 @@ import com.jungle.token.IToken;
 import org.jetbrains.annotations.Nullable;
 
 public abstract class AbstractScanner implements IScanner {
+  /* The scanner reads characters from a single char array.
+   *
+   * When scanning lines, the array holds the current line followed by a newline,
+   * and it is refilled (not reallocated) each time a line is consumed.
+   *
+   * When scanning a character buffer, the array holds the entire source,
+   * and token values are sliced directly from it.
+   *
+   * When scanning a (UTF-8) byte buffer, the bytes are scanned instead of the array.
+   * ASCII bytes are used as characters, and multi-byte sequences are only decoded where they appear.
+   * The character index is then a byte index.
+   */
+
   @NotNull
-  private String line;
-  private int lineNumber;
-  @NotNull
+  private char[] buffer;
+  private int bufferOffset;
+  private int bufferLength;
+
+  @Nullable
+  private final ByteBuffer bytes;
+
+  // The second half of a surrogate pair decoded from bytes, otherwise zero
+  private char pendingCharacter;
+
+  @Nullable
   private final Iterator<String> lineIterator;
 
+  // A character buffer source might not end with a newline,
+  // but a line source always does, so one is appended when the end of the buffer is reached.
+  private boolean hasMissingNewline;
+
+  private int lineNumber;
+
   private int characterIndex;
   private int characterNumber;
 
   public AbstractScanner(@NotNull Iterator<String> lineIterator) {
     super();
-    this.line = "";
+    this.buffer = new char[0];
+    this.bytes = null;
     this.lineIterator = lineIterator;
     if (hasNextLine()) {
       nextLine();
     }
   }
 
+  public AbstractScanner(@NotNull CharBuffer source) {
+    super();
+    if (source.hasArray()) {
+      this.buffer = source.array();
+      this.bufferOffset = source.arrayOffset() + source.position();
+    } else {
+      this.buffer = new char[source.remaining()];
+      source.duplicate().get(this.buffer);
+    }
+    this.bufferLength = source.remaining();
+    this.bytes = null;
+    this.lineIterator = null;
+    if (bufferLength > 0) {
+      this.hasMissingNewline = !isLineBreak(buffer[bufferOffset + bufferLength - 1]);
+      setLineNumber(1);
+      setCharacterNumber(1);
+    }
+  }
+
+  public AbstractScanner(@NotNull ByteBuffer source) {
+    super();
+    this.buffer = new char[0];
+    this.bytes = source;
+    this.bufferOffset = source.position();
+    this.bufferLength = source.remaining();
+    this.lineIterator = null;
+    if (bufferLength > 0) {
+      this.hasMissingNewline = !isLineBreak((char) source.get(bufferOffset + bufferLength - 1));
+      setLineNumber(1);
+      setCharacterNumber(1);
+    }
+  }
+
+  private static boolean isLineBreak(char c) {
+    return c == '\n' || c == '\r';
+  }
+
+  private boolean isEndOfLine(char c) {
+    // Lines from a line iterator are already split, so only the appended newline ends the line
+    return lineIterator == null ? isLineBreak(c) : c == '\n';
+  }
+
   private void nextLine() {
-    setLine(lineIterator.next() + '\n');
+    if (lineIterator == null) {
+      // The entire source is buffered, so only the position moves to the next line
+      setLineNumber(getLineNumber() + 1);
+      setCharacterNumber(1);
+      return;
+    }
+    String nextLine = lineIterator.next();
+    int nextLength = nextLine.length() + 1;
+    if (buffer.length < nextLength) {
+      buffer = new char[Math.max(nextLength, buffer.length * 2)];
+    }
+    nextLine.getChars(0, nextLine.length(), buffer, 0);
+    buffer[nextLength - 1] = '\n';
+    bufferLength = nextLength;
     setLineNumber(getLineNumber() + 1);
     setCharacterIndex(0);
     setCharacterNumber(1);
   }
 
   private boolean hasNextLine() {
+    if (lineIterator == null) {
+      return isValidCharacterIndexOffset(0);
+    }
     return lineIterator.hasNext();
   }
 
-  @NotNull
-  protected String getLine() {
-    return line;
-  }
-
-  private void setLine(@NotNull String line) {
-    this.line = line;
-  }
-
   protected int getCharacterIndex() {
     return characterIndex;
   }
@@ -81,23 +161,120 @@ public abstract class AbstractScanner implements IScanner {
   }
 
   private boolean isValidCharacterIndexOffset(int offset) {
-    return (getCharacterIndex() + offset) < getLine().length();
+    return (getCharacterIndex() + offset) < bufferLength;
   }
 
   private boolean hasNextCharacter() {
-    if (hasNextLine()) return false;
-    return !isValidCharacterIndexOffset(0);
+    if (isValidCharacterIndexOffset(0)) return true;
+    return hasMissingNewline || pendingCharacter != 0;
+  }
+
+  // region UTF-8
+
+  private static boolean isContinuationByte(int b) {
+    return (b & 0xC0) == 0x80;
+  }
+
+  private int getByte(int index) {
+    assert bytes != null;
+    return bytes.get(bufferOffset + index);
+  }
+
+  private int getEncodedLength(int index) {
+    // Number of bytes in the (non-ASCII) UTF-8 sequence at the index, or 1 when the sequence is malformed
+    int b0 = getByte(index) & 0xFF;
+    int length;
+    int minimum = 0x80;
+    int maximum = 0xBF;
+    if (b0 >= 0xC2 && b0 <= 0xDF) {
+      length = 2;
+    } else if (b0 >= 0xE0 && b0 <= 0xEF) {
+      length = 3;
+      if (b0 == 0xE0) minimum = 0xA0; // overlong
+      if (b0 == 0xED) maximum = 0x9F; // surrogate
+    } else if (b0 >= 0xF0 && b0 <= 0xF4) {
+      length = 4;
+      if (b0 == 0xF0) minimum = 0x90; // overlong
+      if (b0 == 0xF4) maximum = 0x8F; // beyond unicode
+    } else {
+      return 1;
+    }
+    if (index + length > bufferLength) return 1;
+    int b1 = getByte(index + 1) & 0xFF;
+    if (b1 < minimum || b1 > maximum) return 1;
+    for (int i = 2; i < length; i++) {
+      if (!isContinuationByte(getByte(index + i))) return 1;
+    }
+    return length;
+  }
+
+  private int decodeCodePoint(int index, int length) {
+    int b0 = getByte(index);
+    switch (length) {
+      case 2: return ((b0 & 0x1F) << 6) | (getByte(index + 1) & 0x3F);
+      case 3: return ((b0 & 0x0F) << 12) | ((getByte(index + 1) & 0x3F) << 6) | (getByte(index + 2) & 0x3F);
+      case 4: return ((b0 & 0x07) << 18) | ((getByte(index + 1) & 0x3F) << 12) | ((getByte(index + 2) & 0x3F) << 6) | (getByte(index + 3) & 0x3F);
+      default: return 0xFFFD; // replacement character
+    }
+  }
+
+  private char nextByteCharacter() {
+    int b = getByte(characterIndex);
+    if (b >= 0) {
+      characterIndex++;
+      return (char) b;
+    }
+    int length = getEncodedLength(characterIndex);
+    int codePoint = decodeCodePoint(characterIndex, length);
+    characterIndex += length;
+    if (Character.isSupplementaryCodePoint(codePoint)) {
+      pendingCharacter = Character.lowSurrogate(codePoint);
+      return Character.highSurrogate(codePoint);
+    }
+    return (char) codePoint;
+  }
+
+  @NotNull
+  private String slice(int startIndex, int endIndex) {
+    if (bytes == null) {
+      return new String(buffer, bufferOffset + startIndex, endIndex - startIndex);
+    }
+    byte[] value = new byte[endIndex - startIndex];
+    for (int i = 0; i < value.length; i++) {
+      value[i] = (byte) getByte(startIndex + i);
+    }
+    return new String(value, StandardCharsets.UTF_8);
   }
 
+  // endregion
+
   @Override
   @Nullable
   public abstract Iterable<IToken> scan();
 
   protected char consume() {
-    if (!hasNextCharacter()) {
-      char c = getLine().charAt(getCharacterIndex());
-      setCharacterIndex(getCharacterIndex() + 1);
-      setCharacterNumber(getCharacterNumber() + 1);
+    if (pendingCharacter != 0) {
+      char c = pendingCharacter;
+      pendingCharacter = 0;
+      characterNumber++;
+      return c;
+    }
+    if (isValidCharacterIndexOffset(0)) {
+      char c;
+      if (bytes == null) {
+        c = buffer[bufferOffset + characterIndex];
+        characterIndex++;
+      } else {
+        c = nextByteCharacter();
+      }
+      characterNumber++;
+      if (c == '\r' && lineIterator == null) {
+        // Like BufferedReader::readLine, a carriage return with an optional line feed ends a line
+        if (isValidCharacterIndexOffset(0) && getCharacterAt(characterIndex) == '\n') {
+          characterIndex++;
+        }
+        c = '\n';
+      }
       if (c == '\n') {
         if (hasNextLine()) {
           nextLine();
@@ -105,16 +282,31 @@ public abstract class AbstractScanner implements IScanner {
       }
       return c;
     }
+    if (hasMissingNewline) {
+      hasMissingNewline = false;
+      characterNumber++;
+      return '\n';
+    }
     return '\0';
   }
 
+  protected char peek() {
+    // The character that consume() returns next, without consuming it (a multi-byte sequence is not decoded)
+    if (pendingCharacter != 0) return pendingCharacter;
+    if (isValidCharacterIndexOffset(0)) {
+      char c = getCharacterAt(characterIndex);
+      return c == '\r' && lineIterator == null ? '\n' : c;
+    }
+    return hasMissingNewline ? '\n' : '\0';
+  }
+
   @NotNull
   protected String consume(int offset) {
     if (offset < 0) {
       throw new UnsupportedOperationException("offset must be non-negative");
     }
     StringBuilder builder = new StringBuilder();
-    while (!hasNextCharacter() && offset > 0) {
+    while (hasNextCharacter() && offset > 0) {
       builder.append(consume());
       offset--;
     }
@@ -122,13 +314,95 @@ public abstract class AbstractScanner implements IScanner {
   }
 
   @NotNull
-  protected String consumeUntil(Function<Character, Boolean> condition) {
-    int offset = 0;
-    while (isValidCharacterIndexOffset(offset)) {
-      char c = getLine().charAt(getCharacterIndex() + offset);
-      if (condition.apply(c)) break;
-      offset++;
+  protected String consumeUntil(@NotNull IntPredicate condition) {
+    return consumeUntil(getCharacterIndex(), condition);
+  }
+
+  private char getCharacterAt(int index) {
+    // The first character at the index, without decoding more than the lead byte of a multi-byte sequence
+    return bytes == null ? buffer[bufferOffset + index] : (char) getByte(index);
+  }
+
+  // region value
+
+  // The value of the last consumeValueUntil call is a range of the buffer (or bytes),
+  // unless the buffer is a line buffer or the value ran past the end of a line (rare), then it is built.
+  private int valueStartIndex;
+  private int valueEndIndex;
+
+  @Nullable
+  private String builtValue;
+
+  @NotNull
+  protected String getValue() {
+    if (builtValue != null) return builtValue;
+    return slice(valueStartIndex, valueEndIndex);
+  }
+
+  @Nullable
+  protected char[] getSourceArray() {
+    // The array of the entire source, when value ranges remain valid after scanning (ie. character buffer source)
+    return lineIterator == null && bytes == null ? buffer : null;
+  }
+
+  protected boolean isValueInSourceArray() {
+    return builtValue == null && getSourceArray() != null;
+  }
+
+  protected int getValueStartOffset() {
+    // Offset of the value in the source array
+    return bufferOffset + valueStartIndex;
+  }
+
+  protected int getValueEndOffset() {
+    return bufferOffset + valueEndIndex;
+  }
+
+  protected void consumeValueUntil(int startIndex, @NotNull IntPredicate condition) {
+    // Consume characters of the current line until the condition is met,
+    // and keep the value (including characters already consumed since startIndex) as a range of the buffer.
+    // Note: a surrogate pair is tested by its high surrogate only.
+    int endIndex = getCharacterIndex();
+    int characterCount = 0;
+    builtValue = null;
+    while (true) {
+      if (endIndex == bufferLength && !hasMissingNewline) break;
+      char c = endIndex == bufferLength ? '\n' : getCharacterAt(endIndex);
+      int length = 1;
+      int count = 1;
+      if (bytes != null && c >= 0x80) {
+        length = getEncodedLength(endIndex);
+        int codePoint = decodeCodePoint(endIndex, length);
+        c = Character.isSupplementaryCodePoint(codePoint) ? Character.highSurrogate(codePoint) : (char) codePoint;
+        count = Character.charCount(codePoint);
+      }
+      if (isEndOfLine(c)) {
+        if (condition.test('\n')) break;
+        // Rare: the value runs past the end of the line (eg. unterminated text),
+        // so the line break is consumed into the value one character at a time.
+        String value = slice(startIndex, getCharacterIndex());
+        builtValue = value + consume(characterCount + 1);
+        return;
+      }
+      if (condition.test(c)) break;
+      endIndex += length;
+      characterCount += count;
     }
-    return consume(offset);
+    valueStartIndex = startIndex;
+    valueEndIndex = endIndex;
+    if (lineIterator != null) {
+      // The line buffer is refilled by the next line, so the value can not remain a range of it
+      builtValue = slice(startIndex, endIndex);
+    }
+    characterNumber += characterCount;
+    characterIndex = endIndex;
   }
+
+  @NotNull
+  protected String consumeUntil(int startIndex, @NotNull IntPredicate condition) {
+    consumeValueUntil(startIndex, condition);
+    return getValue();
+  }
+
+  // endregion
 }
@@ -0,0 +1,340 @@
+package com.jungle.scanner;
+
+import java.nio.CharBuffer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.jungle.common.SymbolInterner;
+import com.jungle.token.IToken;
+import com.jungle.token.Keyword;
+import com.jungle.token.TokenBuffer;
+import com.jungle.token.TokenType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static java.lang.Character.isAlphabetic;
+import static java.lang.Character.isDigit;
+
+public class DfaScanner implements IScanner {
+  /* A table-driven scanner of a character buffer, producing the same tokens as Scanner.
+   *
+   * Each character is mapped to a character class (one array lookup for ASCII), and
+   * the next state is looked up in a transition table of state and character class.
+   * Both tables are generated from the token specification below.
+   *
+   * A token starts in the start state. A single character token is accepted at once,
+   * a multi character token loops in its state until the table stops it, without a separate pass per token.
+   * Actions that are not a transition (keywords, the line break after a comment, text left open at the end of a line)
+   * are applied when the token is accepted, the same way Scanner does (see AbstractScanner::consumeValueUntil).
+   *
+   * Scanner remains the reference scanner, and supports line and byte sources.
+   */
+
+  // region specification
+
+  // Single character tokens (a carriage return with an optional line feed is a single line break, like AbstractScanner::consume)
+  @NotNull
+  private static final String SINGLE_CHARACTERS = "=+-*%/\\<>{}()[];:,.| \t\n\r\0";
+
+  @NotNull
+  private static final TokenType[] SINGLE_CHARACTER_TYPES = {
+    TokenType.EQUALS,
+    TokenType.PLUS,
+    TokenType.MINUS,
+    TokenType.ASTERISK,
+    TokenType.PERCENT,
+    TokenType.SLASH_RIGHT,
+    TokenType.SLASH_LEFT,
+    TokenType.BRACKET_ANGLE_OPEN,
+    TokenType.BRACKET_ANGLE_CLOSE,
+    TokenType.BRACKET_CURLY_OPEN,
+    TokenType.BRACKET_CURLY_CLOSE,
+    TokenType.BRACKET_ROUND_OPEN,
+    TokenType.BRACKET_ROUND_CLOSE,
+    TokenType.BRACKET_SQUARE_OPEN,
+    TokenType.BRACKET_SQUARE_CLOSE,
+    TokenType.SEMICOLON,
+    TokenType.COLON,
+    TokenType.COMMA,
+    TokenType.DOT,
+    TokenType.PIPE,
+    TokenType.SPACE,
+    TokenType.TAB,
+    TokenType.NEWLINE,
+    TokenType.NEWLINE,
+    TokenType.TERMINAL,
+  };
+
+  private static final char COMMENT_CHARACTER = '#';
+
+  // Text is quoted by any of the quote characters, and ends with the same quote
+  @NotNull
+  private static final String QUOTE_CHARACTERS = "\"`'";
+
+  // endregion
+
+  // region tables
+
+  private static final int CLASS_OTHER = 0;
+  private static final int CLASS_DIGIT = 1;
+  private static final int CLASS_ALPHABETIC = 2;
+  private static final int CLASS_COMMENT = 3;
+  private static final int CLASS_FIRST_QUOTE = 4;
+  private static final int CLASS_FIRST_SINGLE_CHARACTER = CLASS_FIRST_QUOTE + QUOTE_CHARACTERS.length();
+  private static final int CLASS_COUNT = CLASS_FIRST_SINGLE_CHARACTER + SINGLE_CHARACTERS.length();
+
+  private static final int STATE_START = 0;
+  private static final int STATE_NUMBER = 1;
+  private static final int STATE_SYMBOL = 2;
+  private static final int STATE_COMMENT = 3;
+  private static final int STATE_FIRST_TEXT = 4;
+  private static final int STATE_COUNT = STATE_FIRST_TEXT + QUOTE_CHARACTERS.length();
+
+  // Transitions that end the token: before the character, after the character (closing quote), or with the character (single character token)
+  private static final byte STOP = -1;
+  private static final byte STOP_AFTER = -2;
+  private static final byte ACCEPT_SINGLE = -3;
+
+  @NotNull
+  private static final byte[] ASCII_CLASSES = new byte[128];
+
+  @NotNull
+  private static final TokenType[] CLASS_TYPES = new TokenType[CLASS_COUNT];
+
+  @NotNull
+  private static final byte[] TRANSITIONS = new byte[STATE_COUNT * CLASS_COUNT];
+
+  @NotNull
+  private static final TokenType[] STATE_TYPES = new TokenType[STATE_COUNT];
+
+  static {
+    if (SINGLE_CHARACTERS.length() != SINGLE_CHARACTER_TYPES.length) {
+      throw new Error("invalid token specification - single character types");
+    }
+    for (char c = 0; c < ASCII_CLASSES.length; c++) {
+      ASCII_CLASSES[c] = (byte) getCharacterClass(c);
+    }
+    ASCII_CLASSES[COMMENT_CHARACTER] = CLASS_COMMENT;
+    for (int i = 0; i < QUOTE_CHARACTERS.length(); i++) {
+      ASCII_CLASSES[QUOTE_CHARACTERS.charAt(i)] = (byte) (CLASS_FIRST_QUOTE + i);
+    }
+    for (int i = 0; i < SINGLE_CHARACTERS.length(); i++) {
+      ASCII_CLASSES[SINGLE_CHARACTERS.charAt(i)] = (byte) (CLASS_FIRST_SINGLE_CHARACTER + i);
+      CLASS_TYPES[CLASS_FIRST_SINGLE_CHARACTER + i] = SINGLE_CHARACTER_TYPES[i];
+    }
+    CLASS_TYPES[CLASS_OTHER] = TokenType.UNKNOWN;
+
+    STATE_TYPES[STATE_NUMBER] = TokenType.NUMBER;
+    STATE_TYPES[STATE_SYMBOL] = TokenType.SYMBOL;
+    STATE_TYPES[STATE_COMMENT] = TokenType.COMMENT;
+    for (int cls = 0; cls < CLASS_COUNT; cls++) {
+      boolean isLineBreak = CLASS_TYPES[cls] == TokenType.NEWLINE;
+      setTransition(STATE_START, cls, ACCEPT_SINGLE);
+      setTransition(STATE_NUMBER, cls, cls == CLASS_DIGIT ? STATE_NUMBER : STOP);
+      setTransition(STATE_SYMBOL, cls, cls == CLASS_DIGIT || cls == CLASS_ALPHABETIC ? STATE_SYMBOL : STOP);
+      setTransition(STATE_COMMENT, cls, isLineBreak ? STOP : STATE_COMMENT);
+      for (int i = 0; i < QUOTE_CHARACTERS.length(); i++) {
+        int textState = STATE_FIRST_TEXT + i;
+        setTransition(textState, cls, isLineBreak ? STOP : cls == CLASS_FIRST_QUOTE + i ? STOP_AFTER : textState);
+      }
+    }
+    setTransition(STATE_START, CLASS_DIGIT, STATE_NUMBER);
+    setTransition(STATE_START, CLASS_ALPHABETIC, STATE_SYMBOL);
+    setTransition(STATE_START, CLASS_COMMENT, STATE_COMMENT);
+    for (int i = 0; i < QUOTE_CHARACTERS.length(); i++) {
+      setTransition(STATE_START, CLASS_FIRST_QUOTE + i, STATE_FIRST_TEXT + i);
+      STATE_TYPES[STATE_FIRST_TEXT + i] = TokenType.TEXT;
+    }
+  }
+
+  private static void setTransition(int state, int cls, int next) {
+    TRANSITIONS[state * CLASS_COUNT + cls] = (byte) next;
+  }
+
+  private static int getCharacterClass(char c) {
+    // The class of a character that is not in the token specification
+    if (isDigit(c)) return CLASS_DIGIT;
+    if (isAlphabetic(c)) return CLASS_ALPHABETIC;
+    return CLASS_OTHER;
+  }
+
+  private static int getClass(char c) {
+    return c < ASCII_CLASSES.length ? ASCII_CLASSES[c] : getCharacterClass(c);
+  }
+
+  private static boolean isValueOfFirstCharacter(int state) {
+    // Numbers and symbols include their first character, comments and text do not include the opening character
+    return state == STATE_NUMBER || state == STATE_SYMBOL;
+  }
+
+  // endregion
+
+  @NotNull
+  private final char[] source;
+  private final int sourceOffset;
+  private final int sourceLength;
+
+  // The keywords of the scanner, or null when they are the default keywords (see Scanner::getCustomKeywords)
+  @Nullable
+  private final Set<String> keywords;
+
+  private boolean isTriviaFolded;
+
+  @NotNull
+  private SymbolInterner symbolInterner = new SymbolInterner();
+
+  public DfaScanner(@NotNull CharBuffer source, @NotNull Collection<String> keywords) {
+    super();
+    if (source.hasArray()) {
+      this.source = source.array();
+      this.sourceOffset = source.arrayOffset() + source.position();
+    } else {
+      this.source = new char[source.remaining()];
+      source.duplicate().get(this.source);
+      this.sourceOffset = 0;
+    }
+    this.sourceLength = source.remaining();
+    Set<String> keywordSet = new HashSet<>(keywords);
+    this.keywords = keywordSet.equals(new HashSet<>(Scanner.KEYWORDS)) ? null : keywordSet;
+  }
+
+  public DfaScanner(@NotNull CharBuffer source) {
+    this(source, Scanner.KEYWORDS);
+  }
+
+  @NotNull
+  public DfaScanner withTriviaFolded(boolean isTriviaFolded) {
+    // See Scanner::withTriviaFolded
+    this.isTriviaFolded = isTriviaFolded;
+    return this;
+  }
+
+  @NotNull
+  public DfaScanner withSymbolInterner(@NotNull SymbolInterner symbolInterner) {
+    // See Scanner::withSymbolInterner
+    this.symbolInterner = symbolInterner;
+    return this;
+  }
+
+  // region position
+
+  // A source that does not end with a line break ends with a virtual line feed, at the end index
+  private int endIndex;
+  private int limitIndex;
+
+  private int index;
+  private int lineNumber;
+  private int characterNumber;
+
+  private char getCharacter(int index) {
+    // Note: multi character tokens never reach the limit, since the last character is a line break
+    if (index < endIndex) return source[index];
+    return index < limitIndex ? '\n' : '\0';
+  }
+
+  private void consume() {
+    // Consume a character like AbstractScanner::consume, where the end of the source is not consumed
+    if (index >= limitIndex) return;
+    char c = getCharacter(index);
+    index++;
+    characterNumber++;
+    if (c == '\r' && index < endIndex && source[index] == '\n') {
+      index++;
+    }
+    if ((c == '\n' || c == '\r') && index < endIndex) {
+      lineNumber++;
+      characterNumber = 1;
+    }
+  }
+
+  private int consumeTrivia() {
+    // See Scanner::consumeTrivia
+    int leadingTrivia = 0;
+    while (true) {
+      TokenType type = CLASS_TYPES[getClass(getCharacter(index))];
+      if (type == TokenType.SPACE || type == TokenType.TAB) {
+        leadingTrivia |= IToken.TRIVIA_SPACE;
+      } else if (type == TokenType.NEWLINE) {
+        leadingTrivia |= IToken.TRIVIA_NEWLINE;
+      } else {
+        return leadingTrivia;
+      }
+      consume();
+    }
+  }
+
+  // endregion
+
+  @NotNull
+  public TokenBuffer scanTokenBuffer() {
+    endIndex = sourceOffset + sourceLength;
+    boolean hasMissingNewline = sourceLength > 0 && CLASS_TYPES[getClass(source[endIndex - 1])] != TokenType.NEWLINE;
+    limitIndex = hasMissingNewline ? endIndex + 1 : endIndex;
+    index = sourceOffset;
+    // An empty source has no lines, see AbstractScanner
+    lineNumber = sourceLength > 0 ? 1 : 0;
+    characterNumber = sourceLength > 0 ? 1 : 0;
+
+    TokenBuffer tokenBuffer = new TokenBuffer(source, symbolInterner);
+    while (true) {
+      int leadingTrivia = isTriviaFolded ? consumeTrivia() : 0;
+      int tokenLineNumber = lineNumber;
+      int tokenCharacterNumber = characterNumber;
+      int cls = getClass(getCharacter(index));
+      int state = TRANSITIONS[STATE_START * CLASS_COUNT + cls];
+      TokenType type;
+      if (state == ACCEPT_SINGLE) {
+        type = CLASS_TYPES[cls];
+        consume();
+        tokenBuffer.add(type, tokenLineNumber, tokenCharacterNumber);
+      } else {
+        int valueStart = isValueOfFirstCharacter(state) ? index : index + 1;
+        int row = state * CLASS_COUNT;
+        int end = index + 1;
+        int next;
+        while ((next = TRANSITIONS[row + getClass(getCharacter(end))]) == state) {
+          end++;
+        }
+        characterNumber += end - index;
+        index = end;
+        type = STATE_TYPES[state];
+        if (state == STATE_SYMBOL && isKeyword(valueStart, end)) {
+          type = TokenType.KEYWORD;
+        }
+        if (next == STOP_AFTER || state == STATE_COMMENT) {
+          // The closing quote of text, or the line break of a comment, is consumed after the value
+          consume();
+          tokenBuffer.add(type, tokenLineNumber, tokenCharacterNumber, valueStart, end);
+        } else if (type == TokenType.TEXT) {
+          // Rare: text left open at the end of a line includes the line break, and then skips a character of the next line
+          String value = new String(source, valueStart, end - valueStart) + '\n';
+          consume();
+          consume();
+          tokenBuffer.add(type, tokenLineNumber, tokenCharacterNumber, value);
+        } else {
+          tokenBuffer.add(type, tokenLineNumber, tokenCharacterNumber, valueStart, end);
+        }
+      }
+      if (leadingTrivia != 0) {
+        tokenBuffer.setLeadingTrivia(tokenBuffer.size() - 1, leadingTrivia);
+      }
+      if (type == TokenType.TERMINAL) {
+        return tokenBuffer;
+      }
+    }
+  }
+
+  private boolean isKeyword(int valueStart, int valueEnd) {
+    if (keywords == null) {
+      return Keyword.find(source, valueStart, valueEnd) != null;
+    }
+    return keywords.contains(new String(source, valueStart, valueEnd - valueStart));
+  }
+
+  @Override
+  @NotNull
+  public Iterable<IToken> scan() {
+    return scanTokenBuffer();
+  }
+}
@@ -0,0 +1,201 @@
+package com.jungle.scanner;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import com.jungle.token.IToken;
+import com.jungle.token.TokenBuffer;
+import org.jetbrains.annotations.NotNull;
+
+public class IncrementalScanner {
+  /* Rescans the lines of a source after an edit, reusing the tokens of the previous scan.
+   *
+   * Scanning restarts at the end of the last token before the edit, and continues until
+   * a new token after the edit is the same as a previous token (moved by the lines inserted or deleted).
+   * From there, scanning would only produce the previous tokens again, so they are reused instead.
+   *
+   * The restart token must end within its line, so that the scan restarts with a clean scanner state.
+   * A comment ends with (consumes) its line break, and
+   * a text literal left open at the end of a line also skips the first character of the next line,
+   * so the scan restarts before such tokens (see ParallelScanner).
+   */
+
+  @NotNull
+  private final List<String> lines;
+
+  @NotNull
+  private final Collection<String> keywords;
+
+  private boolean isTriviaFolded;
+
+  public IncrementalScanner(@NotNull List<String> lines, @NotNull Collection<String> keywords) {
+    super();
+    this.lines = lines;
+    this.keywords = keywords;
+  }
+
+  public IncrementalScanner(@NotNull List<String> lines) {
+    this(lines, Scanner.KEYWORDS);
+  }
+
+  @NotNull
+  public IncrementalScanner withTriviaFolded(boolean isTriviaFolded) {
+    // See Scanner::withTriviaFolded, the previous tokens must be scanned the same way
+    this.isTriviaFolded = isTriviaFolded;
+    return this;
+  }
+
+  // region restart
+
+  private static boolean isEndWithinLine(@NotNull TokenBuffer tokenBuffer, int index) {
+    switch (tokenBuffer.getType(index)) {
+      case COMMENT:
+      case NEWLINE:
+      case TERMINAL:
+        return false;
+      case TEXT:
+        String value = tokenBuffer.getValue(index);
+        return value == null || !value.endsWith("\n");
+      default:
+        return true;
+    }
+  }
+
+  private static int getEndCharacterNumber(@NotNull TokenBuffer tokenBuffer, int index) {
+    // The character number after a token that ends within its line
+    int characterNumber = tokenBuffer.getCharacterNumber(index);
+    String value = tokenBuffer.getValue(index);
+    switch (tokenBuffer.getType(index)) {
+      case NUMBER:
+      case SYMBOL:
+      case KEYWORD:
+        return characterNumber + (value == null ? 0 : value.length());
+      case TEXT:
+        // Opening and closing quotes
+        return characterNumber + (value == null ? 0 : value.length()) + 2;
+      default:
+        return characterNumber + 1;
+    }
+  }
+
+  private static int getFirstIndexFromLine(@NotNull TokenBuffer tokenBuffer, int lineNumber) {
+    // Binary search of the first token on or after the line
+    int low = 0;
+    int high = tokenBuffer.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (tokenBuffer.getLineNumber(middle) < lineNumber) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  // endregion
+
+  @NotNull
+  public TokenBuffer rescan(@NotNull TokenBuffer previousTokenBuffer, int startLineNumber, int previousEndLineNumber, int endLineNumber) {
+    /* The previous lines [startLineNumber, previousEndLineNumber] were replaced by the lines [startLineNumber, endLineNumber].
+     * An end line number before the start line number is an empty range (ie. lines inserted or deleted only).
+     */
+    if (startLineNumber <= 0) {
+      throw new IllegalArgumentException("start line number must be positive");
+    }
+    if (previousEndLineNumber < startLineNumber - 1 || endLineNumber < startLineNumber - 1) {
+      throw new IllegalArgumentException("end line number must not be before the start line number");
+    }
+    if (endLineNumber > lines.size()) {
+      throw new IllegalArgumentException("end line number after the last line");
+    }
+    int lineDelta = endLineNumber - previousEndLineNumber;
+
+    // Restart after the last token that ends (within its line) before the edit
+    int restartIndex = getFirstIndexFromLine(previousTokenBuffer, startLineNumber);
+    while (restartIndex > 0 && !isEndWithinLine(previousTokenBuffer, restartIndex - 1)) {
+      restartIndex--;
+    }
+    int restartLineNumber = 1;
+    int restartCharacterNumber = 1;
+    if (restartIndex > 0) {
+      restartLineNumber = previousTokenBuffer.getLineNumber(restartIndex - 1);
+      restartCharacterNumber = getEndCharacterNumber(previousTokenBuffer, restartIndex - 1);
+    }
+
+    // The symbol ids of the previous tokens are kept
+    TokenBuffer tokenBuffer = new TokenBuffer(new char[0], previousTokenBuffer.getSymbolInterner());
+    tokenBuffer.addAll(previousTokenBuffer, 0, restartIndex, 0);
+
+    // Scan the remaining lines, with the rest of the restart line as the first line.
+    // Note: the restart line is before the edit, so it is a line of both the previous and the edited source.
+    List<String> remainingLines = lines.subList(restartLineNumber - 1, lines.size());
+    Iterator<String> remainingLineIterator = remainingLines.iterator();
+    int firstLineStart = restartCharacterNumber - 1;
+    Iterator<String> lineIterator = new Iterator<String>() {
+      private boolean isFirstLine = true;
+
+      @Override
+      public boolean hasNext() {
+        return remainingLineIterator.hasNext();
+      }
+
+      @Override
+      @NotNull
+      public String next() {
+        String line = remainingLineIterator.next();
+        if (isFirstLine) {
+          isFirstLine = false;
+          return line.substring(Math.min(firstLineStart, line.length()));
+        }
+        return line;
+      }
+    };
+    Iterator<IToken> tokenIterator = new Scanner(lineIterator, keywords)
+            .withTriviaFolded(isTriviaFolded)
+            .withSymbolInterner(previousTokenBuffer.getSymbolInterner())
+            .tokenIterator();
+
+    // Previous tokens after the edit, that new tokens can resynchronize with
+    int previousIndex = getFirstIndexFromLine(previousTokenBuffer, previousEndLineNumber + 1);
+    while (tokenIterator.hasNext()) {
+      IToken token = tokenIterator.next();
+      int lineNumber = token.getLineNumber() + restartLineNumber - 1;
+      int characterNumber = token.getLineNumber() == 1
+              ? token.getCharacterNumber() + restartCharacterNumber - 1
+              : token.getCharacterNumber();
+      if (lineNumber > endLineNumber) {
+        // Skip previous tokens before the new token
+        while (previousIndex < previousTokenBuffer.size()
+                && isBefore(previousTokenBuffer, previousIndex, lineNumber - lineDelta, characterNumber)) {
+          previousIndex++;
+        }
+        if (previousIndex < previousTokenBuffer.size()
+                && isSame(previousTokenBuffer, previousIndex, token, lineNumber - lineDelta, characterNumber)) {
+          // Resynchronized
+          tokenBuffer.addAll(previousTokenBuffer, previousIndex, previousTokenBuffer.size(), lineDelta);
+          return tokenBuffer;
+        }
+      }
+      tokenBuffer.add(token.getType(), lineNumber, characterNumber, token.getValue());
+      tokenBuffer.setLeadingTrivia(tokenBuffer.size() - 1, token.getLeadingTrivia());
+    }
+    return tokenBuffer;
+  }
+
+  private static boolean isBefore(@NotNull TokenBuffer tokenBuffer, int index, int lineNumber, int characterNumber) {
+    int tokenLineNumber = tokenBuffer.getLineNumber(index);
+    return tokenLineNumber < lineNumber
+            || (tokenLineNumber == lineNumber && tokenBuffer.getCharacterNumber(index) < characterNumber);
+  }
+
+  private static boolean isSame(@NotNull TokenBuffer tokenBuffer, int index, @NotNull IToken token, int lineNumber, int characterNumber) {
+    return tokenBuffer.getLineNumber(index) == lineNumber
+            && tokenBuffer.getCharacterNumber(index) == characterNumber
+            && tokenBuffer.getType(index) == token.getType()
+            && tokenBuffer.getLeadingTrivia(index) == token.getLeadingTrivia()
+            && Objects.equals(tokenBuffer.getValue(index), token.getValue());
+  }
+}
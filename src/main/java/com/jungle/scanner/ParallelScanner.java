@@ -0,0 +1,237 @@
+package com.jungle.scanner;
+
+import java.nio.CharBuffer;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.jungle.common.SymbolInterner;
+import com.jungle.token.TokenBuffer;
+import com.jungle.token.TokenType;
+import org.jetbrains.annotations.NotNull;
+
+public class ParallelScanner {
+  /* Scans a large source on a fork-join pool, producing the same tokens as a sequential scan.
+   *
+   * The source is split into chunks at newline boundaries, and each chunk is scanned by its own scanner.
+   * A token never continues past the start of the next line, except for one case:
+   * a text literal left open at the end of a line ends with the line break, and
+   * its (missing) closing quote then skips the first character of the next line.
+   * A comment always ends with its line, so it can not cross a chunk boundary.
+   *
+   * So, when the previous chunk ends with an open text literal, the chunk is scanned again (seam repair),
+   * skipping its first character like the sequential scan would.
+   * The chunk token buffers are then concatenated, each moved down by the lines of the chunks before it.
+   */
+
+  public static final int MINIMUM_CHUNK_LENGTH = 1 << 16;
+  public static final int CHUNKS_PER_THREAD = 4;
+
+  @NotNull
+  private final char[] source;
+  private final int sourceOffset;
+  private final int sourceLength;
+
+  @NotNull
+  private final Collection<String> keywords;
+
+  @NotNull
+  private final ForkJoinPool pool;
+
+  private final int minimumChunkLength;
+
+  private boolean isTriviaFolded;
+
+  @NotNull
+  private SymbolInterner symbolInterner = new SymbolInterner();
+
+  public ParallelScanner(@NotNull CharBuffer source, @NotNull Collection<String> keywords, @NotNull ForkJoinPool pool, int minimumChunkLength) {
+    super();
+    if (minimumChunkLength <= 0) {
+      throw new IllegalArgumentException("minimum chunk length must be positive");
+    }
+    if (source.hasArray()) {
+      this.source = source.array();
+      this.sourceOffset = source.arrayOffset() + source.position();
+    } else {
+      this.source = new char[source.remaining()];
+      source.duplicate().get(this.source);
+      this.sourceOffset = 0;
+    }
+    this.sourceLength = source.remaining();
+    this.keywords = keywords;
+    this.pool = pool;
+    this.minimumChunkLength = minimumChunkLength;
+  }
+
+  public ParallelScanner(@NotNull CharBuffer source, @NotNull ForkJoinPool pool) {
+    this(source, Scanner.KEYWORDS, pool, MINIMUM_CHUNK_LENGTH);
+  }
+
+  public ParallelScanner(@NotNull CharBuffer source) {
+    this(source, ForkJoinPool.commonPool());
+  }
+
+  @NotNull
+  public ParallelScanner withTriviaFolded(boolean isTriviaFolded) {
+    // See Scanner::withTriviaFolded
+    this.isTriviaFolded = isTriviaFolded;
+    return this;
+  }
+
+  @NotNull
+  public ParallelScanner withSymbolInterner(@NotNull SymbolInterner symbolInterner) {
+    // See Scanner::withSymbolInterner, the interner of the scanned token buffer (not of its chunks)
+    this.symbolInterner = symbolInterner;
+    return this;
+  }
+
+  // region chunks
+
+  @NotNull
+  private int[] getChunkStarts() {
+    // Chunk k is [chunkStarts[k], chunkStarts[k + 1]), and every chunk but the last ends with a line feed
+    int chunkCount = Math.max(1, pool.getParallelism() * CHUNKS_PER_THREAD);
+    int chunkLength = Math.max(minimumChunkLength, sourceLength / chunkCount);
+    int[] chunkStarts = new int[sourceLength / chunkLength + 2];
+    int end = sourceOffset + sourceLength;
+    int count = 0;
+    int start = sourceOffset;
+    while (start < end) {
+      chunkStarts[count++] = start;
+      int index = start + chunkLength;
+      while (index < end && source[index - 1] != '\n') {
+        index++;
+      }
+      start = Math.min(index, end);
+    }
+    chunkStarts[count++] = end;
+    int[] result = new int[count];
+    System.arraycopy(chunkStarts, 0, result, 0, count);
+    return result;
+  }
+
+  private int countLineBreaks(int start, int end) {
+    // Like the scanner, a carriage return with an optional line feed is a single line break
+    int count = 0;
+    for (int i = start; i < end; i++) {
+      char c = source[i];
+      if (c == '\n' || (c == '\r' && (i + 1 == sourceOffset + sourceLength || source[i + 1] != '\n'))) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @NotNull
+  private TokenBuffer scanChunk(int start, int end, boolean isFirstCharacterSkipped) {
+    // A chunk has its own interner (see Scanner::withSymbolInterner)
+    Scanner scanner = new Scanner(CharBuffer.wrap(source, start, end - start), keywords)
+            .withTriviaFolded(isTriviaFolded);
+    if (isFirstCharacterSkipped) {
+      scanner.consume();
+    }
+    return scanner.scanTokenBuffer();
+  }
+
+  private static boolean isEndOfOpenText(@NotNull TokenBuffer chunkTokenBuffer, int chunkLineCount) {
+    // Whether the chunk ends with a text literal that ran past the end of its last line (see AbstractScanner::consumeValueUntil),
+    // in which case the character it skips is the first character of the next chunk.
+    int index = chunkTokenBuffer.size() - 2;
+    if (index < 0 || chunkTokenBuffer.getType(index) != TokenType.TEXT) return false;
+    if (chunkTokenBuffer.getLineNumber(index) != chunkLineCount) return false;
+    String value = chunkTokenBuffer.getValue(index);
+    return value != null && value.endsWith("\n");
+  }
+
+  // endregion
+
+  private class ScanChunksTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    @NotNull
+    private final int[] chunkStarts;
+
+    @NotNull
+    private final TokenBuffer[] chunkTokenBuffers;
+
+    @NotNull
+    private final int[] chunkLineBreakCounts;
+
+    private final int fromChunk;
+    private final int toChunk;
+
+    ScanChunksTask(@NotNull int[] chunkStarts, @NotNull TokenBuffer[] chunkTokenBuffers, @NotNull int[] chunkLineBreakCounts, int fromChunk, int toChunk) {
+      super();
+      this.chunkStarts = chunkStarts;
+      this.chunkTokenBuffers = chunkTokenBuffers;
+      this.chunkLineBreakCounts = chunkLineBreakCounts;
+      this.fromChunk = fromChunk;
+      this.toChunk = toChunk;
+    }
+
+    @Override
+    protected void compute() {
+      if (toChunk - fromChunk == 1) {
+        int start = chunkStarts[fromChunk];
+        int end = chunkStarts[fromChunk + 1];
+        chunkTokenBuffers[fromChunk] = scanChunk(start, end, false);
+        chunkLineBreakCounts[fromChunk] = countLineBreaks(start, end);
+        return;
+      }
+      int middleChunk = (fromChunk + toChunk) >>> 1;
+      invokeAll(
+              new ScanChunksTask(chunkStarts, chunkTokenBuffers, chunkLineBreakCounts, fromChunk, middleChunk),
+              new ScanChunksTask(chunkStarts, chunkTokenBuffers, chunkLineBreakCounts, middleChunk, toChunk)
+      );
+    }
+  }
+
+  @NotNull
+  public TokenBuffer scanTokenBuffer() {
+    int[] chunkStarts = getChunkStarts();
+    int chunkCount = chunkStarts.length - 1;
+    if (chunkCount <= 1) {
+      // Too small to split
+      return new Scanner(CharBuffer.wrap(source, sourceOffset, sourceLength), keywords)
+              .withTriviaFolded(isTriviaFolded)
+              .withSymbolInterner(symbolInterner)
+              .scanTokenBuffer();
+    }
+    TokenBuffer[] chunkTokenBuffers = new TokenBuffer[chunkCount];
+    int[] chunkLineBreakCounts = new int[chunkCount];
+    pool.invoke(new ScanChunksTask(chunkStarts, chunkTokenBuffers, chunkLineBreakCounts, 0, chunkCount));
+
+    int capacity = 0;
+    for (TokenBuffer chunkTokenBuffer : chunkTokenBuffers) {
+      capacity += chunkTokenBuffer.size();
+    }
+    TokenBuffer tokenBuffer = new TokenBuffer(source, capacity, symbolInterner);
+    int lineOffset = 0;
+    boolean isFirstCharacterSkipped = false;
+    // Folded trivia at the end of a chunk leads the first token of the next chunk
+    int carriedTrivia = 0;
+    for (int k = 0; k < chunkCount; k++) {
+      TokenBuffer chunkTokenBuffer = chunkTokenBuffers[k];
+      if (isFirstCharacterSkipped) {
+        // Seam repair
+        chunkTokenBuffer = scanChunk(chunkStarts[k], chunkStarts[k + 1], true);
+      }
+      // Only the last chunk ends with the terminal token of the source
+      boolean isLastChunk = k == chunkCount - 1;
+      int toIndex = isLastChunk ? chunkTokenBuffer.size() : chunkTokenBuffer.size() - 1;
+      int firstIndex = tokenBuffer.size();
+      tokenBuffer.addAll(chunkTokenBuffer, 0, toIndex, lineOffset);
+      if (toIndex > 0) {
+        tokenBuffer.setLeadingTrivia(firstIndex, tokenBuffer.getLeadingTrivia(firstIndex) | carriedTrivia);
+        carriedTrivia = 0;
+      }
+      if (!isLastChunk) {
+        carriedTrivia |= chunkTokenBuffer.getLeadingTrivia(chunkTokenBuffer.size() - 1);
+      }
+      isFirstCharacterSkipped = isEndOfOpenText(chunkTokenBuffer, chunkLineBreakCounts[k]);
+      lineOffset += chunkLineBreakCounts[k];
+    }
+    return tokenBuffer;
+  }
+}
@@ -1,11 +1,18 @@
 package com.jungle.scanner;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.*;
+import java.util.function.IntPredicate;
 
+import com.jungle.common.SymbolInterner;
 import com.jungle.token.IToken;
+import com.jungle.token.Keyword;
 import com.jungle.token.Token;
+import com.jungle.token.TokenBuffer;
 import com.jungle.token.TokenType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import static java.lang.Character.isAlphabetic;
 import static java.lang.Character.isDigit;
@@ -61,17 +68,35 @@ public class Scanner extends AbstractScanner {
           KEYWORD_CONVERT_DOUBLE
   );
 
-  @NotNull
+  // The keywords of the scanner, or null when they are the default keywords (see Keyword::find)
+  @Nullable
   private final Set<String> keywords;
 
+  @Nullable
+  private static Set<String> getCustomKeywords(@NotNull Collection<String> keywords) {
+    Set<String> keywordSet = new HashSet<>(keywords);
+    return keywordSet.equals(new HashSet<>(KEYWORDS)) ? null : keywordSet;
+  }
+
   protected boolean isKeyword(@NotNull String keyword) {
+    if (keywords == null) {
+      return Keyword.find(keyword) != null;
+    }
     return keywords.contains(keyword);
   }
 
+  @Nullable
+  protected Keyword findKeyword() {
+    // Find the keyword of the value (see consumeValueUntil), without creating a string when the value is in the source
+    Keyword keyword = isValueInSourceArray()
+            ? Keyword.find(getSourceArray(), getValueStartOffset(), getValueEndOffset())
+            : Keyword.find(getValue());
+    return keyword;
+  }
+
   public Scanner(@NotNull Iterator<String> lineIterator, @NotNull Collection<String> keywords) {
     super(lineIterator);
-    this.keywords = new HashSet<>();
-    this.keywords.addAll(keywords);
+    this.keywords = getCustomKeywords(keywords);
   }
 
   public Scanner(@NotNull Iterator<String> lineIterator) {
@@ -82,152 +107,326 @@ public class Scanner extends AbstractScanner {
     this(lineIterable.iterator(), KEYWORDS);
   }
 
+  public Scanner(@NotNull CharBuffer source, @NotNull Collection<String> keywords) {
+    super(source);
+    this.keywords = getCustomKeywords(keywords);
+  }
+
+  public Scanner(@NotNull CharBuffer source) {
+    this(source, KEYWORDS);
+  }
+
+  public Scanner(@NotNull ByteBuffer utf8Source, @NotNull Collection<String> keywords) {
+    super(utf8Source);
+    this.keywords = getCustomKeywords(keywords);
+  }
+
+  public Scanner(@NotNull ByteBuffer utf8Source) {
+    this(utf8Source, KEYWORDS);
+  }
+
+  // When trivia is folded, spaces, tabs and newlines are leading trivia flags of the next token instead of tokens
+  private boolean isTriviaFolded;
+
+  @NotNull
+  public Scanner withTriviaFolded(boolean isTriviaFolded) {
+    this.isTriviaFolded = isTriviaFolded;
+    return this;
+  }
+
+  // The symbol ids of the compilation (see SymbolInterner), a scanner interns into its own by default
+  @NotNull
+  private SymbolInterner symbolInterner = new SymbolInterner();
+
+  @NotNull
+  public Scanner withSymbolInterner(@NotNull SymbolInterner symbolInterner) {
+    this.symbolInterner = symbolInterner;
+    return this;
+  }
+
+  @NotNull
+  public SymbolInterner getSymbolInterner() {
+    return symbolInterner;
+  }
+
+  // region character classes
+
+  @NotNull
+  private static final IntPredicate IS_NOT_NUMERIC = (c) -> !isDigit(c);
+
+  @NotNull
+  private static final IntPredicate IS_NOT_ALPHABETIC = (c) -> !isAlphabetic(c);
+
+  @NotNull
+  private static final IntPredicate IS_NOT_ALPHANUMERIC = (c) -> !(isAlphabetic(c) || isDigit(c));
+
+  // endregion
+
   @NotNull
   protected String consumeNumeric() {
-    return consumeUntil((c) -> !isDigit(c));
+    return consumeUntil(IS_NOT_NUMERIC);
   }
 
   @NotNull
   protected String consumeAlphabetic() {
-    return consumeUntil((c) -> !isAlphabetic(c));
+    return consumeUntil(IS_NOT_ALPHABETIC);
   }
 
   @NotNull
   protected String consumeAlphaNumeric() {
-    return consumeUntil((c) -> !(isAlphabetic(c) || isDigit(c)));
+    return consumeUntil(IS_NOT_ALPHANUMERIC);
+  }
+
+  protected void consumeValueUntilAndSkip(char terminal) {
+    consumeValueUntil(getCharacterIndex(), (c) -> c == terminal);
+    consume(); // skip terminal
   }
 
   @NotNull
   protected  String consumeUntilAndSkip(char terminal) {
-    String s = consumeUntil((c) -> c == terminal);
-    consume(); // skip terminal
-    return s;
+    consumeValueUntilAndSkip(terminal);
+    return getValue();
   }
 
+  protected int consumeTrivia() {
+    // Consume whitespace up to the next token, and return its leading trivia flags.
+    // Note: a carriage return of a line source is not whitespace to the parser, so it is still a token.
+    int leadingTrivia = 0;
+    while (true) {
+      char c = peek();
+      if (c == ' ' || c == '\t') {
+        leadingTrivia |= IToken.TRIVIA_SPACE;
+      } else if (c == '\n') {
+        leadingTrivia |= IToken.TRIVIA_NEWLINE;
+      } else {
+        return leadingTrivia;
+      }
+      consume();
+    }
+  }
+
+  // Whether the last scanned token has a value, see getValue()
+  private boolean hasTokenValue;
+
+  // The keyword of the last scanned token
+  @Nullable
+  private Keyword tokenKeyword;
+
   @NotNull
-  public IToken scanToken() {
-    int lineNumber = getLineNumber();
-    int characterNumber = getCharacterNumber();
-    Token token;
+  protected TokenType scanTokenType() {
+    // Scan the next token without creating it,
+    // so that its value is only created as a string when needed.
+    int characterIndex = getCharacterIndex();
+    hasTokenValue = false;
+    tokenKeyword = null;
+    TokenType type;
     char c = consume();
     switch (c) {
       case '=':
-        token = new Token(TokenType.EQUALS);
+        type = TokenType.EQUALS;
         break;
       case '+':
-        token = new Token(TokenType.PLUS);
+        type = TokenType.PLUS;
         break;
       case '-':
-        token = new Token(TokenType.MINUS);
+        type = TokenType.MINUS;
         break;
       case '*':
-        token = new Token(TokenType.ASTERISK);
+        type = TokenType.ASTERISK;
         break;
       case '%':
-        token = new Token(TokenType.PERCENT);
+        type = TokenType.PERCENT;
         break;
       case '/':
-        token = new Token(TokenType.SLASH_RIGHT);
+        type = TokenType.SLASH_RIGHT;
         break;
       case '\\':
-        token = new Token(TokenType.SLASH_LEFT);
+        type = TokenType.SLASH_LEFT;
         break;
       case '<':
-        token = new Token(TokenType.BRACKET_ANGLE_OPEN);
+        type = TokenType.BRACKET_ANGLE_OPEN;
         break;
       case '>':
-        token = new Token(TokenType.BRACKET_ANGLE_CLOSE);
+        type = TokenType.BRACKET_ANGLE_CLOSE;
         break;
       case '{':
-        token = new Token(TokenType.BRACKET_CURLY_OPEN);
+        type = TokenType.BRACKET_CURLY_OPEN;
         break;
       case '}':
-        token = new Token(TokenType.BRACKET_CURLY_CLOSE);
+        type = TokenType.BRACKET_CURLY_CLOSE;
         break;
       case '(':
-        token = new Token(TokenType.BRACKET_ROUND_OPEN);
+        type = TokenType.BRACKET_ROUND_OPEN;
         break;
       case ')':
-        token = new Token(TokenType.BRACKET_ROUND_CLOSE);
+        type = TokenType.BRACKET_ROUND_CLOSE;
         break;
       case '[':
-        token = new Token(TokenType.BRACKET_SQUARE_OPEN);
+        type = TokenType.BRACKET_SQUARE_OPEN;
         break;
       case ']':
-        token = new Token(TokenType.BRACKET_SQUARE_CLOSE);
+        type = TokenType.BRACKET_SQUARE_CLOSE;
         break;
       case ';':
-        token = new Token(TokenType.SEMICOLON);
+        type = TokenType.SEMICOLON;
         break;
       case ':':
-        token = new Token(TokenType.COLON);
+        type = TokenType.COLON;
         break;
       case ',':
-        token = new Token(TokenType.COMMA);
+        type = TokenType.COMMA;
         break;
       case '.':
-        token = new Token(TokenType.DOT);
+        type = TokenType.DOT;
         break;
       case '|':
-        token = new Token(TokenType.PIPE);
+        type = TokenType.PIPE;
         break;
       case '#':
-        token = new Token(TokenType.COMMENT).withValue(consumeUntilAndSkip('\n'));
+        consumeValueUntilAndSkip('\n');
+        hasTokenValue = true;
+        type = TokenType.COMMENT;
         break;
       // Text
       case '"':
-        token = new Token(TokenType.TEXT).withValue(consumeUntilAndSkip('"'));
+        consumeValueUntilAndSkip('"');
+        hasTokenValue = true;
+        type = TokenType.TEXT;
         break;
       case '`':
-        token = new Token(TokenType.TEXT).withValue(consumeUntilAndSkip('`'));
+        consumeValueUntilAndSkip('`');
+        hasTokenValue = true;
+        type = TokenType.TEXT;
         break;
       case '\'':
-        token = new Token(TokenType.TEXT).withValue(consumeUntilAndSkip('\''));
+        consumeValueUntilAndSkip('\'');
+        hasTokenValue = true;
+        type = TokenType.TEXT;
         break;
       // Whitespace
       case ' ':
-        token = new Token(TokenType.SPACE);
+        type = TokenType.SPACE;
         break;
       case '\n':
-        token = new Token(TokenType.NEWLINE);
+        type = TokenType.NEWLINE;
         break;
       case '\t':
-        token = new Token(TokenType.TAB);
+        type = TokenType.TAB;
         break;
       case '\r':
-        token = new Token(TokenType.RETURN);
+        type = TokenType.RETURN;
         break;
       case '\0':
-        token = new Token(TokenType.TERMINAL);
+        type = TokenType.TERMINAL;
         break;
       default: {
         if (isDigit(c)) {
-          String s = c + consumeNumeric();
-          token = new Token(TokenType.NUMBER).withValue(s);
+          consumeValueUntil(characterIndex, IS_NOT_NUMERIC);
+          hasTokenValue = true;
+          type = TokenType.NUMBER;
         } else if (isAlphabetic(c)) {
-          String s = c + consumeAlphaNumeric();
-          if (isKeyword(s)) {
-            token = new Token(TokenType.KEYWORD).withValue(s);
+          consumeValueUntil(characterIndex, IS_NOT_ALPHANUMERIC);
+          hasTokenValue = true;
+          if (keywords == null) {
+            // Default keywords are found by perfect hash, without creating a string
+            tokenKeyword = findKeyword();
+            type = tokenKeyword != null ? TokenType.KEYWORD : TokenType.SYMBOL;
+          } else if (isKeyword(getValue())) {
+            // Custom keywords are found by set, and might not have a keyword id
+            tokenKeyword = findKeyword();
+            type = TokenType.KEYWORD;
           } else {
-            token = new Token(TokenType.SYMBOL).withValue(s);
+            type = TokenType.SYMBOL;
           }
         } else {
-          token = new Token(TokenType.UNKNOWN);
+          type = TokenType.UNKNOWN;
         }
       }
       break;
     }
-    return token.withPosition(lineNumber, characterNumber);
+    return type;
+  }
+
+  @NotNull
+  public IToken scanToken() {
+    int leadingTrivia = isTriviaFolded ? consumeTrivia() : 0;
+    int lineNumber = getLineNumber();
+    int characterNumber = getCharacterNumber();
+    Token token = new Token(scanTokenType());
+    if (hasTokenValue && token.getType() == TokenType.SYMBOL) {
+      // A symbol name is only created the first time it is scanned
+      int symbolId = isValueInSourceArray()
+              ? symbolInterner.intern(getSourceArray(), getValueStartOffset(), getValueEndOffset())
+              : symbolInterner.intern(getValue());
+      token.withSymbolId(symbolId, symbolInterner.getName(symbolId));
+    } else if (hasTokenValue) {
+      token.withValue(getValue());
+    }
+    if (tokenKeyword != null) {
+      token.withKeyword(tokenKeyword);
+    }
+    return token
+            .withPosition(lineNumber, characterNumber)
+            .withLeadingTrivia(leadingTrivia);
+  }
+
+  @NotNull
+  public TokenBuffer scanTokenBuffer() {
+    // Scan all tokens into parallel arrays instead of token objects.
+    // When the source is a character buffer, token values are not copied, but referenced by range.
+    char[] sourceArray = getSourceArray();
+    TokenBuffer tokenBuffer = sourceArray == null
+            ? new TokenBuffer(new char[0], symbolInterner)
+            : new TokenBuffer(sourceArray, symbolInterner);
+    TokenType type;
+    do {
+      int leadingTrivia = isTriviaFolded ? consumeTrivia() : 0;
+      int lineNumber = getLineNumber();
+      int characterNumber = getCharacterNumber();
+      type = scanTokenType();
+      if (!hasTokenValue) {
+        tokenBuffer.add(type, lineNumber, characterNumber);
+      } else if (isValueInSourceArray()) {
+        tokenBuffer.add(type, lineNumber, characterNumber, getValueStartOffset(), getValueEndOffset());
+      } else {
+        tokenBuffer.add(type, lineNumber, characterNumber, getValue());
+      }
+      if (leadingTrivia != 0) {
+        tokenBuffer.setLeadingTrivia(tokenBuffer.size() - 1, leadingTrivia);
+      }
+    } while (!TokenType.TERMINAL.equals(type));
+    return tokenBuffer;
+  }
+
+  @NotNull
+  public Iterator<IToken> tokenIterator() {
+    // Scan tokens on demand (up to and including the terminal token),
+    // so that a consumer such as the parser runs interleaved with the scanner.
+    return new Iterator<IToken>() {
+      private boolean hasScannedTerminal = false;
+
+      @Override
+      public boolean hasNext() {
+        return !hasScannedTerminal;
+      }
+
+      @Override
+      @NotNull
+      public IToken next() {
+        if (hasScannedTerminal) {
+          throw new NoSuchElementException("terminal token already scanned");
+        }
+        IToken token = scanToken();
+        hasScannedTerminal = TokenType.TERMINAL.equals(token.getType());
+        return token;
+      }
+    };
   }
 
   @NotNull
   public Iterable<IToken> scan() {
     List<IToken> tokenList = new LinkedList<>();
-    IToken token;
-    do {
-      token = scanToken();
-      tokenList.add(token);
-    } while (!TokenType.TERMINAL.equals(token.getType()));
+    tokenIterator().forEachRemaining(tokenList::add);
     return tokenList;
   }
 }
@@ -4,8 +4,15 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public interface IToken {
+  // Leading trivia flags of a token, when whitespace is folded into the next token instead of scanned as tokens
+  int TRIVIA_SPACE = 1; // space or tab
+  int TRIVIA_NEWLINE = 2;
+
   @NotNull TokenType getType();
   @Nullable String getValue();
   int getLineNumber();
   int getCharacterNumber();
+  @Nullable Keyword getKeyword();
+  int getSymbolId(); // SymbolInterner id of a symbol token, or else NO_SYMBOL
+  int getLeadingTrivia();
 }
@@ -0,0 +1,92 @@
+package com.jungle.token;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public enum Keyword {
+  ASSERT("assert"),
+  IF("if"),
+  ELSE("else"),
+  LOOP("loop"),
+  PRINT("print"),
+  MULTITASK("multitask"),
+  SLEEP("sleep"),
+  AND("and"),
+  OR("or"),
+  NOT("not"),
+  EQUALS("equals"),
+  GREATER_THAN("greaterThan"),
+  LESS_THAN("lessThan"),
+  TRUE("true"),
+  FALSE("false"),
+  CONVERT_CHAR("unicode"),
+  CONVERT_BYTE("i8"),
+  CONVERT_SHORT("i16"),
+  CONVERT_INTEGER("i32"),
+  CONVERT_LONG("i64"),
+  CONVERT_FLOAT("f32"),
+  CONVERT_DOUBLE("f64"),
+  ;
+
+  @NotNull
+  private final String value;
+
+  Keyword(@NotNull String value) {
+    this.value = value;
+  }
+
+  @NotNull
+  public String getValue() {
+    return value;
+  }
+
+  // region perfect hash
+
+  /* Keywords are found by a perfect hash of their length, first and last character,
+   * so recognizing a keyword is one table lookup and one comparison, without creating a string.
+   * The hash is verified to be collision free when the table is built.
+   */
+
+  private static final int TABLE_MASK = 63;
+
+  @NotNull
+  private static final Keyword[] TABLE = new Keyword[TABLE_MASK + 1];
+
+  static {
+    for (Keyword keyword : values()) {
+      int index = hash(keyword.value.length(), keyword.value.charAt(0), keyword.value.charAt(keyword.value.length() - 1));
+      if (TABLE[index] != null) {
+        throw new Error("keyword hash collision - " + TABLE[index].value + " " + keyword.value);
+      }
+      TABLE[index] = keyword;
+    }
+  }
+
+  private static int hash(int length, char first, char last) {
+    return (length + 7 * first + last) & TABLE_MASK;
+  }
+
+  @Nullable
+  public static Keyword find(@NotNull char[] characters, int start, int end) {
+    int length = end - start;
+    if (length <= 0) return null;
+    Keyword keyword = TABLE[hash(length, characters[start], characters[end - 1])];
+    if (keyword == null || keyword.value.length() != length) return null;
+    for (int i = 0; i < length; i++) {
+      if (keyword.value.charAt(i) != characters[start + i]) return null;
+    }
+    return keyword;
+  }
+
+  @Nullable
+  public static Keyword find(@Nullable CharSequence value) {
+    if (value == null) return null;
+    int length = value.length();
+    if (length == 0) return null;
+    Keyword keyword = TABLE[hash(length, value.charAt(0), value.charAt(length - 1))];
+    if (keyword == null || !keyword.value.contentEquals(value)) return null;
+    return keyword;
+  }
+
+  // endregion
+}
@@ -1,5 +1,7 @@
 package com.jungle.token;
 
+import com.jungle.common.SymbolInterner;
+import com.jungle.common.VarintUtils;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
@@ -9,10 +11,18 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 public class Token implements IToken {
   @NotNull
@@ -21,8 +31,15 @@ public class Token implements IToken {
   @Nullable
   private String value;
 
+  @Nullable
+  private Keyword keyword;
+
+  private int symbolId = SymbolInterner.NO_SYMBOL;
+
   int lineNumber, characterNumber;
 
+  int leadingTrivia;
+
   public Token(@NotNull TokenType type) {
     super();
     this.type = type;
@@ -50,6 +67,27 @@ public class Token implements IToken {
     return characterNumber;
   }
 
+  @Override
+  @Nullable
+  public Keyword getKeyword() {
+    if (keyword == null && type == TokenType.KEYWORD) {
+      // Tokens that are not scanned (eg. loaded) resolve the keyword of their value when first needed
+      keyword = Keyword.find(value);
+    }
+    return keyword;
+  }
+
+  @Override
+  public int getSymbolId() {
+    // Tokens that are not scanned (eg. loaded) have no symbol id, the parser interns their value instead
+    return symbolId;
+  }
+
+  @Override
+  public int getLeadingTrivia() {
+    return leadingTrivia;
+  }
+
   @Override
   public boolean equals(@Nullable Object other) {
     if (other == null) return false;
@@ -86,6 +124,26 @@ public class Token implements IToken {
     return this;
   }
 
+  @NotNull
+  public Token withSymbolId(int symbolId, @NotNull String name) {
+    // The value of a symbol token is its interned name (see SymbolInterner::getName)
+    this.symbolId = symbolId;
+    this.value = name;
+    return this;
+  }
+
+  @NotNull
+  public Token withKeyword(@Nullable Keyword keyword) {
+    this.keyword = keyword;
+    return this;
+  }
+
+  @NotNull
+  public Token withLeadingTrivia(int leadingTrivia) {
+    this.leadingTrivia = leadingTrivia;
+    return this;
+  }
+
   @NotNull
   public Token withPosition(int lineNumber, int characterNumber) {
     this.lineNumber = lineNumber;
@@ -93,14 +151,47 @@ public class Token implements IToken {
     return this;
   }
 
+  // region trivia
+
+  // Leading trivia is written as a prefix of the token type, eg. "sn:KEYWORD" for a keyword after spaces and newlines
+  private static final char TRIVIA_SPACE_CHARACTER = 's';
+  private static final char TRIVIA_NEWLINE_CHARACTER = 'n';
+  private static final char TRIVIA_SEPARATOR = ':';
+
+  @NotNull
+  private static String getTypeWithLeadingTrivia(@NotNull IToken token) {
+    int leadingTrivia = token.getLeadingTrivia();
+    if (leadingTrivia == 0) {
+      return token.getType().name();
+    }
+    StringBuilder builder = new StringBuilder();
+    if ((leadingTrivia & TRIVIA_SPACE) != 0) builder.append(TRIVIA_SPACE_CHARACTER);
+    if ((leadingTrivia & TRIVIA_NEWLINE) != 0) builder.append(TRIVIA_NEWLINE_CHARACTER);
+    return builder.append(TRIVIA_SEPARATOR).append(token.getType().name()).toString();
+  }
+
+  private static int getLeadingTrivia(@NotNull String triviaPart) {
+    int leadingTrivia = 0;
+    for (int i = 0; i < triviaPart.length(); i++) {
+      switch (triviaPart.charAt(i)) {
+        case TRIVIA_SPACE_CHARACTER: leadingTrivia |= TRIVIA_SPACE; break;
+        case TRIVIA_NEWLINE_CHARACTER: leadingTrivia |= TRIVIA_NEWLINE; break;
+        default: throw new Error("invalid token trivia " + triviaPart);
+      }
+    }
+    return leadingTrivia;
+  }
+
+  // endregion
+
   public static String getTokenAsLine(@NotNull IToken token) {
     return String.format(
             "%d\t%d\t%s\n",
             token.getLineNumber(),
             token.getCharacterNumber(),
             token.getValue() == null
-                    ? token.getType().name()
-                    : token.getType().name() + '\t' + StringEscapeUtils.escapeJava(token.getValue())
+                    ? getTypeWithLeadingTrivia(token)
+                    : getTypeWithLeadingTrivia(token) + '\t' + StringEscapeUtils.escapeJava(token.getValue())
     );
   }
 
@@ -121,58 +212,254 @@ public class Token implements IToken {
     // then return the entire List.
 
     List<IToken> tokenList = new LinkedList<>();
+    loadIterator(reader).forEachRemaining(tokenList::add);
+    return tokenList;
+  }
 
+  @NotNull
+  public static Iterator<IToken> loadIterator(@NotNull BufferedReader reader) {
+    // Like load, but each line is read and converted when the next token is needed (eg. by the parser)
     Iterator<String> lineIterator = reader.lines().iterator();
-    while (lineIterator.hasNext()) {
-      String line = lineIterator.next();
+    return new Iterator<IToken>() {
+      @Nullable
+      private IToken nextToken;
 
-      if (line.trim().equals(StringUtils.EMPTY)) {
-        continue;
+      @Override
+      public boolean hasNext() {
+        while (nextToken == null && lineIterator.hasNext()) {
+          nextToken = getLineAsToken(lineIterator.next());
+        }
+        return nextToken != null;
       }
 
-      // A line has at least 3 part and at most 4 parts.
-      // Each part is delimited by a tab character.
-      // To ensure that the token value is not accidentally partitioned, we set a split limit of 4.
-      // This means that the split return value will be an array of at most for items, and
-      // it will preserve the token value if that value contains tab characters.
-      String[] lineParts = line.split("\t", 4);
-
-      boolean isInvalidToken = lineParts.length < 3;
-      if (isInvalidToken) {
-        throw new Error("invalid token " + line);
+      @Override
+      @NotNull
+      public IToken next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        IToken token = nextToken;
+        nextToken = null;
+        return token;
       }
+    };
+  }
 
-      int lineNumber;
-      try {
-        lineNumber = Integer.parseInt(lineParts[0]);
-      } catch (NumberFormatException e) {
-        throw new Error("invalid line number", e);
-      }
+  @Nullable
+  private static IToken getLineAsToken(@NotNull String line) {
+    // The token of a line, or null when the line is blank
+    if (line.trim().equals(StringUtils.EMPTY)) {
+      return null;
+    }
+
+    // A line has at least 3 part and at most 4 parts.
+    // Each part is delimited by a tab character.
+    // To ensure that the token value is not accidentally partitioned, we set a split limit of 4.
+    // This means that the split return value will be an array of at most for items, and
+    // it will preserve the token value if that value contains tab characters.
+    String[] lineParts = line.split("\t", 4);
+
+    boolean isInvalidToken = lineParts.length < 3;
+    if (isInvalidToken) {
+      throw new Error("invalid token " + line);
+    }
+
+    int lineNumber;
+    try {
+      lineNumber = Integer.parseInt(lineParts[0]);
+    } catch (NumberFormatException e) {
+      throw new Error("invalid line number", e);
+    }
+
+    int characterNumber;
+    try {
+      characterNumber = Integer.parseInt(lineParts[1]);
+    } catch (NumberFormatException e) {
+      throw new Error("invalid character position", e);
+    }
+
+    String typePart = lineParts[2];
+    int leadingTrivia = 0;
+    int separatorIndex = typePart.indexOf(TRIVIA_SEPARATOR);
+    if (separatorIndex >= 0) {
+      leadingTrivia = getLeadingTrivia(typePart.substring(0, separatorIndex));
+      typePart = typePart.substring(separatorIndex + 1);
+    }
+
+    TokenType tokenType;
+    try {
+      tokenType = TokenType.valueOf(typePart);
+    } catch (IllegalArgumentException e) {
+      throw new Error("invalid token type", e);
+    }
+
+    Token token = new Token(tokenType)
+            .withPosition(lineNumber, characterNumber)
+            .withLeadingTrivia(leadingTrivia);
+
+    boolean hasValue = lineParts.length > 3;
+    if (hasValue) {
+      token.withValue(StringEscapeUtils.unescapeJava(lineParts[3]));
+    }
+
+    return token;
+  }
+
+  // region binary
 
-      int characterNumber;
-      try {
-        characterNumber = Integer.parseInt(lineParts[1]);
-      } catch (NumberFormatException e) {
-        throw new Error("invalid character position", e);
+  /* The binary token format is a compact alternative to the text format, for scan | parse pipes.
+   *
+   * The stream starts with a magic number, followed by one record per token:
+   * - a header byte, with the type ordinal (bits 0-4), the leading trivia (bits 5-6) and whether a value follows (bit 7),
+   * - the line number delta from the previous token (zigzag varint),
+   * - the character number delta from the previous token on the same line, or else the character number (varint),
+   * - the value, as an index of the string table (varint).
+   *   The index after the last string adds a new string to the table, its UTF-8 length (varint) and bytes follow.
+   * Values are mostly repeated symbols, keywords and numbers, so each distinct value is written once.
+   */
+
+  private static final int BINARY_MAGIC = 0x4A544B31; // JTK1
+  private static final int BINARY_TYPE_MASK = 0x1F;
+  private static final int BINARY_TRIVIA_SHIFT = 5;
+  private static final int BINARY_HAS_VALUE = 0x80;
+
+  @NotNull
+  private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+  static {
+    if (TOKEN_TYPES.length > BINARY_TYPE_MASK + 1) {
+      throw new Error("too many token types for the binary token format");
+    }
+  }
+
+  public static void saveBinary(@NotNull OutputStream stream, @NotNull Iterable<IToken> tokenIterable) throws IOException {
+    // Note: the stream should be buffered, bytes are written one at a time
+    Map<String, Integer> stringTable = new HashMap<>();
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      stream.write(BINARY_MAGIC >>> shift);
+    }
+    int previousLineNumber = 0;
+    int previousCharacterNumber = 0;
+    for (IToken token : tokenIterable) {
+      String value = token.getValue();
+      int header = token.getType().ordinal() | (token.getLeadingTrivia() << BINARY_TRIVIA_SHIFT);
+      if (value != null) {
+        header |= BINARY_HAS_VALUE;
       }
+      stream.write(header);
+
+      int lineDelta = token.getLineNumber() - previousLineNumber;
+      VarintUtils.writeZigzagVarint(stream, lineDelta);
+      VarintUtils.writeVarint(stream, lineDelta == 0
+              ? token.getCharacterNumber() - previousCharacterNumber
+              : token.getCharacterNumber());
+      previousLineNumber = token.getLineNumber();
+      previousCharacterNumber = token.getCharacterNumber();
 
-      TokenType tokenType;
-      try {
-        tokenType = TokenType.valueOf(lineParts[2]);
-      } catch (IllegalArgumentException e) {
-        throw new Error("invalid token type", e);
+      if (value != null) {
+        Integer index = stringTable.get(value);
+        if (index != null) {
+          VarintUtils.writeVarint(stream, index);
+        } else {
+          VarintUtils.writeVarint(stream, stringTable.size());
+          stringTable.put(value, stringTable.size());
+          byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+          VarintUtils.writeVarint(stream, bytes.length);
+          stream.write(bytes);
+        }
       }
+    }
+  }
 
-      Token token = new Token(tokenType).withPosition(lineNumber, characterNumber);
+  @NotNull
+  public static Iterator<IToken> loadBinary(@NotNull InputStream stream) {
+    // Tokens are read on demand, so a parser pulling from the iterator never holds the entire token list.
+    // Note: the stream should be buffered, bytes are read one at a time
+    return new Iterator<IToken>() {
+      @NotNull
+      private final List<String> stringTable = new ArrayList<>();
 
-      boolean hasValue = lineParts.length > 3;
-      if (hasValue) {
-        token.withValue(StringEscapeUtils.unescapeJava(lineParts[3]));
+      private boolean isMagicRead = false;
+      private int nextHeader = -1;
+      private int previousLineNumber = 0;
+      private int previousCharacterNumber = 0;
+
+      private int readHeader() {
+        try {
+          if (!isMagicRead) {
+            isMagicRead = true;
+            int magic = 0;
+            for (int i = 0; i < 4; i++) {
+              int b = stream.read();
+              if (b < 0) {
+                // An empty stream has no tokens
+                if (i == 0) return -1;
+                throw new Error("truncated token stream");
+              }
+              magic = (magic << 8) | b;
+            }
+            if (magic != BINARY_MAGIC) {
+              throw new Error("invalid token stream magic number");
+            }
+          }
+          return stream.read();
+        } catch (IOException e) {
+          throw new Error("failed to read token stream", e);
+        }
       }
 
-      tokenList.add(token);
-    }
+      @Override
+      public boolean hasNext() {
+        if (nextHeader < 0) {
+          nextHeader = readHeader();
+        }
+        return nextHeader >= 0;
+      }
 
-    return tokenList;
+      @Override
+      @NotNull
+      public IToken next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        int header = nextHeader;
+        nextHeader = -1;
+        int typeOrdinal = header & BINARY_TYPE_MASK;
+        if (typeOrdinal >= TOKEN_TYPES.length) {
+          throw new Error("invalid token type " + typeOrdinal);
+        }
+        Token token = new Token(TOKEN_TYPES[typeOrdinal])
+                .withLeadingTrivia((header & ~BINARY_HAS_VALUE) >>> BINARY_TRIVIA_SHIFT);
+        try {
+          int lineDelta = VarintUtils.readZigzagVarint(stream);
+          int characterNumber = VarintUtils.readVarint(stream);
+          int lineNumber = previousLineNumber + lineDelta;
+          if (lineDelta == 0) {
+            characterNumber += previousCharacterNumber;
+          }
+          token.withPosition(lineNumber, characterNumber);
+          previousLineNumber = lineNumber;
+          previousCharacterNumber = characterNumber;
+
+          if ((header & BINARY_HAS_VALUE) != 0) {
+            int index = VarintUtils.readVarint(stream);
+            if (index == stringTable.size()) {
+              byte[] bytes = VarintUtils.readBytes(stream, VarintUtils.readVarint(stream));
+              stringTable.add(new String(bytes, StandardCharsets.UTF_8));
+            } else if (index > stringTable.size()) {
+              throw new Error("invalid token string index " + index);
+            }
+            token.withValue(stringTable.get(index));
+          }
+        } catch (EOFException e) {
+          throw new Error("truncated token stream", e);
+        } catch (IOException e) {
+          throw new Error("failed to read token stream", e);
+        }
+        return token;
+      }
+    };
   }
+
+  // endregion
 }
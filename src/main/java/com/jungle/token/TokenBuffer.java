@@ -0,0 +1,414 @@
+package com.jungle.token;
+
+import com.jungle.common.SymbolInterner;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/* A compact list of tokens stored as parallel primitive arrays (struct-of-arrays) instead of token objects.
+ *
+ * Each token is a type ordinal, a packed line and character position, and a start and end offset of its value.
+ * Keyword tokens also have a keyword ordinal, and symbol tokens a symbol id (see SymbolInterner),
+ * resolved once when the token is added.
+ * Token values are ranges of either the scanned source (shared, never copied), or
+ * an array owned by the buffer that values are appended to.
+ * A range of the owned array is stored with a negative (complemented) start offset.
+ */
+
+public class TokenBuffer implements Iterable<IToken> {
+  private static final int DEFAULT_CAPACITY = 64;
+  private static final int NO_VALUE = Integer.MIN_VALUE;
+
+  @NotNull
+  private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+  @NotNull
+  private static final Keyword[] KEYWORDS = Keyword.values();
+  private static final byte NO_KEYWORD = -1;
+
+  private int size;
+
+  @NotNull
+  private byte[] types;
+
+  @NotNull
+  private long[] positions;
+
+  @NotNull
+  private byte[] keywords;
+
+  @NotNull
+  private int[] symbolIds;
+
+  @NotNull
+  private byte[] leadingTrivia;
+
+  @NotNull
+  private int[] valueStarts;
+
+  @NotNull
+  private int[] valueEnds;
+
+  @NotNull
+  private final char[] source;
+
+  @NotNull
+  private char[] values;
+  private int valuesLength;
+
+  @NotNull
+  private final SymbolInterner symbolInterner;
+
+  public TokenBuffer() {
+    this(new char[0]);
+  }
+
+  public TokenBuffer(@NotNull char[] source, int capacity, @NotNull SymbolInterner symbolInterner) {
+    super();
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity must be non-negative");
+    }
+    this.source = source;
+    this.symbolInterner = symbolInterner;
+    this.types = new byte[capacity];
+    this.positions = new long[capacity];
+    this.keywords = new byte[capacity];
+    this.symbolIds = new int[capacity];
+    this.leadingTrivia = new byte[capacity];
+    this.valueStarts = new int[capacity];
+    this.valueEnds = new int[capacity];
+    this.values = new char[DEFAULT_CAPACITY];
+  }
+
+  public TokenBuffer(@NotNull char[] source, int capacity) {
+    this(source, capacity, new SymbolInterner());
+  }
+
+  public TokenBuffer(@NotNull char[] source, @NotNull SymbolInterner symbolInterner) {
+    this(source, DEFAULT_CAPACITY, symbolInterner);
+  }
+
+  public TokenBuffer(@NotNull char[] source) {
+    this(source, DEFAULT_CAPACITY);
+  }
+
+  public TokenBuffer(@NotNull Iterable<IToken> tokenIterable) {
+    this();
+    for (IToken token : tokenIterable) {
+      add(token);
+    }
+  }
+
+  // region positions
+
+  protected static long packPosition(int lineNumber, int characterNumber) {
+    return ((long) lineNumber << 32) | (characterNumber & 0xFFFFFFFFL);
+  }
+
+  protected static int unpackLineNumber(long position) {
+    return (int) (position >>> 32);
+  }
+
+  protected static int unpackCharacterNumber(long position) {
+    return (int) position;
+  }
+
+  // endregion
+
+  // region add
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= types.length) return;
+    int newCapacity = Math.max(Math.max(capacity, types.length * 2), DEFAULT_CAPACITY);
+    types = Arrays.copyOf(types, newCapacity);
+    positions = Arrays.copyOf(positions, newCapacity);
+    keywords = Arrays.copyOf(keywords, newCapacity);
+    symbolIds = Arrays.copyOf(symbolIds, newCapacity);
+    leadingTrivia = Arrays.copyOf(leadingTrivia, newCapacity);
+    valueStarts = Arrays.copyOf(valueStarts, newCapacity);
+    valueEnds = Arrays.copyOf(valueEnds, newCapacity);
+  }
+
+  private void ensureValuesCapacity(int capacity) {
+    if (capacity <= values.length) return;
+    values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+  }
+
+  private void add(@NotNull TokenType type, long position, int valueStart, int valueEnd) {
+    ensureCapacity(size + 1);
+    types[size] = (byte) type.ordinal();
+    positions[size] = position;
+    Keyword keyword = null;
+    if (type == TokenType.KEYWORD && valueStart != NO_VALUE) {
+      keyword = valueStart >= 0
+              ? Keyword.find(source, valueStart, valueEnd)
+              : Keyword.find(values, ~valueStart, valueEnd);
+    }
+    keywords[size] = keyword == null ? NO_KEYWORD : (byte) keyword.ordinal();
+    int symbolId = SymbolInterner.NO_SYMBOL;
+    if (type == TokenType.SYMBOL && valueStart != NO_VALUE) {
+      symbolId = valueStart >= 0
+              ? symbolInterner.intern(source, valueStart, valueEnd)
+              : symbolInterner.intern(values, ~valueStart, valueEnd);
+    }
+    symbolIds[size] = symbolId;
+    leadingTrivia[size] = 0;
+    valueStarts[size] = valueStart;
+    valueEnds[size] = valueEnd;
+    size++;
+  }
+
+  public void add(@NotNull TokenType type, int lineNumber, int characterNumber, int valueStart, int valueEnd) {
+    // The value is the range [valueStart, valueEnd) of the source
+    if (valueStart < 0 || valueEnd < valueStart || valueEnd > source.length) {
+      throw new IndexOutOfBoundsException("token value range out of bounds");
+    }
+    add(type, packPosition(lineNumber, characterNumber), valueStart, valueEnd);
+  }
+
+  public void add(@NotNull TokenType type, int lineNumber, int characterNumber) {
+    add(type, packPosition(lineNumber, characterNumber), NO_VALUE, NO_VALUE);
+  }
+
+  public void add(@NotNull TokenType type, int lineNumber, int characterNumber, @Nullable CharSequence value) {
+    if (value == null) {
+      add(type, lineNumber, characterNumber);
+      return;
+    }
+    int valueStart = valuesLength;
+    ensureValuesCapacity(valuesLength + value.length());
+    for (int i = 0; i < value.length(); i++) {
+      values[valuesLength++] = value.charAt(i);
+    }
+    add(type, packPosition(lineNumber, characterNumber), ~valueStart, valuesLength);
+  }
+
+  public void add(@NotNull IToken token) {
+    add(token.getType(), token.getLineNumber(), token.getCharacterNumber(), token.getValue());
+    leadingTrivia[size - 1] = (byte) token.getLeadingTrivia();
+  }
+
+  public void setLeadingTrivia(int index, int trivia) {
+    checkIndex(index);
+    leadingTrivia[index] = (byte) trivia;
+  }
+
+  public void addAll(@NotNull TokenBuffer tokenBuffer, int fromIndex, int toIndex, int lineOffset) {
+    // Append the tokens [fromIndex, toIndex) of another buffer, moved down by a number of lines.
+    // Values of a buffer over the same source remain ranges of the source.
+    // Symbol ids of another interner are remapped to the ids of this buffer, once per name instead of per token.
+    if (fromIndex < 0 || toIndex < fromIndex || toIndex > tokenBuffer.size) {
+      throw new IndexOutOfBoundsException("token range out of bounds");
+    }
+    int[] symbolIdMap = tokenBuffer.symbolInterner == symbolInterner ? null : symbolInterner.internAll(tokenBuffer.symbolInterner);
+    ensureCapacity(size + toIndex - fromIndex);
+    long positionOffset = packPosition(lineOffset, 0);
+    for (int i = fromIndex; i < toIndex; i++) {
+      int valueStart = tokenBuffer.valueStarts[i];
+      int valueEnd = tokenBuffer.valueEnds[i];
+      if (valueStart != NO_VALUE && (valueStart < 0 || tokenBuffer.source != source)) {
+        // The value is copied
+        int length = valueEnd - (valueStart < 0 ? ~valueStart : valueStart);
+        char[] fromValues = valueStart < 0 ? tokenBuffer.values : tokenBuffer.source;
+        ensureValuesCapacity(valuesLength + length);
+        System.arraycopy(fromValues, valueEnd - length, values, valuesLength, length);
+        valueStart = ~valuesLength;
+        valuesLength += length;
+        valueEnd = valuesLength;
+      }
+      types[size] = tokenBuffer.types[i];
+      positions[size] = tokenBuffer.positions[i] + positionOffset;
+      keywords[size] = tokenBuffer.keywords[i];
+      int symbolId = tokenBuffer.symbolIds[i];
+      symbolIds[size] = symbolIdMap == null || symbolId == SymbolInterner.NO_SYMBOL ? symbolId : symbolIdMap[symbolId];
+      leadingTrivia[size] = tokenBuffer.leadingTrivia[i];
+      valueStarts[size] = valueStart;
+      valueEnds[size] = valueEnd;
+      size++;
+    }
+  }
+
+  // endregion
+
+  // region get
+
+  public int size() {
+    return size;
+  }
+
+  @NotNull
+  public SymbolInterner getSymbolInterner() {
+    // The interner of the symbol ids of the tokens
+    return symbolInterner;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("token index " + index + " out of bounds for size " + size);
+    }
+  }
+
+  @NotNull
+  public TokenType getType(int index) {
+    checkIndex(index);
+    return TOKEN_TYPES[types[index]];
+  }
+
+  public boolean hasValue(int index) {
+    checkIndex(index);
+    return valueStarts[index] != NO_VALUE;
+  }
+
+  @Nullable
+  public String getValue(int index) {
+    if (!hasValue(index)) return null;
+    if (symbolIds[index] != SymbolInterner.NO_SYMBOL) {
+      // Every symbol name is stored once
+      return symbolInterner.getName(symbolIds[index]);
+    }
+    int valueStart = valueStarts[index];
+    if (valueStart >= 0) {
+      return new String(source, valueStart, valueEnds[index] - valueStart);
+    }
+    return new String(values, ~valueStart, valueEnds[index] - ~valueStart);
+  }
+
+  @Nullable
+  public Keyword getKeyword(int index) {
+    checkIndex(index);
+    return keywords[index] == NO_KEYWORD ? null : KEYWORDS[keywords[index]];
+  }
+
+  public int getSymbolId(int index) {
+    checkIndex(index);
+    return symbolIds[index];
+  }
+
+  public int getLeadingTrivia(int index) {
+    checkIndex(index);
+    return leadingTrivia[index];
+  }
+
+  public int getLineNumber(int index) {
+    checkIndex(index);
+    return unpackLineNumber(positions[index]);
+  }
+
+  public int getCharacterNumber(int index) {
+    checkIndex(index);
+    return unpackCharacterNumber(positions[index]);
+  }
+
+  @NotNull
+  public IToken get(int index) {
+    checkIndex(index);
+    TokenView view = new TokenView();
+    view.index = index;
+    return view;
+  }
+
+  // endregion
+
+  @Override
+  @NotNull
+  public Iterator<IToken> iterator() {
+    // A single (flyweight) token view moves along the buffer, so iterating allocates no tokens.
+    // Note: the token returned by next() is only valid until next() is called again.
+    TokenView view = new TokenView();
+    return new Iterator<IToken>() {
+      private int index = 0;
+
+      @Override
+      public boolean hasNext() {
+        return index < size;
+      }
+
+      @Override
+      @NotNull
+      public IToken next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        view.index = index++;
+        return view;
+      }
+    };
+  }
+
+  private class TokenView implements IToken {
+    private int index;
+
+    @Override
+    @NotNull
+    public TokenType getType() {
+      return TokenBuffer.this.getType(index);
+    }
+
+    @Override
+    @Nullable
+    public String getValue() {
+      return TokenBuffer.this.getValue(index);
+    }
+
+    @Override
+    @Nullable
+    public Keyword getKeyword() {
+      return TokenBuffer.this.getKeyword(index);
+    }
+
+    @Override
+    public int getSymbolId() {
+      return TokenBuffer.this.getSymbolId(index);
+    }
+
+    @Override
+    public int getLeadingTrivia() {
+      return TokenBuffer.this.getLeadingTrivia(index);
+    }
+
+    @Override
+    public int getLineNumber() {
+      return TokenBuffer.this.getLineNumber(index);
+    }
+
+    @Override
+    public int getCharacterNumber() {
+      return TokenBuffer.this.getCharacterNumber(index);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object other) {
+      if (other == null) return false;
+      if (!(other instanceof IToken)) return false;
+      IToken otherToken = (IToken) other;
+      return new EqualsBuilder()
+              .append(getType(), otherToken.getType())
+              .append(getValue(), otherToken.getValue())
+              .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+      return new HashCodeBuilder()
+              .append(getType())
+              .append(getValue())
+              .toHashCode();
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+              "<%s type=\"%s\" value=\"%s\" line=%d character=%d />",
+              Token.class.getName(),
+              getType(),
+              getValue(),
+              getLineNumber(),
+              getCharacterNumber());
+    }
+  }
+}
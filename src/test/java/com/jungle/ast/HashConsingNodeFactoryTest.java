@@ -0,0 +1,151 @@
+package com.jungle.ast;
+
+import com.jungle.parser.Parser;
+import com.jungle.scanner.Scanner;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HashConsingNodeFactoryTest {
+  private static String save(INode node) throws IOException {
+    // Node::equals does not compare children, so compare the text format instead
+    StringWriter stringWriter = new StringWriter();
+    BufferedWriter bufferedWriter = new BufferedWriter(stringWriter);
+    Node.save(bufferedWriter, node);
+    bufferedWriter.flush();
+    return stringWriter.toString();
+  }
+
+  @Test
+  public void testCreate() {
+    HashConsingNodeFactory factory = new HashConsingNodeFactory();
+    INode x = factory.createLeaf(NodeType.IDENTIFIER, "x");
+    INode square = factory.createNode(NodeType.OPERATOR_MULTIPLY, x, factory.createLeaf(NodeType.IDENTIFIER, "x"));
+    INode otherSquare = factory.createNode(
+            NodeType.OPERATOR_MULTIPLY,
+            factory.createLeaf(NodeType.IDENTIFIER, "x"),
+            factory.createLeaf(NodeType.IDENTIFIER, "x"));
+    assertSame(x, square.getLeft());
+    assertSame(square.getLeft(), square.getRight());
+    assertSame(square, otherSquare);
+    assertEquals(2, factory.size());
+
+    // The same type and value, but different children
+    INode otherProduct = factory.createNode(NodeType.OPERATOR_MULTIPLY, x, factory.createLeaf(NodeType.IDENTIFIER, "y"));
+    assertNotSame(square, otherProduct);
+    assertEquals(square, otherProduct);
+    assertNotSame(factory.createLeaf(NodeType.LITERAL_INTEGER, "1"), factory.createLeaf(NodeType.LITERAL_FLOAT, "1"));
+    assertNotSame(factory.createNode(NodeType.PRINT, x, null), factory.createNode(NodeType.SLEEP, x, null));
+    assertNotSame(factory.createNode(NodeType.PRINT, x, null), factory.createNode(NodeType.PRINT, null, x));
+    assertEquals(
+            ((HashConsingNodeFactory.ImmutableNode) square).getStructuralHash(),
+            ((HashConsingNodeFactory.ImmutableNode) otherSquare).getStructuralHash());
+  }
+
+  @Test
+  public void testCreateSequence() {
+    HashConsingNodeFactory factory = new HashConsingNodeFactory();
+    INode print = factory.createNode(NodeType.PRINT, factory.createLeaf(NodeType.LITERAL_STRING, "a"), null);
+    INode sequence = factory.createSequence(NodeType.SEQUENCE, Arrays.asList(print, null, print));
+    assertSame(sequence, factory.createSequence(NodeType.SEQUENCE, Arrays.asList(print, null, print)));
+    assertNotSame(sequence, factory.createSequence(NodeType.SEQUENCE, Arrays.asList(print, print)));
+    assertNotSame(sequence, factory.createSequence(NodeType.SEQUENCE, Arrays.asList(print, null, print, null)));
+
+    List<INode> statements = sequence.getStatements();
+    assertNotNull(statements);
+    assertEquals(3, statements.size());
+    assertNull(statements.get(1));
+    assertSame(statements.get(0), statements.get(2));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testCreateSequence_immutable() {
+    INode sequence = new HashConsingNodeFactory().createSequence(NodeType.SEQUENCE, Arrays.asList(null, null));
+    sequence.getStatements().add(null);
+  }
+
+  @Test
+  public void testValues() {
+    HashConsingNodeFactory factory = new HashConsingNodeFactory();
+    INode literal = factory.createLeaf(NodeType.LITERAL_STRING, "Hello\\n");
+    Node node = (Node) new Node(NodeType.LITERAL_STRING).withRawValue("Hello\\n");
+    assertEquals(node, literal);
+    assertEquals(literal, node);
+    assertEquals(node.hashCode(), literal.hashCode());
+    assertEquals("Hello\n", literal.getStringValue());
+    assertEquals(Integer.valueOf(7), factory.createLeaf(NodeType.LITERAL_INTEGER, "7").getIntegerValue());
+    assertTrue(literal.isLeaf());
+  }
+
+  @Test
+  public void testIntern() throws IOException {
+    INode inputNode = new Node(NodeType.SEQUENCE)
+            .withStatements(Arrays.asList(
+                    new Node(NodeType.ASSIGN)
+                            .withLeft(new Node(NodeType.IDENTIFIER).withRawValue("i"))
+                            .withRight(new Node(NodeType.OPERATOR_ADD)
+                                    .withLeft(new Node(NodeType.IDENTIFIER).withRawValue("i"))
+                                    .withRight(new Node(NodeType.LITERAL_INTEGER).withRawValue("1"))),
+                    null,
+                    new Node(NodeType.ASSIGN)
+                            .withLeft(new Node(NodeType.IDENTIFIER).withRawValue("i"))
+                            .withRight(new Node(NodeType.OPERATOR_ADD)
+                                    .withLeft(new Node(NodeType.IDENTIFIER).withRawValue("i"))
+                                    .withRight(new Node(NodeType.LITERAL_INTEGER).withRawValue("1")))));
+    HashConsingNodeFactory factory = new HashConsingNodeFactory();
+    INode node = factory.intern(inputNode);
+    assertEquals(save(inputNode), save(node));
+    assertSame(node.getStatements().get(0), node.getStatements().get(2));
+    // i, 1, i + 1, i = i + 1 and the sequence
+    assertEquals(5, factory.size());
+
+    // A canonical node is its own canonical node
+    assertSame(node, factory.intern(node));
+    assertNull(factory.intern(null));
+    // The nodes of another factory are not canonical
+    assertNotSame(node, new HashConsingNodeFactory().intern(node));
+  }
+
+  @Test
+  public void testIntern_deep() {
+    // Deeper than the call stack allows for a recursive traversal
+    int depth = 100000;
+    INode inputNode = new Node(NodeType.LITERAL_INTEGER).withRawValue("0");
+    for (int i = 0; i < depth; i++) {
+      inputNode = new Node(NodeType.OPERATOR_NOT).withLeft(inputNode);
+    }
+    HashConsingNodeFactory factory = new HashConsingNodeFactory();
+    INode node = factory.intern(inputNode);
+    assertEquals(depth + 1, factory.size());
+    assertSame(node, factory.intern(inputNode));
+    assertEquals(depth + 1, factory.size());
+  }
+
+  @Test
+  public void testParse_programs() throws IOException {
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get("programs"), "*.source")) {
+      for (Path path : paths) {
+        String source = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        INode expected = new Parser(new Scanner(CharBuffer.wrap(source)).scanTokenBuffer()).parse();
+        HashConsingNodeFactory factory = new HashConsingNodeFactory();
+        INode actual = new Parser(new Scanner(CharBuffer.wrap(source)).scanTokenBuffer())
+                .withNodeFactory(factory)
+                .parse();
+        assertEquals(path.toString(), save(expected), save(actual));
+        assertSame(path.toString(), actual, factory.intern(expected));
+      }
+    }
+  }
+}
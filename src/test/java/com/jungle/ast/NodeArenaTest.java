@@ -0,0 +1,186 @@
+package com.jungle.ast;
+
+import com.jungle.common.SymbolInterner;
+import com.jungle.parser.Parser;
+import com.jungle.scanner.Scanner;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NodeArenaTest {
+  private static String save(INode node) throws IOException {
+    // Node::equals does not compare children, so compare the text format instead
+    StringWriter stringWriter = new StringWriter();
+    BufferedWriter bufferedWriter = new BufferedWriter(stringWriter);
+    Node.save(bufferedWriter, node);
+    bufferedWriter.flush();
+    return stringWriter.toString();
+  }
+
+  @Test
+  public void testAdd() {
+    NodeArena arena = new NodeArena(0);
+    int identifier = arena.addLeaf(NodeType.IDENTIFIER, "i");
+    int literal = arena.addLeaf(NodeType.LITERAL_INTEGER, "42");
+    int assign = arena.addNode(NodeType.ASSIGN, identifier, literal);
+    int print = arena.addNode(NodeType.PRINT, arena.addLeaf(NodeType.LITERAL_STRING, "a\\tb"), NodeArena.NO_NODE);
+    int sequence = arena.addSequence(NodeType.SEQUENCE, new int[]{assign, NodeArena.NO_NODE, print}, 3);
+
+    assertEquals(6, arena.size());
+    assertEquals(NodeType.ASSIGN, arena.getType(assign));
+    assertEquals(identifier, arena.getLeft(assign));
+    assertEquals(literal, arena.getRight(assign));
+    assertEquals(NodeArena.NO_NODE, arena.getRight(print));
+    assertEquals(42, arena.getIntegerValue(literal));
+    assertEquals("i", arena.getRawValue(identifier));
+    assertEquals(-1, arena.getStatementCount(assign));
+    assertEquals(3, arena.getStatementCount(sequence));
+    assertEquals(NodeArena.NO_NODE, arena.getStatement(sequence, 1));
+    assertEquals(NodeArena.NO_NODE, arena.getLeft(sequence));
+
+    INode sequenceNode = arena.get(sequence);
+    List<INode> statements = sequenceNode.getStatements();
+    assertNotNull(statements);
+    assertEquals(3, statements.size());
+    assertNull(statements.get(1));
+    assertEquals(new Node(NodeType.PRINT), statements.get(2));
+    assertEquals("a\tb", statements.get(2).getLeft().getStringValue());
+    assertEquals(new Node(NodeType.IDENTIFIER).withRawValue("i"), statements.get(0).getLeft());
+    assertEquals(Integer.valueOf(42), statements.get(0).getRight().getIntegerValue());
+    assertTrue(statements.get(0).getRight().isLeaf());
+    assertFalse(sequenceNode.isLeaf());
+  }
+
+  @Test
+  public void testAddIdentifier() {
+    // Identifiers of the arena, a copied node and a parsed token have the symbol id of the interner
+    SymbolInterner symbolInterner = new SymbolInterner();
+    int symbolId = symbolInterner.intern("total");
+    NodeArena arena = new NodeArena();
+    int identifier = arena.addIdentifier(symbolId, symbolInterner.getName(symbolId));
+    assertEquals(symbolId, arena.getSymbolId(identifier));
+    assertEquals("total", arena.get(identifier).getRawValue());
+    assertEquals(symbolId, arena.get(arena.add(new Node(NodeType.IDENTIFIER).withSymbolId(symbolId, "total"))).getSymbolId());
+    assertEquals(SymbolInterner.NO_SYMBOL, arena.getSymbolId(arena.addLeaf(NodeType.IDENTIFIER, "total")));
+    assertEquals(SymbolInterner.NO_SYMBOL, arena.getSymbolId(arena.addLeaf(NodeType.LITERAL_STRING, "total")));
+
+    INode sequence = new Parser(new Scanner(CharBuffer.wrap("total = 1")).withSymbolInterner(symbolInterner).scanTokenBuffer())
+            .withNodeFactory(arena)
+            .parse();
+    assertNotNull(sequence);
+    INode assign = sequence.getStatements().get(0);
+    assertEquals(NodeType.ASSIGN, assign.getType());
+    assertEquals(symbolId, assign.getLeft().getSymbolId());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testAdd_invalidIndex() {
+    new NodeArena().addNode(NodeType.PRINT, 0, NodeArena.NO_NODE);
+  }
+
+  @Test
+  public void testValues() {
+    // Values are the same as the values of a node, parsed once
+    String[][] literals = {
+            {"LITERAL_INTEGER", "2147483647"},
+            {"LITERAL_FLOAT", "0.1"},
+            {"LITERAL_FLOAT", "3.4028236E38"},
+            {"LITERAL_CHARACTER", "\\u0041"},
+            {"LITERAL_STRING", "Hello\\n\\\"world\\\""},
+            {"LITERAL_BOOLEAN", "true"},
+    };
+    NodeArena arena = new NodeArena();
+    for (String[] literal : literals) {
+      NodeType type = NodeType.valueOf(literal[0]);
+      Node node = (Node) new Node(type).withRawValue(literal[1]);
+      INode view = arena.createLeaf(type, literal[1]);
+      assertEquals(node, view);
+      assertEquals(node.hashCode(), view.hashCode());
+      switch (type) {
+        case LITERAL_INTEGER: assertEquals(node.getIntegerValue(), view.getIntegerValue()); break;
+        case LITERAL_FLOAT: assertEquals(node.getFloatValue(), view.getFloatValue()); break;
+        case LITERAL_CHARACTER: assertEquals(node.getCharacterValue(), view.getCharacterValue()); break;
+        case LITERAL_STRING: assertEquals(node.getStringValue(), view.getStringValue()); break;
+        default: assertEquals(node.getBooleanValue(), view.getBooleanValue()); break;
+      }
+    }
+  }
+
+  @Test(expected = Error.class)
+  public void testValues_invalid() {
+    // Like a node, an invalid literal fails when its value is read, not when it is added
+    INode view = new NodeArena().createLeaf(NodeType.LITERAL_INTEGER, "2147483648");
+    assertEquals("2147483648", view.getRawValue());
+    view.getIntegerValue();
+  }
+
+  @Test
+  public void testAdd_node() throws IOException {
+    INode inputNode = new Node(NodeType.SEQUENCE)
+            .withStatements(Arrays.asList(
+                    new Node(NodeType.IF)
+                            .withLeft(new Node(NodeType.LITERAL_INTEGER).withRawValue("1"))
+                            .withRight(new Node(NodeType.BLOCK)
+                                    .withLeft(new Node(NodeType.SEQUENCE)
+                                            .withStatements(Arrays.asList(
+                                                    null,
+                                                    new Node(NodeType.PRINT)
+                                                            .withLeft(new Node(NodeType.LITERAL_CHARACTER).withRawValue("x")))))),
+                    null,
+                    new Node(NodeType.SLEEP)
+                            .withRight(new Node(NodeType.LITERAL_INTEGER).withRawValue("0"))));
+    NodeArena arena = new NodeArena();
+    arena.addLeaf(NodeType.IDENTIFIER, "before");
+    int index = arena.add(inputNode);
+    assertEquals(save(inputNode), save(arena.get(index)));
+
+    // A node of the arena is not copied again
+    assertEquals(index, arena.add(arena.get(index)));
+    assertEquals(NodeArena.NO_NODE, arena.add(null));
+  }
+
+  @Test
+  public void testAdd_deep() {
+    // Deeper than the call stack allows for a recursive copy
+    int depth = 100000;
+    INode inputNode = new Node(NodeType.LITERAL_INTEGER).withRawValue("0");
+    for (int i = 0; i < depth; i++) {
+      inputNode = new Node(NodeType.OPERATOR_NOT).withLeft(inputNode);
+    }
+    NodeArena arena = new NodeArena();
+    int index = arena.add(inputNode);
+    assertEquals(depth + 1, arena.size());
+    for (int i = 0; i < depth; i++) {
+      assertEquals(NodeType.OPERATOR_NOT, arena.getType(index));
+      index = arena.getLeft(index);
+    }
+    assertEquals(0, arena.getIntegerValue(index));
+  }
+
+  @Test
+  public void testParse_programs() throws IOException {
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get("programs"), "*.source")) {
+      for (Path path : paths) {
+        String source = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        INode expected = new Parser(new Scanner(CharBuffer.wrap(source)).scanTokenBuffer()).parse();
+        NodeArena arena = new NodeArena();
+        INode actual = new Parser(new Scanner(CharBuffer.wrap(source)).scanTokenBuffer())
+                .withNodeFactory(arena)
+                .parse();
+        assertEquals(path.toString(), save(expected), save(actual));
+      }
+    }
+  }
+}
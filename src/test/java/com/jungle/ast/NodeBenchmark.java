@@ -0,0 +1,78 @@
+package com.jungle.ast;
+
+import com.jungle.parser.Parser;
+import com.jungle.scanner.Scanner;
+import com.jungle.scanner.ScannerBenchmark;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class NodeBenchmark {
+  /* Times loading the AST of the programs/*.source corpus (see ScannerBenchmark) from the text and the binary formats.
+   * Not a unit test (see NodeTest), run it on its own with:
+   *
+   *   mvn -B -q test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+   *   java -cp target/classes:target/test-classes:$(cat target/classpath.txt) com.jungle.ast.NodeBenchmark [megabytes]
+   *
+   * Each load is run a few times to warm up, and then the minimum and median of the measured runs are printed.
+   */
+
+  private static final int DEFAULT_MEGABYTES = 5;
+  private static final int WARMUP_RUNS = 10;
+  private static final int MEASURED_RUNS = 20;
+
+  private static int count(@NotNull Iterator<INode> statementIterator) {
+    int count = 0;
+    while (statementIterator.hasNext()) {
+      statementIterator.next();
+      count++;
+    }
+    return count;
+  }
+
+  private static void time(@NotNull String name, int size, @NotNull Supplier<Integer> load) {
+    int count = 0;
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      count = load.get();
+    }
+    long[] nanos = new long[MEASURED_RUNS];
+    for (int i = 0; i < MEASURED_RUNS; i++) {
+      long start = System.nanoTime();
+      count = load.get();
+      nanos[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(nanos);
+    System.out.printf("%-8s %9d bytes %7d statements  min %7.1f ms  median %7.1f ms%n",
+            name, size, count, nanos[0] / 1e6, nanos[MEASURED_RUNS / 2] / 1e6);
+  }
+
+  public static void main(String[] args) throws IOException {
+    int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MEGABYTES;
+    String source = ScannerBenchmark.corpus(megabytes);
+    INode ast = new Parser(new Scanner(CharBuffer.wrap(source)).scanTokenBuffer()).parse();
+    if (ast == null || ast.getStatements() == null) {
+      throw new Error("failed to parse the corpus");
+    }
+    List<INode> statements = ast.getStatements();
+
+    StringWriter stringWriter = new StringWriter();
+    try (BufferedWriter writer = new BufferedWriter(stringWriter)) {
+      Node.saveSequence(writer, statements.iterator());
+    }
+    byte[] text = stringWriter.toString().getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream binaryStream = new ByteArrayOutputStream();
+    Node.saveSequenceBinary(binaryStream, statements.iterator());
+    byte[] binary = binaryStream.toByteArray();
+
+    time("text", text.length, () -> count(Node.loadSequence(
+            new BufferedReader(new InputStreamReader(new ByteArrayInputStream(text), StandardCharsets.UTF_8)))));
+    time("binary", binary.length, () -> count(Node.loadSequenceBinary(
+            new BufferedInputStream(new ByteArrayInputStream(binary)))));
+  }
+}
@@ -3,8 +3,15 @@ package com.jungle.ast;
 import org.junit.Test;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 public class NodeTest {
     @Test
@@ -25,4 +32,225 @@ public class NodeTest {
 
         assertEquals(inputNode, outputNode);
     }
+
+    private static List<INode> loadSequence(String ast) {
+        Iterator<INode> statementIterator = Node.loadSequence(new BufferedReader(new StringReader(ast)));
+        List<INode> statements = new ArrayList<>();
+        if (statementIterator != null) {
+            statementIterator.forEachRemaining(statements::add);
+        }
+        return statements;
+    }
+
+    @Test
+    public void testSaveAndLoadSequence() throws IOException {
+        INode printNode = new Node(NodeType.PRINT)
+                .withLeft(new Node(NodeType.LITERAL_STRING).withRawValue("Hello"));
+        INode assignNode = new Node(NodeType.ASSIGN)
+                .withLeft(new Node(NodeType.IDENTIFIER).withRawValue("i"))
+                .withRight(new Node(NodeType.LITERAL_INTEGER).withRawValue("1"));
+        StringWriter stringWriter = new StringWriter();
+        BufferedWriter bufferedWriter = new BufferedWriter(stringWriter);
+        Node.saveSequence(bufferedWriter, Arrays.asList(printNode, null, assignNode).iterator());
+        bufferedWriter.flush();
+
+        assertEquals(
+                "SEQUENCE\nPRINT\nLITERAL_STRING\tHello\n;\nSEQUENCE\n;\nSEQUENCE\nASSIGN\nIDENTIFIER\ti\nLITERAL_INTEGER\t1\n;\n",
+                stringWriter.toString());
+        List<INode> statements = loadSequence(stringWriter.toString());
+        assertEquals(Arrays.asList(printNode, assignNode), statements);
+        assertEquals(2, statements.size());
+        assertEquals(assignNode.getRight(), statements.get(1).getRight());
+    }
+
+    @Test
+    public void testLoadSequence_leftNested() throws IOException {
+        // The parser nests sequences to the left
+        INode printNode = new Node(NodeType.PRINT)
+                .withLeft(new Node(NodeType.LITERAL_STRING).withRawValue("Hello"));
+        INode sleepNode = new Node(NodeType.SLEEP)
+                .withLeft(new Node(NodeType.LITERAL_INTEGER).withRawValue("1"));
+        INode inputNode = new Node(NodeType.SEQUENCE)
+                .withLeft(new Node(NodeType.SEQUENCE)
+                        .withLeft(new Node(NodeType.SEQUENCE).withLeft(printNode))
+                        .withRight(null))
+                .withRight(sleepNode);
+        StringWriter stringWriter = new StringWriter();
+        BufferedWriter bufferedWriter = new BufferedWriter(stringWriter);
+        Node.save(bufferedWriter, inputNode);
+        bufferedWriter.flush();
+
+        assertEquals(Arrays.asList(printNode, sleepNode), loadSequence(stringWriter.toString()));
+    }
+
+    @Test
+    public void testLoadSequence_null() {
+        assertNull(Node.loadSequence(new BufferedReader(new StringReader(";\n"))));
+        assertNull(Node.loadSequence(new BufferedReader(new StringReader(""))));
+        assertEquals(0, loadSequence("SEQUENCE\n;\n;\n").size());
+    }
+
+    @Test
+    public void testSaveAndLoad_statements() throws IOException {
+        INode printNode = new Node(NodeType.PRINT)
+                .withLeft(new Node(NodeType.LITERAL_STRING).withRawValue("Hello"));
+        INode sleepNode = new Node(NodeType.SLEEP)
+                .withLeft(new Node(NodeType.LITERAL_INTEGER).withRawValue("1"));
+        INode inputNode = new Node(NodeType.SEQUENCE)
+                .withStatements(Arrays.asList(printNode, null, sleepNode));
+        StringWriter stringWriter = new StringWriter();
+        BufferedWriter bufferedWriter = new BufferedWriter(stringWriter);
+        Node.save(bufferedWriter, inputNode);
+        bufferedWriter.flush();
+        assertEquals(
+                "SEQUENCE#3\nPRINT\nLITERAL_STRING\tHello\n;\n;\nSLEEP\nLITERAL_INTEGER\t1\n;\n",
+                stringWriter.toString());
+
+        INode outputNode = Node.load(new BufferedReader(new StringReader(stringWriter.toString())));
+        assertEquals(inputNode, outputNode);
+        assertEquals(Arrays.asList(printNode, null, sleepNode), outputNode.getStatements());
+        assertEquals(sleepNode.getLeft(), outputNode.getStatements().get(2).getLeft());
+
+        assertEquals(Arrays.asList(printNode, sleepNode), loadSequence(stringWriter.toString()));
+    }
+
+    @Test
+    public void testSaveAndLoad_deep() throws IOException {
+        // Deeper than the call stack allows for a recursive load
+        int depth = 100000;
+        INode inputNode = new Node(NodeType.LITERAL_INTEGER).withRawValue("0");
+        for (int i = 0; i < depth; i++) {
+            inputNode = new Node(NodeType.OPERATOR_ADD)
+                    .withLeft(inputNode)
+                    .withRight(new Node(NodeType.LITERAL_INTEGER).withRawValue("1"));
+        }
+        StringWriter stringWriter = new StringWriter();
+        BufferedWriter bufferedWriter = new BufferedWriter(stringWriter);
+        Node.save(bufferedWriter, inputNode);
+        bufferedWriter.flush();
+
+        INode outputNode = Node.load(new BufferedReader(new StringReader(stringWriter.toString())));
+        for (int i = 0; i < depth; i++) {
+            assertEquals(NodeType.OPERATOR_ADD, outputNode.getType());
+            assertEquals("1", outputNode.getRight().getRawValue());
+            outputNode = outputNode.getLeft();
+        }
+        assertEquals("0", outputNode.getRawValue());
+    }
+
+    private static String save(INode node) throws IOException {
+        // Node::equals does not compare children, so compare the text format instead
+        StringWriter stringWriter = new StringWriter();
+        BufferedWriter bufferedWriter = new BufferedWriter(stringWriter);
+        Node.save(bufferedWriter, node);
+        bufferedWriter.flush();
+        return stringWriter.toString();
+    }
+
+    private static INode saveAndLoadBinary(INode node) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Node.saveBinary(stream, node);
+        return Node.loadBinary(new ByteArrayInputStream(stream.toByteArray()));
+    }
+
+    @Test
+    public void testSaveAndLoadBinary() throws IOException {
+        INode inputNode = new Node(NodeType.SEQUENCE)
+                .withLeft(new Node(NodeType.ASSIGN)
+                        .withLeft(new Node(NodeType.IDENTIFIER).withRawValue("i"))
+                        .withRight(new Node(NodeType.OPERATOR_ADD)
+                                .withLeft(new Node(NodeType.IDENTIFIER).withRawValue("i"))
+                                .withRight(new Node(NodeType.LITERAL_STRING).withRawValue("Hello\tworld! \u00e9\n"))))
+                .withRight(new Node(NodeType.SEQUENCE)
+                        .withRight(new Node(NodeType.PRINT)
+                                .withLeft(new Node(NodeType.LITERAL_STRING).withRawValue(""))));
+        assertEquals(save(inputNode), save(saveAndLoadBinary(inputNode)));
+    }
+
+    @Test
+    public void testSaveAndLoadBinary_statements() throws IOException {
+        List<INode> statements = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            statements.add(i % 3 == 0
+                    ? null
+                    : new Node(NodeType.PRINT).withLeft(new Node(NodeType.LITERAL_INTEGER).withRawValue(Integer.toString(i % 5))));
+        }
+        INode inputNode = new Node(NodeType.BLOCK)
+                .withLeft(new Node(NodeType.SEQUENCE).withStatements(statements));
+        INode outputNode = saveAndLoadBinary(inputNode);
+        assertEquals(save(inputNode), save(outputNode));
+        assertEquals(statements, outputNode.getLeft().getStatements());
+
+        INode emptyNode = new Node(NodeType.SEQUENCE).withStatements(new ArrayList<>());
+        assertEquals(0, saveAndLoadBinary(emptyNode).getStatements().size());
+    }
+
+    @Test
+    public void testSaveAndLoadBinary_null() {
+        assertNull(saveAndLoadBinary(null));
+        assertNull(Node.loadBinary(new ByteArrayInputStream(new byte[0])));
+    }
+
+    @Test
+    public void testSaveAndLoadBinary_deep() {
+        int depth = 100000;
+        INode inputNode = new Node(NodeType.LITERAL_INTEGER).withRawValue("0");
+        for (int i = 0; i < depth; i++) {
+            inputNode = new Node(NodeType.CAST_INTEGER).withLeft(inputNode);
+        }
+        INode outputNode = saveAndLoadBinary(inputNode);
+        for (int i = 0; i < depth; i++) {
+            assertEquals(NodeType.CAST_INTEGER, outputNode.getType());
+            assertNull(outputNode.getRight());
+            outputNode = outputNode.getLeft();
+        }
+        assertEquals("0", outputNode.getRawValue());
+    }
+
+    @Test
+    public void testSaveAndLoadSequenceBinary() throws IOException {
+        INode printNode = new Node(NodeType.PRINT)
+                .withLeft(new Node(NodeType.LITERAL_STRING).withRawValue("Hello"));
+        INode assignNode = new Node(NodeType.ASSIGN)
+                .withLeft(new Node(NodeType.IDENTIFIER).withRawValue("i"))
+                .withRight(new Node(NodeType.LITERAL_INTEGER).withRawValue("1"));
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Node.saveSequenceBinary(stream, Arrays.asList(printNode, null, assignNode).iterator());
+        List<INode> statements = new ArrayList<>();
+        Node.loadSequenceBinary(new ByteArrayInputStream(stream.toByteArray())).forEachRemaining(statements::add);
+        assertEquals(Arrays.asList(printNode, assignNode), statements);
+        assertEquals(save(assignNode), save(statements.get(1)));
+
+        // A sequence tree is expanded into its statements
+        stream = new ByteArrayOutputStream();
+        Node.saveBinary(stream, new Node(NodeType.SEQUENCE)
+                .withLeft(new Node(NodeType.SEQUENCE).withStatements(Arrays.asList(printNode, null)))
+                .withRight(assignNode));
+        statements.clear();
+        Node.loadSequenceBinary(new ByteArrayInputStream(stream.toByteArray())).forEachRemaining(statements::add);
+        assertEquals(Arrays.asList(printNode, assignNode), statements);
+
+        assertFalse(Node.loadSequenceBinary(new ByteArrayInputStream(new byte[0])).hasNext());
+    }
+
+    @Test(expected = Error.class)
+    public void testLoadBinary_invalidMagic() {
+        Node.loadBinary(new ByteArrayInputStream(new byte[]{'J', 'A', 'S', '0', 0, 0}));
+    }
+
+    @Test
+    public void testLoadBinary_truncated() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Node.saveBinary(stream, new Node(NodeType.PRINT)
+                .withLeft(new Node(NodeType.LITERAL_STRING).withRawValue("Hello")));
+        byte[] bytes = stream.toByteArray();
+        for (int length = 1; length < bytes.length; length++) {
+            try {
+                Node.loadBinary(new ByteArrayInputStream(Arrays.copyOf(bytes, length)));
+                fail("expected error for length " + length);
+            } catch (Error e) {
+                // expected
+            }
+        }
+    }
 }
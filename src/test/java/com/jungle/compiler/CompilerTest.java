@@ -0,0 +1,167 @@
+package com.jungle.compiler;
+
+import com.jungle.ast.INode;
+import com.jungle.ast.NodeArena;
+import com.jungle.common.SymbolInterner;
+import com.jungle.compiler.optimizer.ConstantFolder;
+import com.jungle.compiler.optimizer.DeadCodeEliminator;
+import com.jungle.compiler.optimizer.LoopInvariantHoister;
+import com.jungle.compiler.visitor.VisitorRegistry;
+import com.jungle.parser.Parser;
+import com.jungle.scanner.Scanner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CompilerTest {
+    private static final String SOURCE =
+        "multitask \"com.example.StreamTask\" : {\n" +
+        "  print \"task\\n\"\n" +
+        "}\n" +
+        "debug = 0\n" +
+        "w = 2\n" +
+        "i = 0\n" +
+        "loop (lessThan i 3) {\n" +
+        "  w = + w 1\n" +
+        "  i = + i 1\n" +
+        "}\n" +
+        "x = 0\n" +
+        "loop (lessThan x (* w 2)) {\n" +
+        "  x = + x (- w 1)\n" +
+        "  print (+ x (* w 2))\n" +
+        "}\n" +
+        "if (greaterThan debug 0) { print \"debug\" }\n" +
+        "loop (lessThan i (* w 2)) { i = + i 1 }\n" +
+        "print i\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static Parser parser(String source, SymbolInterner symbolInterner) {
+        Scanner scanner = new Scanner(CharBuffer.wrap(source)).withSymbolInterner(symbolInterner);
+        return new Parser(scanner.tokenIterator()).withSymbolInterner(symbolInterner);
+    }
+
+    private static Compiler compiler(File path, SymbolInterner symbolInterner) {
+        // The class path is the target path, so that the classes of inline multitask code are found
+        return new Compiler(path.getPath(), path.getPath(), symbolInterner);
+    }
+
+    private void compile(String source, File path) {
+        // The entire AST is parsed, and then optimized and compiled (see JungleCLI::runCommand)
+        SymbolInterner symbolInterner = new SymbolInterner();
+        INode ast = parser(source, symbolInterner).withNodeFactory(new NodeArena()).parse();
+        ast = new DeadCodeEliminator().eliminate(new ConstantFolder().fold(ast));
+        ast = new LoopInvariantHoister(symbolInterner).hoist(ast);
+        Compiler compiler = compiler(path, symbolInterner);
+        compiler.compileMain("Main", new VisitorRegistry(compiler).getMainVisitor(), ast);
+    }
+
+    private void compileStream(String source, File path) {
+        // Each statement is optimized and compiled as soon as it is parsed
+        SymbolInterner symbolInterner = new SymbolInterner();
+        Parser parser = parser(source, symbolInterner);
+        Compiler compiler = compiler(path, symbolInterner);
+        compiler.compileMain(
+            "Main",
+            new VisitorRegistry(compiler).getMainVisitor(),
+            new LoopInvariantHoister(symbolInterner).hoist(
+                new DeadCodeEliminator().eliminate(new ConstantFolder().fold(parser.statementIterator()))
+            )
+        );
+    }
+
+    private static void assertSameClassFile(File expectedPath, File actualPath, String classFileName) throws IOException {
+        assertArrayEquals(
+            classFileName,
+            Files.readAllBytes(new File(expectedPath, classFileName).toPath()),
+            Files.readAllBytes(new File(actualPath, classFileName).toPath())
+        );
+    }
+
+    @Test
+    public void testCompileMain_stream() throws IOException {
+        // The optimizer passes carry state across statements (eg. folded variables and the temporaries of hoisted loops),
+        // so the streamed statements must compile to the same class files as the entire AST
+        File path = temporaryFolder.newFolder("ast");
+        File streamPath = temporaryFolder.newFolder("stream");
+        compile(SOURCE, path);
+        compileStream(SOURCE, streamPath);
+        assertSameClassFile(path, streamPath, "Main.class");
+        assertSameClassFile(path, streamPath, "com/example/StreamTask.class");
+    }
+
+    @Test
+    public void testCompileMain_streamMemory() throws IOException {
+        // A streamed statement is not held by the optimizer passes or the compiler after it is compiled
+        StringBuilder source = new StringBuilder(
+            "w = 2\n" +
+            "i = 0\n" +
+            "loop (lessThan i 3) {\n" +
+            "  w = + w 1\n" +
+            "  i = + i 1\n" +
+            "}\n"
+        );
+        for (int i = 0; i < 20; i++) {
+            source.append("x = 0\n")
+                .append("loop (lessThan x (* w 2)) { x = + x (- w 1) }\n")
+                .append("if (greaterThan x (* w 2)) { print (* w 2) }\n");
+        }
+        SymbolInterner symbolInterner = new SymbolInterner();
+        Parser parser = parser(source.toString(), symbolInterner);
+        Iterator<INode> statementIterator = new LoopInvariantHoister(symbolInterner).hoist(
+            new DeadCodeEliminator().eliminate(new ConstantFolder().fold(parser.statementIterator()))
+        );
+        // The statements that are compiled, and the number of them still referenced at the end of the stream
+        List<WeakReference<INode>> compiledStatements = new ArrayList<>();
+        int[] retainedCount = new int[1];
+        Compiler compiler = compiler(temporaryFolder.newFolder(), symbolInterner);
+        compiler.compileMain("Main", new VisitorRegistry(compiler).getMainVisitor(), new Iterator<INode>() {
+            @Override
+            public boolean hasNext() {
+                if (statementIterator.hasNext()) {
+                    return true;
+                }
+                // The passes and the compiler are still running, the last statement may still be in use
+                retainedCount[0] = countRetained(compiledStatements.subList(0, compiledStatements.size() - 1));
+                return false;
+            }
+
+            @Override
+            public INode next() {
+                INode statement = statementIterator.next();
+                compiledStatements.add(new WeakReference<>(statement));
+                return statement;
+            }
+        });
+        assertEquals(63, compiledStatements.size());
+        assertEquals(0, retainedCount[0]);
+    }
+
+    private static int countRetained(List<WeakReference<INode>> references) {
+        // The number of nodes that are still referenced after a few garbage collections
+        int count = references.size();
+        for (int attempt = 0; attempt < 10 && count > 0; attempt++) {
+            System.gc();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            count = (int) references.stream().filter(reference -> reference.get() != null).count();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,156 @@
+package com.jungle.compiler.optimizer;
+
+import com.jungle.ast.INode;
+import com.jungle.ast.Node;
+import com.jungle.ast.NodeType;
+import com.jungle.parser.Parser;
+import com.jungle.scanner.Scanner;
+import org.junit.Test;
+
+import java.nio.CharBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConstantFolderTest {
+    private static INode parse(String source) {
+        return new Parser(new Scanner(CharBuffer.wrap(source)).scanTokenBuffer()).parse();
+    }
+
+    private static List<INode> fold(String source) {
+        INode sequence = new ConstantFolder().fold(parse(source));
+        assertNotNull(sequence);
+        return sequence.getStatements();
+    }
+
+    private static INode foldExpression(String expression) {
+        // The folded expression of a print statement
+        return fold("print " + expression).get(0).getLeft();
+    }
+
+    private static void assertLiteral(NodeType type, Object value, INode node) {
+        assertEquals(type, node.getType());
+        switch (type) {
+            case LITERAL_BOOLEAN: assertEquals(value, node.getBooleanValue()); break;
+            case LITERAL_CHARACTER: assertEquals(value, node.getCharacterValue()); break;
+            case LITERAL_INTEGER: assertEquals(value, node.getIntegerValue()); break;
+            case LITERAL_FLOAT: assertEquals(value, node.getFloatValue()); break;
+            default: fail("unexpected literal " + type);
+        }
+    }
+
+    @Test
+    public void testFold_integer() {
+        assertLiteral(NodeType.LITERAL_INTEGER, -420, foldExpression("- 0 420"));
+        assertLiteral(NodeType.LITERAL_INTEGER, 7, foldExpression("+ 1 (* 2 3)"));
+        // Integer operations overflow
+        assertLiteral(NodeType.LITERAL_INTEGER, Integer.MIN_VALUE, foldExpression("+ 2147483647 1"));
+        assertLiteral(NodeType.LITERAL_INTEGER, -3, foldExpression("% (- 0 7) 4"));
+        // Division by zero is left for the program to throw
+        assertEquals(NodeType.OPERATOR_DIVIDE, foldExpression("/ 1 0").getType());
+        assertEquals(NodeType.OPERATOR_MODULO, foldExpression("% 1 0").getType());
+    }
+
+    @Test
+    public void testFold_float() {
+        assertLiteral(NodeType.LITERAL_FLOAT, 0.1f + 0.2f, foldExpression("+ 0.1 0.2"));
+        assertLiteral(NodeType.LITERAL_FLOAT, 1.0f / 3.0f, foldExpression("/ 1.0 3.0"));
+        assertLiteral(NodeType.LITERAL_FLOAT, Float.POSITIVE_INFINITY, foldExpression("/ 1.0 0.0"));
+        assertLiteral(NodeType.LITERAL_INTEGER, 2, foldExpression("<i32> 2.9"));
+        assertLiteral(NodeType.LITERAL_FLOAT, 16777216.0f, foldExpression("<f32> 16777217"));
+        // A float and an integer are not converted
+        assertEquals(NodeType.OPERATOR_ADD, foldExpression("+ 1.0 1").getType());
+    }
+
+    @Test
+    public void testFold_character() {
+        assertLiteral(NodeType.LITERAL_CHARACTER, 'B', foldExpression("+ 'A' 1"));
+        // The integer operand is converted (I2C), the result is not
+        assertLiteral(NodeType.LITERAL_CHARACTER, 'A', foldExpression("+ 65536 'A'"));
+        assertLiteral(NodeType.LITERAL_CHARACTER, '\n', foldExpression("<unicode> 10"));
+        assertLiteral(NodeType.LITERAL_CHARACTER, 'é', foldExpression("<unicode> 233"));
+        assertEquals(NodeType.OPERATOR_ADD, foldExpression("+ 'A' 65535").getType());
+        // Characters have no arithmetic opcodes
+        assertEquals(NodeType.OPERATOR_ADD, foldExpression("+ 'A' 'B'").getType());
+    }
+
+    @Test
+    public void testFold_boolean() {
+        assertLiteral(NodeType.LITERAL_BOOLEAN, true, foldExpression("lessThan 1 2"));
+        assertLiteral(NodeType.LITERAL_BOOLEAN, false, foldExpression("greaterThan 1 2"));
+        // A comparison compares its operands, it does not subtract them
+        assertLiteral(NodeType.LITERAL_BOOLEAN, true, foldExpression("lessThan (- 0 2000000000) 2000000000"));
+        assertLiteral(NodeType.LITERAL_BOOLEAN, true, foldExpression("equals 'A' 65601"));
+        assertLiteral(NodeType.LITERAL_BOOLEAN, true, foldExpression("lessThan 'A' 'B'"));
+        // Shallow comparison of a string is its hash code, deep comparison of strings is an integer
+        assertLiteral(NodeType.LITERAL_BOOLEAN, true, foldExpression("equals \"shallow\" 2054046228"));
+        assertLiteral(NodeType.LITERAL_BOOLEAN, true, foldExpression("equals 2054046228 \"shallow\""));
+        assertLiteral(NodeType.LITERAL_INTEGER, 0, foldExpression("equals \"0-42L\" \"0-43-\""));
+        assertLiteral(NodeType.LITERAL_BOOLEAN, true, foldExpression("not equals \"0-42L\" \"0-43-\""));
+        assertLiteral(NodeType.LITERAL_BOOLEAN, false, foldExpression("and false true"));
+        assertLiteral(NodeType.LITERAL_BOOLEAN, true, foldExpression("or 0 true"));
+        assertLiteral(NodeType.LITERAL_BOOLEAN, true, foldExpression("and 1 5"));
+        // The right expression of a short circuit is not evaluated
+        assertLiteral(NodeType.LITERAL_BOOLEAN, false, foldExpression("and false (greaterThan x 0)"));
+        assertEquals(NodeType.OPERATOR_AND, foldExpression("and true (greaterThan x 0)").getType());
+        // A float comparison with NaN is false
+        assertLiteral(NodeType.LITERAL_BOOLEAN, true, foldExpression("lessThan 1.0 2.0"));
+        assertLiteral(NodeType.LITERAL_BOOLEAN, false, foldExpression("lessThan (/ 0.0 0.0) 1.0"));
+        assertLiteral(NodeType.LITERAL_BOOLEAN, false, foldExpression("greaterThan (/ 0.0 0.0) 1.0"));
+        assertLiteral(NodeType.LITERAL_BOOLEAN, false, foldExpression("equals (/ 0.0 0.0) (/ 0.0 0.0)"));
+        // Strings are only compared with equals, and other types require a cast
+        assertEquals(NodeType.OPERATOR_LESS_THAN, foldExpression("lessThan \"ab\" \"cd\"").getType());
+        assertEquals(NodeType.OPERATOR_EQUAL, foldExpression("equals 1 1.0").getType());
+    }
+
+    @Test
+    public void testFold_propagate() {
+        List<INode> statements = fold(
+            "a = 2\n" +
+            "b = * a 3\n" +
+            "print b\n" +
+            "print c\n" +
+            "c = 1\n" +
+            "loop (lessThan a b) {\n" +
+            "  print b\n" +
+            "  a = + a 1\n" +
+            "}\n" +
+            "print a\n" +
+            "a = 4\n" +
+            "print a\n"
+        );
+        assertLiteral(NodeType.LITERAL_INTEGER, 6, statements.get(1).getRight());
+        assertLiteral(NodeType.LITERAL_INTEGER, 6, statements.get(2).getLeft());
+        // A variable is not known before its assignment
+        assertEquals(NodeType.IDENTIFIER, statements.get(3).getLeft().getType());
+        // A variable assigned in a loop is not known in the loop, or after it
+        INode loop = statements.get(5);
+        assertEquals(NodeType.IDENTIFIER, loop.getLeft().getLeft().getType());
+        assertLiteral(NodeType.LITERAL_INTEGER, 6, loop.getLeft().getRight());
+        assertEquals(NodeType.IDENTIFIER, statements.get(6).getLeft().getType());
+        assertLiteral(NodeType.LITERAL_INTEGER, 4, statements.get(8).getLeft());
+        // The assigned variable is kept
+        assertEquals(NodeType.IDENTIFIER, statements.get(7).getLeft().getType());
+    }
+
+    @Test
+    public void testFold_unchanged() {
+        INode ast = parse("x = + y 1\nprint x\n");
+        assertSame(ast, new ConstantFolder().fold(ast));
+    }
+
+    @Test
+    public void testFold_deep() {
+        // Deeper than the call stack allows for a recursive traversal
+        int depth = 100000;
+        INode expression = new Node(NodeType.LITERAL_INTEGER).withRawValue("0");
+        for (int i = 0; i < depth; i++) {
+            expression = new Node(NodeType.OPERATOR_ADD)
+                    .withLeft(expression)
+                    .withRight(new Node(NodeType.LITERAL_INTEGER).withRawValue("1"));
+        }
+        INode statement = new ConstantFolder().foldStatement(new Node(NodeType.PRINT).withLeft(expression));
+        assertNotNull(statement);
+        assertLiteral(NodeType.LITERAL_INTEGER, depth, statement.getLeft());
+    }
+}
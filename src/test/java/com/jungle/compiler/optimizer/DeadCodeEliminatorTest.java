@@ -0,0 +1,107 @@
+package com.jungle.compiler.optimizer;
+
+import com.jungle.ast.INode;
+import com.jungle.ast.NodeType;
+import com.jungle.parser.Parser;
+import com.jungle.scanner.Scanner;
+import org.junit.Test;
+
+import java.nio.CharBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DeadCodeEliminatorTest {
+    private static INode parse(String source) {
+        return new Parser(new Scanner(CharBuffer.wrap(source)).scanTokenBuffer()).parse();
+    }
+
+    private static List<INode> eliminate(String source) {
+        INode sequence = new DeadCodeEliminator().eliminate(new ConstantFolder().fold(parse(source)));
+        assertNotNull(sequence);
+        assertEquals(NodeType.SEQUENCE, sequence.getType());
+        return sequence.getStatements();
+    }
+
+    @Test
+    public void testEliminate_if() {
+        List<INode> statements = eliminate(
+            "if false { print 1 }\n" +
+            "if (lessThan 1 2) { print 2 } else { print 3 }\n" +
+            "if (equals 1 0) { print 4 } else { print 5 }\n"
+        );
+        assertEquals(2, statements.size());
+        // The block of the branch that runs is kept
+        assertEquals(NodeType.BLOCK, statements.get(0).getType());
+        assertEquals(Integer.valueOf(2), statements.get(0).getLeft().getStatements().get(0).getLeft().getIntegerValue());
+        assertEquals(NodeType.BLOCK, statements.get(1).getType());
+        assertEquals(Integer.valueOf(5), statements.get(1).getLeft().getStatements().get(0).getLeft().getIntegerValue());
+    }
+
+    @Test
+    public void testEliminate_empty() {
+        List<INode> statements = eliminate(
+            "if (greaterThan x 0) { }\n" +
+            "if (greaterThan x 0) { if false { print 1 } }\n" +
+            "if (greaterThan x 0) { print 2 } else { }\n" +
+            "if (greaterThan x 0) { } else { print 3 }\n" +
+            "if (not 1.5) { } else { }\n" +
+            "loop (greaterThan x 0) { }\n"
+        );
+        assertEquals(6, statements.size());
+        // An if without statements is kept with an empty block, so that its condition is still compiled
+        assertEmptyIf(statements.get(0));
+        assertEmptyIf(statements.get(1));
+        // An empty else-block is removed
+        assertEquals(NodeType.BLOCK, statements.get(2).getRight().getType());
+        // An empty if-block is the else-block of the inverse condition
+        assertEquals(NodeType.OPERATOR_NOT, statements.get(3).getLeft().getType());
+        assertEquals(NodeType.OPERATOR_GREATER_THAN, statements.get(3).getLeft().getLeft().getType());
+        // A condition that is not a condition literal (eg. a float, which the compiler rejects) is kept
+        assertEmptyIf(statements.get(4));
+        assertEquals(NodeType.LITERAL_FLOAT, statements.get(4).getLeft().getLeft().getType());
+        assertEquals(NodeType.LOOP, statements.get(5).getType());
+        assertTrue(statements.get(5).getRight().getLeft().getStatements().isEmpty());
+    }
+
+    private static void assertEmptyIf(INode statement) {
+        assertEquals(NodeType.IF, statement.getType());
+        assertEquals(NodeType.BLOCK, statement.getRight().getType());
+        assertTrue(statement.getRight().getLeft().getStatements().isEmpty());
+    }
+
+    @Test
+    public void testEliminate_unreachable() {
+        List<INode> statements = eliminate(
+            "assert true\n" +
+            "loop false { print 1 }\n" +
+            "loop (greaterThan x 0) {\n" +
+            "  assert (equals 1 2)\n" +
+            "  print 2\n" +
+            "}\n" +
+            "loop true { print 3 }\n" +
+            "print 4\n"
+        );
+        assertEquals(2, statements.size());
+        INode loopBlock = statements.get(0).getRight();
+        assertEquals(1, loopBlock.getLeft().getStatements().size());
+        assertEquals(NodeType.ASSERT, loopBlock.getLeft().getStatements().get(0).getType());
+        assertEquals(NodeType.LOOP, statements.get(1).getType());
+
+        // Statements after a top-level statement that never completes are not reachable
+        DeadCodeEliminator eliminator = new DeadCodeEliminator();
+        assertNotNull(eliminator.eliminateStatement(parse("print 1").getStatements().get(0)));
+        assertNotNull(eliminator.eliminateStatement(parse("if (greaterThan x 0) { assert false } else { loop true { } }").getStatements().get(0)));
+        assertNull(eliminator.eliminateStatement(parse("print 2").getStatements().get(0)));
+    }
+
+    @Test
+    public void testEliminate_unchanged() {
+        INode ast = parse("if (greaterThan x 0) { print 1 } else { print 2 }\nloop (greaterThan x 0) { x = - x 1 }\nassert (greaterThan x 0)\n");
+        assertSame(ast, new DeadCodeEliminator().eliminate(ast));
+        // A program without statements is still a sequence
+        INode empty = new DeadCodeEliminator().eliminate(parse("if false { print 1 }"));
+        assertNotNull(empty);
+        assertTrue(empty.getStatements().isEmpty());
+    }
+}
@@ -0,0 +1,138 @@
+package com.jungle.compiler.optimizer;
+
+import com.jungle.ast.INode;
+import com.jungle.ast.NodeType;
+import com.jungle.common.SymbolInterner;
+import com.jungle.parser.Parser;
+import com.jungle.scanner.Scanner;
+import org.junit.Test;
+
+import java.nio.CharBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LoopInvariantHoisterTest {
+    private static final SymbolInterner symbolInterner = new SymbolInterner();
+
+    private static INode parse(String source) {
+        return new Parser(new Scanner(CharBuffer.wrap(source)).withSymbolInterner(symbolInterner).scanTokenBuffer()).parse();
+    }
+
+    private static List<INode> hoist(String source) {
+        INode sequence = new LoopInvariantHoister(symbolInterner).hoist(parse(source));
+        assertNotNull(sequence);
+        assertEquals(NodeType.SEQUENCE, sequence.getType());
+        return sequence.getStatements();
+    }
+
+    private static void assertTemporary(INode statement, NodeType expressionType) {
+        // An assignment of an expression to a temporary of the compiler
+        assertEquals(NodeType.ASSIGN, statement.getType());
+        assertTrue(symbolInterner.getName(statement.getLeft().getSymbolId()).startsWith("$"));
+        assertEquals(symbolInterner.getName(statement.getLeft().getSymbolId()), statement.getLeft().getRawValue());
+        assertEquals(expressionType, statement.getRight().getType());
+    }
+
+    @Test
+    public void testHoist_invariant() {
+        List<INode> statements = hoist(
+            "loop (lessThan x (* w 2)) {\n" +
+            "  x = + x (- w 1)\n" +
+            "  print (+ x (<f32> w))\n" +
+            "}\n"
+        );
+        assertEquals(4, statements.size());
+        assertTemporary(statements.get(0), NodeType.OPERATOR_MULTIPLY);
+        assertTemporary(statements.get(1), NodeType.OPERATOR_SUBTRACT);
+        assertTemporary(statements.get(2), NodeType.CAST_FLOAT);
+        // The loop loads the temporaries
+        INode loop = statements.get(3);
+        assertEquals(NodeType.LOOP, loop.getType());
+        assertEquals(statements.get(0).getLeft().getSymbolId(), loop.getLeft().getRight().getSymbolId());
+        List<INode> block = loop.getRight().getLeft().getStatements();
+        assertEquals(statements.get(1).getLeft().getSymbolId(), block.get(0).getRight().getRight().getSymbolId());
+        assertEquals(statements.get(2).getLeft().getSymbolId(), block.get(1).getLeft().getRight().getSymbolId());
+    }
+
+    @Test
+    public void testHoist_variant() {
+        // Expressions of variables assigned in the loop, comparisons and divisions that may throw are kept
+        INode ast = parse(
+            "loop (lessThan x w) {\n" +
+            "  x = + x 1\n" +
+            "  if (greaterThan x 2) { y = * x 2 }\n" +
+            "  print (+ y 1)\n" +
+            "  print (/ w z)\n" +
+            "  print w\n" +
+            "}\n"
+        );
+        assertSame(ast, new LoopInvariantHoister(symbolInterner).hoist(ast));
+    }
+
+    @Test
+    public void testHoist_nested() {
+        List<INode> statements = hoist(
+            "loop (lessThan i 10) {\n" +
+            "  loop (lessThan j 10) {\n" +
+            "    print (+ (* w 2) (* i 2))\n" +
+            "    print (* w 3)\n" +
+            "    j = + j 1\n" +
+            "  }\n" +
+            "  i = + i 1\n" +
+            "}\n"
+        );
+        assertEquals(3, statements.size());
+        // The temporary of the inner loop is hoisted again, out of the outer loop
+        assertTemporary(statements.get(0), NodeType.OPERATOR_MULTIPLY);
+        assertTemporary(statements.get(1), NodeType.OPERATOR_MULTIPLY);
+        // A temporary of a variable of the outer loop stays in the outer loop, its invariant expressions are hoisted
+        List<INode> outerBlock = statements.get(2).getRight().getLeft().getStatements();
+        assertEquals(3, outerBlock.size());
+        assertTemporary(outerBlock.get(0), NodeType.OPERATOR_ADD);
+        assertEquals(statements.get(0).getLeft().getSymbolId(), outerBlock.get(0).getRight().getLeft().getSymbolId());
+        assertEquals(NodeType.OPERATOR_MULTIPLY, outerBlock.get(0).getRight().getRight().getType());
+        List<INode> innerBlock = outerBlock.get(1).getRight().getLeft().getStatements();
+        assertEquals(outerBlock.get(0).getLeft().getSymbolId(), innerBlock.get(0).getLeft().getSymbolId());
+        assertEquals(statements.get(1).getLeft().getSymbolId(), innerBlock.get(1).getLeft().getSymbolId());
+    }
+
+    @Test
+    public void testHoist_equalInvariants() {
+        // Equal invariant expressions of a loop are hoisted into a single temporary
+        List<INode> statements = hoist(
+            "loop (lessThan x (* w 2)) {\n" +
+            "  x = + x (* w 2)\n" +
+            "  print (* w 2)\n" +
+            "}\n" +
+            "loop (lessThan y (* w 2)) { y = + y 1 }\n"
+        );
+        assertEquals(4, statements.size());
+        assertTemporary(statements.get(0), NodeType.OPERATOR_MULTIPLY);
+        int temporarySymbolId = statements.get(0).getLeft().getSymbolId();
+        INode loop = statements.get(1);
+        assertEquals(temporarySymbolId, loop.getLeft().getRight().getSymbolId());
+        List<INode> block = loop.getRight().getLeft().getStatements();
+        assertEquals(temporarySymbolId, block.get(0).getRight().getRight().getSymbolId());
+        assertEquals(temporarySymbolId, block.get(1).getLeft().getSymbolId());
+
+        // The expressions of another loop are hash-consed on their own, into a temporary of their own
+        assertTemporary(statements.get(2), NodeType.OPERATOR_MULTIPLY);
+        assertNotEquals(temporarySymbolId, statements.get(2).getLeft().getSymbolId());
+        assertEquals(statements.get(2).getLeft().getSymbolId(), statements.get(3).getLeft().getRight().getSymbolId());
+    }
+
+    @Test
+    public void testHoist_stream() {
+        // Each statement is hoisted on its own, the temporaries of the statements are different variables
+        LoopInvariantHoister hoister = new LoopInvariantHoister(symbolInterner);
+        INode first = hoister.hoistStatement(parse("loop (lessThan x (* w 2)) { x = + x 1 }").getStatements().get(0));
+        INode second = hoister.hoistStatement(parse("loop (lessThan x (* w 2)) { x = + x 1 }").getStatements().get(0));
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotEquals(
+            first.getStatements().get(0).getLeft().getSymbolId(),
+            second.getStatements().get(0).getLeft().getSymbolId()
+        );
+    }
+}
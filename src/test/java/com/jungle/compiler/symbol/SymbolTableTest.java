@@ -0,0 +1,41 @@
+package com.jungle.compiler.symbol;
+
+import com.jungle.common.SymbolInterner;
+import com.jungle.compiler.operand.OperandType;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SymbolTableTest {
+    @Test
+    public void testSet() {
+        SymbolTable symbolTable = new SymbolTable();
+        assertNull(symbolTable.get("a"));
+        assertEquals(new SymbolEntry(0, OperandType.INTEGER), symbolTable.set("a", OperandType.INTEGER));
+        assertEquals(new SymbolEntry(1, OperandType.DOUBLE), symbolTable.set("b", OperandType.DOUBLE));
+        // A double takes two indexes
+        assertEquals(new SymbolEntry(3, OperandType.OBJECT), symbolTable.set("c", OperandType.OBJECT));
+        assertEquals(new SymbolEntry(0, OperandType.INTEGER), symbolTable.get("a"));
+    }
+
+    @Test
+    public void testGet_symbolId() {
+        // Symbol ids of the interner of the table, including ids interned after the table is created
+        SymbolInterner symbolInterner = new SymbolInterner();
+        int a = symbolInterner.intern("a");
+        SymbolTable symbolTable = new SymbolTable(symbolInterner);
+        int b = symbolInterner.intern("b");
+        assertNull(symbolTable.get(b));
+        symbolTable.set(a, OperandType.INTEGER);
+        assertEquals(new SymbolEntry(1, OperandType.FLOAT), symbolTable.set(100, OperandType.FLOAT));
+        assertEquals(new SymbolEntry(0, OperandType.INTEGER), symbolTable.get("a"));
+        assertEquals(new SymbolEntry(1, OperandType.FLOAT), symbolTable.get(100));
+        assertNull(symbolTable.get(b));
+        assertNull(symbolTable.get(SymbolInterner.NO_SYMBOL));
+    }
+
+    @Test(expected = Error.class)
+    public void testSet_invalidSymbolId() {
+        new SymbolTable().set(SymbolInterner.NO_SYMBOL, OperandType.INTEGER);
+    }
+}
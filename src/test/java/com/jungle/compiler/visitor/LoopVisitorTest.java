@@ -0,0 +1,102 @@
+package com.jungle.compiler.visitor;
+
+import com.jungle.common.SymbolInterner;
+import com.jungle.compiler.Compiler;
+import com.jungle.parser.Parser;
+import com.jungle.scanner.Scanner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.CharBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class LoopVisitorTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String run(String source) throws Exception {
+        // The loops are compiled as parsed, without the optimizer passes, so that no loop is folded away
+        SymbolInterner symbolInterner = new SymbolInterner();
+        Scanner scanner = new Scanner(CharBuffer.wrap(source)).withSymbolInterner(symbolInterner);
+        Parser parser = new Parser(scanner.tokenIterator()).withSymbolInterner(symbolInterner);
+        File path = temporaryFolder.newFolder();
+        Compiler compiler = new Compiler(path.getPath(), path.getPath(), symbolInterner);
+        compiler.compileMain("Main", new VisitorRegistry(compiler).getMainVisitor(), parser.parse());
+
+        PrintStream out = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { path.toURI().toURL() }, null)) {
+            System.setOut(new PrintStream(output, true, "UTF-8"));
+            classLoader.loadClass("Main").getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+        } finally {
+            System.setOut(out);
+        }
+        return output.toString("UTF-8");
+    }
+
+    @Test
+    public void testVisit_zeroIterations() throws Exception {
+        // The condition is tested before the first iteration
+        assertEquals("0", run(
+            "i = 5\n" +
+            "n = 0\n" +
+            "loop (lessThan i 3) {\n" +
+            "  n = + n 1\n" +
+            "  i = + i 1\n" +
+            "}\n" +
+            "print n\n"
+        ));
+    }
+
+    @Test
+    public void testVisit_shortCircuit() throws Exception {
+        // The conditions of and/or are jumps, both at the top and at the bottom of the loop
+        assertEquals("4", run(
+            "i = 0\n" +
+            "j = 10\n" +
+            "n = 0\n" +
+            "loop (and (lessThan i 5) (or (greaterThan j 7) (equals i 3))) {\n" +
+            "  n = + n 1\n" +
+            "  i = + i 1\n" +
+            "  j = - j 1\n" +
+            "}\n" +
+            "print n\n"
+        ));
+        assertEquals("4", run(
+            "n = 0\n" +
+            "k = 0\n" +
+            "loop (or (lessThan k 2) (and (lessThan k 6) (not (equals k 4)))) {\n" +
+            "  n = + n 1\n" +
+            "  k = + k 1\n" +
+            "}\n" +
+            "print n\n"
+        ));
+    }
+
+    @Test
+    public void testVisit_nested() throws Exception {
+        // An inner loop of zero iterations at first, and of one more iteration for each outer iteration
+        assertEquals("6", run(
+            "n = 0\n" +
+            "i = 0\n" +
+            "loop (lessThan i 4) {\n" +
+            "  j = 0\n" +
+            "  loop (lessThan j i) {\n" +
+            "    k = 0\n" +
+            "    loop (lessThan k 0) { k = + k 1 }\n" +
+            "    n = + n 1\n" +
+            "    j = + j 1\n" +
+            "  }\n" +
+            "  i = + i 1\n" +
+            "}\n" +
+            "print n\n"
+        ));
+    }
+}
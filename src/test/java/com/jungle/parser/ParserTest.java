@@ -4,15 +4,21 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import com.jungle.scanner.Scanner;
 import com.jungle.token.IToken;
 import com.jungle.token.Token;
 import com.jungle.token.TokenType;
 import org.junit.Test;
 
 import com.jungle.ast.INode;
+import com.jungle.ast.Node;
 import com.jungle.ast.NodeType;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -339,16 +345,18 @@ public class ParserTest {
     assertEquals(NodeType.SEQUENCE, ast.getLeft().getType());
     assertNull(ast.getLeft().getRawValue());
 
-    assertNotNull(ast.getLeft().getLeft());
-    assertEquals(NodeType.PRINT, ast.getLeft().getLeft().getType());
-    assertNull(ast.getLeft().getLeft().getRawValue());
+    assertNotNull(ast.getLeft().getStatements());
+    assertEquals(1, ast.getLeft().getStatements().size());
+    INode statement = ast.getLeft().getStatements().get(0);
 
-    assertEquals(NodeType.LITERAL_INTEGER, ast.getLeft().getLeft().getLeft().getType());
-    assertEquals("1", ast.getLeft().getLeft().getLeft().getRawValue());
+    assertNotNull(statement);
+    assertEquals(NodeType.PRINT, statement.getType());
+    assertNull(statement.getRawValue());
 
-    assertNull(ast.getLeft().getLeft().getRight());
+    assertEquals(NodeType.LITERAL_INTEGER, statement.getLeft().getType());
+    assertEquals("1", statement.getLeft().getRawValue());
 
-    assertNull(ast.getLeft().getRight());
+    assertNull(statement.getRight());
 
     assertNull(ast.getRight());
   }
@@ -391,15 +399,19 @@ public class ParserTest {
     assertEquals(NodeType.SEQUENCE, ast.getRight().getLeft().getType());
     assertNull(ast.getRight().getLeft().getRawValue());
 
-    assertNotNull(ast.getRight().getLeft().getLeft());
-    assertEquals(NodeType.ASSERT, ast.getRight().getLeft().getLeft().getType());
-    assertNull(ast.getRight().getLeft().getLeft().getRawValue());
+    assertNotNull(ast.getRight().getLeft().getStatements());
+    assertEquals(1, ast.getRight().getLeft().getStatements().size());
+    INode statement = ast.getRight().getLeft().getStatements().get(0);
+
+    assertNotNull(statement);
+    assertEquals(NodeType.ASSERT, statement.getType());
+    assertNull(statement.getRawValue());
 
-    assertNotNull(ast.getRight().getLeft().getLeft().getLeft());
-    assertEquals(NodeType.LITERAL_INTEGER, ast.getRight().getLeft().getLeft().getLeft().getType());
-    assertEquals("1", ast.getRight().getLeft().getLeft().getLeft().getRawValue());
+    assertNotNull(statement.getLeft());
+    assertEquals(NodeType.LITERAL_INTEGER, statement.getLeft().getType());
+    assertEquals("1", statement.getLeft().getRawValue());
 
-    assertNull(ast.getRight().getLeft().getLeft().getRight());
+    assertNull(statement.getRight());
 
     assertNull(ast.getRight().getRight());
   }
@@ -557,4 +569,91 @@ public class ParserTest {
 
     parser.parseTextLiteral();
   }
+
+  @Test
+  public void testParseNumber_foldedTriviaNotFloat() {
+    List<IToken> tokenList = new LinkedList<>();
+    tokenList.add(new Token(TokenType.NUMBER).withValue("123"));
+    tokenList.add(new Token(TokenType.DOT).withLeadingTrivia(IToken.TRIVIA_SPACE));
+    tokenList.add(new Token(TokenType.NUMBER).withValue("456"));
+    tokenList.add(new Token(TokenType.TERMINAL));
+    Parser parser = new Parser(tokenList);
+    parser.nextToken();
+
+    INode ast = parser.parseNumber();
+    assertNotNull(ast);
+    assertEquals(NodeType.LITERAL_INTEGER, ast.getType());
+    assertEquals("123", ast.getRawValue());
+  }
+
+  @Test
+  public void testParse_foldedTriviaMatchesWhitespaceTokens() throws IOException {
+    List<String> lines = Arrays.asList(
+            "# count down",
+            "i = 3.5 # comment after statement",
+            "loop greaterThan i 0 {",
+            "  print <i32> i",
+            "  # comment in block",
+            "  i = - i 1",
+            "}   ",
+            "if true { print 1 } else { print 2 }",
+            "  # indented comment",
+            "print \"done\\n\""
+    );
+    INode expectedAst = new Parser(new Scanner(lines).scan()).parse();
+    INode actualAst = new Parser(new Scanner(lines).withTriviaFolded(true).scan()).parse();
+    assertEquals(save(expectedAst), save(actualAst));
+  }
+
+  @Test(expected = Error.class)
+  public void testParse_foldedTriviaTrailingSpace() {
+    // Like whitespace tokens, a space before the end is parsed as a statement
+    new Parser(new Scanner(Collections.singletonList("print 1 ")).withTriviaFolded(true).scan()).parse();
+  }
+
+  @Test
+  public void testStatementIterator() throws IOException {
+    List<String> lines = Arrays.asList(
+            "# comment",
+            "i = 3",
+            "loop greaterThan i 0 {",
+            "  i = - i 1",
+            "}",
+            "print i"
+    );
+    INode sequenceNode = new Parser(new Scanner(lines).scan()).parse();
+    assertNotNull(sequenceNode);
+    List<INode> expectedStatements = sequenceNode.getStatements();
+    assertNotNull(expectedStatements);
+
+    List<INode> actualStatements = new LinkedList<>();
+    new Parser(new Scanner(lines).scan()).statementIterator().forEachRemaining(actualStatements::add);
+    assertEquals(expectedStatements.size(), actualStatements.size());
+    for (int i = 0; i < expectedStatements.size(); i++) {
+      assertEquals(save(expectedStatements.get(i)), save(actualStatements.get(i)));
+    }
+  }
+
+  @Test
+  public void testParseSequence_flat() {
+    // A long program is a single sequence node, not a chain as deep as the number of statements
+    StringBuilder source = new StringBuilder();
+    for (int i = 0; i < 50000; i++) {
+      source.append("i = ").append(i).append('\n');
+    }
+    INode ast = new Parser(new Scanner(java.nio.CharBuffer.wrap(source)).scanTokenBuffer()).parse();
+    assertNotNull(ast);
+    assertEquals(NodeType.SEQUENCE, ast.getType());
+    assertNotNull(ast.getStatements());
+    assertEquals(50000, ast.getStatements().size());
+    assertEquals(NodeType.ASSIGN, ast.getStatements().get(49999).getType());
+  }
+
+  private static String save(INode ast) throws IOException {
+    StringWriter stringWriter = new StringWriter();
+    BufferedWriter bufferedWriter = new BufferedWriter(stringWriter);
+    Node.save(bufferedWriter, ast);
+    bufferedWriter.flush();
+    return stringWriter.toString();
+  }
 }
@@ -0,0 +1,112 @@
+package com.jungle.scanner;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.jungle.token.TokenBuffer;
+
+public class DfaScannerTest {
+  // Differential tests of the table-driven scanner against the reference scanner
+
+  private static void assertScanEquals(String source, Collection<String> keywords, boolean isTriviaFolded) {
+    TokenBuffer expected = new Scanner(CharBuffer.wrap(source), keywords)
+            .withTriviaFolded(isTriviaFolded)
+            .scanTokenBuffer();
+    TokenBuffer actual = new DfaScanner(CharBuffer.wrap(source), keywords)
+            .withTriviaFolded(isTriviaFolded)
+            .scanTokenBuffer();
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      String message = "token " + i + " of " + source;
+      assertEquals(message, expected.get(i), actual.get(i));
+      assertEquals(message, expected.getKeyword(i), actual.getKeyword(i));
+      assertEquals(message, expected.getLeadingTrivia(i), actual.getLeadingTrivia(i));
+      assertEquals(message, expected.getLineNumber(i), actual.getLineNumber(i));
+      assertEquals(message, expected.getCharacterNumber(i), actual.getCharacterNumber(i));
+    }
+  }
+
+  private static void assertScanEquals(String source) {
+    assertScanEquals(source, Scanner.KEYWORDS, false);
+    assertScanEquals(source, Scanner.KEYWORDS, true);
+  }
+
+  @Test
+  public void testScan() {
+    assertScanEquals("i = 3\nloop greaterThan i 0 {\n  print i\n  i = - i 1\n}\n");
+    assertScanEquals("print 1.5 + (2 * 3) % [4] / 5 \\ 6; a: b, c | d < e > f");
+    assertScanEquals("");
+    assertScanEquals("\n\n\n");
+    assertScanEquals("print 1  \n  \n\t\n  print 2  ");
+    assertScanEquals("a\r\nb\rc\r\n\r");
+  }
+
+  @Test
+  public void testScan_comment() {
+    assertScanEquals("# comment\nprint 1 # comment \"\r\n#");
+    assertScanEquals("#\n#\r#");
+  }
+
+  @Test
+  public void testScan_text() {
+    assertScanEquals("print \"double\" `back` 'single' \"a'b`c\"");
+    assertScanEquals("print \"open\nxprint 1\nprint \"open\n\nprint 2\n");
+    assertScanEquals("print 'a\r\nxy\r\nprint `b\rxy\r");
+    assertScanEquals("print \"open at end");
+    assertScanEquals("print \"open at end\n");
+    assertScanEquals("\"a\n\"\n");
+  }
+
+  @Test
+  public void testScan_unicode() {
+    assertScanEquals("print été ١٢ x٣   𝒳 \"☃\"");
+  }
+
+  @Test
+  public void testScan_terminal() {
+    assertScanEquals("print 1\0print 2");
+    assertScanEquals("print \"a\0b\"");
+  }
+
+  @Test
+  public void testScan_customKeywords() {
+    Collection<String> keywords = Arrays.asList("print", "custom");
+    assertScanEquals("print custom if 1", keywords, false);
+    assertScanEquals("print custom if 1", keywords, true);
+  }
+
+  @Test
+  public void testScan_random() {
+    String characters = "ab19 \t\n\r\"`'#=.{}\0é١";
+    Random random = new Random(10);
+    for (int i = 0; i < 5000; i++) {
+      StringBuilder builder = new StringBuilder();
+      int length = random.nextInt(16);
+      for (int j = 0; j < length; j++) {
+        builder.append(characters.charAt(random.nextInt(characters.length())));
+      }
+      assertScanEquals(builder.toString());
+    }
+  }
+
+  @Test
+  public void testScan_programs() throws IOException {
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get("programs"), "*.source")) {
+      for (Path path : paths) {
+        assertScanEquals(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+      }
+    }
+  }
+}
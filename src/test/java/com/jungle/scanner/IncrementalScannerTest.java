@@ -0,0 +1,105 @@
+package com.jungle.scanner;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.jungle.token.TokenBuffer;
+
+public class IncrementalScannerTest {
+  private static final String[] LINES = {
+    "",
+    "  ",
+    "i = 3",
+    "loop greaterThan i 0 {",
+    "\tprint i # comment",
+    "  i = - i 1",
+    "}",
+    "# comment \"",
+    "print \"open",
+    "print 'a' `b`",
+    "x = 1.5\r",
+    "print \"done\\n\"   ",
+  };
+
+  private static void assertTokenBufferEquals(TokenBuffer expected, TokenBuffer actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      String message = "token " + i;
+      assertEquals(message, expected.get(i), actual.get(i));
+      assertEquals(message, expected.getKeyword(i), actual.getKeyword(i));
+      assertEquals(message, expected.getLeadingTrivia(i), actual.getLeadingTrivia(i));
+      assertEquals(message, expected.getLineNumber(i), actual.getLineNumber(i));
+      assertEquals(message, expected.getCharacterNumber(i), actual.getCharacterNumber(i));
+    }
+  }
+
+  private static void assertRescanEquals(List<String> previousLines, List<String> lines, int startLineNumber, int previousEndLineNumber, int endLineNumber, boolean isTriviaFolded) {
+    TokenBuffer previousTokenBuffer = new Scanner(previousLines).withTriviaFolded(isTriviaFolded).scanTokenBuffer();
+    TokenBuffer expected = new Scanner(lines).withTriviaFolded(isTriviaFolded).scanTokenBuffer();
+    TokenBuffer actual = new IncrementalScanner(lines)
+            .withTriviaFolded(isTriviaFolded)
+            .rescan(previousTokenBuffer, startLineNumber, previousEndLineNumber, endLineNumber);
+    assertTokenBufferEquals(expected, actual);
+  }
+
+  @Test
+  public void testRescan_replaceLine() {
+    List<String> previousLines = Arrays.asList("i = 3", "print i", "print 2");
+    List<String> lines = Arrays.asList("i = 3", "print \"i\" # x", "print 2");
+    assertRescanEquals(previousLines, lines, 2, 2, 2, false);
+    assertRescanEquals(previousLines, lines, 2, 2, 2, true);
+  }
+
+  @Test
+  public void testRescan_insertAndDeleteLines() {
+    List<String> previousLines = Arrays.asList("i = 3", "print i");
+    List<String> lines = Arrays.asList("i = 3", "", "  j = 4", "print i");
+    assertRescanEquals(previousLines, lines, 2, 1, 3, false);
+    assertRescanEquals(lines, previousLines, 2, 3, 1, true);
+  }
+
+  @Test
+  public void testRescan_openText() {
+    // Opening a text literal changes the next line, closing it changes it back
+    List<String> previousLines = Arrays.asList("print 1", "print 2", "xprint 3");
+    List<String> lines = Arrays.asList("print 1", "print \"2", "xprint 3");
+    assertRescanEquals(previousLines, lines, 2, 2, 2, false);
+    assertRescanEquals(lines, previousLines, 2, 2, 2, true);
+  }
+
+  @Test
+  public void testRescan_empty() {
+    List<String> previousLines = Arrays.asList("print 1", "print 2");
+    List<String> lines = new ArrayList<>();
+    assertRescanEquals(previousLines, lines, 1, 2, 0, false);
+    assertRescanEquals(lines, previousLines, 1, 0, 2, true);
+  }
+
+  @Test
+  public void testRescan_random() {
+    Random random = new Random(8);
+    for (int i = 0; i < 2000; i++) {
+      List<String> previousLines = new ArrayList<>();
+      int lineCount = random.nextInt(8);
+      for (int j = 0; j < lineCount; j++) {
+        previousLines.add(LINES[random.nextInt(LINES.length)]);
+      }
+      int startLineNumber = 1 + random.nextInt(lineCount + 1);
+      int previousEndLineNumber = startLineNumber - 1 + random.nextInt(lineCount - startLineNumber + 2);
+      int insertedLineCount = random.nextInt(3);
+      List<String> lines = new ArrayList<>(previousLines.subList(0, startLineNumber - 1));
+      for (int j = 0; j < insertedLineCount; j++) {
+        lines.add(LINES[random.nextInt(LINES.length)]);
+      }
+      lines.addAll(previousLines.subList(previousEndLineNumber, lineCount));
+      int endLineNumber = startLineNumber - 1 + insertedLineCount;
+      assertRescanEquals(previousLines, lines, startLineNumber, previousEndLineNumber, endLineNumber, random.nextBoolean());
+    }
+  }
+}
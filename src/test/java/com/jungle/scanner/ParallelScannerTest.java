@@ -0,0 +1,80 @@
+package com.jungle.scanner;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.jungle.token.TokenBuffer;
+
+public class ParallelScannerTest {
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  private static void assertScanEquals(String source, int minimumChunkLength, boolean isTriviaFolded) {
+    TokenBuffer expected = new Scanner(CharBuffer.wrap(source))
+            .withTriviaFolded(isTriviaFolded)
+            .scanTokenBuffer();
+    TokenBuffer actual = new ParallelScanner(CharBuffer.wrap(source), Scanner.KEYWORDS, POOL, minimumChunkLength)
+            .withTriviaFolded(isTriviaFolded)
+            .scanTokenBuffer();
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      String message = "token " + i + " of chunk length " + minimumChunkLength;
+      assertEquals(message, expected.get(i), actual.get(i));
+      assertEquals(message, expected.getKeyword(i), actual.getKeyword(i));
+      // The symbol ids of the chunks are remapped in the order of the tokens, like they are interned by a sequential scan
+      assertEquals(message, expected.getSymbolId(i), actual.getSymbolId(i));
+      assertEquals(message, expected.getLeadingTrivia(i), actual.getLeadingTrivia(i));
+      assertEquals(message, expected.getLineNumber(i), actual.getLineNumber(i));
+      assertEquals(message, expected.getCharacterNumber(i), actual.getCharacterNumber(i));
+    }
+  }
+
+  private static void assertScanEquals(String source) {
+    for (boolean isTriviaFolded : new boolean[]{false, true}) {
+      for (int minimumChunkLength = 1; minimumChunkLength <= 16; minimumChunkLength++) {
+        assertScanEquals(source, minimumChunkLength, isTriviaFolded);
+      }
+      assertScanEquals(source, ParallelScanner.MINIMUM_CHUNK_LENGTH, isTriviaFolded);
+    }
+  }
+
+  @Test
+  public void testScan() {
+    assertScanEquals("i = 3\nloop greaterThan i 0 {\n  print i\n  i = - i 1\n}\n");
+    assertScanEquals("print 1\nprint 2");
+    assertScanEquals("");
+    assertScanEquals("\n\n\n");
+    assertScanEquals("print 1  \n  \n\t\n  print 2  ");
+  }
+
+  @Test
+  public void testScan_commentSeam() {
+    assertScanEquals("# comment \"\nprint 1 # \"open\n# \"\nprint \"text\"\n");
+  }
+
+  @Test
+  public void testScan_openTextSeam() {
+    // An open text literal skips the first character of the next line
+    assertScanEquals("print \"open\nxprint 1\nprint \"open\n\nprint 2\n");
+    assertScanEquals("print \"a\n\"b\n\"c\n\"d\n");
+    assertScanEquals("print 'a\r\nxy\r\nprint `b\rxy\r");
+  }
+
+  @Test
+  public void testScan_programs() throws IOException {
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get("programs"), "*.source")) {
+      for (Path path : paths) {
+        assertScanEquals(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+      }
+    }
+  }
+}
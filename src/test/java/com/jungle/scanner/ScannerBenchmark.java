@@ -0,0 +1,75 @@
+package com.jungle.scanner;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.jungle.token.TokenBuffer;
+
+public class ScannerBenchmark {
+  /* Times the scanners on a source made of the programs/*.source corpus, repeated up to a size in megabytes.
+   * Not a unit test (see ScannerTest), run it on its own with:
+   *
+   *   mvn -B -q test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+   *   java -cp target/classes:target/test-classes:$(cat target/classpath.txt) com.jungle.scanner.ScannerBenchmark [megabytes]
+   *
+   * Each scanner is run a few times to warm up, and then the minimum and median of the measured runs are printed.
+   */
+
+  private static final int DEFAULT_MEGABYTES = 5;
+  private static final int WARMUP_RUNS = 10;
+  private static final int MEASURED_RUNS = 20;
+
+  @NotNull
+  public static String corpus(int megabytes) throws IOException {
+    StringBuilder programs = new StringBuilder();
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get("programs"), "*.source")) {
+      for (Path path : paths) {
+        programs.append(new String(Files.readAllBytes(path), StandardCharsets.UTF_8)).append('\n');
+      }
+    }
+    if (programs.length() == 0) {
+      throw new Error("no programs/*.source - run from the project directory");
+    }
+    StringBuilder source = new StringBuilder(megabytes << 20);
+    while (source.length() < megabytes << 20) {
+      source.append(programs);
+    }
+    return source.toString();
+  }
+
+  static void time(@NotNull String name, @NotNull Supplier<TokenBuffer> scan) {
+    int size = 0;
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      size = scan.get().size();
+    }
+    long[] nanos = new long[MEASURED_RUNS];
+    for (int i = 0; i < MEASURED_RUNS; i++) {
+      long start = System.nanoTime();
+      size = scan.get().size();
+      nanos[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(nanos);
+    System.out.printf("%-12s %8d tokens  min %7.1f ms  median %7.1f ms%n",
+            name, size, nanos[0] / 1e6, nanos[MEASURED_RUNS / 2] / 1e6);
+  }
+
+  public static void main(String[] args) throws IOException {
+    int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MEGABYTES;
+    String source = corpus(megabytes);
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    System.out.printf("%d chars, %d processors%n", source.length(), Runtime.getRuntime().availableProcessors());
+    time("scanner", () -> new Scanner(CharBuffer.wrap(source)).scanTokenBuffer());
+    time("parallel", () -> new ParallelScanner(CharBuffer.wrap(source), pool).scanTokenBuffer());
+    time("dfa", () -> new DfaScanner(CharBuffer.wrap(source)).scanTokenBuffer());
+  }
+}
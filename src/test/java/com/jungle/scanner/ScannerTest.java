@@ -1,13 +1,22 @@
 package com.jungle.scanner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 
 import org.junit.Test;
 
+import com.jungle.token.IToken;
+import com.jungle.token.Keyword;
 import com.jungle.token.Token;
 import com.jungle.token.TokenType;
 
@@ -124,6 +133,82 @@ public class ScannerTest {
     assertEquals(new Token(TokenType.TERMINAL), scanner.scanToken());
   }
 
+  @Test
+  public void testScan_keywordIds() {
+    String source = "if greaterThan x 0 { print <i64> ifx }\n";
+    Scanner[] scanners = {
+      new Scanner(Collections.singletonList(source.trim())),
+      new Scanner(CharBuffer.wrap(source)),
+      new Scanner(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)))
+    };
+    for (Scanner scanner : scanners) {
+      List<Keyword> keywords = new LinkedList<>();
+      for (IToken token : scanner.scan()) {
+        if (token.getType() == TokenType.KEYWORD) {
+          keywords.add(token.getKeyword());
+        } else {
+          assertNull(token.getKeyword());
+        }
+      }
+      assertEquals(Arrays.asList(Keyword.IF, Keyword.GREATER_THAN, Keyword.PRINT, Keyword.CONVERT_LONG), keywords);
+    }
+  }
+
+  @Test
+  public void testScan_customKeywordIds() {
+    Scanner scanner = new Scanner(Collections.singletonList("if var print").iterator(), Arrays.asList("if", "var"));
+    Iterator<IToken> tokenIterator = scanner.scan().iterator();
+    IToken token = tokenIterator.next();
+    assertEquals(TokenType.KEYWORD, token.getType());
+    assertEquals(Keyword.IF, token.getKeyword());
+    tokenIterator.next();
+    token = tokenIterator.next();
+    assertEquals(TokenType.KEYWORD, token.getType());
+    assertNull(token.getKeyword());
+    tokenIterator.next();
+    token = tokenIterator.next();
+    assertEquals(TokenType.SYMBOL, token.getType());
+    assertNull(token.getKeyword());
+  }
+
+  @Test
+  public void testScan_triviaFolded() {
+    List<String> lines = Arrays.asList("i = 1", "", "\tprint  i # x", "  ");
+    List<IToken> expectedTokens = new LinkedList<>();
+    for (IToken token : new Scanner(lines).scan()) {
+      TokenType type = token.getType();
+      if (type != TokenType.SPACE && type != TokenType.TAB && type != TokenType.NEWLINE) {
+        expectedTokens.add(token);
+      }
+    }
+    Scanner[] scanners = {
+      new Scanner(lines).withTriviaFolded(true),
+      new Scanner(CharBuffer.wrap(String.join("\n", lines))).withTriviaFolded(true)
+    };
+    for (Scanner scanner : scanners) {
+      List<IToken> actualTokens = new LinkedList<>();
+      scanner.scan().forEach(actualTokens::add);
+      assertEquals(expectedTokens, actualTokens);
+      for (int i = 0; i < expectedTokens.size(); i++) {
+        assertEquals(expectedTokens.get(i).getLineNumber(), actualTokens.get(i).getLineNumber());
+        assertEquals(expectedTokens.get(i).getCharacterNumber(), actualTokens.get(i).getCharacterNumber());
+      }
+      int[] expectedTrivia = {
+        0, // i
+        IToken.TRIVIA_SPACE, // =
+        IToken.TRIVIA_SPACE, // 1
+        IToken.TRIVIA_NEWLINE | IToken.TRIVIA_SPACE, // print
+        IToken.TRIVIA_SPACE, // i
+        IToken.TRIVIA_SPACE, // # x
+        IToken.TRIVIA_NEWLINE | IToken.TRIVIA_SPACE // terminal
+      };
+      assertEquals(expectedTrivia.length, actualTokens.size());
+      for (int i = 0; i < expectedTrivia.length; i++) {
+        assertEquals(expectedTrivia[i], actualTokens.get(i).getLeadingTrivia());
+      }
+    }
+  }
+
   @Test
   public void testConsumeUntilAndSkip() {
     Scanner scanner = new Scanner(Collections.singletonList("var text = \"Hello world!\";"));
@@ -131,4 +216,79 @@ public class ScannerTest {
     assertEquals("Hello world!", scanner.consumeUntilAndSkip('\"'));
     assertEquals(26, scanner.getCharacterNumber());
   }
+
+  @Test
+  public void testScan_charBufferMatchesLines() {
+    List<String> lines = Arrays.asList(
+      "# count down",
+      "i = 10",
+      "loop (greaterThan i 0) {",
+      "\tprint 'unterminated",
+      "  i = - i 1",
+      "}"
+    );
+    List<IToken> expectedTokens = new LinkedList<>();
+    new Scanner(lines).scan().forEach(expectedTokens::add);
+    for (String lineSeparator : Arrays.asList("\n", "\r\n", "\r")) {
+      for (String lastLineSeparator : Arrays.asList("", lineSeparator)) {
+        String source = String.join(lineSeparator, lines) + lastLineSeparator;
+        List<IToken> actualTokens = new LinkedList<>();
+        new Scanner(CharBuffer.wrap(source.toCharArray())).scan().forEach(actualTokens::add);
+        assertEquals(expectedTokens.size(), actualTokens.size());
+        for (int i = 0; i < expectedTokens.size(); i++) {
+          IToken expectedToken = expectedTokens.get(i);
+          IToken actualToken = actualTokens.get(i);
+          assertEquals(expectedToken, actualToken);
+          assertEquals(expectedToken.getLineNumber(), actualToken.getLineNumber());
+          assertEquals(expectedToken.getCharacterNumber(), actualToken.getCharacterNumber());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testScan_charBufferEmpty() {
+    Scanner scanner = new Scanner(CharBuffer.wrap(new char[0]));
+    IToken token = scanner.scanToken();
+    assertEquals(new Token(TokenType.TERMINAL), token);
+    assertEquals(0, token.getLineNumber());
+    assertEquals(0, token.getCharacterNumber());
+  }
+
+  @Test
+  public void testScan_utf8ByteBufferMatchesLines() {
+    List<String> lines = Arrays.asList(
+      "print \"caf\u00e9 \u4e16\u754c \ud83c\udf34\"",
+      "\u00e9t\u00e9 = 1 # \ud83c\udf34",
+      "x = \ud83c\udf34 \u00e9"
+    );
+    List<IToken> expectedTokens = new LinkedList<>();
+    new Scanner(lines).scan().forEach(expectedTokens::add);
+    byte[] source = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+    List<IToken> actualTokens = new LinkedList<>();
+    new Scanner(ByteBuffer.wrap(source)).scan().forEach(actualTokens::add);
+    assertEquals(expectedTokens.size(), actualTokens.size());
+    for (int i = 0; i < expectedTokens.size(); i++) {
+      IToken expectedToken = expectedTokens.get(i);
+      IToken actualToken = actualTokens.get(i);
+      assertEquals(expectedToken, actualToken);
+      assertEquals(expectedToken.getLineNumber(), actualToken.getLineNumber());
+      assertEquals(expectedToken.getCharacterNumber(), actualToken.getCharacterNumber());
+    }
+  }
+
+  @Test
+  public void testTokenIterator_lazy() {
+    List<String> lines = Arrays.asList("i = 1", "print i");
+    int[] linesRead = {0};
+    Iterator<String> lineIterator = lines.stream().peek((line) -> linesRead[0]++).iterator();
+    Iterator<IToken> tokenIterator = new Scanner(lineIterator).tokenIterator();
+    assertEquals(new Token(TokenType.SYMBOL).withValue("i"), tokenIterator.next());
+    assertEquals(1, linesRead[0]);
+    List<IToken> tokenList = new LinkedList<>();
+    tokenIterator.forEachRemaining(tokenList::add);
+    assertEquals(2, linesRead[0]);
+    assertEquals(new Token(TokenType.TERMINAL), tokenList.get(tokenList.size() - 1));
+    assertFalse(tokenIterator.hasNext());
+  }
 }
@@ -0,0 +1,43 @@
+package com.jungle.token;
+
+import com.jungle.scanner.Scanner;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class KeywordTest {
+  @Test
+  public void testKeywordsMatchScanner() {
+    assertEquals(Scanner.KEYWORDS.size(), Keyword.values().length);
+    for (Keyword keyword : Keyword.values()) {
+      assertTrue(Scanner.KEYWORDS.contains(keyword.getValue()));
+    }
+  }
+
+  @Test
+  public void testFind() {
+    for (Keyword keyword : Keyword.values()) {
+      assertEquals(keyword, Keyword.find(keyword.getValue()));
+      char[] characters = ("(" + keyword.getValue() + ")").toCharArray();
+      assertEquals(keyword, Keyword.find(characters, 1, characters.length - 1));
+    }
+  }
+
+  @Test
+  public void testFind_notKeyword() {
+    assertNull(Keyword.find(""));
+    assertNull(Keyword.find((String) null));
+    assertNull(Keyword.find("iff"));
+    assertNull(Keyword.find("i9"));
+    assertNull(Keyword.find("Print"));
+    assertNull(Keyword.find("printer"));
+    assertNull(Keyword.find("lessThan".toCharArray(), 0, 4));
+  }
+
+  @Test
+  public void testTokenKeyword() {
+    assertEquals(Keyword.PRINT, new Token(TokenType.KEYWORD).withValue("print").getKeyword());
+    assertNull(new Token(TokenType.SYMBOL).withValue("print").getKeyword());
+    assertNull(new Token(TokenType.KEYWORD).withValue("var").getKeyword());
+  }
+}
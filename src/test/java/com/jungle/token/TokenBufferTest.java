@@ -0,0 +1,176 @@
+package com.jungle.token;
+
+import com.jungle.ast.INode;
+import com.jungle.ast.Node;
+import com.jungle.common.SymbolInterner;
+import com.jungle.parser.Parser;
+import com.jungle.scanner.Scanner;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TokenBufferTest {
+  private static final List<String> LINES = Arrays.asList(
+          "# count down",
+          "i = 3",
+          "loop (greaterThan i 0) {",
+          "  print i",
+          "  print \"...\\n\"",
+          "  i = - i 1",
+          "}"
+  );
+
+  @Test
+  public void testAdd() {
+    TokenBuffer tokenBuffer = new TokenBuffer();
+    tokenBuffer.add(TokenType.SYMBOL, 2, 7, "myInteger");
+    tokenBuffer.add(TokenType.EQUALS, 2, 17);
+    tokenBuffer.add(new Token(TokenType.TEXT).withValue("").withPosition(3, 1));
+
+    assertEquals(3, tokenBuffer.size());
+
+    assertEquals(TokenType.SYMBOL, tokenBuffer.getType(0));
+    assertEquals("myInteger", tokenBuffer.getValue(0));
+    assertEquals(2, tokenBuffer.getLineNumber(0));
+    assertEquals(7, tokenBuffer.getCharacterNumber(0));
+
+    assertEquals(TokenType.EQUALS, tokenBuffer.getType(1));
+    assertNull(tokenBuffer.getValue(1));
+    assertEquals(17, tokenBuffer.getCharacterNumber(1));
+
+    assertEquals(TokenType.TEXT, tokenBuffer.getType(2));
+    assertEquals("", tokenBuffer.getValue(2));
+    assertEquals(3, tokenBuffer.getLineNumber(2));
+  }
+
+  @Test
+  public void testSymbolIds() {
+    // The same symbol has the same id whether it is a range of the source or an added value, loaded tokens have none
+    char[] source = "count = count".toCharArray();
+    SymbolInterner symbolInterner = new SymbolInterner();
+    TokenBuffer tokenBuffer = new TokenBuffer(source, symbolInterner);
+    tokenBuffer.add(TokenType.SYMBOL, 1, 1, 0, 5);
+    tokenBuffer.add(TokenType.EQUALS, 1, 7);
+    tokenBuffer.add(TokenType.SYMBOL, 1, 9, "count");
+    tokenBuffer.add(TokenType.TEXT, 1, 15, "count");
+
+    int symbolId = tokenBuffer.getSymbolId(0);
+    assertNotEquals(SymbolInterner.NO_SYMBOL, symbolId);
+    assertEquals(symbolId, tokenBuffer.getSymbolId(2));
+    assertEquals(SymbolInterner.NO_SYMBOL, new Token(TokenType.SYMBOL).withValue("count").getSymbolId());
+    assertEquals(SymbolInterner.NO_SYMBOL, tokenBuffer.getSymbolId(1));
+    assertEquals(SymbolInterner.NO_SYMBOL, tokenBuffer.getSymbolId(3));
+    assertNotEquals(symbolId, symbolInterner.intern("counter"));
+    assertEquals(symbolId, symbolInterner.intern("count"));
+
+    // Every symbol name is stored once
+    assertSame(tokenBuffer.getValue(0), tokenBuffer.getValue(2));
+    assertSame(symbolInterner.getName(symbolId), tokenBuffer.get(0).getValue());
+  }
+
+  @Test
+  public void testAddAll_symbolIds() {
+    // The symbol ids of a buffer of another interner are remapped to the ids of the buffer
+    TokenBuffer tokenBuffer = new TokenBuffer(new char[0], new SymbolInterner());
+    tokenBuffer.add(TokenType.SYMBOL, 1, 1, "total");
+    TokenBuffer otherTokenBuffer = new TokenBuffer(new char[0], new SymbolInterner());
+    otherTokenBuffer.add(TokenType.SYMBOL, 1, 1, "count");
+    otherTokenBuffer.add(TokenType.SYMBOL, 1, 7, "total");
+    otherTokenBuffer.add(TokenType.EQUALS, 1, 13);
+    assertEquals(0, otherTokenBuffer.getSymbolId(0));
+
+    tokenBuffer.addAll(otherTokenBuffer, 0, otherTokenBuffer.size(), 1);
+    assertEquals(tokenBuffer.getSymbolId(0), tokenBuffer.getSymbolId(2));
+    assertEquals(tokenBuffer.getSymbolInterner().intern("count"), tokenBuffer.getSymbolId(1));
+    assertEquals("count", tokenBuffer.getValue(1));
+    assertEquals(SymbolInterner.NO_SYMBOL, tokenBuffer.getSymbolId(3));
+  }
+
+  @Test
+  public void testAdd_sourceRange() {
+    char[] source = "abc = 123".toCharArray();
+    TokenBuffer tokenBuffer = new TokenBuffer(source);
+    tokenBuffer.add(TokenType.SYMBOL, 1, 1, 0, 3);
+    tokenBuffer.add(TokenType.NUMBER, 1, 7, 6, 9);
+    // Appending a value must not modify the shared source
+    tokenBuffer.add(TokenType.TEXT, 1, 10, "xyz");
+    assertEquals("abc", tokenBuffer.getValue(0));
+    assertEquals("123", tokenBuffer.getValue(1));
+    assertEquals("xyz", tokenBuffer.getValue(2));
+    assertArrayEquals("abc = 123".toCharArray(), source);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testAdd_sourceRangeOutOfBounds() {
+    TokenBuffer tokenBuffer = new TokenBuffer("abc".toCharArray());
+    tokenBuffer.add(TokenType.SYMBOL, 1, 1, 0, 4);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testGet_outOfBounds() {
+    new TokenBuffer().getType(0);
+  }
+
+  @Test
+  public void testIterator() {
+    List<IToken> tokenList = new LinkedList<>();
+    new Scanner(LINES).scan().forEach(tokenList::add);
+    TokenBuffer tokenBuffer = new TokenBuffer(tokenList);
+    assertEquals(tokenList.size(), tokenBuffer.size());
+    Iterator<IToken> iterator = tokenBuffer.iterator();
+    for (IToken expectedToken : tokenList) {
+      IToken actualToken = iterator.next();
+      assertEquals(expectedToken, actualToken);
+      assertEquals(expectedToken.hashCode(), actualToken.hashCode());
+      assertEquals(expectedToken.getLineNumber(), actualToken.getLineNumber());
+      assertEquals(expectedToken.getCharacterNumber(), actualToken.getCharacterNumber());
+    }
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void testScanTokenBuffer() {
+    List<IToken> tokenList = new LinkedList<>();
+    new Scanner(LINES).scan().forEach(tokenList::add);
+    char[] source = String.join("\n", LINES).toCharArray();
+    TokenBuffer[] tokenBuffers = {
+            new Scanner(LINES).scanTokenBuffer(),
+            new Scanner(CharBuffer.wrap(source)).scanTokenBuffer()
+    };
+    for (TokenBuffer tokenBuffer : tokenBuffers) {
+      assertEquals(tokenList.size(), tokenBuffer.size());
+      for (int i = 0; i < tokenList.size(); i++) {
+        assertEquals(tokenList.get(i), tokenBuffer.get(i));
+        assertEquals(tokenList.get(i).getLineNumber(), tokenBuffer.getLineNumber(i));
+        assertEquals(tokenList.get(i).getCharacterNumber(), tokenBuffer.getCharacterNumber(i));
+      }
+    }
+  }
+
+  @Test
+  public void testParse() throws IOException {
+    List<IToken> tokenList = new LinkedList<>();
+    new Scanner(LINES).scan().forEach(tokenList::add);
+    INode expectedAst = new Parser(tokenList).parse();
+    TokenBuffer tokenBuffer = new Scanner(CharBuffer.wrap(String.join("\n", LINES).toCharArray())).scanTokenBuffer();
+    INode actualAst = new Parser(tokenBuffer).parse();
+    assertEquals(save(expectedAst), save(actualAst));
+  }
+
+  private static String save(INode ast) throws IOException {
+    StringWriter stringWriter = new StringWriter();
+    BufferedWriter bufferedWriter = new BufferedWriter(stringWriter);
+    Node.save(bufferedWriter, ast);
+    bufferedWriter.flush();
+    return stringWriter.toString();
+  }
+}
@@ -1,8 +1,17 @@
 package com.jungle.token;
 
+import com.jungle.scanner.Scanner;
 import org.junit.Test;
 
 import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -171,4 +180,95 @@ public class TokenTest {
 
     assertEquals(inputTokenList, outputTokenList);
   }
+
+  @Test
+  public void testSaveAndLoad_leadingTrivia() throws IOException {
+    List<IToken> inputTokenList = new LinkedList<>();
+    inputTokenList.add(new Token(TokenType.KEYWORD).withValue("print"));
+    inputTokenList.add(new Token(TokenType.NUMBER).withValue("1").withLeadingTrivia(IToken.TRIVIA_SPACE));
+    inputTokenList.add(new Token(TokenType.TERMINAL).withLeadingTrivia(IToken.TRIVIA_SPACE | IToken.TRIVIA_NEWLINE));
+
+    StringWriter stringWriter = new StringWriter();
+    BufferedWriter bufferedWriter = new BufferedWriter(stringWriter);
+    Token.save(bufferedWriter, inputTokenList);
+    bufferedWriter.flush();
+    assertEquals("0\t0\tKEYWORD\tprint\n0\t0\ts:NUMBER\t1\n0\t0\tsn:TERMINAL\n", stringWriter.toString());
+
+    List<IToken> outputTokenList = Token.load(new BufferedReader(new StringReader(stringWriter.toString())));
+    assertEquals(inputTokenList, outputTokenList);
+    for (int i = 0; i < inputTokenList.size(); i++) {
+      assertEquals(inputTokenList.get(i).getLeadingTrivia(), outputTokenList.get(i).getLeadingTrivia());
+    }
+  }
+
+  @Test(expected = Error.class)
+  public void testLoad_invalidTrivia() {
+    Token.load(new BufferedReader(new StringReader("1\t1\tx:TERMINAL")));
+  }
+
+  private static void assertSaveAndLoadBinary(Iterable<IToken> inputTokenIterable) throws IOException {
+    List<IToken> inputTokenList = new ArrayList<>();
+    for (IToken token : inputTokenIterable) {
+      inputTokenList.add(new Token(token.getType())
+              .withValue(token.getValue())
+              .withPosition(token.getLineNumber(), token.getCharacterNumber())
+              .withLeadingTrivia(token.getLeadingTrivia()));
+    }
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    Token.saveBinary(outputStream, inputTokenList);
+
+    Iterator<IToken> outputTokenIterator = Token.loadBinary(new ByteArrayInputStream(outputStream.toByteArray()));
+    for (IToken inputToken : inputTokenList) {
+      assertTrue(outputTokenIterator.hasNext());
+      IToken outputToken = outputTokenIterator.next();
+      assertEquals(inputToken, outputToken);
+      assertEquals(inputToken.getLineNumber(), outputToken.getLineNumber());
+      assertEquals(inputToken.getCharacterNumber(), outputToken.getCharacterNumber());
+      assertEquals(inputToken.getLeadingTrivia(), outputToken.getLeadingTrivia());
+    }
+    assertFalse(outputTokenIterator.hasNext());
+  }
+
+  @Test
+  public void testSaveAndLoadBinary() throws IOException {
+    List<IToken> inputTokenList = new LinkedList<>();
+    inputTokenList.add(new Token(TokenType.KEYWORD).withValue("print").withPosition(1, 1));
+    inputTokenList.add(new Token(TokenType.TEXT).withValue("Hello\tworld! \u00e9\u2603\n").withPosition(1, 7).withLeadingTrivia(IToken.TRIVIA_SPACE));
+    inputTokenList.add(new Token(TokenType.KEYWORD).withValue("print").withPosition(3, 200));
+    inputTokenList.add(new Token(TokenType.TEXT).withValue("").withPosition(3, 2));
+    inputTokenList.add(new Token(TokenType.TERMINAL).withPosition(100000, 1).withLeadingTrivia(IToken.TRIVIA_SPACE | IToken.TRIVIA_NEWLINE));
+    assertSaveAndLoadBinary(inputTokenList);
+  }
+
+  @Test
+  public void testSaveAndLoadBinary_programs() throws IOException {
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get("programs"), "*.source")) {
+      for (Path path : paths) {
+        String source = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        assertSaveAndLoadBinary(new Scanner(CharBuffer.wrap(source)).scanTokenBuffer());
+        assertSaveAndLoadBinary(new Scanner(CharBuffer.wrap(source)).withTriviaFolded(true).scanTokenBuffer());
+      }
+    }
+  }
+
+  @Test
+  public void testLoadBinary_empty() {
+    assertFalse(Token.loadBinary(new ByteArrayInputStream(new byte[0])).hasNext());
+  }
+
+  @Test(expected = Error.class)
+  public void testLoadBinary_invalidMagic() {
+    Token.loadBinary(new ByteArrayInputStream("1\t1\tTERMINAL".getBytes(StandardCharsets.UTF_8))).hasNext();
+  }
+
+  @Test(expected = Error.class)
+  public void testLoadBinary_truncated() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    Token.saveBinary(outputStream, new Scanner(CharBuffer.wrap("print \"text\"")).scanTokenBuffer());
+    byte[] bytes = outputStream.toByteArray();
+    Iterator<IToken> tokenIterator = Token.loadBinary(new ByteArrayInputStream(bytes, 0, bytes.length - 2));
+    while (tokenIterator.hasNext()) {
+      tokenIterator.next();
+    }
+  }
 }